@@ -0,0 +1,158 @@
+package com.ebizimba.islam;
+
+import android.content.Context;
+import android.net.ConnectivityManager;
+import android.net.Network;
+import android.net.NetworkCapabilities;
+
+// In-flight limit for page downloads, adjusted to what the link can actually carry.
+// Too many parallel requests on 2G/3G just split a thin pipe until reads time out;
+// too few on Wi-Fi leave most of each round trip idle.
+//
+// The limit is AIMD: any congestion signal (timeout, cut-off body, 5xx) halves it,
+// once per episode. Between signals it climbs one request at a time for as long as
+// each step still raises pages per second, measured over epochs of a few full
+// windows; a step that makes things worse is taken back. When the rate is flat it
+// holds, probing one step up every few epochs in case the link has improved.
+//
+// The starting point comes from the active network's capabilities, so a fresh
+// batch on a slow link doesn't have to time out its way down first.
+final class AdaptiveConcurrency {
+    static final int MIN_LIMIT = 1;
+    // Completions per epoch, in multiples of the current limit
+    private static final int EPOCH_ROUNDS = 2;
+    // Rate changes smaller than this are noise
+    private static final double MIN_GAIN = 0.05;
+    private static final int PROBE_AFTER_EPOCHS = 4;
+
+    private final int maxLimit;
+    private int limit;
+    private long epochStart;
+    private int epochSuccesses;
+    // Pages per second in the last epoch; 0 until a baseline has been measured
+    private double lastRate;
+    // Rate before the last increase, restored if the increase is taken back
+    private double rateBeforeIncrease;
+    private boolean increasedLastEpoch;
+    private int heldEpochs;
+    private long lastDecrease;
+
+    AdaptiveConcurrency(int initialLimit, int maxLimit) {
+        this.maxLimit = maxLimit;
+        reset(initialLimit);
+    }
+
+    synchronized int getLimit() {
+        return limit;
+    }
+
+    // Start over, e.g. for a new batch that may be on a different network
+    synchronized void reset(int initialLimit) {
+        limit = clamp(initialLimit);
+        lastRate = 0;
+        increasedLastEpoch = false;
+        heldEpochs = 0;
+        lastDecrease = System.nanoTime();
+        startEpoch(lastDecrease);
+        NativeMetrics.set(NativeMetrics.Gauge.PAGE_CONCURRENCY_LIMIT, limit);
+    }
+
+    // A page finished downloading
+    synchronized void onSuccess() {
+        long now = System.nanoTime();
+        epochSuccesses++;
+        if (epochSuccesses < EPOCH_ROUNDS * limit) {
+            return;
+        }
+
+        double rate = epochSuccesses * 1e9 / Math.max(1, now - epochStart);
+        if (lastRate == 0) {
+            // First epoch at this limit after a reset or decrease: just the baseline
+            lastRate = rate;
+        } else if (rate > lastRate * (1 + MIN_GAIN)) {
+            increase(rate);
+        } else if (increasedLastEpoch && rate < lastRate * (1 - MIN_GAIN)) {
+            // The extra request only added contention
+            limit = clamp(limit - 1);
+            lastRate = rateBeforeIncrease;
+            increasedLastEpoch = false;
+            heldEpochs = 0;
+        } else if (++heldEpochs >= PROBE_AFTER_EPOCHS) {
+            increase(rate);
+        } else {
+            lastRate = rate;
+            increasedLastEpoch = false;
+        }
+        startEpoch(now);
+        NativeMetrics.set(NativeMetrics.Gauge.PAGE_CONCURRENCY_LIMIT, limit);
+    }
+
+    // An attempt that began at startedNanos timed out, was cut short or hit an
+    // overloaded server. Requests already in flight when the limit was last cut
+    // belong to the same episode and don't cut it again.
+    synchronized void onCongestion(long startedNanos) {
+        if (startedNanos - lastDecrease < 0) {
+            return;
+        }
+        long now = System.nanoTime();
+        limit = clamp(limit / 2);
+        lastDecrease = now;
+        lastRate = 0;
+        increasedLastEpoch = false;
+        heldEpochs = 0;
+        startEpoch(now);
+        NativeMetrics.increment(NativeMetrics.Counter.CONCURRENCY_BACKOFFS);
+        NativeMetrics.set(NativeMetrics.Gauge.PAGE_CONCURRENCY_LIMIT, limit);
+    }
+
+    private void increase(double rate) {
+        rateBeforeIncrease = lastRate;
+        lastRate = rate;
+        increasedLastEpoch = limit < maxLimit;
+        heldEpochs = 0;
+        limit = clamp(limit + 1);
+    }
+
+    private void startEpoch(long now) {
+        epochStart = now;
+        epochSuccesses = 0;
+    }
+
+    private int clamp(int value) {
+        return Math.max(MIN_LIMIT, Math.min(maxLimit, value));
+    }
+
+    // Starting limit for the active network
+    static int initialLimit(Context context, int maxLimit) {
+        ConnectivityManager connectivity = context.getSystemService(ConnectivityManager.class);
+        Network network = connectivity != null ? connectivity.getActiveNetwork() : null;
+        NetworkCapabilities capabilities = network != null ? connectivity.getNetworkCapabilities(network) : null;
+        if (capabilities == null) {
+            return initialLimit(0, false, maxLimit);
+        }
+        return initialLimit(
+            capabilities.getLinkDownstreamBandwidthKbps(),
+            capabilities.hasCapability(NetworkCapabilities.NET_CAPABILITY_NOT_METERED),
+            maxLimit
+        );
+    }
+
+    // The bandwidth estimate is coarse (often just the radio technology's nominal
+    // rate), so it only picks a bracket; the controller finds the real value
+    static int initialLimit(int downstreamKbps, boolean unmetered, int maxLimit) {
+        int initial;
+        if (downstreamKbps <= 0) {
+            initial = unmetered ? 3 : 2;
+        } else if (downstreamKbps < 1_000) {
+            // 2G and slow 3G
+            initial = 1;
+        } else if (downstreamKbps < 5_000) {
+            initial = 2;
+        } else if (downstreamKbps < 25_000) {
+            initial = 3;
+        } else {
+            initial = unmetered ? 4 : 3;
+        }
+        return Math.max(MIN_LIMIT, Math.min(maxLimit, initial));
+    }
+}
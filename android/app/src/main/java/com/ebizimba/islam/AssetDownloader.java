@@ -0,0 +1,513 @@
+package com.ebizimba.islam;
+
+import android.content.Context;
+import android.os.Handler;
+import android.os.Looper;
+import android.util.Log;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.SocketTimeoutException;
+import java.net.URL;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+// Shared download engine for everything the app stores under getFilesDir(): mushaf
+// page images, recitation audio packs and book files. Each asset type has its own
+// priority, concurrency limit and storage budget; a single dispatcher hands out
+// connections so a large audio pack never starves the page the reader is waiting on.
+// A file is only ever downloaded by one task: a request for a path that is already
+// queued or downloading joins that task and is told when it finishes.
+public class AssetDownloader {
+    private static final String TAG = "AssetDownloader";
+    private static final long MB = 1024L * 1024L;
+    private static final int MAX_TOTAL_CONNECTIONS = 8;
+
+    private static AssetDownloader instance;
+
+    public enum AssetType {
+        // directory, priority (lower runs first), max concurrent, storage budget.
+        // For pages the max is only a ceiling; pageConcurrency sets the live limit.
+        PAGE_IMAGE("quran-pages", 0, 6, 300 * MB),
+        SURAH_AUDIO("quran-audio", 1, 3, 2048 * MB),
+        BOOK_FILE("books", 2, 2, 512 * MB);
+
+        final String directory;
+        final int priority;
+        final int maxConcurrent;
+        final long storageBudget;
+
+        AssetType(String directory, int priority, int maxConcurrent, long storageBudget) {
+            this.directory = directory;
+            this.priority = priority;
+            this.maxConcurrent = maxConcurrent;
+            this.storageBudget = storageBudget;
+        }
+    }
+
+    public static class AssetRequest {
+        final AssetType type;
+        final String relativePath;
+        final List<String> urls;
+        final boolean pinned;
+
+        // urls are tried in order until one succeeds
+        public AssetRequest(AssetType type, String relativePath, List<String> urls) {
+            this(type, relativePath, urls, false);
+        }
+
+        // Pinned assets are exempt from storage eviction
+        public AssetRequest(AssetType type, String relativePath, List<String> urls, boolean pinned) {
+            this.type = type;
+            this.relativePath = relativePath;
+            this.urls = urls;
+            this.pinned = pinned;
+        }
+    }
+
+    public interface BatchListener {
+        void onProgressUpdate(int current, int total);
+        void onBatchComplete(int success, int failed);
+        void onError(String error);
+    }
+
+    private final Context context;
+    private final NativeIndex index;
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+    private final ExecutorService workers = Executors.newCachedThreadPool();
+    private final TreeSet<AssetTask> pending = new TreeSet<>();
+    // Queued and running tasks by type and path
+    private final Map<String, AssetTask> active = new HashMap<>();
+    private final int[] inFlight = new int[AssetType.values().length];
+    private final AdaptiveConcurrency pageConcurrency;
+    private final long[] usedBytes = new long[AssetType.values().length];
+    private int totalInFlight = 0;
+    private long nextSequence = 0;
+
+    public static synchronized AssetDownloader getInstance(Context context) {
+        if (instance == null) {
+            instance = new AssetDownloader(context.getApplicationContext());
+        }
+        return instance;
+    }
+
+    private AssetDownloader(Context context) {
+        this.context = context;
+        this.index = NativeIndex.getInstance(context);
+        this.pageConcurrency = new AdaptiveConcurrency(
+            AdaptiveConcurrency.initialLimit(context, AssetType.PAGE_IMAGE.maxConcurrent),
+            AssetType.PAGE_IMAGE.maxConcurrent
+        );
+        for (int i = 0; i < usedBytes.length; i++) {
+            usedBytes[i] = -1;
+        }
+    }
+
+    public File getDirectory(AssetType type) {
+        File dir = new File(context.getFilesDir(), type.directory);
+        if (!dir.exists()) {
+            dir.mkdirs();
+        }
+        return dir;
+    }
+
+    public File getFile(AssetType type, String relativePath) {
+        return new File(getDirectory(type), relativePath);
+    }
+
+    // Queue a batch of assets. Files already on disk count as successes immediately.
+    public Batch submit(List<AssetRequest> requests, BatchListener listener) {
+        Batch batch = new Batch(requests.size(), listener);
+        List<AssetTask> tasks = new ArrayList<>();
+
+        for (AssetRequest request : requests) {
+            if (getFile(request.type, request.relativePath).exists()) {
+                NativeMetrics.increment(NativeMetrics.Counter.ASSET_CACHE_HITS);
+                index.touchEntry(request.type.name(), request.relativePath);
+                if (request.type == AssetType.PAGE_IMAGE) {
+                    PageDownloadPlanner.getInstance(context).onPageStored(request.relativePath);
+                }
+                if (request.pinned) {
+                    index.setPinned(request.type.name(), request.relativePath, true);
+                }
+                batch.onTaskFinished(true);
+            } else {
+                NativeMetrics.increment(NativeMetrics.Counter.ASSET_CACHE_MISSES);
+                tasks.add(new AssetTask(request, batch));
+            }
+        }
+
+        synchronized (this) {
+            // Nothing is downloading pages, so this batch may be on a different network
+            if (!tasks.isEmpty() && inFlight[AssetType.PAGE_IMAGE.ordinal()] == 0 && !hasPending(AssetType.PAGE_IMAGE)) {
+                pageConcurrency.reset(AdaptiveConcurrency.initialLimit(context, AssetType.PAGE_IMAGE.maxConcurrent));
+            }
+            for (AssetTask task : tasks) {
+                AssetTask running = active.get(task.key);
+                if (running != null) {
+                    // Already on its way; wait for that download instead of racing it
+                    running.batches.add(batch);
+                    running.pinned |= task.pinned;
+                    running.cancelled.set(false);
+                    continue;
+                }
+                task.sequence = nextSequence++;
+                active.put(task.key, task);
+                pending.add(task);
+            }
+            dispatch();
+        }
+        return batch;
+    }
+
+    public void cancelAll(AssetType type) {
+        List<AssetTask> dropped = new ArrayList<>();
+        synchronized (this) {
+            Iterator<AssetTask> iterator = pending.iterator();
+            while (iterator.hasNext()) {
+                AssetTask task = iterator.next();
+                if (task.request.type == type) {
+                    iterator.remove();
+                    active.remove(task.key);
+                    for (Batch batch : task.batches) {
+                        batch.cancelled.set(true);
+                    }
+                    dropped.add(task);
+                }
+            }
+            NativeMetrics.set(NativeMetrics.Gauge.DOWNLOADS_PENDING, pending.size());
+        }
+        // Running downloads of those batches stop at their next mirror
+        onBatchCancelled();
+        for (AssetTask task : dropped) {
+            task.notifyBatches(false);
+        }
+    }
+
+    // A batch was cancelled: stop the tasks that no other batch is waiting for
+    private synchronized void onBatchCancelled() {
+        for (AssetTask task : active.values()) {
+            boolean wanted = false;
+            for (Batch batch : task.batches) {
+                wanted |= !batch.cancelled.get();
+            }
+            if (!wanted) {
+                task.cancelled.set(true);
+            }
+        }
+    }
+
+    public synchronized long getUsedBytes(AssetType type) {
+        if (usedBytes[type.ordinal()] < 0) {
+            usedBytes[type.ordinal()] = directorySize(getDirectory(type));
+        }
+        return usedBytes[type.ordinal()];
+    }
+
+    synchronized void addUsedBytes(AssetType type, long bytes) {
+        getUsedBytes(type);
+        usedBytes[type.ordinal()] += bytes;
+    }
+
+    private boolean hasPending(AssetType type) {
+        for (AssetTask task : pending) {
+            if (task.request.type == type) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private int concurrencyLimit(AssetType type) {
+        return type == AssetType.PAGE_IMAGE ? pageConcurrency.getLimit() : type.maxConcurrent;
+    }
+
+    // Start as many pending tasks as the global and per-type limits allow, highest
+    // priority type first
+    private synchronized void dispatch() {
+        Iterator<AssetTask> iterator = pending.iterator();
+        while (totalInFlight < MAX_TOTAL_CONNECTIONS && iterator.hasNext()) {
+            AssetTask task = iterator.next();
+            AssetType type = task.request.type;
+            if (inFlight[type.ordinal()] >= concurrencyLimit(type)) {
+                continue;
+            }
+            iterator.remove();
+            if (task.cancelled.get()) {
+                active.remove(task.key);
+                task.notifyBatches(false);
+                continue;
+            }
+            inFlight[type.ordinal()]++;
+            totalInFlight++;
+            workers.execute(task);
+        }
+        NativeMetrics.set(NativeMetrics.Gauge.DOWNLOADS_IN_FLIGHT, totalInFlight);
+        NativeMetrics.set(NativeMetrics.Gauge.DOWNLOADS_PENDING, pending.size());
+    }
+
+    private synchronized void onTaskDone(AssetType type) {
+        inFlight[type.ordinal()]--;
+        totalInFlight--;
+        dispatch();
+    }
+
+    private class AssetTask implements Runnable, Comparable<AssetTask> {
+        final AssetRequest request;
+        final String key;
+        // Every batch that asked for this file; guarded by the downloader's lock
+        final List<Batch> batches = new ArrayList<>(1);
+        final AtomicBoolean cancelled = new AtomicBoolean(false);
+        boolean pinned;
+        long sequence;
+
+        AssetTask(AssetRequest request, Batch batch) {
+            this.request = request;
+            this.key = request.type.name() + "/" + request.relativePath;
+            this.pinned = request.pinned;
+            batches.add(batch);
+        }
+
+        void notifyBatches(boolean success) {
+            List<Batch> waiting;
+            synchronized (AssetDownloader.this) {
+                waiting = new ArrayList<>(batches);
+            }
+            for (Batch batch : waiting) {
+                batch.onTaskFinished(success);
+            }
+        }
+
+        @Override
+        public int compareTo(AssetTask other) {
+            if (request.type.priority != other.request.type.priority) {
+                return Integer.compare(request.type.priority, other.request.type.priority);
+            }
+            return Long.compare(sequence, other.sequence);
+        }
+
+        @Override
+        public void run() {
+            boolean success = false;
+            try {
+                if (getUsedBytes(request.type) >= request.type.storageBudget
+                        && !StorageGovernor.getInstance(context).makeRoom(request.type.name(), request.type.storageBudget)) {
+                    reportError("Storage budget exceeded for " + request.type.directory);
+                    return;
+                }
+
+                File target = getFile(request.type, request.relativePath);
+                File parent = target.getParentFile();
+                if (parent != null && !parent.exists()) {
+                    parent.mkdirs();
+                }
+
+                AdaptiveConcurrency congestion = request.type == AssetType.PAGE_IMAGE ? pageConcurrency : null;
+                String sha256 = fetchFromMirrors(request.urls, target, cancelled, congestion);
+                if (sha256 != null) {
+                    success = true;
+                    if (congestion != null) {
+                        congestion.onSuccess();
+                    }
+                    addUsedBytes(request.type, target.length());
+                    boolean pin;
+                    synchronized (AssetDownloader.this) {
+                        // Later requests now find the file on disk instead of joining
+                        active.remove(key);
+                        pin = pinned;
+                    }
+                    index.recordEntry(request.type.name(), request.relativePath, target, sha256, pin);
+                    if (request.type == AssetType.PAGE_IMAGE) {
+                        PageDownloadPlanner.getInstance(context).onPageStored(request.relativePath);
+                        ThumbnailAtlas.getInstance(context)
+                            .onPageStored(PageDownloadPlanner.pageFromKey(request.relativePath), target);
+                    }
+                }
+            } catch (Exception e) {
+                Log.e(TAG, "Error downloading " + request.relativePath, e);
+            } finally {
+                synchronized (AssetDownloader.this) {
+                    active.remove(key);
+                }
+                notifyBatches(success);
+                onTaskDone(request.type);
+            }
+        }
+
+        private void reportError(String error) {
+            List<Batch> waiting;
+            synchronized (AssetDownloader.this) {
+                waiting = new ArrayList<>(batches);
+            }
+            for (Batch batch : waiting) {
+                batch.reportError(error);
+            }
+        }
+    }
+
+    public class Batch {
+        final int total;
+        final BatchListener listener;
+        final AtomicBoolean cancelled = new AtomicBoolean(false);
+        final AtomicBoolean errorReported = new AtomicBoolean(false);
+        final AtomicInteger finished = new AtomicInteger(0);
+        final AtomicInteger succeeded = new AtomicInteger(0);
+
+        Batch(int total, BatchListener listener) {
+            this.total = total;
+            this.listener = listener;
+            if (total == 0) {
+                mainHandler.post(() -> {
+                    if (listener != null) listener.onBatchComplete(0, 0);
+                });
+            }
+        }
+
+        public void cancel() {
+            cancelled.set(true);
+            onBatchCancelled();
+        }
+
+        void onTaskFinished(boolean success) {
+            if (success) {
+                succeeded.incrementAndGet();
+            }
+            int current = finished.incrementAndGet();
+            if (current == total) {
+                StorageGovernor.getInstance(context).enforceAsync();
+            }
+            if (listener == null) {
+                return;
+            }
+            mainHandler.post(() -> listener.onProgressUpdate(current, total));
+            if (current == total) {
+                int successCount = succeeded.get();
+                mainHandler.post(() -> listener.onBatchComplete(successCount, total - successCount));
+            }
+        }
+
+        void reportError(String error) {
+            // One error per batch is enough for the UI
+            if (listener != null && errorReported.compareAndSet(false, true)) {
+                mainHandler.post(() -> listener.onError(error));
+            }
+        }
+    }
+
+    // Try each mirror in order until one succeeds. Returns the stored file's SHA-256,
+    // or null if every mirror failed or the batch was cancelled.
+    static String fetchFromMirrors(List<String> urls, File target, AtomicBoolean cancelled) {
+        return fetchFromMirrors(urls, target, cancelled, null);
+    }
+
+    // As above, reporting attempts that point at an overloaded link to congestion
+    static String fetchFromMirrors(List<String> urls, File target, AtomicBoolean cancelled,
+                                   AdaptiveConcurrency congestion) {
+        boolean firstAttempt = true;
+        for (String url : urls) {
+            if (cancelled.get()) {
+                return null;
+            }
+            if (!firstAttempt) {
+                NativeMetrics.increment(NativeMetrics.Counter.MIRROR_FALLBACKS);
+            }
+            firstAttempt = false;
+
+            NativeMetrics.increment(NativeMetrics.Counter.DOWNLOAD_REQUESTS);
+            long started = NativeMetrics.start();
+            String sha256 = downloadFile(url, target, congestion);
+            NativeMetrics.stop(NativeMetrics.Timer.DOWNLOAD_FILE, started);
+            if (sha256 != null) {
+                NativeMetrics.add(NativeMetrics.Counter.DOWNLOAD_BYTES, target.length());
+                return sha256;
+            }
+            NativeMetrics.increment(NativeMetrics.Counter.DOWNLOAD_FAILURES);
+        }
+        return null;
+    }
+
+    // Download to a .part file and rename on success so a partial download never
+    // looks like a cached asset. Returns the file's SHA-256, or null on failure.
+    // Timeouts, truncated bodies and 5xx responses are reported to congestion; a 404
+    // or a refused connection says nothing about the link
+    static String downloadFile(String fileUrl, File outputFile, AdaptiveConcurrency congestion) {
+        long started = System.nanoTime();
+        HttpURLConnection connection = null;
+        InputStream input = null;
+        File temp = new File(outputFile.getPath() + ".part");
+        boolean complete = false;
+
+        try {
+            URL url = new URL(fileUrl);
+            connection = (HttpURLConnection) url.openConnection();
+            connection.setConnectTimeout(15000);
+            connection.setReadTimeout(15000);
+            connection.connect();
+
+            int status = connection.getResponseCode();
+            if (status != HttpURLConnection.HTTP_OK) {
+                if (status >= 500 && congestion != null) {
+                    congestion.onCongestion(started);
+                }
+                return null;
+            }
+
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            long expected = connection.getContentLengthLong();
+            input = connection.getInputStream();
+
+            long written = NativeIo.copyToFile(input, temp, digest);
+
+            if (expected >= 0 && written != expected) {
+                Log.w(TAG, "Truncated download " + fileUrl + ": " + written + "/" + expected);
+                if (congestion != null) {
+                    congestion.onCongestion(started);
+                }
+                return null;
+            }
+
+            complete = temp.renameTo(outputFile);
+            return complete ? ChunkedUploader.toHex(digest.digest()) : null;
+        } catch (SocketTimeoutException e) {
+            Log.w(TAG, "Timed out downloading " + fileUrl);
+            if (congestion != null) {
+                congestion.onCongestion(started);
+            }
+            return null;
+        } catch (IOException | NoSuchAlgorithmException e) {
+            Log.e(TAG, "Error downloading file: " + fileUrl, e);
+            return null;
+        } finally {
+            try {
+                if (input != null) input.close();
+            } catch (IOException ignored) {}
+
+            if (!complete) temp.delete();
+            if (connection != null) connection.disconnect();
+        }
+    }
+
+    static long directorySize(File dir) {
+        File[] files = dir.listFiles();
+        if (files == null) {
+            return 0;
+        }
+        long total = 0;
+        for (File file : files) {
+            total += file.isDirectory() ? directorySize(file) : file.length();
+        }
+        return total;
+    }
+}
@@ -0,0 +1,153 @@
+package com.ebizimba.islam;
+
+import android.content.Context;
+import android.os.Process;
+import android.util.Log;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+// Disk cache for recitation segments (page or ayah mp3s). Segments are looked up in
+// the offline audio packs first, then in the streaming cache. Prefetching runs the
+// next few segments back to back on one low-priority thread so the radio wakes once
+// per batch instead of once per ayah.
+public class AudioSegmentCache {
+    private static final String TAG = "AudioSegmentCache";
+    static final String OFFLINE_DIR = "quran-audio";
+    static final String STREAM_CACHE_DIR = "quran-audio";
+    // Index category for streamed segments; offline packs are indexed as SURAH_AUDIO
+    static final String STREAM_CATEGORY = "AUDIO_STREAM";
+
+    private final File offlineRoot;
+    private final File cacheRoot;
+    private final NativeIndex index;
+    private final Set<String> inFlight = ConcurrentHashMap.newKeySet();
+    private final ExecutorService prefetchExecutor = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(() -> {
+            Process.setThreadPriority(Process.THREAD_PRIORITY_BACKGROUND);
+            runnable.run();
+        }, "quran-audio-prefetch");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    public static class Segment {
+        final String reciter;
+        final String fileName;
+        final String url;
+        // Mushaf page the segment belongs to, or 0 for ayah segments
+        final int page;
+
+        Segment(String reciter, String fileName, String url, int page) {
+            this.reciter = reciter;
+            this.fileName = fileName;
+            this.url = url;
+            this.page = page;
+        }
+
+        String key() {
+            return reciter + "/" + fileName;
+        }
+
+        // Segment for a whole mushaf page, matching getPageAudioUrl in quran-api.ts
+        static Segment forPage(String reciter, int page) {
+            String fileName = String.format("Page%03d.mp3", page);
+            return new Segment(reciter, fileName,
+                "https://everyayah.com/data/" + reciter + "/PageMp3s/" + fileName, page);
+        }
+
+        // Segment for a single ayah, using everyayah's SSSAAA naming
+        static Segment forAyah(String reciter, int surah, int ayah) {
+            String fileName = String.format("%03d%03d.mp3", surah, ayah);
+            return new Segment(reciter, fileName,
+                "https://everyayah.com/data/" + reciter + "/" + fileName, 0);
+        }
+    }
+
+    public AudioSegmentCache(Context context) {
+        this.offlineRoot = new File(context.getFilesDir(), OFFLINE_DIR);
+        this.cacheRoot = new File(context.getCacheDir(), STREAM_CACHE_DIR);
+        this.index = NativeIndex.getInstance(context);
+    }
+
+    // Returns a local file for the segment, or null if it has to be streamed
+    public File getLocalFile(Segment segment) {
+        File offline = new File(offlineRoot, segment.key());
+        if (offline.exists()) {
+            index.touchEntry(AssetDownloader.AssetType.SURAH_AUDIO.name(), segment.key());
+            return offline;
+        }
+        File cached = new File(cacheRoot, segment.key());
+        if (cached.exists()) {
+            index.touchEntry(STREAM_CATEGORY, segment.key());
+            return cached;
+        }
+        return null;
+    }
+
+    // Queue the given segments for download, skipping anything already on disk
+    public void prefetch(List<Segment> segments) {
+        for (Segment segment : segments) {
+            if (getLocalFile(segment) != null || !inFlight.add(segment.key())) {
+                continue;
+            }
+            prefetchExecutor.execute(() -> {
+                try {
+                    download(segment);
+                } finally {
+                    inFlight.remove(segment.key());
+                }
+            });
+        }
+    }
+
+    public void shutdown() {
+        prefetchExecutor.shutdownNow();
+    }
+
+    private void download(Segment segment) {
+        File target = new File(cacheRoot, segment.key());
+        File parent = target.getParentFile();
+        if (parent != null && !parent.exists()) {
+            parent.mkdirs();
+        }
+
+        File temp = new File(target.getPath() + ".part");
+        HttpURLConnection connection = null;
+        try {
+            connection = (HttpURLConnection) new URL(segment.url).openConnection();
+            connection.setConnectTimeout(15000);
+            connection.setReadTimeout(15000);
+            connection.connect();
+
+            if (connection.getResponseCode() != HttpURLConnection.HTTP_OK) {
+                Log.w(TAG, "Prefetch " + segment.key() + " returned " + connection.getResponseCode());
+                return;
+            }
+
+            try (InputStream input = connection.getInputStream()) {
+                NativeIo.copyToFile(input, temp, null);
+            }
+
+            // Only a complete file is ever visible under the final name
+            if (temp.renameTo(target)) {
+                index.recordEntry(STREAM_CATEGORY, segment.key(), target, null);
+            } else {
+                temp.delete();
+            }
+        } catch (IOException e) {
+            Log.w(TAG, "Prefetch failed for " + segment.key() + ": " + e.getMessage());
+            temp.delete();
+        } finally {
+            if (connection != null) connection.disconnect();
+        }
+    }
+}
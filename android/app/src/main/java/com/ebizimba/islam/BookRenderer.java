@@ -0,0 +1,274 @@
+package com.ebizimba.islam;
+
+import android.content.Context;
+import android.graphics.Bitmap;
+import android.graphics.Color;
+import android.graphics.Matrix;
+import android.graphics.pdf.PdfRenderer;
+import android.net.Uri;
+import android.os.ParcelFileDescriptor;
+import android.util.DisplayMetrics;
+import android.util.Log;
+import android.util.LruCache;
+import android.webkit.WebResourceRequest;
+import android.webkit.WebResourceResponse;
+
+import org.json.JSONObject;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.PriorityBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Renders downloaded PDF books natively with PdfRenderer and serves the result to
+// BookViewer through NativeRequestRouter:
+//   /_native/book/<id>/page/<n>?w=<px>   whole page at a viewport width
+// Widths are bucketed so small rotation changes hit the cache, and capped at twice
+// the screen's shorter side so one request can't ask for a huge bitmap. Encoded
+// pages live in a byte-bounded LRU cache, and the neighbouring pages are
+// rendered in the background after each page request. PdfRenderer can only have
+// one page open at a time, so all rendering runs on a single thread; prefetches
+// queue behind anything the WebView is actually waiting for.
+public class BookRenderer implements NativeRequestRouter.RouteHandler {
+    private static final String TAG = "BookRenderer";
+    static final String ROUTE = "book";
+    private static final int WIDTH_BUCKET = 256;
+    private static final int JPEG_QUALITY = 90;
+    private static final int PREFETCH_AHEAD = 2;
+    private static final int PRIORITY_REQUEST = 0;
+    private static final int PRIORITY_PREFETCH = 1;
+    private static final long RENDER_TIMEOUT_MS = 15000;
+
+    private final Context context;
+    private final int maxWidth;
+    private final LruCache<String, byte[]> renderCache;
+    // Open documents; closing the evicted one frees its file descriptor
+    private final LruCache<String, PdfRenderer> documents = new LruCache<String, PdfRenderer>(2) {
+        @Override
+        protected void entryRemoved(boolean evicted, String key, PdfRenderer oldValue, PdfRenderer newValue) {
+            oldValue.close();
+        }
+    };
+    private final AtomicLong sequence = new AtomicLong();
+    private volatile Thread renderThread;
+    private final ThreadPoolExecutor renderExecutor = new ThreadPoolExecutor(
+        1, 1, 0, TimeUnit.MILLISECONDS, new PriorityBlockingQueue<>(), runnable -> {
+            renderThread = new Thread(runnable, "book-render");
+            return renderThread;
+        });
+
+    public BookRenderer(Context context) {
+        this.context = context.getApplicationContext();
+        DisplayMetrics metrics = this.context.getResources().getDisplayMetrics();
+        int screenWidth = Math.min(metrics.widthPixels, metrics.heightPixels);
+        this.maxWidth = Math.max(WIDTH_BUCKET, (2 * screenWidth / WIDTH_BUCKET) * WIDTH_BUCKET);
+        int cacheBytes = (int) Math.min(32L * 1024 * 1024, Runtime.getRuntime().maxMemory() / 16);
+        this.renderCache = new LruCache<String, byte[]>(cacheBytes) {
+            @Override
+            protected int sizeOf(String key, byte[] value) {
+                return value.length;
+            }
+        };
+    }
+
+    // File name a book is stored under in the BOOK_FILE directory
+    static String fileNameFor(String bookId) {
+        return bookId.replaceAll("[^A-Za-z0-9_-]", "_") + ".pdf";
+    }
+
+    public boolean isAvailable(String bookId) {
+        return bookFile(bookId).exists();
+    }
+
+    // Page count and first-page size in PDF points, or null if the book isn't a
+    // readable local PDF
+    public JSONObject getInfo(String bookId) {
+        if (!isAvailable(bookId)) {
+            return null;
+        }
+        try {
+            return runRender(PRIORITY_REQUEST, () -> {
+                PdfRenderer renderer = openDocument(bookId);
+                JSONObject info = new JSONObject();
+                info.put("pageCount", renderer.getPageCount());
+                try (PdfRenderer.Page page = renderer.openPage(0)) {
+                    info.put("width", page.getWidth());
+                    info.put("height", page.getHeight());
+                }
+                return info;
+            });
+        } catch (Exception e) {
+            Log.e(TAG, "Cannot open book " + bookId, e);
+            return null;
+        }
+    }
+
+    @Override
+    public WebResourceResponse handle(WebResourceRequest request, List<String> segments) {
+        if (segments.size() != 3 || !"page".equals(segments.get(1))) {
+            return null;
+        }
+        String bookId = segments.get(0);
+        int pageIndex;
+        try {
+            pageIndex = Integer.parseInt(segments.get(2)) - 1;
+        } catch (NumberFormatException e) {
+            return NativeRequestRouter.error(400, "Bad Request");
+        }
+        if (!isAvailable(bookId) || pageIndex < 0) {
+            return null;
+        }
+
+        Uri url = request.getUrl();
+        int width = bucketWidth(NativeRequestRouter.intParam(url, "w", 1080));
+        byte[] data;
+        try {
+            data = renderPage(bookId, pageIndex, width, PRIORITY_REQUEST);
+            prefetchAround(bookId, pageIndex, width);
+        } catch (Exception e) {
+            Log.e(TAG, "Render failed for " + url, e);
+            return NativeRequestRouter.error(500, "Render Failed");
+        }
+        if (data == null) {
+            return null;
+        }
+        return NativeRequestRouter.bytes("image/jpeg", data, "private, max-age=86400");
+    }
+
+    public void trimMemory() {
+        renderCache.evictAll();
+        renderExecutor.execute(new RenderTask<>(PRIORITY_REQUEST, () -> {
+            documents.evictAll();
+            return null;
+        }));
+    }
+
+    private byte[] renderPage(String bookId, int pageIndex, int width, int priority) throws Exception {
+        String key = bookId + "/p" + pageIndex + "@" + width;
+        byte[] cached = renderCache.get(key);
+        // Only what the reader asked for counts towards the hit rate, not prefetches
+        if (priority == PRIORITY_REQUEST) {
+            countLookup(cached != null);
+        }
+        if (cached != null) {
+            return cached;
+        }
+        return runRender(priority, () -> {
+            // A prefetch may have finished while this task was queued
+            byte[] ready = renderCache.get(key);
+            if (ready != null) {
+                return ready;
+            }
+            PdfRenderer renderer = openDocument(bookId);
+            if (pageIndex >= renderer.getPageCount()) {
+                return null;
+            }
+            try (PdfRenderer.Page page = renderer.openPage(pageIndex)) {
+                float scale = (float) width / page.getWidth();
+                int height = Math.round(page.getHeight() * scale);
+                byte[] encoded = render(page, width, height, scale);
+                renderCache.put(key, encoded);
+                return encoded;
+            }
+        });
+    }
+
+    private static void countLookup(boolean hit) {
+        NativeMetrics.increment(hit ? NativeMetrics.Counter.RENDER_CACHE_HITS : NativeMetrics.Counter.RENDER_CACHE_MISSES);
+    }
+
+    private static byte[] render(PdfRenderer.Page page, int width, int height, float scale) {
+        long started = NativeMetrics.start();
+        Bitmap bitmap = Bitmap.createBitmap(width, height, Bitmap.Config.ARGB_8888);
+        try {
+            // PDF pages are transparent by default
+            bitmap.eraseColor(Color.WHITE);
+            Matrix matrix = new Matrix();
+            matrix.setScale(scale, scale);
+            page.render(bitmap, null, matrix, PdfRenderer.Page.RENDER_MODE_FOR_DISPLAY);
+
+            ByteArrayOutputStream output = new ByteArrayOutputStream(width * height / 8);
+            bitmap.compress(Bitmap.CompressFormat.JPEG, JPEG_QUALITY, output);
+            return output.toByteArray();
+        } finally {
+            bitmap.recycle();
+            NativeMetrics.stop(NativeMetrics.Timer.BOOK_RENDER, started);
+        }
+    }
+
+    private void prefetchAround(String bookId, int pageIndex, int width) {
+        for (int offset = 1; offset <= PREFETCH_AHEAD; offset++) {
+            prefetch(bookId, pageIndex + offset, width);
+        }
+        prefetch(bookId, pageIndex - 1, width);
+    }
+
+    private void prefetch(String bookId, int pageIndex, int width) {
+        if (pageIndex < 0 || renderCache.get(bookId + "/p" + pageIndex + "@" + width) != null) {
+            return;
+        }
+        renderExecutor.execute(new RenderTask<>(PRIORITY_PREFETCH, () -> {
+            try {
+                renderPage(bookId, pageIndex, width, PRIORITY_PREFETCH);
+            } catch (Exception e) {
+                Log.w(TAG, "Prefetch failed for page " + (pageIndex + 1) + ": " + e.getMessage());
+            }
+            return null;
+        }));
+    }
+
+    // Runs on the render thread; the caller blocks until the result is ready
+    private <T> T runRender(int priority, Callable<T> work) throws Exception {
+        if (Thread.currentThread() == renderThread) {
+            return work.call();
+        }
+        RenderTask<T> task = new RenderTask<>(priority, work);
+        renderExecutor.execute(task);
+        return task.get(RENDER_TIMEOUT_MS, TimeUnit.MILLISECONDS);
+    }
+
+    // Only called on the render thread
+    private PdfRenderer openDocument(String bookId) throws IOException {
+        PdfRenderer renderer = documents.get(bookId);
+        if (renderer == null) {
+            ParcelFileDescriptor descriptor = ParcelFileDescriptor.open(bookFile(bookId), ParcelFileDescriptor.MODE_READ_ONLY);
+            renderer = new PdfRenderer(descriptor);
+            documents.put(bookId, renderer);
+            NativeIndex.getInstance(context).touchEntry(AssetDownloader.AssetType.BOOK_FILE.name(), fileNameFor(bookId));
+        }
+        return renderer;
+    }
+
+    private File bookFile(String bookId) {
+        return AssetDownloader.getInstance(context).getFile(AssetDownloader.AssetType.BOOK_FILE, fileNameFor(bookId));
+    }
+
+    private int bucketWidth(int width) {
+        int bucketed = ((Math.max(width, 1) + WIDTH_BUCKET - 1) / WIDTH_BUCKET) * WIDTH_BUCKET;
+        return Math.min(bucketed, maxWidth);
+    }
+
+    private class RenderTask<T> extends FutureTask<T> implements Comparable<RenderTask<?>> {
+        final int priority;
+        final long order = sequence.getAndIncrement();
+
+        RenderTask(int priority, Callable<T> work) {
+            super(work);
+            this.priority = priority;
+        }
+
+        @Override
+        public int compareTo(RenderTask<?> other) {
+            if (priority != other.priority) {
+                return Integer.compare(priority, other.priority);
+            }
+            return Long.compare(order, other.order);
+        }
+    }
+}
@@ -0,0 +1,370 @@
+package com.ebizimba.islam;
+
+import android.content.Context;
+import android.net.Uri;
+import android.util.Log;
+import android.webkit.WebResourceRequest;
+import android.webkit.WebResourceResponse;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.regex.Pattern;
+
+// Offline-first copy of the public Supabase catalog (books, reels), served to the
+// web app through NativeRequestRouter:
+//   /_native/catalog/<table>?order=created_at.desc&limit=4&title=ilike.*zakat*
+// The query string is a subset of PostgREST's (eq/ilike filters, order by
+// created_at or updated_at, limit) and is answered from the rows kept in
+// NativeIndex, so Home, Library and Videos render from disk on launch. The request
+// carries the project URL and anon key as headers, the same ones supabase.ts uses.
+//
+// A table is fetched in full in the background the first time it is asked for;
+// until that lands its queries get a 404, so the web app keeps using supabase-js
+// and its own cache. After that, a served query older than REVALIDATE_AFTER_MS
+// starts a background sync that asks only for rows with updated_at past the newest
+// one stored. Deletions don't show up that way, so ids are reconciled every
+// RECONCILE_AFTER_MS. A table without updated_at is refetched in full. When a sync
+// changes anything the listener is told and the web app queries again.
+//
+// Queries outside the supported subset get a 404 and the caller falls back to
+// supabase-js.
+public class CatalogCache implements NativeRequestRouter.RouteHandler {
+    private static final String TAG = "CatalogCache";
+    static final String ROUTE = "catalog";
+    static final String SOURCE_HEADER = "X-Catalog-Source";
+    private static final String KEY_HEADER = "apikey";
+    private static final Set<String> TABLES = new HashSet<>(Arrays.asList("books", "reels"));
+    private static final long REVALIDATE_AFTER_MS = 60 * 1000L;
+    private static final long RECONCILE_AFTER_MS = 6 * 60 * 60 * 1000L;
+    // Below PostgREST's default max-rows, so a short page means the end
+    private static final int PAGE_SIZE = 500;
+
+    public interface Listener {
+        // Called on a background thread after a sync changed the table's rows
+        void onCatalogUpdated(String table);
+    }
+
+    private final NativeIndex index;
+    private final ExecutorService executor = Executors.newSingleThreadExecutor();
+    private final Set<String> revalidating = ConcurrentHashMap.newKeySet();
+    private final Map<String, Object> syncLocks = new ConcurrentHashMap<>();
+    private volatile Listener listener;
+
+    public CatalogCache(Context context) {
+        this.index = NativeIndex.getInstance(context);
+    }
+
+    public void setListener(Listener listener) {
+        this.listener = listener;
+    }
+
+    @Override
+    public WebResourceResponse handle(WebResourceRequest request, List<String> segments) {
+        if (segments.size() != 1 || !TABLES.contains(segments.get(0)) || !"GET".equals(request.getMethod())) {
+            return null;
+        }
+        String table = segments.get(0);
+        Query query = Query.parse(request.getUrl());
+        Source source = Source.from(request.getRequestHeaders());
+        if (query == null || source == null) {
+            return null;
+        }
+
+        NativeIndex.CatalogSync state = index.getCatalogSync(table);
+        if (state == null) {
+            // Nothing stored yet. An empty answer would read as an empty catalog and
+            // overwrite the web app's own cache, so send it to supabase-js for now
+            // and fetch the table in the background.
+            revalidateAsync(table, source);
+            return null;
+        }
+        if (System.currentTimeMillis() - state.syncedAt > REVALIDATE_AFTER_MS) {
+            NativeMetrics.increment(NativeMetrics.Counter.CATALOG_STALE_HITS);
+            revalidateAsync(table, source);
+        }
+
+        JSONArray rows = query.apply(index.getCatalogRows(table, query.orderColumn, query.descending));
+        WebResourceResponse response = NativeRequestRouter.json(rows.toString());
+        response.getResponseHeaders().put("X-Catalog-Synced-At", String.valueOf(state.syncedAt));
+        return response;
+    }
+
+    private void revalidateAsync(String table, Source source) {
+        if (!revalidating.add(table)) {
+            return;
+        }
+        executor.execute(() -> {
+            try {
+                if (sync(table, source)) {
+                    Listener current = listener;
+                    if (current != null) {
+                        current.onCatalogUpdated(table);
+                    }
+                }
+            } catch (IOException | JSONException e) {
+                Log.w(TAG, "Revalidating " + table + " failed: " + e.getMessage());
+            } finally {
+                revalidating.remove(table);
+            }
+        });
+    }
+
+    // Bring the stored rows up to date; returns whether anything changed
+    private boolean sync(String table, Source source) throws IOException, JSONException {
+        synchronized (syncLocks.computeIfAbsent(table, key -> new Object())) {
+            long started = NativeMetrics.start();
+            try {
+                NativeIndex.CatalogSync state = index.getCatalogSync(table);
+                long now = System.currentTimeMillis();
+                String watermark = state != null ? state.watermark : null;
+
+                List<JSONObject> rows;
+                try {
+                    rows = fetchAll(source, table, "select=*&order=updated_at.asc,id.asc"
+                        + (watermark != null ? "&updated_at=gt." + URLEncoder.encode(watermark, "UTF-8") : ""));
+                } catch (StatusException e) {
+                    if (e.status != HttpURLConnection.HTTP_BAD_REQUEST) {
+                        throw e;
+                    }
+                    // No updated_at column to sync by; take the whole table
+                    return replaceAll(table, fetchAll(source, table, "select=*&order=id.asc"), now);
+                }
+                NativeMetrics.add(NativeMetrics.Counter.CATALOG_SYNC_ROWS, rows.size());
+
+                for (JSONObject row : rows) {
+                    String updatedAt = row.isNull("updated_at") ? null : row.optString("updated_at");
+                    if (updatedAt != null && (watermark == null || updatedAt.compareTo(watermark) > 0)) {
+                        watermark = updatedAt;
+                    }
+                }
+                index.putCatalogRows(table, rows, watermark, now);
+                boolean changed = !rows.isEmpty();
+
+                if (state == null) {
+                    index.retainCatalogRows(table, ids(rows), now);
+                } else if (now - state.reconciledAt > RECONCILE_AFTER_MS) {
+                    Set<String> live = ids(fetchAll(source, table, "select=id&order=id.asc"));
+                    Set<String> stored = ids(index.getCatalogRows(table, "created_at", false));
+                    changed |= !live.containsAll(stored);
+                    index.retainCatalogRows(table, live, now);
+                }
+                return changed;
+            } finally {
+                NativeMetrics.stop(NativeMetrics.Timer.CATALOG_SYNC, started);
+            }
+        }
+    }
+
+    private boolean replaceAll(String table, List<JSONObject> rows, long now) {
+        NativeMetrics.add(NativeMetrics.Counter.CATALOG_SYNC_ROWS, rows.size());
+        Set<String> before = new HashSet<>();
+        for (JSONObject row : index.getCatalogRows(table, "created_at", false)) {
+            before.add(row.toString());
+        }
+        Set<String> after = new HashSet<>();
+        for (JSONObject row : rows) {
+            after.add(row.toString());
+        }
+        index.putCatalogRows(table, rows, null, now);
+        index.retainCatalogRows(table, ids(rows), now);
+        return !before.equals(after);
+    }
+
+    private static Set<String> ids(List<JSONObject> rows) {
+        Set<String> ids = new HashSet<>();
+        for (JSONObject row : rows) {
+            ids.add(row.optString("id"));
+        }
+        return ids;
+    }
+
+    // Follow limit/offset pages until a short one
+    private static List<JSONObject> fetchAll(Source source, String table, String query)
+            throws IOException, JSONException {
+        List<JSONObject> rows = new ArrayList<>();
+        for (int offset = 0; ; offset += PAGE_SIZE) {
+            URL url = new URL(source.baseUrl + "/rest/v1/" + table + "?" + query
+                + "&limit=" + PAGE_SIZE + "&offset=" + offset);
+            JSONArray page = new JSONArray(fetchString(url, source.apiKey));
+            for (int i = 0; i < page.length(); i++) {
+                rows.add(page.getJSONObject(i));
+            }
+            if (page.length() < PAGE_SIZE) {
+                return rows;
+            }
+        }
+    }
+
+    private static String fetchString(URL url, String apiKey) throws IOException {
+        HttpURLConnection connection = (HttpURLConnection) url.openConnection();
+        try {
+            connection.setConnectTimeout(15000);
+            connection.setReadTimeout(15000);
+            connection.setRequestProperty(KEY_HEADER, apiKey);
+            connection.setRequestProperty("Authorization", "Bearer " + apiKey);
+            connection.setRequestProperty("Accept", "application/json");
+            int status = connection.getResponseCode();
+            if (status != HttpURLConnection.HTTP_OK) {
+                throw new StatusException(status, url);
+            }
+            try (InputStream input = connection.getInputStream()) {
+                byte[] data = NativeIo.readBytes(input);
+                NativeMetrics.add(NativeMetrics.Counter.DOWNLOAD_BYTES, data.length);
+                return new String(data, StandardCharsets.UTF_8);
+            }
+        } finally {
+            connection.disconnect();
+        }
+    }
+
+    private static class StatusException extends IOException {
+        final int status;
+
+        StatusException(int status, URL url) {
+            super("HTTP " + status + " for " + url);
+            this.status = status;
+        }
+    }
+
+    // Project URL and anon key sent by the web app along with the query
+    private static class Source {
+        final String baseUrl;
+        final String apiKey;
+
+        private Source(String baseUrl, String apiKey) {
+            this.baseUrl = baseUrl;
+            this.apiKey = apiKey;
+        }
+
+        static Source from(Map<String, String> headers) {
+            String baseUrl = null;
+            String apiKey = null;
+            for (Map.Entry<String, String> header : headers.entrySet()) {
+                if (SOURCE_HEADER.equalsIgnoreCase(header.getKey())) {
+                    baseUrl = header.getValue();
+                } else if (KEY_HEADER.equalsIgnoreCase(header.getKey())) {
+                    apiKey = header.getValue();
+                }
+            }
+            if (baseUrl == null || apiKey == null || apiKey.isEmpty()) {
+                return null;
+            }
+            String scheme = Uri.parse(baseUrl).getScheme();
+            if (!"https".equals(scheme) && !"http".equals(scheme)) {
+                return null;
+            }
+            return new Source(baseUrl.endsWith("/") ? baseUrl.substring(0, baseUrl.length() - 1) : baseUrl, apiKey);
+        }
+    }
+
+    // The supported part of a PostgREST query string
+    private static class Query {
+        private static final Set<String> ORDER_COLUMNS = new HashSet<>(Arrays.asList("created_at", "updated_at"));
+
+        String orderColumn = "created_at";
+        boolean descending = false;
+        int limit = -1;
+        final List<String> columns = new ArrayList<>();
+        final List<Pattern> patterns = new ArrayList<>();
+
+        // null when the query uses anything not handled here
+        static Query parse(Uri url) {
+            Query query = new Query();
+            for (String name : url.getQueryParameterNames()) {
+                String value = url.getQueryParameter(name);
+                if (value == null) {
+                    return null;
+                }
+                switch (name) {
+                    case "select":
+                        if (!"*".equals(value)) {
+                            return null;
+                        }
+                        break;
+                    case "order": {
+                        int dot = value.lastIndexOf('.');
+                        String column = dot > 0 ? value.substring(0, dot) : value;
+                        String direction = dot > 0 ? value.substring(dot + 1) : "asc";
+                        if (!ORDER_COLUMNS.contains(column) || !(direction.equals("asc") || direction.equals("desc"))) {
+                            return null;
+                        }
+                        query.orderColumn = column;
+                        query.descending = direction.equals("desc");
+                        break;
+                    }
+                    case "limit":
+                        try {
+                            query.limit = Integer.parseInt(value);
+                        } catch (NumberFormatException e) {
+                            return null;
+                        }
+                        break;
+                    default:
+                        Pattern pattern = filterPattern(value);
+                        if (pattern == null) {
+                            return null;
+                        }
+                        query.columns.add(name);
+                        query.patterns.add(pattern);
+                }
+            }
+            return query;
+        }
+
+        // eq.<value> matches exactly; ilike.<pattern> takes % or * as wildcards
+        private static Pattern filterPattern(String value) {
+            if (value.startsWith("eq.")) {
+                return Pattern.compile(Pattern.quote(value.substring(3)));
+            }
+            if (value.startsWith("ilike.")) {
+                String[] parts = value.substring(6).split("[%*]", -1);
+                StringBuilder regex = new StringBuilder();
+                for (int i = 0; i < parts.length; i++) {
+                    regex.append(i > 0 ? ".*" : "").append(Pattern.quote(parts[i]));
+                }
+                return Pattern.compile(regex.toString(), Pattern.CASE_INSENSITIVE | Pattern.UNICODE_CASE | Pattern.DOTALL);
+            }
+            return null;
+        }
+
+        JSONArray apply(List<JSONObject> ordered) {
+            JSONArray result = new JSONArray();
+            for (JSONObject row : ordered) {
+                if (limit >= 0 && result.length() >= limit) {
+                    break;
+                }
+                if (matches(row)) {
+                    result.put(row);
+                }
+            }
+            return result;
+        }
+
+        private boolean matches(JSONObject row) {
+            for (int i = 0; i < columns.size(); i++) {
+                Object value = row.opt(columns.get(i));
+                if (!patterns.get(i).matcher(value == null ? "" : String.valueOf(value)).matches()) {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+}
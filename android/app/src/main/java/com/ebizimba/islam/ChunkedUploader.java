@@ -0,0 +1,553 @@
+package com.ebizimba.islam;
+
+import android.content.Context;
+import android.content.res.AssetFileDescriptor;
+import android.net.Uri;
+import android.os.Handler;
+import android.os.Looper;
+import android.util.Log;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Streams large admin uploads (videos, books) from a content URI straight to the
+// IPFS HTTP API without ever materialising the file in the WebView. Content is read
+// sequentially in 1 MB chunks, hashed as it is read, and chunks are uploaded in
+// parallel through a bounded window of reusable buffers. Finished chunks are
+// recorded in a per-upload ledger so an interrupted upload resumes where it stopped.
+public class ChunkedUploader {
+    private static final String TAG = "ChunkedUploader";
+    private static final String LEDGER_DIR = "upload-ledger";
+    static final int CHUNK_SIZE = 1024 * 1024;
+    private static final int MAX_IN_FLIGHT = 3;
+    private static final int MAX_ATTEMPTS = 3;
+    private static final long PROGRESS_INTERVAL_MS = 250;
+    private static final String BOUNDARY = "----EbizimbaChunkBoundary";
+
+    private final Context context;
+    private final ExecutorService readerExecutor = Executors.newSingleThreadExecutor();
+    private final ExecutorService uploadExecutor = Executors.newFixedThreadPool(MAX_IN_FLIGHT);
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+    private final Map<String, UploadJob> activeJobs = new ConcurrentHashMap<>();
+    private UploadListener listener;
+
+    public interface UploadListener {
+        void onProgressUpdate(String uploadId, long bytesUploaded, long totalBytes);
+        void onUploadComplete(String uploadId, String resultJson);
+        void onError(String uploadId, String error);
+    }
+
+    public ChunkedUploader(Context context) {
+        this.context = context.getApplicationContext();
+    }
+
+    public void setListener(UploadListener listener) {
+        this.listener = listener;
+    }
+
+    public boolean isUploading(String uploadId) {
+        return activeJobs.containsKey(uploadId);
+    }
+
+    public void startUpload(String uploadId, Uri source, String endpoint, Map<String, String> headers) {
+        if (activeJobs.containsKey(uploadId)) {
+            notifyError(uploadId, "Upload already in progress");
+            return;
+        }
+
+        UploadJob job = new UploadJob(uploadId, source, endpoint, headers);
+        activeJobs.put(uploadId, job);
+        readerExecutor.execute(job::run);
+    }
+
+    public void cancelUpload(String uploadId) {
+        UploadJob job = activeJobs.get(uploadId);
+        if (job != null) {
+            job.cancelled.set(true);
+        }
+    }
+
+    // Returns the ledgers of uploads that were interrupted and can be resumed
+    public String getPendingUploads() {
+        JSONArray pending = new JSONArray();
+        File[] ledgers = getLedgerDir().listFiles();
+        if (ledgers == null) {
+            return pending.toString();
+        }
+
+        for (File file : ledgers) {
+            try {
+                UploadLedger ledger = UploadLedger.read(file);
+                if (ledger == null || activeJobs.containsKey(ledger.uploadId)) {
+                    continue;
+                }
+                JSONObject entry = new JSONObject();
+                entry.put("uploadId", ledger.uploadId);
+                entry.put("source", ledger.source);
+                entry.put("totalBytes", ledger.totalBytes);
+                entry.put("completedChunks", ledger.completedCount());
+                entry.put("totalChunks", ledger.chunkCount());
+                pending.put(entry);
+            } catch (JSONException e) {
+                Log.e(TAG, "Error reading upload ledger " + file.getName(), e);
+            }
+        }
+        return pending.toString();
+    }
+
+    public void discardUpload(String uploadId) {
+        cancelUpload(uploadId);
+        new File(getLedgerDir(), ledgerFileName(uploadId)).delete();
+    }
+
+    private File getLedgerDir() {
+        File dir = new File(context.getFilesDir(), LEDGER_DIR);
+        if (!dir.exists()) {
+            dir.mkdirs();
+        }
+        return dir;
+    }
+
+    private static String ledgerFileName(String uploadId) {
+        return uploadId.replaceAll("[^A-Za-z0-9._-]", "_") + ".json";
+    }
+
+    private void notifyError(String uploadId, String error) {
+        mainHandler.post(() -> {
+            if (listener != null) {
+                listener.onError(uploadId, error);
+            }
+        });
+    }
+
+    private class UploadJob {
+        final String uploadId;
+        final Uri source;
+        final String endpoint;
+        final Map<String, String> headers;
+        final AtomicBoolean cancelled = new AtomicBoolean(false);
+        final AtomicBoolean failed = new AtomicBoolean(false);
+        final AtomicLong bytesUploaded = new AtomicLong(0);
+        final AtomicInteger pendingChunks = new AtomicInteger(0);
+        final BlockingQueue<byte[]> freeBuffers = new ArrayBlockingQueue<>(MAX_IN_FLIGHT + 1);
+        volatile String failureMessage;
+        volatile long totalBytes = -1;
+        long lastReportedBytes = -1;
+        UploadLedger ledger;
+
+        UploadJob(String uploadId, Uri source, String endpoint, Map<String, String> headers) {
+            this.uploadId = uploadId;
+            this.source = source;
+            this.endpoint = endpoint;
+            this.headers = headers;
+            // The buffer pool is the upload window: reading blocks until a chunk
+            // upload returns its buffer, so memory stays at (window + 1) MB
+            for (int i = 0; i < MAX_IN_FLIGHT + 1; i++) {
+                freeBuffers.add(new byte[CHUNK_SIZE]);
+            }
+        }
+
+        private final Runnable progressTicker = new Runnable() {
+            @Override
+            public void run() {
+                long sent = bytesUploaded.get();
+                if (sent != lastReportedBytes && listener != null) {
+                    lastReportedBytes = sent;
+                    listener.onProgressUpdate(uploadId, sent, totalBytes);
+                }
+                if (activeJobs.get(uploadId) == UploadJob.this) {
+                    mainHandler.postDelayed(this, PROGRESS_INTERVAL_MS);
+                }
+            }
+        };
+
+        void run() {
+            File ledgerFile = new File(getLedgerDir(), ledgerFileName(uploadId));
+            mainHandler.post(progressTicker);
+
+            try {
+                totalBytes = querySize();
+                ledger = UploadLedger.read(ledgerFile);
+                if (ledger == null || !ledger.matches(source.toString(), endpoint, totalBytes, CHUNK_SIZE)) {
+                    ledger = new UploadLedger(uploadId, source.toString(), endpoint, totalBytes, CHUNK_SIZE);
+                    ledger.write(ledgerFile);
+                } else {
+                    Log.d(TAG, "Resuming upload " + uploadId + " with " + ledger.completedCount() + " chunks done");
+                }
+
+                MessageDigest fileDigest = MessageDigest.getInstance("SHA-256");
+                int chunkIndex = 0;
+                long bytesRead = 0;
+
+                try (InputStream input = context.getContentResolver().openInputStream(source)) {
+                    if (input == null) {
+                        throw new IOException("Unable to open " + source);
+                    }
+
+                    while (!cancelled.get() && !failed.get()) {
+                        byte[] buffer = freeBuffers.take();
+                        int length = readFully(input, buffer);
+                        if (length <= 0) {
+                            freeBuffers.add(buffer);
+                            break;
+                        }
+
+                        fileDigest.update(buffer, 0, length);
+                        String chunkHash = toHex(sha256(buffer, length));
+                        bytesRead += length;
+
+                        String knownCid = ledger.cidFor(chunkIndex, chunkHash);
+                        if (knownCid != null) {
+                            // Uploaded before the interruption, nothing to send
+                            bytesUploaded.addAndGet(length);
+                            freeBuffers.add(buffer);
+                        } else {
+                            submitChunk(chunkIndex, buffer, length, chunkHash, ledgerFile);
+                        }
+                        chunkIndex++;
+
+                        if (length < CHUNK_SIZE) {
+                            break;
+                        }
+                    }
+                }
+
+                awaitChunks();
+
+                if (cancelled.get()) {
+                    finish(null, "Upload cancelled");
+                    return;
+                }
+                if (failed.get()) {
+                    finish(null, failureMessage != null ? failureMessage : "Upload failed");
+                    return;
+                }
+
+                if (totalBytes < 0) {
+                    totalBytes = bytesRead;
+                }
+
+                JSONObject result = new JSONObject();
+                result.put("uploadId", uploadId);
+                result.put("size", bytesRead);
+                result.put("chunkSize", CHUNK_SIZE);
+                result.put("sha256", toHex(fileDigest.digest()));
+                result.put("chunks", ledger.cidArray(chunkIndex));
+
+                ledgerFile.delete();
+                finish(result.toString(), null);
+            } catch (InterruptedException e) {
+                failed.set(true);
+                awaitChunks();
+                Thread.currentThread().interrupt();
+                finish(null, "Upload interrupted");
+            } catch (IOException | JSONException | NoSuchAlgorithmException e) {
+                Log.e(TAG, "Error uploading " + source, e);
+                // Stop retries of the chunks already handed out and let them return
+                // before reporting, so no chunk outlives the job
+                failed.set(true);
+                awaitChunks();
+                finish(null, e.getMessage());
+            }
+        }
+
+        // Wait for the in-flight window to drain
+        private synchronized void awaitChunks() {
+            boolean interrupted = false;
+            while (pendingChunks.get() > 0) {
+                try {
+                    wait();
+                } catch (InterruptedException e) {
+                    interrupted = true;
+                }
+            }
+            if (interrupted) {
+                Thread.currentThread().interrupt();
+            }
+        }
+
+        private void submitChunk(int index, byte[] buffer, int length, String chunkHash, File ledgerFile) {
+            pendingChunks.incrementAndGet();
+            uploadExecutor.execute(() -> {
+                try {
+                    String cid = null;
+                    for (int attempt = 1; attempt <= MAX_ATTEMPTS && cid == null && !stopped(); attempt++) {
+                        try {
+                            cid = postChunk(buffer, length, index);
+                        } catch (IOException e) {
+                            Log.w(TAG, "Chunk " + index + " attempt " + attempt + " failed: " + e.getMessage());
+                            if (attempt < MAX_ATTEMPTS) {
+                                Thread.sleep(1000L * attempt);
+                            }
+                        }
+                    }
+
+                    if (cid != null) {
+                        bytesUploaded.addAndGet(length);
+                        synchronized (ledger) {
+                            ledger.complete(index, chunkHash, cid);
+                            ledger.write(ledgerFile);
+                        }
+                    } else if (!stopped()) {
+                        failureMessage = "Chunk " + index + " failed after " + MAX_ATTEMPTS + " attempts";
+                        failed.set(true);
+                    }
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    failed.set(true);
+                } catch (IOException | JSONException e) {
+                    Log.e(TAG, "Error recording chunk " + index, e);
+                    failureMessage = e.getMessage();
+                    failed.set(true);
+                } finally {
+                    freeBuffers.add(buffer);
+                    synchronized (UploadJob.this) {
+                        pendingChunks.decrementAndGet();
+                        UploadJob.this.notifyAll();
+                    }
+                }
+            });
+        }
+
+        // Cancelled, or another chunk or the reader already failed the upload
+        private boolean stopped() {
+            return cancelled.get() || failed.get();
+        }
+
+        private String postChunk(byte[] buffer, int length, int index) throws IOException {
+            HttpURLConnection connection = null;
+            try {
+                byte[] head = ("--" + BOUNDARY + "\r\n"
+                        + "Content-Disposition: form-data; name=\"file\"; filename=\"chunk-" + index + "\"\r\n"
+                        + "Content-Type: application/octet-stream\r\n\r\n").getBytes(StandardCharsets.UTF_8);
+                byte[] tail = ("\r\n--" + BOUNDARY + "--\r\n").getBytes(StandardCharsets.UTF_8);
+
+                URL url = new URL(endpoint);
+                connection = (HttpURLConnection) url.openConnection();
+                connection.setConnectTimeout(15000);
+                connection.setReadTimeout(60000);
+                connection.setDoOutput(true);
+                connection.setRequestMethod("POST");
+                connection.setFixedLengthStreamingMode(head.length + length + tail.length);
+                connection.setRequestProperty("Content-Type", "multipart/form-data; boundary=" + BOUNDARY);
+                if (headers != null) {
+                    for (Map.Entry<String, String> header : headers.entrySet()) {
+                        connection.setRequestProperty(header.getKey(), header.getValue());
+                    }
+                }
+
+                try (OutputStream output = connection.getOutputStream()) {
+                    output.write(head);
+                    output.write(buffer, 0, length);
+                    output.write(tail);
+                }
+
+                int code = connection.getResponseCode();
+                if (code < 200 || code >= 300) {
+                    throw new IOException("HTTP " + code);
+                }
+
+                try (InputStream response = connection.getInputStream()) {
+                    return parseCid(readAll(response));
+                }
+            } finally {
+                if (connection != null) connection.disconnect();
+            }
+        }
+
+        private long querySize() {
+            try (AssetFileDescriptor descriptor =
+                         context.getContentResolver().openAssetFileDescriptor(source, "r")) {
+                return descriptor != null ? descriptor.getLength() : -1;
+            } catch (IOException | SecurityException e) {
+                return -1;
+            }
+        }
+
+        private void finish(String resultJson, String error) {
+            activeJobs.remove(uploadId);
+            mainHandler.post(() -> {
+                if (listener == null) {
+                    return;
+                }
+                listener.onProgressUpdate(uploadId, bytesUploaded.get(), totalBytes);
+                if (resultJson != null) {
+                    listener.onUploadComplete(uploadId, resultJson);
+                } else {
+                    listener.onError(uploadId, error);
+                }
+            });
+        }
+    }
+
+    // The IPFS add API answers with {"Name":..,"Hash":..,"Size":..}; other pinning
+    // services use "cid"
+    static String parseCid(String body) throws IOException {
+        try {
+            JSONObject json = new JSONObject(body.trim());
+            String cid = json.optString("Hash", json.optString("cid", ""));
+            if (cid.isEmpty()) {
+                throw new IOException("No CID in upload response");
+            }
+            return cid;
+        } catch (JSONException e) {
+            throw new IOException("Malformed upload response", e);
+        }
+    }
+
+    private static int readFully(InputStream input, byte[] buffer) throws IOException {
+        int total = 0;
+        while (total < buffer.length) {
+            int read = input.read(buffer, total, buffer.length - total);
+            if (read == -1) {
+                break;
+            }
+            total += read;
+        }
+        return total;
+    }
+
+    private static String readAll(InputStream input) throws IOException {
+        return NativeIo.readString(input);
+    }
+
+    private static byte[] sha256(byte[] data, int length) throws NoSuchAlgorithmException {
+        MessageDigest digest = MessageDigest.getInstance("SHA-256");
+        digest.update(data, 0, length);
+        return digest.digest();
+    }
+
+    static String toHex(byte[] bytes) {
+        StringBuilder builder = new StringBuilder(bytes.length * 2);
+        for (byte b : bytes) {
+            builder.append(Character.forDigit((b >> 4) & 0xF, 16));
+            builder.append(Character.forDigit(b & 0xF, 16));
+        }
+        return builder.toString();
+    }
+
+    // Persistent record of which chunks of an upload have reached the server
+    static class UploadLedger {
+        final String uploadId;
+        final String source;
+        final String endpoint;
+        final long totalBytes;
+        final int chunkSize;
+        private final JSONObject chunks;
+
+        UploadLedger(String uploadId, String source, String endpoint, long totalBytes, int chunkSize) {
+            this(uploadId, source, endpoint, totalBytes, chunkSize, new JSONObject());
+        }
+
+        private UploadLedger(String uploadId, String source, String endpoint, long totalBytes,
+                             int chunkSize, JSONObject chunks) {
+            this.uploadId = uploadId;
+            this.source = source;
+            this.endpoint = endpoint;
+            this.totalBytes = totalBytes;
+            this.chunkSize = chunkSize;
+            this.chunks = chunks;
+        }
+
+        boolean matches(String source, String endpoint, long totalBytes, int chunkSize) {
+            return this.source.equals(source)
+                    && this.endpoint.equals(endpoint)
+                    && this.totalBytes == totalBytes
+                    && this.chunkSize == chunkSize;
+        }
+
+        int chunkCount() {
+            return totalBytes < 0 ? -1 : (int) ((totalBytes + chunkSize - 1) / chunkSize);
+        }
+
+        synchronized int completedCount() {
+            return chunks.length();
+        }
+
+        // Only trust a recorded chunk if the bytes we just read still hash the same
+        synchronized String cidFor(int index, String chunkHash) {
+            JSONObject entry = chunks.optJSONObject(String.valueOf(index));
+            if (entry != null && chunkHash.equals(entry.optString("sha256"))) {
+                return entry.optString("cid", null);
+            }
+            return null;
+        }
+
+        synchronized void complete(int index, String chunkHash, String cid) throws JSONException {
+            JSONObject entry = new JSONObject();
+            entry.put("sha256", chunkHash);
+            entry.put("cid", cid);
+            chunks.put(String.valueOf(index), entry);
+        }
+
+        synchronized JSONArray cidArray(int count) {
+            JSONArray cids = new JSONArray();
+            for (int i = 0; i < count; i++) {
+                JSONObject entry = chunks.optJSONObject(String.valueOf(i));
+                cids.put(entry != null ? entry.optString("cid") : JSONObject.NULL);
+            }
+            return cids;
+        }
+
+        synchronized void write(File file) throws IOException, JSONException {
+            JSONObject json = new JSONObject();
+            json.put("uploadId", uploadId);
+            json.put("source", source);
+            json.put("endpoint", endpoint);
+            json.put("totalBytes", totalBytes);
+            json.put("chunkSize", chunkSize);
+            json.put("chunks", chunks);
+
+            // Write to a temp file and rename so a crash never leaves a torn ledger
+            File temp = new File(file.getPath() + ".tmp");
+            try (FileOutputStream output = new FileOutputStream(temp)) {
+                output.write(json.toString().getBytes(StandardCharsets.UTF_8));
+                output.getFD().sync();
+            }
+            if (!temp.renameTo(file)) {
+                throw new IOException("Unable to commit ledger " + file.getName());
+            }
+        }
+
+        static UploadLedger read(File file) {
+            if (!file.exists()) {
+                return null;
+            }
+            try (FileInputStream input = new FileInputStream(file)) {
+                JSONObject json = new JSONObject(readAll(input));
+                return new UploadLedger(
+                        json.getString("uploadId"),
+                        json.getString("source"),
+                        json.getString("endpoint"),
+                        json.getLong("totalBytes"),
+                        json.getInt("chunkSize"),
+                        json.getJSONObject("chunks"));
+            } catch (IOException | JSONException e) {
+                Log.w(TAG, "Discarding unreadable ledger " + file.getName());
+                return null;
+            }
+        }
+    }
+}
@@ -0,0 +1,139 @@
+package com.ebizimba.islam;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.content.pm.PackageManager;
+import android.provider.Settings.Secure;
+import android.util.Log;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.UUID;
+
+// Stable device identifier for trials and device records. Derived once from
+// ANDROID_ID (which is already scoped to this app's signing key) and stored, so it
+// survives WebView storage being cleared and costs nothing after the first launch.
+// The value is a name-based UUID (v5) in the same namespace device-fingerprint.ts
+// used, so it has the same shape as the fingerprints already on the server.
+//
+// warmUp() loads or derives it off the main thread during startup; getId() then
+// answers bridge calls from memory.
+public class DeviceIdentity {
+    private static final String TAG = "DeviceIdentity";
+    private static final String PREFS_NAME = "DeviceIdentity";
+    private static final UUID NAMESPACE = UUID.fromString("1b671a64-40d5-491e-99b0-da01ff1f3341");
+    // Returned by a batch of Android 2.2 devices for every install; not an identifier
+    private static final String BROKEN_ANDROID_ID = "9774d56d682e549c";
+
+    private static DeviceIdentity instance;
+
+    private final Context context;
+    private volatile String id;
+
+    public static synchronized DeviceIdentity getInstance(Context context) {
+        if (instance == null) {
+            instance = new DeviceIdentity(context.getApplicationContext());
+        }
+        return instance;
+    }
+
+    private DeviceIdentity(Context context) {
+        this.context = context;
+    }
+
+    public void warmUp() {
+        new Thread(this::getId, "device-identity").start();
+    }
+
+    public String getId() {
+        String current = id;
+        if (current == null) {
+            current = load();
+        }
+        return current;
+    }
+
+    public String getAndroidId() {
+        return Secure.getString(context.getContentResolver(), Secure.ANDROID_ID);
+    }
+
+    // Keep the fingerprint an existing install already registered with, so
+    // switching to the native identity doesn't look like a new device. Only the
+    // first adoption counts.
+    public synchronized boolean adoptLegacyId(String legacyId) {
+        SharedPreferences prefs = prefs();
+        if (prefs.getBoolean("legacyChecked", false)) {
+            return false;
+        }
+        SharedPreferences.Editor editor = prefs.edit().putBoolean("legacyChecked", true);
+        boolean adopted = false;
+        try {
+            if (legacyId != null && !legacyId.isEmpty()) {
+                UUID.fromString(legacyId);
+                editor.putString("id", legacyId);
+                id = legacyId;
+                adopted = true;
+            }
+        } catch (IllegalArgumentException e) {
+            Log.w(TAG, "Ignoring malformed legacy fingerprint");
+        }
+        editor.apply();
+        return adopted;
+    }
+
+    private synchronized String load() {
+        if (id != null) {
+            return id;
+        }
+        SharedPreferences prefs = prefs();
+        String stored = prefs.getString("id", null);
+        if (stored == null) {
+            stored = derive();
+            prefs.edit().putString("id", stored).apply();
+        }
+        id = stored;
+        return stored;
+    }
+
+    private String derive() {
+        String androidId = getAndroidId();
+        String name;
+        if (androidId != null && !androidId.isEmpty() && !BROKEN_ANDROID_ID.equals(androidId)) {
+            name = "android:" + androidId + ":" + context.getPackageName();
+        } else {
+            // No usable ANDROID_ID: fall back to this installation
+            long installed = 0;
+            try {
+                installed = context.getPackageManager().getPackageInfo(context.getPackageName(), 0).firstInstallTime;
+            } catch (PackageManager.NameNotFoundException e) {
+                Log.w(TAG, "Package info unavailable", e);
+            }
+            name = "install:" + installed + ":" + UUID.randomUUID();
+        }
+        return nameUuid(name).toString();
+    }
+
+    // RFC 4122 version 5 UUID, matching uuid's v5() on the web side
+    static UUID nameUuid(String name) {
+        try {
+            MessageDigest sha1 = MessageDigest.getInstance("SHA-1");
+            ByteBuffer namespace = ByteBuffer.allocate(16)
+                .putLong(NAMESPACE.getMostSignificantBits())
+                .putLong(NAMESPACE.getLeastSignificantBits());
+            sha1.update(namespace.array());
+            byte[] hash = sha1.digest(name.getBytes(StandardCharsets.UTF_8));
+            hash[6] = (byte) ((hash[6] & 0x0f) | 0x50);
+            hash[8] = (byte) ((hash[8] & 0x3f) | 0x80);
+            ByteBuffer bytes = ByteBuffer.wrap(hash, 0, 16);
+            return new UUID(bytes.getLong(), bytes.getLong());
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private SharedPreferences prefs() {
+        return context.getSharedPreferences(PREFS_NAME, Context.MODE_PRIVATE);
+    }
+}
@@ -0,0 +1,251 @@
+package com.ebizimba.islam;
+
+import android.content.Context;
+import android.net.Uri;
+import android.util.Log;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.security.SecureRandom;
+import java.util.Locale;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+// Loopback HTTP server that plays reels out of VideoCache:
+//   http://127.0.0.1:<port>/<token>/video?url=<encoded video URL>
+// <video> seeks and buffers with Range requests and expects 206 answers streamed
+// while they are still being fetched, which a WebResourceResponse from
+// NativeRequestRouter can't do reliably, so the cache sits behind a real local URL
+// instead. Each request is answered from the cached segments, fetching missing ones
+// as it goes, and stops when the player closes the connection, so only what is
+// played gets downloaded. For a video not seen before, the head goes out as soon
+// as the first segment's response gives the length.
+//
+// The path carries a random token chosen per process, so other apps on the device
+// can't use the server. Videos whose server ignores Range are redirected to the
+// original URL.
+final class LocalVideoProxy {
+    private static final String TAG = "LocalVideoProxy";
+    private static final int MAX_HEADER_BYTES = 8 * 1024;
+    private static final int SOCKET_TIMEOUT_MS = 15000;
+    private static final Pattern RANGE = Pattern.compile("bytes=(\\d*)-(\\d*)");
+
+    private static LocalVideoProxy instance;
+
+    private final VideoCache cache;
+    private final String token;
+    private final ExecutorService workers = Executors.newCachedThreadPool();
+    private ServerSocket server;
+
+    static synchronized LocalVideoProxy getInstance(Context context) {
+        if (instance == null) {
+            instance = new LocalVideoProxy(context.getApplicationContext());
+        }
+        return instance;
+    }
+
+    private LocalVideoProxy(Context context) {
+        this.cache = VideoCache.getInstance(context);
+        byte[] random = new byte[16];
+        new SecureRandom().nextBytes(random);
+        StringBuilder hex = new StringBuilder();
+        for (byte b : random) {
+            hex.append(String.format("%02x", b));
+        }
+        this.token = hex.toString();
+    }
+
+    // Prefix to put in front of an encoded video URL; starts the server on first use
+    synchronized String getBaseUrl() throws IOException {
+        if (server == null) {
+            server = new ServerSocket(0, 16, InetAddress.getByName("127.0.0.1"));
+            Thread acceptor = new Thread(this::acceptLoop, "video-proxy");
+            acceptor.setDaemon(true);
+            acceptor.start();
+        }
+        return "http://127.0.0.1:" + server.getLocalPort() + "/" + token + "/video?url=";
+    }
+
+    private void acceptLoop() {
+        while (true) {
+            Socket socket;
+            try {
+                socket = server.accept();
+            } catch (IOException e) {
+                Log.e(TAG, "Video proxy stopped", e);
+                return;
+            }
+            workers.execute(() -> {
+                try (Socket client = socket) {
+                    client.setSoTimeout(SOCKET_TIMEOUT_MS);
+                    serve(new BufferedInputStream(client.getInputStream()),
+                        new BufferedOutputStream(client.getOutputStream(), NativeIo.BUFFER_SIZE));
+                } catch (IOException e) {
+                    // Usually the player closing the connection after a seek
+                    Log.d(TAG, "Video request ended: " + e.getMessage());
+                } catch (RuntimeException e) {
+                    // A bad request must not take the app down with it
+                    Log.e(TAG, "Video request failed", e);
+                }
+            });
+        }
+    }
+
+    private void serve(InputStream input, OutputStream output) throws IOException {
+        String[] head = readHead(input);
+        if (head == null) {
+            return;
+        }
+        String[] requestLine = head[0].split(" ");
+        if (requestLine.length < 2) {
+            writeStatus(output, 400, "Bad Request");
+            return;
+        }
+        String method = requestLine[0];
+        if (!method.equals("GET") && !method.equals("HEAD")) {
+            writeStatus(output, 405, "Method Not Allowed");
+            return;
+        }
+        if (!requestLine[1].startsWith("/" + token + "/video?")) {
+            writeStatus(output, 403, "Forbidden");
+            return;
+        }
+        String url = Uri.parse("http://127.0.0.1" + requestLine[1]).getQueryParameter("url");
+        if (url == null || !(url.startsWith("https://") || url.startsWith("http://"))) {
+            writeStatus(output, 400, "Bad Request");
+            return;
+        }
+        String range = null;
+        for (int i = 1; i < head.length; i++) {
+            int colon = head[i].indexOf(':');
+            if (colon > 0 && head[i].substring(0, colon).trim().equalsIgnoreCase("Range")) {
+                range = head[i].substring(colon + 1).trim();
+            }
+        }
+        NativeMetrics.increment(NativeMetrics.Counter.VIDEO_PROXY_REQUESTS);
+
+        String rangeHeader = range;
+        boolean headOnly = method.equals("HEAD");
+        if (!cache.serve(url, meta -> begin(output, meta, rangeHeader, headOnly), output)) {
+            output.write(("HTTP/1.1 302 Found\r\nLocation: " + url + "\r\nContent-Length: 0\r\n"
+                + "Connection: close\r\n\r\n").getBytes(StandardCharsets.ISO_8859_1));
+        }
+        output.flush();
+    }
+
+    // Write the response head for a request with the given Range header and return
+    // the bytes of the video to send after it, or null when there is no body
+    private static long[] begin(OutputStream output, VideoCache.Meta meta, String range, boolean headOnly)
+            throws IOException {
+        ByteRange bytes = parseRange(range, meta.length);
+        if (bytes == null) {
+            output.write(("HTTP/1.1 416 Range Not Satisfiable\r\nContent-Range: bytes */" + meta.length
+                + "\r\nContent-Length: 0\r\nConnection: close\r\n\r\n").getBytes(StandardCharsets.ISO_8859_1));
+            return null;
+        }
+        long start = bytes.start;
+        long end = bytes.end;
+
+        StringBuilder response = new StringBuilder();
+        response.append(bytes.partial ? "HTTP/1.1 206 Partial Content\r\n" : "HTTP/1.1 200 OK\r\n");
+        response.append("Content-Type: ").append(meta.contentType).append("\r\n");
+        response.append("Content-Length: ").append(end - start + 1).append("\r\n");
+        if (bytes.partial) {
+            response.append(String.format(Locale.US, "Content-Range: bytes %d-%d/%d\r\n", start, end, meta.length));
+        }
+        response.append("Accept-Ranges: bytes\r\n");
+        response.append("Cache-Control: no-store\r\n");
+        response.append("Access-Control-Allow-Origin: *\r\n");
+        response.append("Connection: close\r\n\r\n");
+        output.write(response.toString().getBytes(StandardCharsets.ISO_8859_1));
+        return headOnly ? null : new long[]{start, end};
+    }
+
+    // Bytes of a video of the given length asked for by a Range header: the whole
+    // video when there is no single byte range in it, null when the range lies past
+    // the end
+    static ByteRange parseRange(String range, long length) {
+        long start = 0;
+        long end = length - 1;
+        boolean partial = false;
+        if (range != null) {
+            Matcher matcher = RANGE.matcher(range);
+            if (matcher.matches() && !(matcher.group(1).isEmpty() && matcher.group(2).isEmpty())) {
+                partial = true;
+                if (matcher.group(1).isEmpty()) {
+                    // Suffix range: the last N bytes
+                    start = Math.max(0, length - parseBound(matcher.group(2)));
+                } else {
+                    start = parseBound(matcher.group(1));
+                    if (!matcher.group(2).isEmpty()) {
+                        end = Math.min(end, parseBound(matcher.group(2)));
+                    }
+                }
+            }
+        }
+        if (start >= length || start > end) {
+            return null;
+        }
+        return new ByteRange(start, end, partial);
+    }
+
+    // The pattern only lets digits through, so the only failure is a number too
+    // long for a long; that is past the end of any video
+    private static long parseBound(String digits) {
+        try {
+            return Long.parseLong(digits);
+        } catch (NumberFormatException e) {
+            return Long.MAX_VALUE;
+        }
+    }
+
+    static final class ByteRange {
+        final long start;
+        // Inclusive, as in Content-Range
+        final long end;
+        // False when the whole video is sent with a 200
+        final boolean partial;
+
+        ByteRange(long start, long end, boolean partial) {
+            this.start = start;
+            this.end = end;
+            this.partial = partial;
+        }
+    }
+
+    // Request line and header lines, or null if the client sent nothing usable
+    private static String[] readHead(InputStream input) throws IOException {
+        ByteArrayOutputStream head = new ByteArrayOutputStream();
+        // Last four bytes read; the head ends at \r\n\r\n
+        int window = 0;
+        int b;
+        while ((b = input.read()) != -1) {
+            head.write(b);
+            window = (window << 8) | b;
+            if (window == 0x0d0a0d0a) {
+                String text = new String(head.toByteArray(), StandardCharsets.ISO_8859_1).trim();
+                return text.isEmpty() ? null : text.split("\r\n");
+            }
+            if (head.size() > MAX_HEADER_BYTES) {
+                return null;
+            }
+        }
+        return null;
+    }
+
+    private static void writeStatus(OutputStream output, int status, String reason) throws IOException {
+        output.write(("HTTP/1.1 " + status + " " + reason + "\r\nContent-Length: 0\r\nConnection: close\r\n\r\n")
+            .getBytes(StandardCharsets.ISO_8859_1));
+        output.flush();
+    }
+}
@@ -0,0 +1,100 @@
+package com.ebizimba.islam;
+
+import android.content.Context;
+import android.content.res.AssetFileDescriptor;
+
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+
+// Small grayscale previews of all 604 mushaf pages in one file, shown while the
+// full page is still downloading. The pack is bundled in the APK assets by the
+// :app:buildLowResPagePack task; builds made without it have no previews and the
+// preview route just 404s.
+//
+// The file is memory-mapped, so serving a preview is a slice of the mapping with
+// no reads or copies. Layout, big-endian:
+//   int magic "QLP1", int pageCount, int[pageCount + 1] offsets from file start,
+//   then the JPEG of each page back to back. Page n spans offsets[n-1]..offsets[n];
+//   an empty span means that page has no preview.
+// The bundled asset must be stored uncompressed (noCompress 'pack') to be mappable.
+final class LowResPagePack {
+    static final String FILE_NAME = "quran-lowres.pack";
+    static final String MIME_TYPE = "image/jpeg";
+    private static final int MAGIC = 0x514C5031;
+    private static final int HEADER_INTS = 2;
+
+    private static LowResPagePack instance;
+
+    // Null when this build has no usable pack
+    private final ByteBuffer pack;
+    private final int pageCount;
+
+    static synchronized LowResPagePack getInstance(Context context) {
+        if (instance == null) {
+            instance = new LowResPagePack(context.getApplicationContext());
+        }
+        return instance;
+    }
+
+    private LowResPagePack(Context context) {
+        ByteBuffer mapped = mapAsset(context);
+        int count = mapped != null ? validPageCount(mapped) : 0;
+        this.pageCount = count;
+        this.pack = count > 0 ? mapped : null;
+    }
+
+    boolean isAvailable() {
+        return pack != null;
+    }
+
+    // The page's JPEG as a read-only view into the mapping, or null
+    ByteBuffer getPage(int page) {
+        ByteBuffer current = pack;
+        if (current == null || page < 1 || page > pageCount) {
+            return null;
+        }
+        int start = current.getInt((HEADER_INTS + page - 1) * 4);
+        int end = current.getInt((HEADER_INTS + page) * 4);
+        if (end <= start) {
+            return null;
+        }
+        ByteBuffer slice = current.duplicate();
+        slice.limit(end);
+        slice.position(start);
+        return slice.slice();
+    }
+
+    private static ByteBuffer mapAsset(Context context) {
+        try (AssetFileDescriptor descriptor = context.getAssets().openFd(FILE_NAME);
+             FileInputStream input = descriptor.createInputStream()) {
+            return input.getChannel().map(FileChannel.MapMode.READ_ONLY,
+                descriptor.getStartOffset(), descriptor.getLength());
+        } catch (IOException e) {
+            // No bundled pack in this build
+            return null;
+        }
+    }
+
+    // Page count if the header and offset table are consistent with the file, else 0
+    static int validPageCount(ByteBuffer pack) {
+        if (pack.capacity() < HEADER_INTS * 4 || pack.getInt(0) != MAGIC) {
+            return 0;
+        }
+        int count = pack.getInt(4);
+        long tableEnd = (HEADER_INTS + count + 1) * 4L;
+        if (count <= 0 || count > QuranMetadata.PAGE_COUNT || tableEnd > pack.capacity()) {
+            return 0;
+        }
+        int previous = (int) tableEnd;
+        for (int i = 0; i <= count; i++) {
+            int offset = pack.getInt((HEADER_INTS + i) * 4);
+            if (offset < previous || offset > pack.capacity()) {
+                return 0;
+            }
+            previous = offset;
+        }
+        return count;
+    }
+}
@@ -7,14 +7,32 @@ import android.webkit.WebView;
 import android.content.pm.ActivityInfo;
 import android.webkit.JavascriptInterface;
 import android.view.View;
+import android.view.ViewTreeObserver;
 import android.os.Handler;
 import android.os.Looper;
 import android.content.SharedPreferences;
-import android.provider.Settings.Secure;
 import android.content.Intent;
 import android.util.Log;
 import android.view.KeyEvent;
+import android.net.Uri;
+import android.database.Cursor;
+import android.provider.OpenableColumns;
 import java.io.File;
+import java.io.IOException;
+import java.time.LocalDate;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.function.Supplier;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
 
 import com.getcapacitor.BridgeActivity;
 import com.google.android.gms.auth.api.signin.GoogleSignIn;
@@ -26,18 +44,38 @@ import com.google.android.gms.tasks.Task;
 
 public class MainActivity extends BridgeActivity {
     private boolean isBookViewer = false;
+    private boolean fullyDrawnReported = false;
+    private static final String STARTUP_MARKER = "startup-fully-drawn";
     private WebView webView;
     private static final String PREFS_NAME = "AppPrefs";
     private static final String FIRST_LAUNCH_KEY = "firstLaunch";
-    private String deviceId;
     private static final int RC_SIGN_IN = 9001;
     private GoogleSignInClient mGoogleSignInClient;
     private static final String TAG = "MainActivity";
     private QuranPageDownloader quranDownloader;
-    private long lastPauseTime = 0;
+    private static final int RC_PICK_UPLOAD = 9002;
+    private ChunkedUploader chunkedUploader;
+    private NativeRequestRouter requestRouter;
+    private WebAssetServer webAssetServer;
+    private PageTurnController pageTurnController;
+    private BookRenderer bookRenderer;
+    private QiblaEngine qiblaEngine;
+    // Qibla screen is open; the sensor is paused with the activity and resumed after
+    private boolean qiblaActive = false;
+    private double qiblaLatitude;
+    private double qiblaLongitude;
+    private NotificationScheduler notificationScheduler;
+    // Notification tap that started the activity, collected by the web app once its listeners are ready
+    private JSONObject pendingNotificationLaunch;
+    private static final String DEBUG_OVERLAY_KEY = "debugOverlay";
+    private MetricsOverlay metricsOverlay;
 
     @Override
     public void onCreate(Bundle savedInstanceState) {
+        // Both end in callbacks: the first activity frame, and the web app's ready signal
+        StartupTrace.beginAsync(StartupTrace.SPLASH);
+        StartupTrace.beginAsync(StartupTrace.WEB_APP_READY);
+
         // Prevent screenshots and screen recording
         getWindow().setFlags(
             WindowManager.LayoutParams.FLAG_SECURE,
@@ -50,15 +88,30 @@ public class MainActivity extends BridgeActivity {
             WindowManager.LayoutParams.FLAG_LAYOUT_NO_LIMITS
         );
 
+        StartupTrace.begin("bridgeOnCreate");
         super.onCreate(savedInstanceState);
+        StartupTrace.end();
+
+        // Serve a downloaded web bundle if one is staged or active (rolls back a
+        // bundle whose last launch never reached notifyWebAppReady)
+        String webBundle = WebBundleUpdater.getInstance(this).selectAtLaunch();
+        if (webBundle != null) {
+            getBridge().setServerBasePath(webBundle);
+        }
+
+        // Serve the bundle's hashed chunks natively, and read the entry chunks into
+        // memory while the splash is up
+        webAssetServer = new WebAssetServer(this, webBundle);
+        new Thread(webAssetServer::warmUp, "web-asset-warm-up").start();
         
         // Keep screen on while app is running
         getWindow().addFlags(WindowManager.LayoutParams.FLAG_KEEP_SCREEN_ON);
         
-        // Get device ID
-        deviceId = Secure.getString(getContentResolver(), Secure.ANDROID_ID);
+        // Load or derive the device identity off the main thread
+        DeviceIdentity.getInstance(this).warmUp();
         
         // Get WebView instance
+        StartupTrace.begin("configureWebView");
         webView = getBridge().getWebView();
         
         WebSettings settings = webView.getSettings();
@@ -101,6 +154,41 @@ public class MainActivity extends BridgeActivity {
         
         // Enable better touch handling
         webView.setHapticFeedbackEnabled(true);
+        StartupTrace.end();
+
+        // The splash (launch theme background) is gone once the activity draws its first frame
+        View decorView = getWindow().getDecorView();
+        decorView.getViewTreeObserver().addOnPreDrawListener(new ViewTreeObserver.OnPreDrawListener() {
+            @Override
+            public boolean onPreDraw() {
+                decorView.getViewTreeObserver().removeOnPreDrawListener(this);
+                StartupTrace.endAsync(StartupTrace.SPLASH);
+                return true;
+            }
+        });
+
+        // Serve native content (rendered book pages, ...) under /_native/ on the app origin
+        requestRouter = new NativeRequestRouter(getBridge());
+        requestRouter.setAssetServer(webAssetServer);
+        bookRenderer = new BookRenderer(this);
+        requestRouter.register(BookRenderer.ROUTE, bookRenderer);
+        QuranPageRoute quranPageRoute = new QuranPageRoute(this);
+        quranPageRoute.setListener(page -> evaluateOnWebView(String.format(
+            "window.dispatchEvent(new CustomEvent('quranPageUpgraded', {detail: {page: %d}}));", page)));
+        requestRouter.register(QuranPageRoute.ROUTE, quranPageRoute);
+        // Volume keys turn pages while the reader is open; one event per turn
+        pageTurnController = new PageTurnController(quranPageRoute, page -> evaluateOnWebView(String.format(
+            "window.dispatchEvent(new CustomEvent('nativePageTurn', {detail: {page: %d}}));", page)));
+        ThumbnailAtlas thumbnailAtlas = ThumbnailAtlas.getInstance(this);
+        thumbnailAtlas.setListener(version -> evaluateOnWebView(String.format(
+            "window.dispatchEvent(new CustomEvent('quranThumbnailsUpdated', {detail: {version: %d}}));", version)));
+        requestRouter.register(ThumbnailAtlas.ROUTE, thumbnailAtlas);
+        CatalogCache catalogCache = new CatalogCache(this);
+        catalogCache.setListener(table -> evaluateOnWebView(String.format(
+            "window.dispatchEvent(new CustomEvent('catalogUpdated', {detail: {table: %s}}));",
+            JSONObject.quote(table))));
+        requestRouter.register(CatalogCache.ROUTE, catalogCache);
+        getBridge().setWebViewClient(requestRouter);
 
         // Add JavaScript interface for rotation control and device ID
         webView.addJavascriptInterface(new WebAppInterface(), "Android");
@@ -111,43 +199,92 @@ public class MainActivity extends BridgeActivity {
         // Initialize Quran page downloader
         quranDownloader = new QuranPageDownloader(this);
         
+        // Initialize native chunked uploader for large admin content
+        chunkedUploader = new ChunkedUploader(this);
+
+        // Bring native caches back under the storage budget
+        StorageGovernor.getInstance(this).enforceAsync();
+
+        // Load the prayer-time table, rebuilding it if it is stale
+        PrayerTimeTable.getInstance(this).ensureFresh(null);
+
+        // Re-arm the native notification queue (prayer alerts roll forward daily)
+        notificationScheduler = NotificationScheduler.getInstance(this);
+        notificationScheduler.refresh(null);
+        pendingNotificationLaunch = notificationLaunchFrom(getIntent());
+
+        // Native metrics panel, if it was left on from a previous session
+        metricsOverlay = new MetricsOverlay(this);
+        metricsOverlay.setShown(getSharedPreferences(PREFS_NAME, 0).getBoolean(DEBUG_OVERLAY_KEY, false));
+
+        // Forward native Quran audio playback events to the web app
+        QuranAudioPlaybackService.setPlaybackListener((state, index, page, total) ->
+            evaluateOnWebView(String.format(
+                "if (window.handleQuranAudioEvent) window.handleQuranAudioEvent(%s, %d, %d, %d);",
+                JSONObject.quote(state), index, page, total
+            ))
+        );
+        
         // Configure Google Sign-In
+        StartupTrace.begin("configureGoogleSignIn");
         configureGoogleSignIn();
+        StartupTrace.end();
         
         // Check if this is first launch
+        StartupTrace.begin("checkFirstLaunch");
         checkFirstLaunch();
+        StartupTrace.end();
+    }
+
+    // Called once the web app has rendered its first screen. Full display is
+    // reported when that frame is actually on screen, not when JS asks for it.
+    private void onWebAppReady() {
+        if (fullyDrawnReported) {
+            return;
+        }
+        fullyDrawnReported = true;
+        StartupTrace.endAsync(StartupTrace.WEB_APP_READY);
+        WebBundleUpdater webBundles = WebBundleUpdater.getInstance(this);
+        webBundles.confirmBoot();
+        // Stage the next web bundle, if any, for the following launch
+        if (WebBundleUpdater.isConfigured()) {
+            webBundles.checkAsync(null);
+        }
+        webView.postVisualStateCallback(0, new WebView.VisualStateCallback() {
+            @Override
+            public void onComplete(long requestId) {
+                reportFullyDrawn();
+                StartupTrace.mark("fullyDrawn");
+                if (BuildConfig.STARTUP_MARKER) {
+                    // Lets the :benchmark module's UiAutomator wait for full display
+                    webView.setContentDescription(STARTUP_MARKER);
+                }
+            }
+        });
     }
     
     // Override volume key handling to notify JavaScript
     @Override
     public boolean dispatchKeyEvent(KeyEvent event) {
-        int action = event.getAction();
+        // In the Quran reader the volume keys turn pages instead of changing the volume
+        if (pageTurnController != null && pageTurnController.onKeyEvent(event)) {
+            return true;
+        }
+
         int keyCode = event.getKeyCode();
-        
-        // Check if it's a volume button press
-        if ((keyCode == KeyEvent.KEYCODE_VOLUME_UP || keyCode == KeyEvent.KEYCODE_VOLUME_DOWN) && 
-            action == KeyEvent.ACTION_DOWN) {
-            
-            // Notify JavaScript about volume button press
-            webView.post(() -> {
-                webView.evaluateJavascript(
-                    "if (window.handleVolumeButtonPress) window.handleVolumeButtonPress();",
-                    null
-                );
-                
-                // Also dispatch a custom event for components that listen for it
-                webView.evaluateJavascript(
-                    "window.dispatchEvent(new Event('volumeButtonPressed'));",
-                    null
-                );
-            });
-            
-            // Still allow the system to handle the volume change
-            return super.dispatchKeyEvent(event);
+        if ((keyCode == KeyEvent.KEYCODE_VOLUME_UP || keyCode == KeyEvent.KEYCODE_VOLUME_DOWN) &&
+            event.getAction() == KeyEvent.ACTION_DOWN) {
+            // Notify JavaScript (videos unmute on it); the system still changes the volume
+            notifyVolumeButtonPress();
         }
-        
         return super.dispatchKeyEvent(event);
     }
+
+    // One script for both the global handler and components listening for the event
+    private void notifyVolumeButtonPress() {
+        evaluateOnWebView("if (window.handleVolumeButtonPress) window.handleVolumeButtonPress();"
+            + "window.dispatchEvent(new Event('volumeButtonPressed'));");
+    }
     
     private void configureGoogleSignIn() {
         try {
@@ -206,9 +343,79 @@ public class MainActivity extends BridgeActivity {
                     );
                 });
             }
+        } else if (requestCode == RC_PICK_UPLOAD) {
+            handleUploadFilePicked(resultCode == RESULT_OK && data != null ? data.getData() : null);
         }
     }
     
+    private void handleUploadFilePicked(Uri uri) {
+        if (uri == null) {
+            evaluateOnWebView("if (window.handleUploadFilePicked) window.handleUploadFilePicked(null);");
+            return;
+        }
+        
+        // Keep read access so an interrupted upload can resume after a restart
+        try {
+            getContentResolver().takePersistableUriPermission(uri, Intent.FLAG_GRANT_READ_URI_PERMISSION);
+        } catch (SecurityException e) {
+            Log.w(TAG, "Persistable permission not granted for " + uri);
+        }
+        
+        String name = "";
+        long size = -1;
+        try (Cursor cursor = getContentResolver().query(uri, null, null, null, null)) {
+            if (cursor != null && cursor.moveToFirst()) {
+                int nameIndex = cursor.getColumnIndex(OpenableColumns.DISPLAY_NAME);
+                int sizeIndex = cursor.getColumnIndex(OpenableColumns.SIZE);
+                if (nameIndex >= 0) name = cursor.getString(nameIndex);
+                if (sizeIndex >= 0 && !cursor.isNull(sizeIndex)) size = cursor.getLong(sizeIndex);
+            }
+        }
+        
+        String mimeType = getContentResolver().getType(uri);
+        evaluateOnWebView(String.format(
+            "if (window.handleUploadFilePicked) window.handleUploadFilePicked(%s, %s, %d, %s);",
+            JSONObject.quote(uri.toString()), JSONObject.quote(name), size,
+            JSONObject.quote(mimeType != null ? mimeType : "")
+        ));
+    }
+    
+    @Override
+    protected void onNewIntent(Intent intent) {
+        super.onNewIntent(intent);
+        JSONObject launch = notificationLaunchFrom(intent);
+        if (launch != null) {
+            // Already running: the listeners from notifications.ts are in place
+            String event = NotificationScheduler.KIND_BOOK.equals(launch.optString("type"))
+                ? "bookNotificationNavigation" : "notificationNavigation";
+            evaluateOnWebView(String.format(
+                "window.dispatchEvent(new CustomEvent(%s, { detail: %s }));",
+                JSONObject.quote(event), launch
+            ));
+        }
+    }
+
+    // {type, id} for intents posted by NotificationScheduler, otherwise null
+    private static JSONObject notificationLaunchFrom(Intent intent) {
+        String type = intent != null ? intent.getStringExtra(NotificationScheduler.EXTRA_TYPE) : null;
+        if (type == null) {
+            return null;
+        }
+        JSONObject launch = new JSONObject();
+        try {
+            launch.put("type", type);
+            launch.put("id", intent.getStringExtra(NotificationScheduler.EXTRA_TARGET));
+        } catch (JSONException e) {
+            return null;
+        }
+        return launch;
+    }
+
+    private void evaluateOnWebView(String script) {
+        NativeMetrics.increment(NativeMetrics.Counter.BRIDGE_EVENTS);
+        webView.post(() -> webView.evaluateJavascript(script, null));
+    }
+    
     private void handleSignInResult(Task<GoogleSignInAccount> completedTask) {
         try {
             GoogleSignInAccount account = completedTask.getResult(ApiException.class);
@@ -302,6 +509,17 @@ public class MainActivity extends BridgeActivity {
     }
 
     private class WebAppInterface {
+        // Synchronous calls block the JS thread, so their latency is worth tracking
+        private <T> T timed(Supplier<T> call) {
+            long started = NativeMetrics.start();
+            try {
+                return call.get();
+            } finally {
+                NativeMetrics.increment(NativeMetrics.Counter.BRIDGE_CALLS);
+                NativeMetrics.stop(NativeMetrics.Timer.BRIDGE_CALL, started);
+            }
+        }
+
         @JavascriptInterface
         public void enableRotation() {
             runOnUiThread(() -> {
@@ -324,9 +542,75 @@ public class MainActivity extends BridgeActivity {
             return settings.getBoolean(FIRST_LAUNCH_KEY, true);
         }
         
+        // Counters, gauges and latency percentiles of the native layer, as JSON
+        @JavascriptInterface
+        public String getNativeMetrics() {
+            return NativeMetrics.snapshot().toString();
+        }
+
+        @JavascriptInterface
+        public void resetNativeMetrics() {
+            NativeMetrics.reset();
+        }
+
+        // Persisted so the overlay survives restarts while chasing a problem
+        @JavascriptInterface
+        public void setDebugOverlayEnabled(boolean enabled) {
+            getSharedPreferences(PREFS_NAME, 0).edit().putBoolean(DEBUG_OVERLAY_KEY, enabled).apply();
+            runOnUiThread(() -> metricsOverlay.setShown(enabled));
+        }
+
+        @JavascriptInterface
+        public boolean isDebugOverlayEnabled() {
+            return getSharedPreferences(PREFS_NAME, 0).getBoolean(DEBUG_OVERLAY_KEY, false);
+        }
+
+        // The web app has mounted and rendered its first screen
+        @JavascriptInterface
+        public void notifyWebAppReady() {
+            runOnUiThread(MainActivity.this::onWebAppReady);
+        }
+
+        // Startup timings measured by the web app: fetching the entry chunk, and the
+        // gap between it arriving and main.tsx running (parse, compile and evaluation
+        // of the entry module graph)
+        @JavascriptInterface
+        public void reportWebStartup(double entryFetchMs, double entryCompileMs) {
+            NativeMetrics.record(NativeMetrics.Timer.WEB_ENTRY_FETCH, Math.round(entryFetchMs * 1000));
+            NativeMetrics.record(NativeMetrics.Timer.WEB_ENTRY_COMPILE, Math.round(entryCompileMs * 1000));
+            Log.i(TAG, String.format(Locale.ROOT, "Web entry fetch %.1f ms, compile+eval %.1f ms",
+                entryFetchMs, entryCompileMs));
+        }
+
+        // Version of the downloaded web bundle in use, or "" for the one in the APK
+        @JavascriptInterface
+        public String getWebBundleVersion() {
+            String version = WebBundleUpdater.getInstance(MainActivity.this).getActiveVersion();
+            return version != null ? version : "";
+        }
+
+        // Look for a newer web bundle now; the outcome, including bytes downloaded
+        // against the full bundle size, goes to window.handleWebUpdateResult
+        @JavascriptInterface
+        public void checkForWebUpdate() {
+            WebBundleUpdater.getInstance(MainActivity.this).checkAsync(result -> evaluateOnWebView(
+                "if (window.handleWebUpdateResult) window.handleWebUpdateResult(" + result + ");"));
+        }
+
         @JavascriptInterface
         public String getDeviceId() {
-            return deviceId;
+            return DeviceIdentity.getInstance(MainActivity.this).getAndroidId();
+        }
+
+        // Stable per-device UUID used for trials; see DeviceIdentity
+        @JavascriptInterface
+        public String getDeviceIdentity() {
+            return DeviceIdentity.getInstance(MainActivity.this).getId();
+        }
+
+        @JavascriptInterface
+        public boolean adoptDeviceIdentity(String legacyFingerprint) {
+            return DeviceIdentity.getInstance(MainActivity.this).adoptLegacyId(legacyFingerprint);
         }
         
         @JavascriptInterface
@@ -339,14 +623,43 @@ public class MainActivity extends BridgeActivity {
         
         @JavascriptInterface
         public void downloadQuranPages(int startPage, int endPage) {
+            if (prepareQuranDownload()) {
+                quranDownloader.downloadPages(startPage, endPage);
+            }
+        }
+
+        // e.g. [{"type": "juz", "from": 1, "to": 5}, {"type": "surah", "from": 18}];
+        // overlaps are merged and pages already stored aren't fetched again
+        @JavascriptInterface
+        public void downloadQuranSelection(String selectionsJson) {
+            if (prepareQuranDownload()) {
+                quranDownloader.downloadSelection(selectionsJson);
+            }
+        }
+
+        // {requested, missing, missingRanges} for a selection, without downloading
+        @JavascriptInterface
+        public String planQuranDownload(String selectionsJson) {
+            return timed(() -> {
+                try {
+                    PageDownloadPlanner planner = PageDownloadPlanner.getInstance(MainActivity.this);
+                    return planner.describe(PageDownloadPlanner.resolve(new JSONArray(selectionsJson))).toString();
+                } catch (JSONException | IllegalArgumentException e) {
+                    return "";
+                }
+            });
+        }
+
+        // Routes progress to the web app; false if a download is already running
+        private boolean prepareQuranDownload() {
             if (quranDownloader.isDownloading()) {
                 webView.post(() -> {
                     webView.evaluateJavascript(
-                        "window.handleQuranDownloadError('Download already in progress')",
+                        "if (window.handleQuranDownloadError) window.handleQuranDownloadError('Download already in progress')",
                         null
                     );
                 });
-                return;
+                return false;
             }
             
             quranDownloader.setListener(new QuranPageDownloader.DownloadListener() {
@@ -354,7 +667,8 @@ public class MainActivity extends BridgeActivity {
                 public void onProgressUpdate(int current, int total) {
                     webView.post(() -> {
                         webView.evaluateJavascript(
-                            String.format("window.handleQuranDownloadProgress(%d, %d)", current, total),
+                            String.format("if (window.handleQuranDownloadProgress) window.handleQuranDownloadProgress(%d, %d)",
+                                current, total),
                             null
                         );
                     });
@@ -364,7 +678,8 @@ public class MainActivity extends BridgeActivity {
                 public void onDownloadComplete(int success, int failed) {
                     webView.post(() -> {
                         webView.evaluateJavascript(
-                            String.format("window.handleQuranDownloadComplete(%d, %d)", success, failed),
+                            String.format("if (window.handleQuranDownloadComplete) window.handleQuranDownloadComplete(%d, %d)",
+                                success, failed),
                             null
                         );
                     });
@@ -374,50 +689,539 @@ public class MainActivity extends BridgeActivity {
                 public void onError(String error) {
                     webView.post(() -> {
                         webView.evaluateJavascript(
-                            String.format("window.handleQuranDownloadError('%s')", error),
+                            "if (window.handleQuranDownloadError) window.handleQuranDownloadError("
+                                + JSONObject.quote(error) + ")",
                             null
                         );
                     });
                 }
             });
-            
-            quranDownloader.downloadPages(startPage, endPage);
+            return true;
         }
         
         @JavascriptInterface
         public String getQuranPagePath(int pageNumber) {
-            String formattedPage = String.format("%03d", pageNumber);
-            File pageFile = new File(getFilesDir(), "quran-pages/" + formattedPage + ".png");
-            if (pageFile.exists()) {
-                return pageFile.getAbsolutePath();
+            return timed(() -> {
+                String formattedPage = String.format("%03d", pageNumber);
+                File pageFile = new File(getFilesDir(), "quran-pages/" + formattedPage + ".png");
+                if (pageFile.exists()) {
+                    return pageFile.getAbsolutePath();
+                }
+                return "";
+            });
+        }
+        
+        // Prefix for reel URLs played through the local video cache, or "" if the
+        // proxy can't start and videos should stream directly
+        @JavascriptInterface
+        public String getVideoProxyBase() {
+            return timed(() -> {
+                try {
+                    return LocalVideoProxy.getInstance(MainActivity.this).getBaseUrl();
+                } catch (IOException e) {
+                    Log.e(TAG, "Cannot start video proxy", e);
+                    return "";
+                }
+            });
+        }
+
+        // Fetch the opening seconds of the reels likely to be played next
+        @JavascriptInterface
+        public void prefetchVideos(String urlsJson) {
+            try {
+                JSONArray array = new JSONArray(urlsJson);
+                List<String> urls = new ArrayList<>();
+                for (int i = 0; i < array.length(); i++) {
+                    urls.add(array.getString(i));
+                }
+                VideoCache.getInstance(MainActivity.this).prefetch(urls);
+            } catch (JSONException e) {
+                Log.e(TAG, "Invalid video prefetch list", e);
             }
-            return "";
+        }
+
+        @JavascriptInterface
+        public void pickUploadFile(String mimeType) {
+            runOnUiThread(() -> {
+                Intent intent = new Intent(Intent.ACTION_OPEN_DOCUMENT);
+                intent.addCategory(Intent.CATEGORY_OPENABLE);
+                intent.setType(mimeType != null && !mimeType.isEmpty() ? mimeType : "*/*");
+                intent.addFlags(Intent.FLAG_GRANT_READ_URI_PERMISSION | Intent.FLAG_GRANT_PERSISTABLE_URI_PERMISSION);
+                startActivityForResult(intent, RC_PICK_UPLOAD);
+            });
         }
         
         @JavascriptInterface
-        public void handleVolumeButtonPress() {
-            // This method will be called from JavaScript to notify about volume button press
-            // It's also called directly from dispatchKeyEvent
-            webView.post(() -> {
-                webView.evaluateJavascript(
-                    "if (window.handleVolumeButtonPress) window.handleVolumeButtonPress();",
-                    null
-                );
+        public void startChunkedUpload(String uploadId, String sourceUri, String endpoint, String headersJson) {
+            Map<String, String> headers = new HashMap<>();
+            try {
+                if (headersJson != null && !headersJson.isEmpty()) {
+                    JSONObject json = new JSONObject(headersJson);
+                    Iterator<String> keys = json.keys();
+                    while (keys.hasNext()) {
+                        String key = keys.next();
+                        headers.put(key, json.getString(key));
+                    }
+                }
+            } catch (JSONException e) {
+                Log.e(TAG, "Invalid upload headers: " + e.getMessage(), e);
+            }
+            
+            chunkedUploader.setListener(new ChunkedUploader.UploadListener() {
+                @Override
+                public void onProgressUpdate(String id, long bytesUploaded, long totalBytes) {
+                    evaluateOnWebView(String.format(
+                        "if (window.handleUploadProgress) window.handleUploadProgress(%s, %d, %d);",
+                        JSONObject.quote(id), bytesUploaded, totalBytes
+                    ));
+                }
                 
-                // Also dispatch a custom event for components that listen for it
-                webView.evaluateJavascript(
-                    "window.dispatchEvent(new Event('volumeButtonPressed'));",
-                    null
-                );
+                @Override
+                public void onUploadComplete(String id, String resultJson) {
+                    evaluateOnWebView(String.format(
+                        "if (window.handleUploadComplete) window.handleUploadComplete(%s, %s);",
+                        JSONObject.quote(id), resultJson
+                    ));
+                }
+                
+                @Override
+                public void onError(String id, String error) {
+                    evaluateOnWebView(String.format(
+                        "if (window.handleUploadError) window.handleUploadError(%s, %s);",
+                        JSONObject.quote(id), JSONObject.quote(error != null ? error : "Upload failed")
+                    ));
+                }
             });
+            
+            chunkedUploader.startUpload(uploadId, Uri.parse(sourceUri), endpoint, headers);
+        }
+        
+        @JavascriptInterface
+        public void cancelChunkedUpload(String uploadId) {
+            chunkedUploader.cancelUpload(uploadId);
+        }
+        
+        @JavascriptInterface
+        public void discardChunkedUpload(String uploadId) {
+            chunkedUploader.discardUpload(uploadId);
+        }
+        
+        @JavascriptInterface
+        public String getPendingUploads() {
+            return chunkedUploader.getPendingUploads();
+        }
+        
+        @JavascriptInterface
+        public void downloadSurahAudio(String reciterPath, int fromSurah, int toSurah) {
+            if (!QuranMetadata.isValidSurah(fromSurah) || !QuranMetadata.isValidSurah(toSurah) || fromSurah > toSurah) {
+                evaluateOnWebView("if (window.handleAudioPackError) window.handleAudioPackError('Invalid surah range');");
+                return;
+            }
+
+            // One file per ayah, laid out where the playback service looks for offline audio
+            List<AssetDownloader.AssetRequest> requests = new ArrayList<>();
+            for (int surah = fromSurah; surah <= toSurah; surah++) {
+                for (int ayah = 1; ayah <= QuranMetadata.getAyahCount(surah); ayah++) {
+                    AudioSegmentCache.Segment segment = AudioSegmentCache.Segment.forAyah(reciterPath, surah, ayah);
+                    requests.add(new AssetDownloader.AssetRequest(
+                        AssetDownloader.AssetType.SURAH_AUDIO, segment.key(), Collections.singletonList(segment.url)));
+                }
+            }
+
+            AssetDownloader.getInstance(MainActivity.this).submit(requests, new AssetDownloader.BatchListener() {
+                @Override
+                public void onProgressUpdate(int current, int total) {
+                    evaluateOnWebView(String.format(
+                        "if (window.handleAudioPackProgress) window.handleAudioPackProgress(%s, %d, %d);",
+                        JSONObject.quote(reciterPath), current, total
+                    ));
+                }
+
+                @Override
+                public void onBatchComplete(int success, int failed) {
+                    evaluateOnWebView(String.format(
+                        "if (window.handleAudioPackComplete) window.handleAudioPackComplete(%s, %d, %d);",
+                        JSONObject.quote(reciterPath), success, failed
+                    ));
+                }
+
+                @Override
+                public void onError(String error) {
+                    evaluateOnWebView(String.format(
+                        "if (window.handleAudioPackError) window.handleAudioPackError(%s);",
+                        JSONObject.quote(error)
+                    ));
+                }
+            });
+        }
+
+        @JavascriptInterface
+        public void downloadBookFile(String bookId, String url, String extension) {
+            // PDFs use the name BookRenderer looks for; other formats keep their extension
+            String fileName = extension == null || extension.isEmpty() || "pdf".equalsIgnoreCase(extension)
+                ? BookRenderer.fileNameFor(bookId)
+                : bookId.replaceAll("[^A-Za-z0-9_-]", "_") + "." + extension;
+            AssetDownloader downloader = AssetDownloader.getInstance(MainActivity.this);
+            downloader.submit(
+                Collections.singletonList(new AssetDownloader.AssetRequest(
+                    AssetDownloader.AssetType.BOOK_FILE, fileName, Collections.singletonList(url))),
+                new AssetDownloader.BatchListener() {
+                    @Override
+                    public void onProgressUpdate(int current, int total) {}
+
+                    @Override
+                    public void onBatchComplete(int success, int failed) {
+                        String path = success > 0
+                            ? downloader.getFile(AssetDownloader.AssetType.BOOK_FILE, fileName).getAbsolutePath()
+                            : "";
+                        evaluateOnWebView(String.format(
+                            "if (window.handleBookDownloadComplete) window.handleBookDownloadComplete(%s, %s);",
+                            JSONObject.quote(bookId), JSONObject.quote(path)
+                        ));
+                    }
+
+                    @Override
+                    public void onError(String error) {
+                        evaluateOnWebView(String.format(
+                            "if (window.handleBookDownloadError) window.handleBookDownloadError(%s, %s);",
+                            JSONObject.quote(bookId), JSONObject.quote(error)
+                        ));
+                    }
+                });
+        }
+
+        @JavascriptInterface
+        public void cancelAssetDownloads(String type) {
+            try {
+                AssetDownloader.getInstance(MainActivity.this).cancelAll(AssetDownloader.AssetType.valueOf(type));
+            } catch (IllegalArgumentException e) {
+                Log.w(TAG, "Unknown asset type: " + type);
+            }
+        }
+
+        @JavascriptInterface
+        public String getNativeBookInfo(String bookId) {
+            JSONObject info = bookRenderer.getInfo(bookId);
+            return info != null ? info.toString() : "";
+        }
+
+        @JavascriptInterface
+        public boolean isPageCached(int page) {
+            return timed(() -> NativeIndex.getInstance(MainActivity.this)
+                .hasEntry(AssetDownloader.AssetType.PAGE_IMAGE.name(), String.format("%03d.png", page)));
+        }
+
+        @JavascriptInterface
+        public boolean isAssetCached(String category, String key) {
+            return timed(() -> NativeIndex.getInstance(MainActivity.this).hasEntry(category, key));
+        }
+
+        @JavascriptInterface
+        public String getCachedAssetKeys(String category) {
+            return timed(() -> NativeIndex.getInstance(MainActivity.this).getKeys(category).toString());
+        }
+
+        @JavascriptInterface
+        public String getAssetIndexStats() {
+            return NativeIndex.getInstance(MainActivity.this).getStats().toString();
+        }
+
+        // Pass NaN coordinates to use the location saved with the prayer settings
+        @JavascriptInterface
+        public void startQibla(double latitude, double longitude) {
+            PrayerTimeTable prayerTable = PrayerTimeTable.getInstance(MainActivity.this);
+            boolean known = !Double.isNaN(latitude) && !Double.isNaN(longitude);
+            runOnUiThread(() -> {
+                qiblaLatitude = known ? latitude : prayerTable.getLatitude();
+                qiblaLongitude = known ? longitude : prayerTable.getLongitude();
+                qiblaActive = true;
+                startQiblaEngine();
+            });
+        }
+
+        @JavascriptInterface
+        public void stopQibla() {
+            runOnUiThread(() -> {
+                qiblaActive = false;
+                if (qiblaEngine != null) {
+                    qiblaEngine.stop();
+                }
+            });
+        }
+
+        @JavascriptInterface
+        public void setPrayerSettings(double latitude, double longitude, String method, boolean hanafi) {
+            PrayerTimeCalculator.Method calculation;
+            try {
+                calculation = PrayerTimeCalculator.Method.valueOf(method);
+            } catch (IllegalArgumentException | NullPointerException e) {
+                calculation = PrayerTimeCalculator.Method.MWL;
+            }
+            PrayerTimeTable.getInstance(MainActivity.this).configure(latitude, longitude, calculation, hanafi, () -> {
+                notificationScheduler.refresh(null);
+                evaluateOnWebView("if (window.handlePrayerTableReady) window.handlePrayerTableReady();");
+            });
+        }
+
+        @JavascriptInterface
+        public void setPrayerAlertsEnabled(boolean enabled) {
+            notificationScheduler.setPrayerAlertsEnabled(enabled);
+        }
+
+        @JavascriptInterface
+        public boolean isPrayerAlertsEnabled() {
+            return notificationScheduler.isPrayerAlertsEnabled();
+        }
+
+        // Stories or books ("story" / "book") that native reminders pick from: [{id, body}, ...]
+        @JavascriptInterface
+        public void setNotificationContent(String kind, String itemsJson) {
+            try {
+                notificationScheduler.setContent(kind, new JSONArray(itemsJson));
+            } catch (JSONException e) {
+                Log.e(TAG, "Invalid notification content", e);
+            }
+        }
+
+        // notificationJson: {id, kind, title, body, target, delayMs, flexMs}
+        @JavascriptInterface
+        public void scheduleNotification(String notificationJson) {
+            try {
+                JSONObject json = new JSONObject(notificationJson);
+                NotificationScheduler.Entry entry = new NotificationScheduler.Entry();
+                entry.id = json.getInt("id");
+                entry.kind = json.optString("kind", NotificationScheduler.KIND_STORY);
+                entry.title = json.optString("title");
+                entry.body = json.optString("body");
+                entry.target = json.optString("target", null);
+                entry.fireAt = System.currentTimeMillis() + Math.max(0, json.optLong("delayMs"));
+                entry.flex = Math.max(0, json.optLong("flexMs"));
+                notificationScheduler.schedule(entry);
+            } catch (JSONException e) {
+                Log.e(TAG, "Invalid notification", e);
+            }
+        }
+
+        // kind is "story", "book", "prayer", or empty for everything
+        @JavascriptInterface
+        public void cancelNotifications(String kind) {
+            notificationScheduler.cancel(kind == null || kind.isEmpty() ? null : kind);
+        }
+
+        // {type, id} if the app was opened from a native notification; returned once
+        @JavascriptInterface
+        public String consumeNotificationLaunch() {
+            JSONObject launch = pendingNotificationLaunch;
+            pendingNotificationLaunch = null;
+            return launch != null ? launch.toString() : null;
+        }
+
+        // date is yyyy-MM-dd, or empty for today
+        @JavascriptInterface
+        public String getPrayerDay(String date) {
+            LocalDate day;
+            try {
+                day = parseDate(date);
+            } catch (DateTimeParseException e) {
+                return invalidDate(date);
+            }
+            return timed(() -> PrayerTimeTable.getInstance(MainActivity.this).getDay(day).toString());
+        }
+
+        @JavascriptInterface
+        public String getPrayerDays(String startDate, int count) {
+            LocalDate start;
+            try {
+                start = parseDate(startDate);
+            } catch (DateTimeParseException e) {
+                return invalidDate(startDate);
+            }
+            return timed(() -> {
+                PrayerTimeTable prayerTable = PrayerTimeTable.getInstance(MainActivity.this);
+                JSONArray days = new JSONArray();
+                for (int i = 0; i < Math.min(count, 366); i++) {
+                    days.put(prayerTable.getDay(start.plusDays(i)));
+                }
+                return days.toString();
+            });
+        }
+
+        private LocalDate parseDate(String date) {
+            return date == null || date.isEmpty() ? LocalDate.now() : LocalDate.parse(date);
+        }
+
+        private String invalidDate(String date) {
+            return "{\"error\":" + JSONObject.quote("Invalid date: " + date) + "}";
+        }
+
+        @JavascriptInterface
+        public String searchQuran(String query, String language, int limit) {
+            return timed(() -> QuranSearchIndex.getInstance(MainActivity.this).search(query, language, limit).toString());
+        }
+
+        @JavascriptInterface
+        public String getQuranSearchStatus() {
+            return QuranSearchIndex.getInstance(MainActivity.this).getStatus().toString();
+        }
+
+        // For translations the web app already has (e.g. Luganda); texts is a JSON array in ayah order
+        @JavascriptInterface
+        public boolean indexSurahText(int surah, String language, String textsJson) {
+            try {
+                JSONArray texts = new JSONArray(textsJson);
+                List<String> list = new ArrayList<>(texts.length());
+                for (int i = 0; i < texts.length(); i++) {
+                    list.add(texts.getString(i));
+                }
+                return QuranSearchIndex.getInstance(MainActivity.this).indexSurah(surah, language, list);
+            } catch (JSONException e) {
+                Log.e(TAG, "Invalid surah text JSON", e);
+                return false;
+            }
+        }
+
+        @JavascriptInterface
+        public void downloadQuranTextIndex(int fromSurah, int toSurah) {
+            if (!QuranMetadata.isValidSurah(fromSurah) || !QuranMetadata.isValidSurah(toSurah) || fromSurah > toSurah) {
+                evaluateOnWebView("if (window.handleQuranIndexError) window.handleQuranIndexError('Invalid surah range');");
+                return;
+            }
+            QuranSearchIndex.getInstance(MainActivity.this).downloadAndIndex(fromSurah, toSurah, new AssetDownloader.BatchListener() {
+                @Override
+                public void onProgressUpdate(int current, int total) {
+                    evaluateOnWebView(String.format(
+                        "if (window.handleQuranIndexProgress) window.handleQuranIndexProgress(%d, %d);", current, total));
+                }
+
+                @Override
+                public void onBatchComplete(int success, int failed) {
+                    evaluateOnWebView(String.format(
+                        "if (window.handleQuranIndexComplete) window.handleQuranIndexComplete(%d, %d);", success, failed));
+                }
+
+                @Override
+                public void onError(String error) {
+                    evaluateOnWebView(String.format(
+                        "if (window.handleQuranIndexError) window.handleQuranIndexError(%s);", JSONObject.quote(error)));
+                }
+            });
+        }
+
+        @JavascriptInterface
+        public String getStorageUsage() {
+            return StorageGovernor.getInstance(MainActivity.this).getUsage().toString();
+        }
+
+        @JavascriptInterface
+        public void setStorageBudget(long bytes) {
+            StorageGovernor.getInstance(MainActivity.this).setBudget(bytes);
+        }
+
+        @JavascriptInterface
+        public void setAssetsPinned(String category, String keysJson, boolean pinned) {
+            try {
+                JSONArray keys = new JSONArray(keysJson);
+                NativeIndex index = NativeIndex.getInstance(MainActivity.this);
+                for (int i = 0; i < keys.length(); i++) {
+                    index.setPinned(category, keys.getString(i), pinned);
+                }
+            } catch (JSONException e) {
+                Log.e(TAG, "Invalid keys JSON", e);
+            }
+        }
+
+        @JavascriptInterface
+        public void setQuranPagesPinned(int startPage, int endPage, boolean pinned) {
+            NativeIndex index = NativeIndex.getInstance(MainActivity.this);
+            for (int page = Math.max(1, startPage); page <= Math.min(QuranMetadata.PAGE_COUNT, endPage); page++) {
+                index.setPinned(AssetDownloader.AssetType.PAGE_IMAGE.name(), String.format("%03d.png", page), pinned);
+            }
+        }
+
+        @JavascriptInterface
+        public void addQuranBookmark(int page, String surahName) {
+            if (QuranMetadata.isValidPage(page)) {
+                NativeIndex.getInstance(MainActivity.this).addBookmark(page, surahName);
+            }
+        }
+
+        @JavascriptInterface
+        public void removeQuranBookmark(int page) {
+            NativeIndex.getInstance(MainActivity.this).removeBookmark(page);
+        }
+
+        @JavascriptInterface
+        public boolean isQuranBookmarked(int page) {
+            return timed(() -> NativeIndex.getInstance(MainActivity.this).isBookmarked(page));
+        }
+
+        @JavascriptInterface
+        public String getQuranBookmarks() {
+            return timed(() -> NativeIndex.getInstance(MainActivity.this).getBookmarks().toString());
+        }
+
+        @JavascriptInterface
+        public void importQuranBookmarks(String bookmarksJson) {
+            try {
+                NativeIndex.getInstance(MainActivity.this).importBookmarks(new JSONArray(bookmarksJson));
+            } catch (JSONException e) {
+                Log.e(TAG, "Invalid bookmarks JSON", e);
+            }
+        }
+
+        @JavascriptInterface
+        public void playQuranAudio(String reciterPath, int startPage, int endPage) {
+            QuranAudioPlaybackService.playPages(MainActivity.this, reciterPath, startPage, endPage);
+        }
+        
+        @JavascriptInterface
+        public void playQuranAyahs(String reciterPath, int surah, int fromAyah, int toAyah) {
+            QuranAudioPlaybackService.playAyahs(MainActivity.this, reciterPath, surah, fromAyah, toAyah);
+        }
+        
+        @JavascriptInterface
+        public void pauseQuranAudio() {
+            QuranAudioPlaybackService.sendCommand(MainActivity.this, QuranAudioPlaybackService.ACTION_PAUSE);
+        }
+        
+        @JavascriptInterface
+        public void resumeQuranAudio() {
+            QuranAudioPlaybackService.sendCommand(MainActivity.this, QuranAudioPlaybackService.ACTION_RESUME);
+        }
+        
+        @JavascriptInterface
+        public void stopQuranAudio() {
+            QuranAudioPlaybackService.sendCommand(MainActivity.this, QuranAudioPlaybackService.ACTION_STOP);
+        }
+        
+        @JavascriptInterface
+        public void handleVolumeButtonPress() {
+            // Lets JavaScript raise the same notification dispatchKeyEvent sends
+            notifyVolumeButtonPress();
+        }
+
+        // The Quran reader reports the page it shows, or 0 when it closes, so the
+        // volume keys can turn pages natively (PageTurnController)
+        @JavascriptInterface
+        public void setReaderPage(int page) {
+            if (page > 0) {
+                pageTurnController.attach(page);
+            } else {
+                pageTurnController.detach();
+            }
         }
     }
 
     @Override
     public void onPause() {
         super.onPause();
-        // Record the time when the app was paused
-        lastPauseTime = System.currentTimeMillis();
+        // Queue the return prompt and book reminder natively; the WebView may not run again
+        notificationScheduler.onAppBackgrounded();
+
+        // No compass updates while the screen isn't visible
+        if (qiblaEngine != null) {
+            qiblaEngine.stop();
+        }
         
         // Prevent WebView from being destroyed
         getBridge().getWebView().onPause();
@@ -428,33 +1232,58 @@ public class MainActivity extends BridgeActivity {
         super.onResume();
         // Resume WebView
         getBridge().getWebView().onResume();
-        
-        // Clear WebView cache if needed
-        getBridge().getWebView().clearCache(false);
+
+        if (qiblaActive) {
+            startQiblaEngine();
+        }
 
         // Reset orientation based on current state
         setRequestedOrientation(isBookViewer ? 
             ActivityInfo.SCREEN_ORIENTATION_UNSPECIFIED : 
             ActivityInfo.SCREEN_ORIENTATION_PORTRAIT);
-        
-        // Check if we've been paused for more than 5 minutes
-        long pauseDuration = System.currentTimeMillis() - lastPauseTime;
-        if (lastPauseTime > 0 && pauseDuration > 5 * 60 * 1000) {
-            // App was closed for a while, trigger notification logic
-            webView.post(() -> {
-                webView.evaluateJavascript(
-                    "if (window.handleAppReopen) window.handleAppReopen(" + pauseDuration + ");",
-                    null
-                );
-            });
+
+        // Back in the app: drop the pending return prompt
+        notificationScheduler.onAppForegrounded();
+    }
+
+    private void startQiblaEngine() {
+        if (qiblaEngine == null) {
+            qiblaEngine = new QiblaEngine(this, getWindowManager());
+        }
+        boolean started = qiblaEngine.start(qiblaLatitude, qiblaLongitude, (heading, bearing, accuracy) ->
+            evaluateOnWebView(String.format(Locale.ROOT,
+                "if (window.handleQiblaUpdate) window.handleQiblaUpdate(%.1f, %.1f, %d);",
+                heading, bearing, accuracy
+            ))
+        );
+        if (!started) {
+            qiblaActive = false;
+            evaluateOnWebView("if (window.handleQiblaError) window.handleQiblaError('No compass sensor available');");
+        }
+    }
+
+    @Override
+    public void onTrimMemory(int level) {
+        super.onTrimMemory(level);
+        // Rendered book pages are cheap to recreate; give the memory back
+        if (level >= TRIM_MEMORY_RUNNING_LOW && bookRenderer != null) {
+            bookRenderer.trimMemory();
         }
     }
 
     @Override
     public void onDestroy() {
-        // Clean up WebView
+        // Playback continues in the service; stop sending events to this WebView
+        QuranAudioPlaybackService.setPlaybackListener(null);
+        if (qiblaEngine != null) {
+            qiblaEngine.stop();
+        }
+        
+        metricsOverlay.setShown(false);
+
+        // Clean up WebView. The HTTP and V8 code caches are kept: hashed chunks are
+        // immutable, and compiled code from this launch speeds up the next one.
         WebView webView = getBridge().getWebView();
-        webView.clearCache(true);
         webView.clearHistory();
         super.onDestroy();
     }
@@ -0,0 +1,133 @@
+package com.ebizimba.islam;
+
+import android.app.Activity;
+import android.graphics.Color;
+import android.graphics.Typeface;
+import android.os.Handler;
+import android.os.Looper;
+import android.view.Gravity;
+import android.view.View;
+import android.view.ViewGroup;
+import android.widget.FrameLayout;
+import android.widget.TextView;
+
+import org.json.JSONObject;
+
+import java.util.Locale;
+
+// Debug overlay: a small monospace panel in the top corner of the activity with
+// the headline NativeMetrics numbers, refreshed once a second while shown. It
+// sits above the WebView and ignores touches, so the app stays usable under it.
+final class MetricsOverlay {
+    private static final long REFRESH_MS = 1000;
+    private static final double MB = 1024 * 1024;
+
+    private final Activity activity;
+    private final Handler handler = new Handler(Looper.getMainLooper());
+    private TextView view;
+    private boolean shown = false;
+
+    private final Runnable refresh = new Runnable() {
+        @Override
+        public void run() {
+            if (!shown) {
+                return;
+            }
+            view.setText(format(NativeMetrics.snapshot()));
+            handler.postDelayed(this, REFRESH_MS);
+        }
+    };
+
+    MetricsOverlay(Activity activity) {
+        this.activity = activity;
+    }
+
+    // Main thread only
+    void setShown(boolean show) {
+        if (show == shown) {
+            return;
+        }
+        shown = show;
+        if (show) {
+            if (view == null) {
+                view = createView();
+                activity.addContentView(view, new FrameLayout.LayoutParams(
+                    ViewGroup.LayoutParams.WRAP_CONTENT,
+                    ViewGroup.LayoutParams.WRAP_CONTENT,
+                    Gravity.TOP | Gravity.END
+                ));
+            }
+            view.setVisibility(View.VISIBLE);
+            handler.post(refresh);
+        } else {
+            handler.removeCallbacks(refresh);
+            if (view != null) {
+                view.setVisibility(View.GONE);
+            }
+        }
+    }
+
+    private TextView createView() {
+        TextView text = new TextView(activity);
+        text.setTypeface(Typeface.MONOSPACE);
+        text.setTextSize(9);
+        text.setTextColor(Color.WHITE);
+        text.setBackgroundColor(Color.argb(180, 0, 0, 0));
+        int padding = Math.round(6 * activity.getResources().getDisplayMetrics().density);
+        text.setPadding(padding, padding, padding, padding);
+        text.setClickable(false);
+        text.setFocusable(false);
+        return text;
+    }
+
+    private static String format(JSONObject snapshot) {
+        JSONObject counters = snapshot.optJSONObject("counters");
+        JSONObject gauges = snapshot.optJSONObject("gauges");
+        JSONObject timers = snapshot.optJSONObject("timersMicros");
+        if (counters == null || gauges == null || timers == null) {
+            return "";
+        }
+
+        StringBuilder text = new StringBuilder();
+        text.append(String.format(Locale.ROOT, "dl   %d req %d fail %.1f MB  %d+%d queued%n",
+            counters.optLong("DOWNLOAD_REQUESTS"),
+            counters.optLong("DOWNLOAD_FAILURES"),
+            counters.optLong("DOWNLOAD_BYTES") / MB,
+            gauges.optLong("DOWNLOADS_IN_FLIGHT"),
+            gauges.optLong("DOWNLOADS_PENDING")));
+        text.append(String.format(Locale.ROOT, "     %d fallbacks %d backoffs  limit %d%n",
+            counters.optLong("MIRROR_FALLBACKS"),
+            counters.optLong("CONCURRENCY_BACKOFFS"),
+            gauges.optLong("PAGE_CONCURRENCY_LIMIT")));
+        text.append(String.format(Locale.ROOT, "hit  asset %s audio %s render %s%n",
+            hitRate(counters, "ASSET_CACHE"),
+            hitRate(counters, "AUDIO_CACHE"),
+            hitRate(counters, "RENDER_CACHE")));
+        text.append(String.format(Locale.ROOT, "jsi  %d calls %d events%n",
+            counters.optLong("BRIDGE_CALLS"),
+            counters.optLong("BRIDGE_EVENTS")));
+        text.append(String.format(Locale.ROOT, "disk %.0f/%.0f MB used %.0f MB free%n",
+            gauges.optLong("DISK_USED_BYTES") / MB,
+            gauges.optLong("DISK_BUDGET_BYTES") / MB,
+            gauges.optLong("DEVICE_FREE_BYTES") / MB));
+        text.append("p50/p95/max ms");
+        for (NativeMetrics.Timer timer : NativeMetrics.Timer.values()) {
+            JSONObject timing = timers.optJSONObject(timer.name());
+            if (timing == null || timing.optLong("count") == 0) {
+                continue;
+            }
+            text.append(String.format(Locale.ROOT, "%n%-15s %.1f/%.1f/%.1f",
+                timer.name().toLowerCase(Locale.ROOT),
+                timing.optLong("p50") / 1000.0,
+                timing.optLong("p95") / 1000.0,
+                timing.optLong("max") / 1000.0));
+        }
+        return text.toString();
+    }
+
+    private static String hitRate(JSONObject counters, String prefix) {
+        long hits = counters.optLong(prefix + "_HITS");
+        long total = hits + counters.optLong(prefix + "_MISSES");
+        return total == 0 ? "-" : (hits * 100 / total) + "%";
+    }
+}
@@ -0,0 +1,511 @@
+package com.ebizimba.islam;
+
+import android.content.ContentValues;
+import android.content.Context;
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteOpenHelper;
+import android.os.Handler;
+import android.os.HandlerThread;
+import android.os.Process;
+import android.util.Log;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+
+// Native metadata store for everything the app keeps on disk, the reader's
+// bookmarks and the rows CatalogCache keeps of the Supabase catalog. One WAL-mode
+// SQLite database with indexed tables replaces per-file stat calls and whole-list
+// JSON rewrites. Reads are single indexed lookups and run on the caller's thread;
+// writes are queued and applied in one transaction on a background thread.
+public class NativeIndex extends SQLiteOpenHelper {
+    private static final String TAG = "NativeIndex";
+    private static final String DATABASE_NAME = "native-index.db";
+    private static final int DATABASE_VERSION = 3;
+    private static final long FLUSH_DELAY_MS = 200;
+
+    static final String TABLE_CACHE = "cache_entries";
+    static final String TABLE_BOOKMARKS = "bookmarks";
+    static final String TABLE_CATALOG = "catalog_rows";
+    static final String TABLE_CATALOG_SYNC = "catalog_sync";
+
+    private static NativeIndex instance;
+
+    private final Context context;
+    private final Handler writeHandler;
+    private final List<WriteOp> pendingWrites = new ArrayList<>();
+    private final Object flushLock = new Object();
+    private boolean flushScheduled = false;
+
+    private interface WriteOp {
+        void apply(SQLiteDatabase db);
+    }
+
+    public static synchronized NativeIndex getInstance(Context context) {
+        if (instance == null) {
+            instance = new NativeIndex(context.getApplicationContext());
+        }
+        return instance;
+    }
+
+    private NativeIndex(Context context) {
+        super(context, DATABASE_NAME, null, DATABASE_VERSION);
+        this.context = context;
+        HandlerThread thread = new HandlerThread("native-index-writer", Process.THREAD_PRIORITY_BACKGROUND);
+        thread.start();
+        writeHandler = new Handler(thread.getLooper());
+    }
+
+    @Override
+    public void onConfigure(SQLiteDatabase db) {
+        // WAL lets the bridge read while the writer thread commits
+        db.enableWriteAheadLogging();
+    }
+
+    @Override
+    public void onCreate(SQLiteDatabase db) {
+        db.execSQL("CREATE TABLE " + TABLE_CACHE + " ("
+            + "category TEXT NOT NULL, "
+            + "asset_key TEXT NOT NULL, "
+            + "path TEXT NOT NULL, "
+            + "size INTEGER NOT NULL DEFAULT 0, "
+            + "sha256 TEXT, "
+            + "last_access INTEGER NOT NULL, "
+            + "pinned INTEGER NOT NULL DEFAULT 0, "
+            + "PRIMARY KEY (category, asset_key))");
+        db.execSQL("CREATE INDEX idx_cache_access ON " + TABLE_CACHE + " (category, last_access)");
+        createLruIndex(db);
+
+        db.execSQL("CREATE TABLE " + TABLE_BOOKMARKS + " ("
+            + "page INTEGER PRIMARY KEY, "
+            + "surah_name TEXT, "
+            + "created_at INTEGER NOT NULL)");
+
+        createCatalogTables(db);
+
+        // Files downloaded before the index existed still need rows
+        writeHandler.post(this::backfillExistingAssets);
+    }
+
+    @Override
+    public void onUpgrade(SQLiteDatabase db, int oldVersion, int newVersion) {
+        if (oldVersion < 2) {
+            createLruIndex(db);
+        }
+        if (oldVersion < 3) {
+            createCatalogTables(db);
+        }
+    }
+
+    // Global eviction order across categories
+    private static void createLruIndex(SQLiteDatabase db) {
+        db.execSQL("CREATE INDEX IF NOT EXISTS idx_cache_lru ON " + TABLE_CACHE + " (pinned, last_access)");
+    }
+
+    // Rows are kept as the JSON PostgREST returned; the timestamps the catalog is
+    // ordered and synced by are copied out so they can be indexed
+    private static void createCatalogTables(SQLiteDatabase db) {
+        db.execSQL("CREATE TABLE IF NOT EXISTS " + TABLE_CATALOG + " ("
+            + "catalog TEXT NOT NULL, "
+            + "id TEXT NOT NULL, "
+            + "created_at TEXT, "
+            + "updated_at TEXT, "
+            + "data TEXT NOT NULL, "
+            + "PRIMARY KEY (catalog, id))");
+        db.execSQL("CREATE INDEX IF NOT EXISTS idx_catalog_created ON " + TABLE_CATALOG + " (catalog, created_at)");
+        db.execSQL("CREATE INDEX IF NOT EXISTS idx_catalog_updated ON " + TABLE_CATALOG + " (catalog, updated_at)");
+        db.execSQL("CREATE TABLE IF NOT EXISTS " + TABLE_CATALOG_SYNC + " ("
+            + "catalog TEXT PRIMARY KEY, "
+            + "watermark TEXT, "
+            + "synced_at INTEGER NOT NULL, "
+            + "reconciled_at INTEGER NOT NULL DEFAULT 0)");
+    }
+
+    // --- Cache entries ---
+
+    public void recordEntry(String category, String key, File file, String sha256) {
+        recordEntry(category, key, file, sha256, false);
+    }
+
+    // Re-recording an entry keeps an existing pin; pinned only ever sets it
+    public void recordEntry(String category, String key, File file, String sha256, boolean pinned) {
+        long size = file.length();
+        String path = file.getAbsolutePath();
+        long now = System.currentTimeMillis();
+        enqueue(db -> {
+            ContentValues values = new ContentValues();
+            values.put("path", path);
+            values.put("size", size);
+            values.put("sha256", sha256);
+            values.put("last_access", now);
+            if (pinned) {
+                values.put("pinned", 1);
+            }
+            int updated = db.update(TABLE_CACHE, values, "category = ? AND asset_key = ?", new String[]{category, key});
+            if (updated == 0) {
+                values.put("category", category);
+                values.put("asset_key", key);
+                db.insert(TABLE_CACHE, null, values);
+            }
+        });
+    }
+
+    public void removeEntry(String category, String key) {
+        enqueue(db -> db.delete(TABLE_CACHE, "category = ? AND asset_key = ?", new String[]{category, key}));
+    }
+
+    public void touchEntry(String category, String key) {
+        long now = System.currentTimeMillis();
+        enqueue(db -> {
+            ContentValues values = new ContentValues();
+            values.put("last_access", now);
+            db.update(TABLE_CACHE, values, "category = ? AND asset_key = ?", new String[]{category, key});
+        });
+    }
+
+    public void setPinned(String category, String key, boolean pinned) {
+        enqueue(db -> {
+            ContentValues values = new ContentValues();
+            values.put("pinned", pinned ? 1 : 0);
+            db.update(TABLE_CACHE, values, "category = ? AND asset_key = ?", new String[]{category, key});
+        });
+    }
+
+    public boolean hasEntry(String category, String key) {
+        try (Cursor cursor = getReadableDatabase().rawQuery(
+                "SELECT 1 FROM " + TABLE_CACHE + " WHERE category = ? AND asset_key = ?",
+                new String[]{category, key})) {
+            return cursor.moveToFirst();
+        }
+    }
+
+    public String getEntryPath(String category, String key) {
+        try (Cursor cursor = getReadableDatabase().rawQuery(
+                "SELECT path FROM " + TABLE_CACHE + " WHERE category = ? AND asset_key = ?",
+                new String[]{category, key})) {
+            return cursor.moveToFirst() ? cursor.getString(0) : null;
+        }
+    }
+
+    public JSONArray getKeys(String category) {
+        JSONArray keys = new JSONArray();
+        try (Cursor cursor = getReadableDatabase().rawQuery(
+                "SELECT asset_key FROM " + TABLE_CACHE + " WHERE category = ? ORDER BY asset_key",
+                new String[]{category})) {
+            while (cursor.moveToNext()) {
+                keys.put(cursor.getString(0));
+            }
+        }
+        return keys;
+    }
+
+    // Entry count, total bytes and pinned bytes per category
+    public JSONObject getStats() {
+        flushNow();
+        JSONObject stats = new JSONObject();
+        try (Cursor cursor = getReadableDatabase().rawQuery(
+                "SELECT category, COUNT(*), SUM(size), SUM(CASE WHEN pinned = 1 THEN size ELSE 0 END) FROM "
+                    + TABLE_CACHE + " GROUP BY category", null)) {
+            while (cursor.moveToNext()) {
+                JSONObject category = new JSONObject();
+                category.put("count", cursor.getInt(1));
+                category.put("bytes", cursor.getLong(2));
+                category.put("pinnedBytes", cursor.getLong(3));
+                stats.put(cursor.getString(0), category);
+            }
+        } catch (JSONException e) {
+            Log.e(TAG, "Error building stats", e);
+        }
+        return stats;
+    }
+
+    // Total bytes recorded for a category, or for everything when category is null
+    public long getTotalBytes(String category) {
+        flushNow();
+        String sql = "SELECT SUM(size) FROM " + TABLE_CACHE + (category != null ? " WHERE category = ?" : "");
+        try (Cursor cursor = getReadableDatabase().rawQuery(sql, category != null ? new String[]{category} : null)) {
+            return cursor.moveToFirst() ? cursor.getLong(0) : 0;
+        }
+    }
+
+    // Least recently used unpinned entries, oldest first. Served by idx_cache_lru, or
+    // idx_cache_access when a category is given.
+    public List<Entry> getEvictionCandidates(String category, int limit) {
+        flushNow();
+        String sql = "SELECT category, asset_key, path, size FROM " + TABLE_CACHE
+            + " WHERE pinned = 0" + (category != null ? " AND category = ?" : "")
+            + " ORDER BY last_access LIMIT " + limit;
+        List<Entry> entries = new ArrayList<>();
+        try (Cursor cursor = getReadableDatabase().rawQuery(sql, category != null ? new String[]{category} : null)) {
+            while (cursor.moveToNext()) {
+                entries.add(new Entry(cursor.getString(0), cursor.getString(1), cursor.getString(2), cursor.getLong(3)));
+            }
+        }
+        return entries;
+    }
+
+    public static class Entry {
+        final String category;
+        final String key;
+        final String path;
+        final long size;
+
+        Entry(String category, String key, String path, long size) {
+            this.category = category;
+            this.key = key;
+            this.path = path;
+            this.size = size;
+        }
+    }
+
+    // --- Bookmarks ---
+
+    public void addBookmark(int page, String surahName) {
+        long now = System.currentTimeMillis();
+        enqueue(db -> {
+            ContentValues values = new ContentValues();
+            values.put("page", page);
+            values.put("surah_name", surahName);
+            values.put("created_at", now);
+            db.insertWithOnConflict(TABLE_BOOKMARKS, null, values, SQLiteDatabase.CONFLICT_IGNORE);
+        });
+    }
+
+    public void removeBookmark(int page) {
+        enqueue(db -> db.delete(TABLE_BOOKMARKS, "page = ?", new String[]{String.valueOf(page)}));
+    }
+
+    public boolean isBookmarked(int page) {
+        // A bookmark added a moment ago may still be queued
+        flushNow();
+        try (Cursor cursor = getReadableDatabase().rawQuery(
+                "SELECT 1 FROM " + TABLE_BOOKMARKS + " WHERE page = ?",
+                new String[]{String.valueOf(page)})) {
+            return cursor.moveToFirst();
+        }
+    }
+
+    // Same shape as the QuranBookmark objects in quran-bookmarks.ts
+    public JSONArray getBookmarks() {
+        flushNow();
+        JSONArray bookmarks = new JSONArray();
+        try (Cursor cursor = getReadableDatabase().rawQuery(
+                "SELECT page, surah_name, created_at FROM " + TABLE_BOOKMARKS + " ORDER BY created_at", null)) {
+            while (cursor.moveToNext()) {
+                JSONObject bookmark = new JSONObject();
+                bookmark.put("pageNumber", cursor.getInt(0));
+                if (!cursor.isNull(1)) {
+                    bookmark.put("surahName", cursor.getString(1));
+                }
+                bookmark.put("timestamp", cursor.getLong(2));
+                bookmarks.put(bookmark);
+            }
+        } catch (JSONException e) {
+            Log.e(TAG, "Error reading bookmarks", e);
+        }
+        return bookmarks;
+    }
+
+    // One-time import of the localStorage bookmark list
+    public void importBookmarks(JSONArray bookmarks) {
+        enqueue(db -> {
+            for (int i = 0; i < bookmarks.length(); i++) {
+                JSONObject bookmark = bookmarks.optJSONObject(i);
+                if (bookmark == null || !QuranMetadata.isValidPage(bookmark.optInt("pageNumber"))) {
+                    continue;
+                }
+                ContentValues values = new ContentValues();
+                values.put("page", bookmark.optInt("pageNumber"));
+                if (bookmark.has("surahName")) {
+                    values.put("surah_name", bookmark.optString("surahName"));
+                }
+                values.put("created_at", bookmark.optLong("timestamp", System.currentTimeMillis()));
+                db.insertWithOnConflict(TABLE_BOOKMARKS, null, values, SQLiteDatabase.CONFLICT_IGNORE);
+            }
+        });
+    }
+
+    // --- Catalog ---
+
+    // Upsert rows fetched from PostgREST and record how far the sync has got.
+    // watermark is the newest updated_at seen, or null when the table has none.
+    public void putCatalogRows(String catalog, List<JSONObject> rows, String watermark, long syncedAt) {
+        enqueue(db -> {
+            for (JSONObject row : rows) {
+                ContentValues values = new ContentValues();
+                values.put("catalog", catalog);
+                values.put("id", row.optString("id"));
+                values.put("created_at", row.isNull("created_at") ? null : row.optString("created_at"));
+                values.put("updated_at", row.isNull("updated_at") ? null : row.optString("updated_at"));
+                values.put("data", row.toString());
+                db.insertWithOnConflict(TABLE_CATALOG, null, values, SQLiteDatabase.CONFLICT_REPLACE);
+            }
+            ContentValues sync = new ContentValues();
+            sync.put("watermark", watermark);
+            sync.put("synced_at", syncedAt);
+            int updated = db.update(TABLE_CATALOG_SYNC, sync, "catalog = ?", new String[]{catalog});
+            if (updated == 0) {
+                sync.put("catalog", catalog);
+                db.insert(TABLE_CATALOG_SYNC, null, sync);
+            }
+        });
+    }
+
+    // Drop rows deleted on the server: everything not in ids
+    public void retainCatalogRows(String catalog, Set<String> ids, long reconciledAt) {
+        enqueue(db -> {
+            List<String> stale = new ArrayList<>();
+            try (Cursor cursor = db.rawQuery(
+                    "SELECT id FROM " + TABLE_CATALOG + " WHERE catalog = ?", new String[]{catalog})) {
+                while (cursor.moveToNext()) {
+                    if (!ids.contains(cursor.getString(0))) {
+                        stale.add(cursor.getString(0));
+                    }
+                }
+            }
+            for (String id : stale) {
+                db.delete(TABLE_CATALOG, "catalog = ? AND id = ?", new String[]{catalog, id});
+            }
+            ContentValues sync = new ContentValues();
+            sync.put("reconciled_at", reconciledAt);
+            db.update(TABLE_CATALOG_SYNC, sync, "catalog = ?", new String[]{catalog});
+        });
+    }
+
+    // Sync state of a catalog, or null if it has never been synced
+    public CatalogSync getCatalogSync(String catalog) {
+        flushNow();
+        try (Cursor cursor = getReadableDatabase().rawQuery(
+                "SELECT watermark, synced_at, reconciled_at FROM " + TABLE_CATALOG_SYNC + " WHERE catalog = ?",
+                new String[]{catalog})) {
+            return cursor.moveToFirst()
+                ? new CatalogSync(cursor.getString(0), cursor.getLong(1), cursor.getLong(2)) : null;
+        }
+    }
+
+    // Every row of a catalog, ordered by created_at or updated_at through their
+    // indexes. Catalogs are small, so filtering is left to the caller.
+    public List<JSONObject> getCatalogRows(String catalog, String orderColumn, boolean descending) {
+        flushNow();
+        String sql = "SELECT data FROM " + TABLE_CATALOG + " WHERE catalog = ? ORDER BY "
+            + ("updated_at".equals(orderColumn) ? "updated_at" : "created_at") + (descending ? " DESC" : "")
+            + ", id";
+        List<JSONObject> rows = new ArrayList<>();
+        try (Cursor cursor = getReadableDatabase().rawQuery(sql, new String[]{catalog})) {
+            while (cursor.moveToNext()) {
+                rows.add(new JSONObject(cursor.getString(0)));
+            }
+        } catch (JSONException e) {
+            Log.e(TAG, "Error reading catalog " + catalog, e);
+        }
+        return rows;
+    }
+
+    public static class CatalogSync {
+        final String watermark;
+        final long syncedAt;
+        final long reconciledAt;
+
+        CatalogSync(String watermark, long syncedAt, long reconciledAt) {
+            this.watermark = watermark;
+            this.syncedAt = syncedAt;
+            this.reconciledAt = reconciledAt;
+        }
+    }
+
+    // --- Write batching ---
+
+    private void enqueue(WriteOp op) {
+        synchronized (pendingWrites) {
+            pendingWrites.add(op);
+            if (flushScheduled) {
+                return;
+            }
+            flushScheduled = true;
+        }
+        writeHandler.postDelayed(this::flush, FLUSH_DELAY_MS);
+    }
+
+    // Apply queued writes now so a read that follows sees them. Cheap when the queue
+    // is empty.
+    void flushNow() {
+        synchronized (pendingWrites) {
+            if (pendingWrites.isEmpty()) {
+                return;
+            }
+        }
+        flush();
+    }
+
+    // Taking the batch and committing it happen under one lock, so batches land in
+    // the order they were queued even when a reader forces a flush
+    private void flush() {
+        synchronized (flushLock) {
+            List<WriteOp> batch;
+            synchronized (pendingWrites) {
+                batch = new ArrayList<>(pendingWrites);
+                pendingWrites.clear();
+                flushScheduled = false;
+            }
+            if (batch.isEmpty()) {
+                return;
+            }
+
+            SQLiteDatabase db = getWritableDatabase();
+            if (!apply(db, batch) && batch.size() > 1) {
+                // One write failed and rolled the others back with it; apply them
+                // one at a time so only the bad one is lost
+                for (WriteOp op : batch) {
+                    apply(db, Collections.singletonList(op));
+                }
+            }
+        }
+    }
+
+    // All or none of ops, in one transaction
+    private static boolean apply(SQLiteDatabase db, List<WriteOp> ops) {
+        db.beginTransaction();
+        try {
+            for (WriteOp op : ops) {
+                op.apply(db);
+            }
+            db.setTransactionSuccessful();
+            return true;
+        } catch (Exception e) {
+            Log.e(TAG, "Error applying " + ops.size() + " index writes", e);
+            return false;
+        } finally {
+            db.endTransaction();
+        }
+    }
+
+    private void backfillExistingAssets() {
+        AssetDownloader downloader = AssetDownloader.getInstance(context);
+        for (AssetDownloader.AssetType type : AssetDownloader.AssetType.values()) {
+            File root = downloader.getDirectory(type);
+            backfillDirectory(type.name(), root, root);
+        }
+    }
+
+    private void backfillDirectory(String category, File root, File dir) {
+        File[] files = dir.listFiles();
+        if (files == null) {
+            return;
+        }
+        for (File file : files) {
+            if (file.isDirectory()) {
+                backfillDirectory(category, root, file);
+            } else if (!file.getName().endsWith(".part")) {
+                String key = file.getAbsolutePath().substring(root.getAbsolutePath().length() + 1);
+                recordEntry(category, key, file, null);
+            }
+        }
+    }
+}
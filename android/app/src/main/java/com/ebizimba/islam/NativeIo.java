@@ -0,0 +1,138 @@
+package com.ebizimba.islam;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.util.concurrent.ArrayBlockingQueue;
+
+// Shared copy path for bytes coming off the network. Buffers are pooled and sized
+// as a whole number of flash pages, each read fills a buffer before it is written,
+// so the file sees few large writes through its FileChannel, and the data is forced
+// to storage once when the file is complete rather than never or per write.
+//
+// Buffers are heap ByteBuffers on purpose: InputStream can only read into a
+// byte[], and with the backing array the same bytes feed the digest and the
+// channel without another copy.
+final class NativeIo {
+    // 16 flash pages of 4 KB
+    static final int BUFFER_SIZE = 64 * 1024;
+    // Enough for every download connection plus a couple of small reads
+    private static final int POOL_CAPACITY = 10;
+
+    private static final ArrayBlockingQueue<ByteBuffer> pool = new ArrayBlockingQueue<>(POOL_CAPACITY);
+
+    private NativeIo() {}
+
+    static ByteBuffer acquire() {
+        ByteBuffer buffer = pool.poll();
+        if (buffer == null) {
+            NativeMetrics.increment(NativeMetrics.Counter.IO_BUFFER_ALLOCATIONS);
+            return ByteBuffer.allocate(BUFFER_SIZE);
+        }
+        return buffer;
+    }
+
+    // Past the pool's capacity the buffer is simply dropped
+    static void release(ByteBuffer buffer) {
+        buffer.clear();
+        pool.offer(buffer);
+    }
+
+    // Write everything input yields to file, hashing it with digest if one is
+    // given, and sync it before returning. Returns the number of bytes written.
+    static long copyToFile(InputStream input, File file, MessageDigest digest) throws IOException {
+        ByteBuffer buffer = acquire();
+        try (FileOutputStream output = new FileOutputStream(file)) {
+            FileChannel channel = output.getChannel();
+            byte[] array = buffer.array();
+            long written = 0;
+            int filled;
+            while ((filled = fill(input, array)) > 0) {
+                if (digest != null) {
+                    digest.update(array, 0, filled);
+                }
+                buffer.clear();
+                buffer.limit(filled);
+                while (buffer.hasRemaining()) {
+                    channel.write(buffer);
+                    NativeMetrics.increment(NativeMetrics.Counter.IO_WRITES);
+                }
+                written += filled;
+            }
+            channel.force(false);
+            NativeMetrics.increment(NativeMetrics.Counter.IO_SYNCS);
+            return written;
+        } finally {
+            release(buffer);
+        }
+    }
+
+    // Small bodies (JSON, manifests) read through a pooled buffer
+    static String readString(InputStream input) throws IOException {
+        return new String(readBytes(input), StandardCharsets.UTF_8);
+    }
+
+    static byte[] readBytes(InputStream input) throws IOException {
+        ByteBuffer buffer = acquire();
+        try {
+            ByteArrayOutputStream output = new ByteArrayOutputStream();
+            byte[] array = buffer.array();
+            int read;
+            while ((read = input.read(array)) != -1) {
+                output.write(array, 0, read);
+            }
+            return output.toByteArray();
+        } finally {
+            release(buffer);
+        }
+    }
+
+    // Streams a buffer's remaining bytes without copying them out first; used to
+    // hand memory-mapped data to a WebResourceResponse
+    static InputStream asInputStream(ByteBuffer source) {
+        ByteBuffer buffer = source.duplicate();
+        return new InputStream() {
+            @Override
+            public int read() {
+                return buffer.hasRemaining() ? buffer.get() & 0xFF : -1;
+            }
+
+            @Override
+            public int read(byte[] b, int off, int len) {
+                if (len == 0) {
+                    return 0;
+                }
+                if (!buffer.hasRemaining()) {
+                    return -1;
+                }
+                int count = Math.min(len, buffer.remaining());
+                buffer.get(b, off, count);
+                return count;
+            }
+
+            @Override
+            public int available() {
+                return buffer.remaining();
+            }
+        };
+    }
+
+    // Read until the array is full or the stream ends; 0 means end of stream
+    private static int fill(InputStream input, byte[] array) throws IOException {
+        int filled = 0;
+        while (filled < array.length) {
+            int read = input.read(array, filled, array.length - filled);
+            if (read == -1) {
+                break;
+            }
+            filled += read;
+        }
+        return filled;
+    }
+}
@@ -0,0 +1,219 @@
+package com.ebizimba.islam;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+// Process-wide runtime metrics for the native layer: counters, gauges and latency
+// histograms. Every metric is declared up front in the enums below and stored in
+// preallocated atomic arrays, so recording never allocates or locks and is cheap
+// enough for hot paths (bridge calls, cache lookups, each download).
+//
+// Histograms are HDR-style log-linear: values are bucketed by power of two and
+// then by SUB_BUCKETS linear steps within it, which bounds the relative error of
+// any percentile to about 1/SUB_BUCKETS from a microsecond up to hours.
+//
+// snapshot() is the only allocating call; it backs the getNativeMetrics bridge
+// method and the debug overlay.
+public final class NativeMetrics {
+    public enum Counter {
+        DOWNLOAD_REQUESTS,
+        DOWNLOAD_FAILURES,
+        DOWNLOAD_BYTES,
+        MIRROR_FALLBACKS,
+        CONCURRENCY_BACKOFFS,
+        ASSET_CACHE_HITS,
+        ASSET_CACHE_MISSES,
+        AUDIO_CACHE_HITS,
+        AUDIO_CACHE_MISSES,
+        RENDER_CACHE_HITS,
+        RENDER_CACHE_MISSES,
+        BRIDGE_CALLS,
+        BRIDGE_EVENTS,
+        NATIVE_ROUTE_REQUESTS,
+        EVICTED_FILES,
+        EVICTED_BYTES,
+        IO_BUFFER_ALLOCATIONS,
+        IO_WRITES,
+        IO_SYNCS,
+        WEB_ASSET_WARM_HITS,
+        PAGE_TURNS,
+        PAGE_TURNS_COALESCED,
+        CATALOG_STALE_HITS,
+        CATALOG_SYNC_ROWS,
+        VIDEO_PROXY_REQUESTS,
+        VIDEO_CACHE_HITS,
+        VIDEO_CACHE_MISSES
+    }
+
+    public enum Gauge {
+        DOWNLOADS_IN_FLIGHT,
+        DOWNLOADS_PENDING,
+        PAGE_CONCURRENCY_LIMIT,
+        DISK_USED_BYTES,
+        DISK_BUDGET_BYTES,
+        DEVICE_FREE_BYTES
+    }
+
+    public enum Timer {
+        DOWNLOAD_FILE,
+        BRIDGE_CALL,
+        NATIVE_ROUTE,
+        BOOK_RENDER,
+        SEARCH_QUERY,
+        STORAGE_ENFORCE,
+        WEB_ASSET_WARM_UP,
+        WEB_ENTRY_FETCH,
+        WEB_ENTRY_COMPILE,
+        CATALOG_SYNC
+    }
+
+    // Values are in microseconds; 2^36 us is about 19 hours
+    private static final int SUB_BUCKET_BITS = 4;
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+    private static final int MAGNITUDES = 36 - SUB_BUCKET_BITS + 1;
+    private static final int BUCKETS = (MAGNITUDES + 1) * SUB_BUCKETS;
+    private static final double[] PERCENTILES = {50, 90, 95, 99, 99.9};
+
+    private static final AtomicLongArray counters = new AtomicLongArray(Counter.values().length);
+    private static final AtomicLongArray gauges = new AtomicLongArray(Gauge.values().length);
+    private static final AtomicLongArray histograms = new AtomicLongArray(Timer.values().length * BUCKETS);
+    // Per timer: count, sum, max (microseconds)
+    private static final AtomicLongArray timerTotals = new AtomicLongArray(Timer.values().length * 3);
+    private static volatile long startedAt = System.currentTimeMillis();
+
+    private NativeMetrics() {}
+
+    public static void increment(Counter counter) {
+        counters.incrementAndGet(counter.ordinal());
+    }
+
+    public static void add(Counter counter, long delta) {
+        counters.addAndGet(counter.ordinal(), delta);
+    }
+
+    public static long get(Counter counter) {
+        return counters.get(counter.ordinal());
+    }
+
+    public static void set(Gauge gauge, long value) {
+        gauges.set(gauge.ordinal(), value);
+    }
+
+    // Timestamp to pass to stop() when the operation ends
+    public static long start() {
+        return System.nanoTime();
+    }
+
+    public static void stop(Timer timer, long startNanos) {
+        record(timer, (System.nanoTime() - startNanos) / 1000);
+    }
+
+    public static void record(Timer timer, long micros) {
+        long value = Math.max(0, micros);
+        histograms.incrementAndGet(timer.ordinal() * BUCKETS + bucketIndex(value));
+        int base = timer.ordinal() * 3;
+        timerTotals.incrementAndGet(base);
+        timerTotals.addAndGet(base + 1, value);
+        long max;
+        while (value > (max = timerTotals.get(base + 2)) && !timerTotals.compareAndSet(base + 2, max, value)) {
+            // retry until the max is ours or someone recorded a larger one
+        }
+    }
+
+    public static void reset() {
+        for (int i = 0; i < counters.length(); i++) counters.set(i, 0);
+        for (int i = 0; i < histograms.length(); i++) histograms.set(i, 0);
+        for (int i = 0; i < timerTotals.length(); i++) timerTotals.set(i, 0);
+        startedAt = System.currentTimeMillis();
+    }
+
+    // Values below SUB_BUCKETS get exact buckets; above that, the top
+    // SUB_BUCKET_BITS bits after the leading one pick the linear step
+    static int bucketIndex(long value) {
+        if (value < SUB_BUCKETS) {
+            return (int) value;
+        }
+        int magnitude = 63 - Long.numberOfLeadingZeros(value) - SUB_BUCKET_BITS + 1;
+        if (magnitude > MAGNITUDES) {
+            return BUCKETS - 1;
+        }
+        int sub = (int) (value >>> (magnitude - 1)) & (SUB_BUCKETS - 1);
+        return magnitude * SUB_BUCKETS + sub;
+    }
+
+    // Upper bound of the values a bucket holds
+    static long bucketUpperBound(int index) {
+        int magnitude = index / SUB_BUCKETS;
+        int sub = index % SUB_BUCKETS;
+        if (magnitude == 0) {
+            return sub;
+        }
+        return ((long) (SUB_BUCKETS + sub + 1) << (magnitude - 1)) - 1;
+    }
+
+    public static JSONObject snapshot() {
+        JSONObject snapshot = new JSONObject();
+        try {
+            snapshot.put("uptimeMillis", System.currentTimeMillis() - startedAt);
+
+            JSONObject counterValues = new JSONObject();
+            for (Counter counter : Counter.values()) {
+                counterValues.put(counter.name(), counters.get(counter.ordinal()));
+            }
+            snapshot.put("counters", counterValues);
+
+            JSONObject gaugeValues = new JSONObject();
+            for (Gauge gauge : Gauge.values()) {
+                gaugeValues.put(gauge.name(), gauges.get(gauge.ordinal()));
+            }
+            snapshot.put("gauges", gaugeValues);
+
+            JSONObject timers = new JSONObject();
+            for (Timer timer : Timer.values()) {
+                timers.put(timer.name(), timerSnapshot(timer));
+            }
+            snapshot.put("timersMicros", timers);
+        } catch (JSONException e) {
+            // Keys are fixed and values are numbers; nothing here can fail
+        }
+        return snapshot;
+    }
+
+    private static JSONObject timerSnapshot(Timer timer) throws JSONException {
+        int base = timer.ordinal() * 3;
+        long count = timerTotals.get(base);
+        JSONObject json = new JSONObject();
+        json.put("count", count);
+        json.put("mean", count > 0 ? timerTotals.get(base + 1) / count : 0);
+        json.put("max", timerTotals.get(base + 2));
+
+        long[] buckets = new long[BUCKETS];
+        long total = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            buckets[i] = histograms.get(timer.ordinal() * BUCKETS + i);
+            total += buckets[i];
+        }
+        for (double percentile : PERCENTILES) {
+            json.put("p" + (percentile == Math.rint(percentile) ? String.valueOf((int) percentile) : String.valueOf(percentile)),
+                valueAt(buckets, total, percentile));
+        }
+        return json;
+    }
+
+    private static long valueAt(long[] buckets, long total, double percentile) {
+        if (total == 0) {
+            return 0;
+        }
+        long rank = (long) Math.ceil(percentile / 100 * total);
+        long seen = 0;
+        for (int i = 0; i < buckets.length; i++) {
+            seen += buckets[i];
+            if (seen >= rank) {
+                return bucketUpperBound(i);
+            }
+        }
+        return bucketUpperBound(buckets.length - 1);
+    }
+}
@@ -0,0 +1,116 @@
+package com.ebizimba.islam;
+
+import android.net.Uri;
+import android.util.Log;
+import android.webkit.WebResourceRequest;
+import android.webkit.WebResourceResponse;
+import android.webkit.WebView;
+
+import com.getcapacitor.Bridge;
+import com.getcapacitor.BridgeWebViewClient;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+// Serves native content to the WebView under /_native/<route>/... on the app's own
+// origin. Using a path on the Capacitor origin rather than a custom scheme keeps
+// these URLs same-origin, so <img>, fetch() and <video> accept them without CORS
+// or mixed-content rules getting in the way. Everything else falls through to
+// Capacitor's local server.
+public class NativeRequestRouter extends BridgeWebViewClient {
+    private static final String TAG = "NativeRequestRouter";
+    static final String PATH_PREFIX = "_native";
+
+    public interface RouteHandler {
+        // segments are the path segments after /_native/<route>/
+        WebResourceResponse handle(WebResourceRequest request, List<String> segments);
+    }
+
+    private final Map<String, RouteHandler> routes = new ConcurrentHashMap<>();
+    private final Bridge bridge;
+    private volatile WebAssetServer assetServer;
+
+    public NativeRequestRouter(Bridge bridge) {
+        super(bridge);
+        this.bridge = bridge;
+    }
+
+    public void register(String route, RouteHandler handler) {
+        routes.put(route, handler);
+    }
+
+    // Takes over the bundle's /assets/ files from Capacitor's local server
+    void setAssetServer(WebAssetServer assetServer) {
+        this.assetServer = assetServer;
+    }
+
+    @Override
+    public WebResourceResponse shouldInterceptRequest(WebView view, WebResourceRequest request) {
+        List<String> segments = request.getUrl().getPathSegments();
+        if (segments.size() >= 2 && PATH_PREFIX.equals(segments.get(0))) {
+            RouteHandler handler = routes.get(segments.get(1));
+            if (handler != null) {
+                NativeMetrics.increment(NativeMetrics.Counter.NATIVE_ROUTE_REQUESTS);
+                long started = NativeMetrics.start();
+                try {
+                    WebResourceResponse response = handler.handle(request, segments.subList(2, segments.size()));
+                    return response != null ? response : error(404, "Not Found");
+                } catch (Exception e) {
+                    Log.e(TAG, "Error serving " + request.getUrl(), e);
+                    return error(500, "Internal Error");
+                } finally {
+                    NativeMetrics.stop(NativeMetrics.Timer.NATIVE_ROUTE, started);
+                }
+            }
+        }
+        WebAssetServer assets = assetServer;
+        if (assets != null && segments.size() >= 2 && WebAssetServer.ASSETS_SEGMENT.equals(segments.get(0))
+                && "GET".equals(request.getMethod()) && isAppOrigin(request.getUrl())) {
+            WebResourceResponse response = assets.serve(segments);
+            if (response != null) {
+                return response;
+            }
+        }
+        return super.shouldInterceptRequest(view, request);
+    }
+
+    // Only the bundle's own /assets/, not same-named paths on remote hosts
+    private boolean isAppOrigin(Uri url) {
+        String local = bridge.getLocalUrl();
+        return local != null && url.getHost() != null && url.getHost().equals(Uri.parse(local).getHost());
+    }
+
+    static WebResourceResponse bytes(String mimeType, byte[] data, String cacheControl) {
+        Map<String, String> headers = new HashMap<>();
+        headers.put("Content-Length", String.valueOf(data.length));
+        if (cacheControl != null) {
+            headers.put("Cache-Control", cacheControl);
+        }
+        return new WebResourceResponse(mimeType, null, 200, "OK", headers, new ByteArrayInputStream(data));
+    }
+
+    static WebResourceResponse json(String body) {
+        return bytes("application/json", body.getBytes(StandardCharsets.UTF_8), "no-store");
+    }
+
+    static WebResourceResponse error(int status, String reason) {
+        return new WebResourceResponse("text/plain", "utf-8", status, reason, new HashMap<>(),
+            new ByteArrayInputStream(reason.getBytes(StandardCharsets.UTF_8)));
+    }
+
+    static int intParam(Uri url, String name, int fallback) {
+        String value = url.getQueryParameter(name);
+        if (value == null) {
+            return fallback;
+        }
+        try {
+            return Integer.parseInt(value);
+        } catch (NumberFormatException e) {
+            return fallback;
+        }
+    }
+}
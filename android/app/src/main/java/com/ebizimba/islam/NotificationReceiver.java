@@ -0,0 +1,34 @@
+package com.ebizimba.islam;
+
+import android.content.BroadcastReceiver;
+import android.content.Context;
+import android.content.Intent;
+
+// Wakes NotificationScheduler when its batch alarm fires, and re-arms the queue
+// after anything that clears or invalidates alarms: reboot, app update, or a
+// clock or time zone change (prayer alerts are wall-clock times).
+public class NotificationReceiver extends BroadcastReceiver {
+    static final String ACTION_FIRE = "com.ebizimba.islam.notifications.FIRE";
+
+    @Override
+    public void onReceive(Context context, Intent intent) {
+        String action = intent.getAction();
+        if (action == null) {
+            return;
+        }
+        NotificationScheduler scheduler = NotificationScheduler.getInstance(context);
+        PendingResult result = goAsync();
+        switch (action) {
+            case ACTION_FIRE:
+                scheduler.onAlarm(result::finish);
+                break;
+            case Intent.ACTION_TIMEZONE_CHANGED:
+            case Intent.ACTION_TIME_CHANGED:
+                // The prayer table is keyed on the zone; rebuild it before re-queueing
+                PrayerTimeTable.getInstance(context).ensureFresh(() -> scheduler.refresh(result::finish));
+                break;
+            default:
+                scheduler.refresh(result::finish);
+        }
+    }
+}
@@ -0,0 +1,447 @@
+package com.ebizimba.islam;
+
+import android.app.AlarmManager;
+import android.app.NotificationChannel;
+import android.app.NotificationManager;
+import android.app.PendingIntent;
+import android.content.Context;
+import android.content.Intent;
+import android.content.SharedPreferences;
+import android.os.Build;
+import android.util.Log;
+
+import androidx.core.app.NotificationCompat;
+import androidx.core.app.NotificationManagerCompat;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+// Local notifications (prayer alerts, story prompts, book reminders) scheduled
+// without the WebView. Upcoming notifications are kept in a persistent queue and
+// the whole queue is backed by a single alarm: each entry has a window
+// [fireAt - flex, fireAt + flex], the alarm is set for the earliest window end, and
+// when it goes off every entry whose window has opened is posted together. Nearby
+// notifications therefore share one wake-up. Prayer alerts have no flex and are the
+// only entries that use exact alarms.
+//
+// The queue lives in files/notification-queue.json so NotificationReceiver can
+// re-arm it after a reboot or an app update.
+public class NotificationScheduler {
+    private static final String TAG = "NotificationScheduler";
+    private static final String PREFS_NAME = "NotificationPrefs";
+    private static final String QUEUE_FILE = "notification-queue.json";
+
+    public static final String KIND_PRAYER = "prayer";
+    public static final String KIND_STORY = "story";
+    public static final String KIND_BOOK = "book";
+
+    static final String EXTRA_TYPE = "notificationType";
+    static final String EXTRA_TARGET = "notificationTarget";
+
+    private static final String CHANNEL_PRAYER = "prayer_times";
+    private static final String CHANNEL_REMINDERS = "reminders";
+
+    private static final long MINUTE = 60 * 1000L;
+    private static final long HOUR = 60 * MINUTE;
+    private static final long RETURN_DELAY = 5 * MINUTE;
+    private static final long RETURN_FLEX = 2 * MINUTE;
+    private static final long BOOK_INTERVAL = 24 * HOUR;
+    private static final long BOOK_FLEX = HOUR;
+    // Prayer alerts are generated this far ahead; the rest of the year is in
+    // PrayerTimeTable and gets queued as the window moves
+    private static final int PRAYER_DAYS_AHEAD = 2;
+    // Ids from NATIVE_ID_BASE up belong to notifications queued here; the web app
+    // keeps below it for the stories it schedules
+    static final int NATIVE_ID_BASE = 1_000_000;
+    private static final int RETURN_PROMPT_ID = NATIVE_ID_BASE;
+    private static final int BOOK_REMINDER_ID = NATIVE_ID_BASE + 1;
+    private static final int PRAYER_ID_BASE = NATIVE_ID_BASE + 100;
+    private static final int[] ALERT_PRAYERS = {
+        PrayerTimeCalculator.FAJR, PrayerTimeCalculator.DHUHR, PrayerTimeCalculator.ASR,
+        PrayerTimeCalculator.MAGHRIB, PrayerTimeCalculator.ISHA
+    };
+    private static final String[] PRAYER_TITLES = {"Fajr", "Sunrise", "Dhuhr", "Asr", "Maghrib", "Isha"};
+
+    private static NotificationScheduler instance;
+
+    private final Context context;
+    private final SharedPreferences prefs;
+    private final AlarmManager alarmManager;
+    // Every queue change runs here, so the queue needs no locking
+    private final ExecutorService executor = Executors.newSingleThreadExecutor();
+    private final Random random = new Random();
+
+    private List<Entry> queue;
+
+    static class Entry {
+        int id;
+        String kind;
+        String title;
+        String body;
+        String target;
+        long fireAt;
+        long flex;
+
+        long windowStart() {
+            return fireAt - flex;
+        }
+
+        long windowEnd() {
+            return fireAt + flex;
+        }
+
+        JSONObject toJson() throws JSONException {
+            JSONObject json = new JSONObject();
+            json.put("id", id);
+            json.put("kind", kind);
+            json.put("title", title);
+            json.put("body", body);
+            json.put("target", target);
+            json.put("fireAt", fireAt);
+            json.put("flex", flex);
+            return json;
+        }
+
+        static Entry fromJson(JSONObject json) {
+            Entry entry = new Entry();
+            entry.id = json.optInt("id");
+            entry.kind = json.optString("kind", KIND_STORY);
+            entry.title = json.optString("title");
+            entry.body = json.optString("body");
+            entry.target = json.optString("target", null);
+            entry.fireAt = json.optLong("fireAt");
+            entry.flex = Math.max(0, json.optLong("flex"));
+            return entry;
+        }
+    }
+
+    public static synchronized NotificationScheduler getInstance(Context context) {
+        if (instance == null) {
+            instance = new NotificationScheduler(context.getApplicationContext());
+        }
+        return instance;
+    }
+
+    private NotificationScheduler(Context context) {
+        this.context = context;
+        this.prefs = context.getSharedPreferences(PREFS_NAME, Context.MODE_PRIVATE);
+        this.alarmManager = (AlarmManager) context.getSystemService(Context.ALARM_SERVICE);
+        createChannels();
+    }
+
+    public boolean isPrayerAlertsEnabled() {
+        return prefs.getBoolean("prayerAlerts", false);
+    }
+
+    public void setPrayerAlertsEnabled(boolean enabled) {
+        prefs.edit().putBoolean("prayerAlerts", enabled).apply();
+        refresh(null);
+    }
+
+    // Items the web app offers for story prompts and book reminders:
+    // [{id, body}, ...]. Kept so reminders can be built while the WebView is gone.
+    public void setContent(String kind, JSONArray items) {
+        prefs.edit().putString("content_" + kind, items.toString()).apply();
+    }
+
+    // Add or replace a one-off notification
+    public void schedule(Entry entry) {
+        executor.execute(() -> {
+            List<Entry> entries = loadQueue();
+            removeById(entries, entry.id);
+            entries.add(entry);
+            commit(entries);
+        });
+    }
+
+    // Drop queued notifications of a kind, or all of them when kind is null
+    public void cancel(String kind) {
+        executor.execute(() -> {
+            List<Entry> entries = loadQueue();
+            entries.removeIf(entry -> kind == null || kind.equals(entry.kind));
+            commit(entries);
+        });
+    }
+
+    // Called from MainActivity.onPause: queue the "come back" story prompt and,
+    // at most once a day, a book reminder
+    public void onAppBackgrounded() {
+        executor.execute(() -> {
+            List<Entry> entries = loadQueue();
+            long now = System.currentTimeMillis();
+
+            dropReturnPrompt(entries);
+            entries.add(returnPrompt(pickContent(KIND_STORY), now));
+
+            JSONObject book = pickContent(KIND_BOOK);
+            if (book != null && now - prefs.getLong("lastBookReminder", 0) >= BOOK_INTERVAL) {
+                Entry reminder = new Entry();
+                reminder.id = BOOK_REMINDER_ID;
+                reminder.kind = KIND_BOOK;
+                reminder.title = "Ekitabo Ekipya Ekulindirira!";
+                reminder.body = book.optString("body");
+                reminder.target = book.optString("id");
+                reminder.fireAt = now + BOOK_INTERVAL;
+                reminder.flex = BOOK_FLEX;
+                removeById(entries, reminder.id);
+                entries.add(reminder);
+                prefs.edit().putLong("lastBookReminder", now).apply();
+            }
+            commit(entries);
+        });
+    }
+
+    // The user is back; a pending "come back" prompt would only be noise
+    public void onAppForegrounded() {
+        executor.execute(() -> {
+            List<Entry> entries = loadQueue();
+            if (dropReturnPrompt(entries)) {
+                commit(entries);
+            }
+        });
+    }
+
+    // Regenerate prayer alerts, drop stale entries and re-arm the alarm. Used after
+    // boot, time changes and settings changes.
+    public void refresh(Runnable onDone) {
+        executor.execute(() -> {
+            commit(loadQueue());
+            if (onDone != null) {
+                onDone.run();
+            }
+        });
+    }
+
+    // Alarm fired: post every entry whose window has opened, then arm the next batch
+    void onAlarm(Runnable onDone) {
+        executor.execute(() -> {
+            List<Entry> entries = loadQueue();
+            long now = System.currentTimeMillis();
+            List<Entry> due = new ArrayList<>();
+            for (Iterator<Entry> it = entries.iterator(); it.hasNext(); ) {
+                Entry entry = it.next();
+                if (entry.windowStart() <= now) {
+                    due.add(entry);
+                    it.remove();
+                }
+            }
+            for (Entry entry : due) {
+                post(entry);
+            }
+            Log.d(TAG, "Posted " + due.size() + " notifications in one batch");
+            commit(entries);
+            if (onDone != null) {
+                onDone.run();
+            }
+        });
+    }
+
+    private void commit(List<Entry> entries) {
+        long now = System.currentTimeMillis();
+        // Anything more than a window late (device was off) is no longer useful
+        entries.removeIf(entry -> entry.windowEnd() + RETURN_FLEX < now);
+        entries.removeIf(entry -> KIND_PRAYER.equals(entry.kind));
+        if (isPrayerAlertsEnabled()) {
+            addPrayerAlerts(entries, now);
+        }
+        entries.sort((a, b) -> Long.compare(a.fireAt, b.fireAt));
+        queue = entries;
+        saveQueue(entries);
+        arm(entries);
+    }
+
+    private void addPrayerAlerts(List<Entry> entries, long now) {
+        PrayerTimeTable table = PrayerTimeTable.getInstance(context);
+        ZoneId zone = ZoneId.systemDefault();
+        LocalDate today = LocalDate.now(zone);
+        for (int d = 0; d < PRAYER_DAYS_AHEAD; d++) {
+            LocalDate date = today.plusDays(d);
+            int[] times = table.getTimes(date);
+            long midnight = date.atStartOfDay(zone).toInstant().toEpochMilli();
+            for (int prayer : ALERT_PRAYERS) {
+                if (times[prayer] == PrayerTimeCalculator.UNAVAILABLE) {
+                    continue;
+                }
+                long fireAt = midnight + times[prayer] * MINUTE;
+                if (fireAt <= now) {
+                    continue;
+                }
+                Entry entry = new Entry();
+                entry.id = PRAYER_ID_BASE + (int) (date.toEpochDay() % 1000) * PrayerTimeCalculator.TIME_COUNT + prayer;
+                entry.kind = KIND_PRAYER;
+                entry.title = PRAYER_TITLES[prayer];
+                entry.body = String.format("It's time for %s (%02d:%02d)", PRAYER_TITLES[prayer],
+                    times[prayer] / 60, times[prayer] % 60);
+                entry.target = PrayerTimeCalculator.TIME_NAMES[prayer];
+                entry.fireAt = fireAt;
+                entries.add(entry);
+            }
+        }
+    }
+
+    // One alarm for the whole queue, at the earliest window end. Exact only when
+    // that batch contains something time-critical.
+    private void arm(List<Entry> entries) {
+        PendingIntent alarmIntent = PendingIntent.getBroadcast(context, 0,
+            new Intent(context, NotificationReceiver.class).setAction(NotificationReceiver.ACTION_FIRE),
+            PendingIntent.FLAG_IMMUTABLE | PendingIntent.FLAG_UPDATE_CURRENT);
+        if (entries.isEmpty()) {
+            alarmManager.cancel(alarmIntent);
+            return;
+        }
+
+        long triggerAt = Long.MAX_VALUE;
+        for (Entry entry : entries) {
+            triggerAt = Math.min(triggerAt, entry.windowEnd());
+        }
+        boolean exact = false;
+        for (Entry entry : entries) {
+            if (entry.windowStart() <= triggerAt && entry.flex == 0) {
+                exact = true;
+                break;
+            }
+        }
+
+        if (exact && canScheduleExact()) {
+            alarmManager.setExactAndAllowWhileIdle(AlarmManager.RTC_WAKEUP, triggerAt, alarmIntent);
+        } else {
+            alarmManager.setAndAllowWhileIdle(AlarmManager.RTC_WAKEUP, triggerAt, alarmIntent);
+        }
+    }
+
+    private boolean canScheduleExact() {
+        return Build.VERSION.SDK_INT < Build.VERSION_CODES.S || alarmManager.canScheduleExactAlarms();
+    }
+
+    private void post(Entry entry) {
+        NotificationManagerCompat manager = NotificationManagerCompat.from(context);
+        if (!manager.areNotificationsEnabled()) {
+            return;
+        }
+        boolean prayer = KIND_PRAYER.equals(entry.kind);
+        if (KIND_BOOK.equals(entry.kind)) {
+            prefs.edit().putLong("lastBookReminder", System.currentTimeMillis()).apply();
+        }
+
+        Intent open = new Intent(context, MainActivity.class)
+            .setFlags(Intent.FLAG_ACTIVITY_NEW_TASK | Intent.FLAG_ACTIVITY_SINGLE_TOP)
+            .putExtra(EXTRA_TYPE, entry.kind)
+            .putExtra(EXTRA_TARGET, entry.target);
+        PendingIntent contentIntent = PendingIntent.getActivity(context, entry.id, open,
+            PendingIntent.FLAG_IMMUTABLE | PendingIntent.FLAG_UPDATE_CURRENT);
+
+        try {
+            manager.notify(entry.id, new NotificationCompat.Builder(context, prayer ? CHANNEL_PRAYER : CHANNEL_REMINDERS)
+                .setSmallIcon(R.drawable.ic_notification)
+                .setContentTitle(entry.title)
+                .setContentText(entry.body)
+                .setContentIntent(contentIntent)
+                .setCategory(prayer ? NotificationCompat.CATEGORY_ALARM : NotificationCompat.CATEGORY_REMINDER)
+                .setPriority(prayer ? NotificationCompat.PRIORITY_HIGH : NotificationCompat.PRIORITY_DEFAULT)
+                .setWhen(entry.fireAt)
+                .setAutoCancel(true)
+                .build());
+        } catch (SecurityException e) {
+            // POST_NOTIFICATIONS revoked between the check and the post
+            Log.w(TAG, "Notification permission missing: " + e.getMessage());
+        }
+    }
+
+    private JSONObject pickContent(String kind) {
+        try {
+            JSONArray items = new JSONArray(prefs.getString("content_" + kind, "[]"));
+            return items.length() == 0 ? null : items.optJSONObject(random.nextInt(items.length()));
+        } catch (JSONException e) {
+            return null;
+        }
+    }
+
+    // The "come back" prompt queued when the app goes to the background, built
+    // around one of the stories the web app offered (or a generic one)
+    static Entry returnPrompt(JSONObject story, long now) {
+        Entry prompt = new Entry();
+        prompt.id = RETURN_PROMPT_ID;
+        prompt.kind = KIND_STORY;
+        prompt.title = "Emboozi Empya Ekulindirira!";
+        prompt.body = story != null ? story.optString("body") : "Komawo osome emboozi empya!";
+        prompt.target = story != null ? story.optString("id", "1") : "1";
+        prompt.fireAt = now + RETURN_DELAY;
+        prompt.flex = RETURN_FLEX;
+        return prompt;
+    }
+
+    // Remove a pending return prompt, leaving story notifications the web app
+    // scheduled under its own ids alone
+    static boolean dropReturnPrompt(List<Entry> entries) {
+        return removeById(entries, RETURN_PROMPT_ID);
+    }
+
+    private static boolean removeById(List<Entry> entries, int id) {
+        return entries.removeIf(entry -> entry.id == id);
+    }
+
+    private List<Entry> loadQueue() {
+        if (queue != null) {
+            return new ArrayList<>(queue);
+        }
+        List<Entry> entries = new ArrayList<>();
+        File file = new File(context.getFilesDir(), QUEUE_FILE);
+        if (file.exists()) {
+            try {
+                JSONArray array = new JSONArray(new String(Files.readAllBytes(file.toPath()), StandardCharsets.UTF_8));
+                for (int i = 0; i < array.length(); i++) {
+                    entries.add(Entry.fromJson(array.getJSONObject(i)));
+                }
+            } catch (IOException | JSONException e) {
+                Log.w(TAG, "Discarding unreadable notification queue: " + e.getMessage());
+            }
+        }
+        return entries;
+    }
+
+    private void saveQueue(List<Entry> entries) {
+        File file = new File(context.getFilesDir(), QUEUE_FILE);
+        File temp = new File(file.getPath() + ".tmp");
+        try (FileOutputStream output = new FileOutputStream(temp)) {
+            JSONArray array = new JSONArray();
+            for (Entry entry : entries) {
+                array.put(entry.toJson());
+            }
+            output.write(array.toString().getBytes(StandardCharsets.UTF_8));
+        } catch (IOException | JSONException e) {
+            Log.e(TAG, "Error writing notification queue", e);
+            temp.delete();
+            return;
+        }
+        if (!temp.renameTo(file)) {
+            temp.delete();
+        }
+    }
+
+    private void createChannels() {
+        NotificationManager manager = (NotificationManager) context.getSystemService(Context.NOTIFICATION_SERVICE);
+        NotificationChannel prayer = new NotificationChannel(
+            CHANNEL_PRAYER, "Prayer times", NotificationManager.IMPORTANCE_HIGH);
+        prayer.setDescription("Alerts at the start of each prayer time");
+        manager.createNotificationChannel(prayer);
+        NotificationChannel reminders = new NotificationChannel(
+            CHANNEL_REMINDERS, "Reminders", NotificationManager.IMPORTANCE_DEFAULT);
+        reminders.setDescription("New stories and books to read");
+        manager.createNotificationChannel(reminders);
+    }
+}
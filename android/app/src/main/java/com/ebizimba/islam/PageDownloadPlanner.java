@@ -0,0 +1,156 @@
+package com.ebizimba.islam;
+
+import android.content.Context;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.util.BitSet;
+
+// Turns surah, juz', hizb and page selections into the mushaf pages that still
+// need downloading. Selections are OR-ed into one BitSet, so overlapping ranges
+// cost nothing, and the pages already on disk are subtracted using a second
+// BitSet kept in memory. That set is seeded once from NativeIndex and then kept
+// current by AssetDownloader (stored pages) and StorageGovernor (evictions), so
+// planning never stats a file. Bit n is page n; bit 0 is unused.
+final class PageDownloadPlanner {
+    private static PageDownloadPlanner instance;
+
+    private final NativeIndex index;
+    // Guarded by this; null until first needed
+    private BitSet stored;
+
+    static synchronized PageDownloadPlanner getInstance(Context context) {
+        if (instance == null) {
+            instance = new PageDownloadPlanner(context.getApplicationContext());
+        }
+        return instance;
+    }
+
+    private PageDownloadPlanner(Context context) {
+        this.index = NativeIndex.getInstance(context);
+    }
+
+    // selections: [{"type": "surah" | "juz" | "hizb" | "page", "from": n, "to": m}],
+    // with "to" defaulting to "from". Throws IllegalArgumentException on anything
+    // out of range.
+    static BitSet resolve(JSONArray selections) throws JSONException {
+        BitSet pages = new BitSet(QuranMetadata.PAGE_COUNT + 1);
+        for (int i = 0; i < selections.length(); i++) {
+            JSONObject selection = selections.getJSONObject(i);
+            String type = selection.getString("type");
+            int from = selection.getInt("from");
+            int to = selection.optInt("to", from);
+            if (to < from) {
+                throw new IllegalArgumentException("Invalid " + type + " range " + from + "-" + to);
+            }
+            switch (type) {
+                case "surah":
+                    if (!QuranMetadata.isValidSurah(from) || !QuranMetadata.isValidSurah(to)) {
+                        throw new IllegalArgumentException("Invalid surah range " + from + "-" + to);
+                    }
+                    pages.set(QuranMetadata.getSurahStartPage(from), QuranMetadata.getSurahEndPage(to) + 1);
+                    break;
+                case "juz":
+                    if (!QuranMetadata.isValidJuz(from) || !QuranMetadata.isValidJuz(to)) {
+                        throw new IllegalArgumentException("Invalid juz range " + from + "-" + to);
+                    }
+                    pages.set(QuranMetadata.getJuzStartPage(from), QuranMetadata.getJuzEndPage(to) + 1);
+                    break;
+                case "hizb":
+                    if (!QuranMetadata.isValidHizb(from) || !QuranMetadata.isValidHizb(to)) {
+                        throw new IllegalArgumentException("Invalid hizb range " + from + "-" + to);
+                    }
+                    pages.set(QuranMetadata.getHizbStartPage(from), QuranMetadata.getHizbEndPage(to) + 1);
+                    break;
+                case "page":
+                    if (!QuranMetadata.isValidPage(from) || !QuranMetadata.isValidPage(to)) {
+                        throw new IllegalArgumentException("Invalid page range " + from + "-" + to);
+                    }
+                    pages.set(from, to + 1);
+                    break;
+                default:
+                    throw new IllegalArgumentException("Unknown selection type " + type);
+            }
+        }
+        return pages;
+    }
+
+    // The requested pages that are not on disk yet
+    synchronized BitSet missing(BitSet requested) {
+        BitSet missing = (BitSet) requested.clone();
+        missing.andNot(getStored());
+        return missing;
+    }
+
+    void onPageStored(String relativePath) {
+        int page = pageFromKey(relativePath);
+        if (page > 0) {
+            synchronized (this) {
+                getStored().set(page);
+            }
+        }
+    }
+
+    void onPageRemoved(String relativePath) {
+        int page = pageFromKey(relativePath);
+        if (page > 0) {
+            synchronized (this) {
+                getStored().clear(page);
+            }
+        }
+    }
+
+    private BitSet getStored() {
+        if (stored == null) {
+            stored = new BitSet(QuranMetadata.PAGE_COUNT + 1);
+            JSONArray keys = index.getKeys(AssetDownloader.AssetType.PAGE_IMAGE.name());
+            for (int i = 0; i < keys.length(); i++) {
+                int page = pageFromKey(keys.optString(i));
+                if (page > 0) {
+                    stored.set(page);
+                }
+            }
+        }
+        return stored;
+    }
+
+    // "007.png" -> 7; -1 for anything that isn't a page image key
+    static int pageFromKey(String key) {
+        if (key == null || key.length() != 7 || !key.endsWith(".png")) {
+            return -1;
+        }
+        try {
+            int page = Integer.parseInt(key.substring(0, 3));
+            return QuranMetadata.isValidPage(page) ? page : -1;
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    // [[first, last], ...] for each run of set bits
+    static JSONArray toRanges(BitSet pages) {
+        JSONArray ranges = new JSONArray();
+        for (int start = pages.nextSetBit(0); start >= 0; ) {
+            int end = pages.nextClearBit(start);
+            ranges.put(new JSONArray().put(start).put(end - 1));
+            start = pages.nextSetBit(end);
+        }
+        return ranges;
+    }
+
+    // What downloading the selection would fetch, for the UI to show before starting
+    JSONObject describe(BitSet requested) {
+        BitSet missing = missing(requested);
+        JSONObject plan = new JSONObject();
+        try {
+            plan.put("requested", requested.cardinality());
+            plan.put("missing", missing.cardinality());
+            plan.put("missingRanges", toRanges(missing));
+        } catch (JSONException e) {
+            // Keys are fixed and values are numbers or arrays; nothing here can fail
+        }
+        return plan;
+    }
+}
@@ -0,0 +1,162 @@
+package com.ebizimba.islam;
+
+import android.os.Handler;
+import android.os.Looper;
+import android.os.Process;
+import android.os.SystemClock;
+import android.view.KeyEvent;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+// Turns mushaf pages with the volume keys while the Quran reader is open. The
+// reader reports the page it shows (attach/detach through the bridge); from then
+// on volume down goes forward and volume up goes back, decided here without asking
+// the web app.
+//
+// The first press of a burst is delivered at once. Presses that follow within
+// BURST_WINDOW_MS are folded into one target that is delivered when the window
+// closes, and a burst (or a held key) moves further per press the longer it goes
+// on. Before each delivery the target and the next pages in the same direction are
+// handed to QuranPageRoute to read ahead, and the web app gets one message with
+// the page to show.
+//
+// While recitation audio is playing the volume keys are left alone, so the
+// listener can still turn it up or down; pausing it gives them back to paging.
+final class PageTurnController {
+    private static final long BURST_WINDOW_MS = 180;
+    // Presses at each step size before it doubles, and the largest step
+    private static final int PRESSES_PER_STEP = 4;
+    private static final int MAX_STEP = 8;
+    private static final int PREFETCH_AHEAD = 2;
+
+    public interface Listener {
+        // Called on the main thread with the page the reader should show
+        void onPageTurn(int page);
+    }
+
+    private final QuranPageRoute pages;
+    private final Listener listener;
+    private final Handler handler = new Handler(Looper.getMainLooper());
+    private final ExecutorService prefetchExecutor = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(() -> {
+            Process.setThreadPriority(Process.THREAD_PRIORITY_BACKGROUND);
+            runnable.run();
+        }, "page-turn-prefetch");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private final Runnable deliverPending = this::deliver;
+
+    // Everything below is touched on the main thread only
+    // Page the reader shows or was last told to show; 0 when no reader is attached
+    private int page;
+    private int target;
+    private int direction;
+    private int burst;
+    private long lastPressAt;
+    private long lastDeliveredAt;
+    private boolean pending;
+
+    PageTurnController(QuranPageRoute pages, Listener listener) {
+        this.pages = pages;
+        this.listener = listener;
+    }
+
+    // The reader is showing this page; safe to call from any thread
+    void attach(int shownPage) {
+        handler.post(() -> {
+            if (!QuranMetadata.isValidPage(shownPage)) {
+                return;
+            }
+            boolean wasAttached = page != 0;
+            page = shownPage;
+            if (!pending) {
+                target = shownPage;
+            }
+            if (!wasAttached) {
+                prefetch(shownPage, 1);
+            }
+        });
+    }
+
+    void detach() {
+        handler.post(() -> {
+            handler.removeCallbacks(deliverPending);
+            page = 0;
+            target = 0;
+            pending = false;
+            burst = 0;
+        });
+    }
+
+    // Returns true when the key was used to turn pages; the caller should then not
+    // pass it on, so the volume doesn't change as well
+    boolean onKeyEvent(KeyEvent event) {
+        int keyCode = event.getKeyCode();
+        if (page == 0 || (keyCode != KeyEvent.KEYCODE_VOLUME_DOWN && keyCode != KeyEvent.KEYCODE_VOLUME_UP)) {
+            return false;
+        }
+        if (QuranAudioPlaybackService.isReciting()) {
+            // Drop a burst in progress rather than finish it after the audio stops
+            burst = 0;
+            return false;
+        }
+        if (event.getAction() != KeyEvent.ACTION_DOWN) {
+            return true;
+        }
+
+        int pressDirection = keyCode == KeyEvent.KEYCODE_VOLUME_DOWN ? 1 : -1;
+        long now = SystemClock.uptimeMillis();
+        boolean continuing = pressDirection == direction
+            && (event.getRepeatCount() > 0 || now - lastPressAt <= BURST_WINDOW_MS);
+        burst = continuing ? burst + 1 : 0;
+        direction = pressDirection;
+        lastPressAt = now;
+
+        int step = Math.min(MAX_STEP, 1 << (burst / PRESSES_PER_STEP));
+        int next = Math.max(1, Math.min(QuranMetadata.PAGE_COUNT, target + direction * step));
+        if (next == target) {
+            return true;
+        }
+        target = next;
+
+        if (pending) {
+            NativeMetrics.increment(NativeMetrics.Counter.PAGE_TURNS_COALESCED);
+            return true;
+        }
+        long sinceDelivery = now - lastDeliveredAt;
+        if (sinceDelivery >= BURST_WINDOW_MS) {
+            deliver();
+        } else {
+            pending = true;
+            handler.postDelayed(deliverPending, BURST_WINDOW_MS - sinceDelivery);
+        }
+        return true;
+    }
+
+    private void deliver() {
+        pending = false;
+        if (page == 0 || target == page) {
+            return;
+        }
+        page = target;
+        lastDeliveredAt = SystemClock.uptimeMillis();
+        NativeMetrics.increment(NativeMetrics.Counter.PAGE_TURNS);
+        prefetch(page, direction);
+        listener.onPageTurn(page);
+    }
+
+    private void prefetch(int from, int towards) {
+        List<Integer> ahead = new ArrayList<>(PREFETCH_AHEAD + 1);
+        for (int i = 0; i <= PREFETCH_AHEAD; i++) {
+            int candidate = from + towards * i;
+            if (QuranMetadata.isValidPage(candidate)) {
+                ahead.add(candidate);
+            }
+        }
+        prefetchExecutor.execute(() -> pages.prefetch(ahead));
+    }
+}
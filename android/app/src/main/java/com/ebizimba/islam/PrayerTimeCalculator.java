@@ -0,0 +1,143 @@
+package com.ebizimba.islam;
+
+// Astronomical prayer-time calculation (sun declination and equation of time from
+// the Julian day, as in the PrayTimes reference algorithm). Pure arithmetic with no
+// Android dependencies so a whole year can be computed in one pass on a
+// background thread.
+public final class PrayerTimeCalculator {
+    // Order of the times in every result array
+    public static final int FAJR = 0;
+    public static final int SUNRISE = 1;
+    public static final int DHUHR = 2;
+    public static final int ASR = 3;
+    public static final int MAGHRIB = 4;
+    public static final int ISHA = 5;
+    public static final int TIME_COUNT = 6;
+    public static final String[] TIME_NAMES = {"fajr", "sunrise", "dhuhr", "asr", "maghrib", "isha"};
+    // A time that doesn't occur on that date, such as sunset during polar day
+    public static final int UNAVAILABLE = -1;
+
+    // Sun altitude at sunrise/sunset, accounting for refraction and the solar disc
+    private static final double RISE_SET_ANGLE = 0.833;
+
+    public enum Method {
+        // fajr angle, isha angle, or isha as fixed minutes after maghrib when ishaMinutes > 0
+        MWL(18, 17, 0),
+        ISNA(15, 15, 0),
+        EGYPT(19.5, 17.5, 0),
+        MAKKAH(18.5, 0, 90),
+        KARACHI(18, 18, 0);
+
+        final double fajrAngle;
+        final double ishaAngle;
+        final int ishaMinutes;
+
+        Method(double fajrAngle, double ishaAngle, int ishaMinutes) {
+            this.fajrAngle = fajrAngle;
+            this.ishaAngle = ishaAngle;
+            this.ishaMinutes = ishaMinutes;
+        }
+    }
+
+    private PrayerTimeCalculator() {}
+
+    // Minutes after local midnight for each time. timezoneHours is the UTC offset in
+    // effect on that date.
+    public static int[] compute(int year, int month, int day, double latitude, double longitude,
+                                double timezoneHours, Method method, boolean hanafiAsr) {
+        double jDate = julianDate(year, month, day) - longitude / (15 * 24.0);
+
+        double fajr = sunAngleTime(jDate, latitude, method.fajrAngle, 5 / 24.0, true);
+        double sunrise = sunAngleTime(jDate, latitude, RISE_SET_ANGLE, 6 / 24.0, true);
+        double dhuhr = midDay(jDate, 12 / 24.0);
+        double asr = asrTime(jDate, latitude, hanafiAsr ? 2 : 1, 13 / 24.0);
+        double maghrib = sunAngleTime(jDate, latitude, RISE_SET_ANGLE, 18 / 24.0, false);
+        double isha = method.ishaMinutes > 0
+            ? maghrib + method.ishaMinutes / 60.0
+            : sunAngleTime(jDate, latitude, method.ishaAngle, 18 / 24.0, false);
+
+        // Near the poles twilight angles may never be reached; fall back to a share
+        // of the night proportional to the angle
+        double night = 24 + sunrise - maghrib;
+        if (Double.isNaN(fajr) || sunrise - fajr > method.fajrAngle / 60 * night) {
+            fajr = sunrise - method.fajrAngle / 60 * night;
+        }
+        if (method.ishaMinutes == 0 && (Double.isNaN(isha) || isha - maghrib > method.ishaAngle / 60 * night)) {
+            isha = maghrib + method.ishaAngle / 60 * night;
+        }
+
+        double[] hours = {fajr, sunrise, dhuhr, asr, maghrib, isha};
+        int[] minutes = new int[TIME_COUNT];
+        double shift = timezoneHours - longitude / 15;
+        for (int i = 0; i < TIME_COUNT; i++) {
+            minutes[i] = Double.isNaN(hours[i])
+                ? UNAVAILABLE
+                : (int) Math.round(fixHour(hours[i] + shift) * 60) % (24 * 60);
+        }
+        return minutes;
+    }
+
+    static double julianDate(int year, int month, int day) {
+        if (month <= 2) {
+            year -= 1;
+            month += 12;
+        }
+        double a = Math.floor(year / 100.0);
+        double b = 2 - a + Math.floor(a / 4);
+        return Math.floor(365.25 * (year + 4716)) + Math.floor(30.6001 * (month + 1)) + day + b - 1524.5;
+    }
+
+    // {declination, equation of time} for a Julian date
+    private static double[] sunPosition(double jd) {
+        double d = jd - 2451545.0;
+        double g = fixAngle(357.529 + 0.98560028 * d);
+        double q = fixAngle(280.459 + 0.98564736 * d);
+        double l = fixAngle(q + 1.915 * dSin(g) + 0.020 * dSin(2 * g));
+        double e = 23.439 - 0.00000036 * d;
+
+        double ra = dArcTan2(dCos(e) * dSin(l), dCos(l)) / 15;
+        double equation = q / 15 - fixHour(ra);
+        double declination = dArcSin(dSin(e) * dSin(l));
+        return new double[]{declination, equation};
+    }
+
+    private static double midDay(double jDate, double time) {
+        double equation = sunPosition(jDate + time)[1];
+        return fixHour(12 - equation);
+    }
+
+    // Time at which the sun is the given angle below the horizon; counterClockwise
+    // selects the morning side of noon
+    private static double sunAngleTime(double jDate, double latitude, double angle, double time, boolean counterClockwise) {
+        double declination = sunPosition(jDate + time)[0];
+        double noon = midDay(jDate, time);
+        double t = dArcCos((-dSin(angle) - dSin(declination) * dSin(latitude))
+            / (dCos(declination) * dCos(latitude))) / 15;
+        return noon + (counterClockwise ? -t : t);
+    }
+
+    // Asr: shadow length is factor times the object's height plus its noon shadow
+    private static double asrTime(double jDate, double latitude, int factor, double time) {
+        double declination = sunPosition(jDate + time)[0];
+        double angle = -dArcCot(factor + dTan(Math.abs(latitude - declination)));
+        return sunAngleTime(jDate, latitude, angle, time, false);
+    }
+
+    private static double dSin(double d) { return Math.sin(Math.toRadians(d)); }
+    private static double dCos(double d) { return Math.cos(Math.toRadians(d)); }
+    private static double dTan(double d) { return Math.tan(Math.toRadians(d)); }
+    private static double dArcSin(double x) { return Math.toDegrees(Math.asin(x)); }
+    private static double dArcCos(double x) { return Math.toDegrees(Math.acos(x)); }
+    private static double dArcTan2(double y, double x) { return Math.toDegrees(Math.atan2(y, x)); }
+    private static double dArcCot(double x) { return Math.toDegrees(Math.atan(1 / x)); }
+
+    private static double fixAngle(double a) {
+        a = a - 360 * Math.floor(a / 360);
+        return a < 0 ? a + 360 : a;
+    }
+
+    private static double fixHour(double h) {
+        h = h - 24 * Math.floor(h / 24);
+        return h < 0 ? h + 24 : h;
+    }
+}
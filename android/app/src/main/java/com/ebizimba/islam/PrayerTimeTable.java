@@ -0,0 +1,328 @@
+package com.ebizimba.islam;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.icu.util.Calendar;
+import android.icu.util.IslamicCalendar;
+import android.os.Handler;
+import android.os.Looper;
+import android.util.Log;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.time.ZoneId;
+import java.util.Date;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+// A year of prayer times and Hijri dates for the user's location, computed in one
+// batch and kept as a compact binary table (16 bytes per day). The web app and the
+// native prayer alarms both read from it instead of recalculating. The table is
+// rebuilt when location, method or time zone change, or when it gets within a
+// month of running out.
+//
+// File layout: magic, version, latitude, longitude, method, hanafi flag, zone id,
+// first epoch day, day count, then per day six minute-of-day shorts (see
+// PrayerTimeCalculator; -1 for UNAVAILABLE) and the Hijri date packed as
+// year << 9 | month << 5 | day.
+public class PrayerTimeTable {
+    private static final String TAG = "PrayerTimeTable";
+    private static final String PREFS_NAME = "PrayerPrefs";
+    private static final String TABLE_FILE = "prayer-times.bin";
+    private static final int MAGIC = 0x50545442; // "PTTB"
+    private static final int VERSION = 2;
+    private static final int TABLE_DAYS = 366;
+    private static final int REFRESH_MARGIN_DAYS = 30;
+
+    // Kampala, until the web app supplies the user's location
+    private static final double DEFAULT_LATITUDE = 0.3476;
+    private static final double DEFAULT_LONGITUDE = 32.5825;
+
+    private static PrayerTimeTable instance;
+
+    private final Context context;
+    private final SharedPreferences prefs;
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+    private final ExecutorService executor = Executors.newSingleThreadExecutor();
+
+    // Loaded table; replaced as a whole after each rebuild
+    private volatile Table table;
+
+    private static class Table {
+        float latitude;
+        float longitude;
+        int method;
+        boolean hanafi;
+        String zoneId;
+        long firstDay;
+        short[] minutes;
+        int[] hijri;
+
+        int dayCount() {
+            return hijri.length;
+        }
+
+        boolean covers(long epochDay) {
+            return epochDay >= firstDay && epochDay < firstDay + dayCount();
+        }
+    }
+
+    public static synchronized PrayerTimeTable getInstance(Context context) {
+        if (instance == null) {
+            instance = new PrayerTimeTable(context.getApplicationContext());
+        }
+        return instance;
+    }
+
+    private PrayerTimeTable(Context context) {
+        this.context = context;
+        this.prefs = context.getSharedPreferences(PREFS_NAME, Context.MODE_PRIVATE);
+    }
+
+    public double getLatitude() {
+        return Double.longBitsToDouble(prefs.getLong("latitude", Double.doubleToLongBits(DEFAULT_LATITUDE)));
+    }
+
+    public double getLongitude() {
+        return Double.longBitsToDouble(prefs.getLong("longitude", Double.doubleToLongBits(DEFAULT_LONGITUDE)));
+    }
+
+    public PrayerTimeCalculator.Method getMethod() {
+        try {
+            return PrayerTimeCalculator.Method.valueOf(prefs.getString("method", "MWL"));
+        } catch (IllegalArgumentException e) {
+            return PrayerTimeCalculator.Method.MWL;
+        }
+    }
+
+    public boolean isHanafi() {
+        return prefs.getBoolean("hanafi", false);
+    }
+
+    public void configure(double latitude, double longitude, PrayerTimeCalculator.Method method,
+                          boolean hanafi, Runnable onReady) {
+        prefs.edit()
+            .putLong("latitude", Double.doubleToLongBits(latitude))
+            .putLong("longitude", Double.doubleToLongBits(longitude))
+            .putString("method", method.name())
+            .putBoolean("hanafi", hanafi)
+            .apply();
+        ensureFresh(onReady);
+    }
+
+    // Load the stored table and rebuild it in the background if it no longer
+    // matches the settings or is about to run out
+    public void ensureFresh(Runnable onReady) {
+        executor.execute(() -> {
+            if (table == null) {
+                table = readTable();
+            }
+            if (needsRebuild(table)) {
+                Table rebuilt = build(LocalDate.now().minusDays(1));
+                writeTable(rebuilt);
+                table = rebuilt;
+                Log.d(TAG, "Built " + rebuilt.dayCount() + " days of prayer times");
+            }
+            if (onReady != null) {
+                mainHandler.post(onReady);
+            }
+        });
+    }
+
+    // Minutes after midnight for each prayer on the date, from the table when it
+    // covers the date and computed directly otherwise
+    public int[] getTimes(LocalDate date) {
+        Table current = table;
+        long epochDay = date.toEpochDay();
+        if (current != null && current.covers(epochDay) && matchesSettings(current)) {
+            int offset = (int) (epochDay - current.firstDay) * PrayerTimeCalculator.TIME_COUNT;
+            int[] times = new int[PrayerTimeCalculator.TIME_COUNT];
+            for (int i = 0; i < times.length; i++) {
+                times[i] = current.minutes[offset + i];
+            }
+            return times;
+        }
+        return computeTimes(date, ZoneId.systemDefault());
+    }
+
+    public int getPackedHijri(LocalDate date) {
+        Table current = table;
+        long epochDay = date.toEpochDay();
+        if (current != null && current.covers(epochDay)) {
+            return current.hijri[(int) (epochDay - current.firstDay)];
+        }
+        return computeHijri(date);
+    }
+
+    // {date, hijri: {day, month, year}, times: {fajr: "05:29", ...}, minutes: [...]}.
+    // A time that doesn't occur that day is null in times and -1 in minutes.
+    public JSONObject getDay(LocalDate date) {
+        JSONObject day = new JSONObject();
+        try {
+            int[] times = getTimes(date);
+            JSONObject named = new JSONObject();
+            JSONArray minutes = new JSONArray();
+            for (int i = 0; i < times.length; i++) {
+                named.put(PrayerTimeCalculator.TIME_NAMES[i], times[i] == PrayerTimeCalculator.UNAVAILABLE
+                    ? JSONObject.NULL
+                    : String.format("%02d:%02d", times[i] / 60, times[i] % 60));
+                minutes.put(times[i]);
+            }
+            day.put("date", date.toString());
+            day.put("hijri", hijriJson(getPackedHijri(date)));
+            day.put("times", named);
+            day.put("minutes", minutes);
+        } catch (JSONException e) {
+            Log.e(TAG, "Error building prayer day", e);
+        }
+        return day;
+    }
+
+    static JSONObject hijriJson(int packed) throws JSONException {
+        JSONObject hijri = new JSONObject();
+        hijri.put("year", packed >> 9);
+        hijri.put("month", (packed >> 5) & 0xF);
+        hijri.put("day", packed & 0x1F);
+        return hijri;
+    }
+
+    private boolean needsRebuild(Table current) {
+        if (current == null || !matchesSettings(current)) {
+            return true;
+        }
+        long refreshBy = LocalDate.now().plusDays(REFRESH_MARGIN_DAYS).toEpochDay();
+        return !current.covers(LocalDate.now().toEpochDay()) || !current.covers(refreshBy);
+    }
+
+    private boolean matchesSettings(Table current) {
+        return current.latitude == (float) getLatitude()
+            && current.longitude == (float) getLongitude()
+            && current.method == getMethod().ordinal()
+            && current.hanafi == isHanafi()
+            && current.zoneId.equals(ZoneId.systemDefault().getId());
+    }
+
+    private Table build(LocalDate start) {
+        ZoneId zone = ZoneId.systemDefault();
+        Table built = new Table();
+        built.latitude = (float) getLatitude();
+        built.longitude = (float) getLongitude();
+        built.method = getMethod().ordinal();
+        built.hanafi = isHanafi();
+        built.zoneId = zone.getId();
+        built.firstDay = start.toEpochDay();
+        built.minutes = new short[TABLE_DAYS * PrayerTimeCalculator.TIME_COUNT];
+        built.hijri = new int[TABLE_DAYS];
+
+        IslamicCalendar islamic = newIslamicCalendar();
+        for (int d = 0; d < TABLE_DAYS; d++) {
+            LocalDate date = start.plusDays(d);
+            int[] times = computeTimes(date, zone);
+            for (int i = 0; i < times.length; i++) {
+                built.minutes[d * PrayerTimeCalculator.TIME_COUNT + i] = (short) times[i];
+            }
+            built.hijri[d] = computeHijri(islamic, date, zone);
+        }
+        return built;
+    }
+
+    private int[] computeTimes(LocalDate date, ZoneId zone) {
+        // Offset at local noon so DST transitions land on the right side
+        double offsetHours = zone.getRules().getOffset(date.atTime(LocalTime.NOON).atZone(zone).toInstant())
+            .getTotalSeconds() / 3600.0;
+        return PrayerTimeCalculator.compute(date.getYear(), date.getMonthValue(), date.getDayOfMonth(),
+            getLatitude(), getLongitude(), offsetHours, getMethod(), isHanafi());
+    }
+
+    private static IslamicCalendar newIslamicCalendar() {
+        // Umm al-Qura, the same calendar hijri-converter uses on the web side
+        IslamicCalendar islamic = new IslamicCalendar();
+        islamic.setCalculationType(IslamicCalendar.CalculationType.ISLAMIC_UMALQURA);
+        return islamic;
+    }
+
+    private static int computeHijri(LocalDate date) {
+        return computeHijri(newIslamicCalendar(), date, ZoneId.systemDefault());
+    }
+
+    private static int computeHijri(IslamicCalendar islamic, LocalDate date, ZoneId zone) {
+        islamic.setTime(Date.from(date.atTime(LocalTime.NOON).atZone(zone).toInstant()));
+        int year = islamic.get(Calendar.YEAR);
+        int month = islamic.get(Calendar.MONTH) + 1;
+        int day = islamic.get(Calendar.DAY_OF_MONTH);
+        return year << 9 | month << 5 | day;
+    }
+
+    private Table readTable() {
+        File file = new File(context.getFilesDir(), TABLE_FILE);
+        if (!file.exists()) {
+            return null;
+        }
+        try (DataInputStream input = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+            if (input.readInt() != MAGIC || input.readInt() != VERSION) {
+                return null;
+            }
+            Table loaded = new Table();
+            loaded.latitude = input.readFloat();
+            loaded.longitude = input.readFloat();
+            loaded.method = input.readByte();
+            loaded.hanafi = input.readBoolean();
+            loaded.zoneId = input.readUTF();
+            loaded.firstDay = input.readLong();
+            int days = input.readShort();
+            loaded.minutes = new short[days * PrayerTimeCalculator.TIME_COUNT];
+            loaded.hijri = new int[days];
+            for (int d = 0; d < days; d++) {
+                for (int i = 0; i < PrayerTimeCalculator.TIME_COUNT; i++) {
+                    loaded.minutes[d * PrayerTimeCalculator.TIME_COUNT + i] = input.readShort();
+                }
+                loaded.hijri[d] = input.readInt();
+            }
+            return loaded;
+        } catch (IOException e) {
+            Log.w(TAG, "Discarding unreadable prayer table: " + e.getMessage());
+            return null;
+        }
+    }
+
+    private void writeTable(Table built) {
+        File file = new File(context.getFilesDir(), TABLE_FILE);
+        File temp = new File(file.getPath() + ".tmp");
+        try (DataOutputStream output = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(temp)))) {
+            output.writeInt(MAGIC);
+            output.writeInt(VERSION);
+            output.writeFloat(built.latitude);
+            output.writeFloat(built.longitude);
+            output.writeByte(built.method);
+            output.writeBoolean(built.hanafi);
+            output.writeUTF(built.zoneId);
+            output.writeLong(built.firstDay);
+            output.writeShort(built.dayCount());
+            for (int d = 0; d < built.dayCount(); d++) {
+                for (int i = 0; i < PrayerTimeCalculator.TIME_COUNT; i++) {
+                    output.writeShort(built.minutes[d * PrayerTimeCalculator.TIME_COUNT + i]);
+                }
+                output.writeInt(built.hijri[d]);
+            }
+        } catch (IOException e) {
+            Log.e(TAG, "Error writing prayer table", e);
+            temp.delete();
+            return;
+        }
+        if (!temp.renameTo(file)) {
+            temp.delete();
+        }
+    }
+}
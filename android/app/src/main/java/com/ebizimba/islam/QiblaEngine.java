@@ -0,0 +1,164 @@
+package com.ebizimba.islam;
+
+import android.content.Context;
+import android.hardware.GeomagneticField;
+import android.hardware.Sensor;
+import android.hardware.SensorEvent;
+import android.hardware.SensorEventListener;
+import android.hardware.SensorManager;
+import android.os.SystemClock;
+import android.view.Surface;
+import android.view.WindowManager;
+
+// Compass heading for the Qibla screen from the fused rotation-vector sensor.
+// Heading is corrected from magnetic to true north, smoothed with a low-pass
+// filter on its sine and cosine (so 359 -> 0 doesn't swing the long way round),
+// and only reported when it moves by more than a threshold, at most
+// MAX_UPDATES_PER_SECOND times a second. The WebView stays idle while the phone
+// is held still.
+public class QiblaEngine implements SensorEventListener {
+    private static final double KAABA_LATITUDE = 21.4225;
+    private static final double KAABA_LONGITUDE = 39.8262;
+
+    private static final float SMOOTHING = 0.15f;
+    private static final float MIN_CHANGE_DEGREES = 1.0f;
+    private static final int MAX_UPDATES_PER_SECOND = 15;
+    // Sensor batching lets the hub collect samples between our throttled updates
+    private static final int MAX_REPORT_LATENCY_US = 50_000;
+
+    public interface Listener {
+        // heading and qibla bearing in degrees from true north; accuracy is a
+        // SensorManager.SENSOR_STATUS_* value
+        void onQiblaUpdate(float heading, float qiblaBearing, int accuracy);
+    }
+
+    private final SensorManager sensorManager;
+    private final WindowManager windowManager;
+    private final float[] rotationMatrix = new float[9];
+    private final float[] remappedMatrix = new float[9];
+    private final float[] orientation = new float[3];
+
+    private Listener listener;
+    private Sensor sensor;
+    private float declination;
+    private float qiblaBearing;
+    private float smoothedSin;
+    private float smoothedCos;
+    private boolean hasReading;
+    private float lastReportedHeading = Float.NaN;
+    private long lastReportTime;
+    private int accuracy = SensorManager.SENSOR_STATUS_UNRELIABLE;
+
+    public QiblaEngine(Context context, WindowManager windowManager) {
+        this.sensorManager = (SensorManager) context.getSystemService(Context.SENSOR_SERVICE);
+        this.windowManager = windowManager;
+    }
+
+    // Initial great-circle bearing from the given point to the Kaaba
+    static float bearingToKaaba(double latitude, double longitude) {
+        double phi1 = Math.toRadians(latitude);
+        double phi2 = Math.toRadians(KAABA_LATITUDE);
+        double deltaLambda = Math.toRadians(KAABA_LONGITUDE - longitude);
+        double bearing = Math.atan2(Math.sin(deltaLambda),
+            Math.cos(phi1) * Math.tan(phi2) - Math.sin(phi1) * Math.cos(deltaLambda));
+        return (float) ((Math.toDegrees(bearing) + 360) % 360);
+    }
+
+    public boolean start(double latitude, double longitude, Listener listener) {
+        stop();
+        sensor = sensorManager.getDefaultSensor(Sensor.TYPE_ROTATION_VECTOR);
+        if (sensor == null) {
+            // No gyroscope: the magnetometer-only vector is noisier but still usable
+            sensor = sensorManager.getDefaultSensor(Sensor.TYPE_GEOMAGNETIC_ROTATION_VECTOR);
+        }
+        if (sensor == null) {
+            return false;
+        }
+
+        this.listener = listener;
+        this.qiblaBearing = bearingToKaaba(latitude, longitude);
+        this.declination = new GeomagneticField((float) latitude, (float) longitude, 0,
+            System.currentTimeMillis()).getDeclination();
+        hasReading = false;
+        lastReportedHeading = Float.NaN;
+        return sensorManager.registerListener(this, sensor, SensorManager.SENSOR_DELAY_UI, MAX_REPORT_LATENCY_US);
+    }
+
+    public void stop() {
+        if (sensor != null) {
+            sensorManager.unregisterListener(this);
+            sensor = null;
+        }
+    }
+
+    public boolean isRunning() {
+        return sensor != null;
+    }
+
+    @Override
+    public void onSensorChanged(SensorEvent event) {
+        // Many rotation vector sensors never call onAccuracyChanged, so the event's
+        // own accuracy is the only one we get
+        if (event.accuracy != accuracy) {
+            onAccuracyChanged(event.sensor, event.accuracy);
+        }
+        SensorManager.getRotationMatrixFromVector(rotationMatrix, event.values);
+        remapForDisplay();
+        SensorManager.getOrientation(remappedMatrix, orientation);
+
+        double azimuth = orientation[0] + Math.toRadians(declination);
+        float sin = (float) Math.sin(azimuth);
+        float cos = (float) Math.cos(azimuth);
+        if (!hasReading) {
+            smoothedSin = sin;
+            smoothedCos = cos;
+            hasReading = true;
+        } else {
+            smoothedSin += SMOOTHING * (sin - smoothedSin);
+            smoothedCos += SMOOTHING * (cos - smoothedCos);
+        }
+        float heading = (float) ((Math.toDegrees(Math.atan2(smoothedSin, smoothedCos)) + 360) % 360);
+
+        long now = SystemClock.elapsedRealtime();
+        if (now - lastReportTime < 1000 / MAX_UPDATES_PER_SECOND) {
+            return;
+        }
+        if (!Float.isNaN(lastReportedHeading) && angularDistance(heading, lastReportedHeading) < MIN_CHANGE_DEGREES) {
+            return;
+        }
+        lastReportTime = now;
+        lastReportedHeading = heading;
+        if (listener != null) {
+            listener.onQiblaUpdate(heading, qiblaBearing, accuracy);
+        }
+    }
+
+    @Override
+    public void onAccuracyChanged(Sensor sensor, int accuracy) {
+        this.accuracy = accuracy;
+        // Force the next reading through so the UI can show or hide the calibration hint
+        lastReportedHeading = Float.NaN;
+    }
+
+    // Keep the heading relative to the top of the screen in every orientation
+    private void remapForDisplay() {
+        switch (windowManager.getDefaultDisplay().getRotation()) {
+            case Surface.ROTATION_90:
+                SensorManager.remapCoordinateSystem(rotationMatrix, SensorManager.AXIS_Y, SensorManager.AXIS_MINUS_X, remappedMatrix);
+                break;
+            case Surface.ROTATION_180:
+                SensorManager.remapCoordinateSystem(rotationMatrix, SensorManager.AXIS_MINUS_X, SensorManager.AXIS_MINUS_Y, remappedMatrix);
+                break;
+            case Surface.ROTATION_270:
+                SensorManager.remapCoordinateSystem(rotationMatrix, SensorManager.AXIS_MINUS_Y, SensorManager.AXIS_X, remappedMatrix);
+                break;
+            default:
+                System.arraycopy(rotationMatrix, 0, remappedMatrix, 0, rotationMatrix.length);
+        }
+    }
+
+    private static float angularDistance(float a, float b) {
+        float diff = Math.abs(a - b) % 360;
+        return diff > 180 ? 360 - diff : diff;
+    }
+}
@@ -0,0 +1,509 @@
+package com.ebizimba.islam;
+
+import android.app.Notification;
+import android.app.NotificationChannel;
+import android.app.NotificationManager;
+import android.app.PendingIntent;
+import android.app.Service;
+import android.content.Context;
+import android.content.Intent;
+import android.content.pm.ServiceInfo;
+import android.media.AudioAttributes;
+import android.media.AudioFocusRequest;
+import android.media.AudioManager;
+import android.media.MediaPlayer;
+import android.os.Build;
+import android.os.IBinder;
+import android.os.PowerManager;
+import android.util.Log;
+
+import androidx.core.app.NotificationCompat;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+// Foreground media service that plays Quran recitation outside the WebView, so audio
+// keeps going when MainActivity pauses the WebView. Segments are chained with
+// MediaPlayer.setNextMediaPlayer for gapless transitions between ayahs and pages,
+// and the next few segments are prefetched into AudioSegmentCache while the current
+// one plays. There is no position polling: state changes are pushed as events.
+public class QuranAudioPlaybackService extends Service {
+    private static final String TAG = "QuranAudioPlayback";
+    private static final String CHANNEL_ID = "quran_audio";
+    private static final int NOTIFICATION_ID = 4201;
+    private static final int PREFETCH_AHEAD = 3;
+    private static final int MAX_PAGE = 604;
+
+    public static final String ACTION_PLAY_PAGES = "com.ebizimba.islam.audio.PLAY_PAGES";
+    public static final String ACTION_PLAY_AYAHS = "com.ebizimba.islam.audio.PLAY_AYAHS";
+    public static final String ACTION_PAUSE = "com.ebizimba.islam.audio.PAUSE";
+    public static final String ACTION_RESUME = "com.ebizimba.islam.audio.RESUME";
+    public static final String ACTION_STOP = "com.ebizimba.islam.audio.STOP";
+    public static final String EXTRA_RECITER = "reciter";
+    public static final String EXTRA_START = "start";
+    public static final String EXTRA_END = "end";
+    public static final String EXTRA_SURAH = "surah";
+
+    private static volatile PlaybackListener playbackListener;
+    // True from the start of a queue until playback stops; commands sent while it
+    // is false would only start an idle service
+    private static volatile boolean active;
+    // True while a queue is playing or loading and not paused by the user or
+    // another app; the volume keys then belong to the recitation
+    private static volatile boolean reciting;
+
+    private final List<AudioSegmentCache.Segment> queue = new ArrayList<>();
+    private AudioSegmentCache segmentCache;
+    private AudioManager audioManager;
+    private AudioFocusRequest focusRequest;
+    private PlayerSlot current;
+    private PlayerSlot next;
+    private boolean paused = false;
+    private boolean pausedForFocusLoss = false;
+    // Index last reported with a segment event. The first of a queue needs none,
+    // since the reader is already there.
+    private int announcedIndex;
+
+    public interface PlaybackListener {
+        // state is one of loading, playing, paused, segment, ended, stopped, error
+        void onPlaybackEvent(String state, int index, int page, int total);
+    }
+
+    public static void setPlaybackListener(PlaybackListener listener) {
+        playbackListener = listener;
+    }
+
+    public static void playPages(Context context, String reciter, int startPage, int endPage) {
+        Intent intent = new Intent(context, QuranAudioPlaybackService.class)
+            .setAction(ACTION_PLAY_PAGES)
+            .putExtra(EXTRA_RECITER, reciter)
+            .putExtra(EXTRA_START, startPage)
+            .putExtra(EXTRA_END, endPage);
+        context.startForegroundService(intent);
+    }
+
+    public static void playAyahs(Context context, String reciter, int surah, int fromAyah, int toAyah) {
+        Intent intent = new Intent(context, QuranAudioPlaybackService.class)
+            .setAction(ACTION_PLAY_AYAHS)
+            .putExtra(EXTRA_RECITER, reciter)
+            .putExtra(EXTRA_SURAH, surah)
+            .putExtra(EXTRA_START, fromAyah)
+            .putExtra(EXTRA_END, toAyah);
+        context.startForegroundService(intent);
+    }
+
+    public static boolean isReciting() {
+        return reciting;
+    }
+
+    public static void sendCommand(Context context, String action) {
+        if (!active) {
+            return;
+        }
+        Intent intent = new Intent(context, QuranAudioPlaybackService.class).setAction(action);
+        context.startService(intent);
+    }
+
+    private static class PlayerSlot {
+        final MediaPlayer player;
+        final int index;
+        boolean prepared;
+        boolean startWhenPrepared;
+
+        PlayerSlot(MediaPlayer player, int index) {
+            this.player = player;
+            this.index = index;
+        }
+    }
+
+    @Override
+    public void onCreate() {
+        super.onCreate();
+        segmentCache = new AudioSegmentCache(this);
+        audioManager = (AudioManager) getSystemService(Context.AUDIO_SERVICE);
+        createNotificationChannel();
+    }
+
+    @Override
+    public int onStartCommand(Intent intent, int flags, int startId) {
+        String action = intent != null ? intent.getAction() : null;
+        if (action == null) {
+            return START_NOT_STICKY;
+        }
+
+        switch (action) {
+            case ACTION_PLAY_PAGES: {
+                String reciter = intent.getStringExtra(EXTRA_RECITER);
+                int start = Math.max(1, intent.getIntExtra(EXTRA_START, 1));
+                int end = Math.min(MAX_PAGE, intent.getIntExtra(EXTRA_END, MAX_PAGE));
+                List<AudioSegmentCache.Segment> segments = new ArrayList<>();
+                for (int page = start; page <= end; page++) {
+                    segments.add(AudioSegmentCache.Segment.forPage(reciter, page));
+                }
+                startQueue(segments);
+                break;
+            }
+            case ACTION_PLAY_AYAHS: {
+                String reciter = intent.getStringExtra(EXTRA_RECITER);
+                int surah = intent.getIntExtra(EXTRA_SURAH, 1);
+                int from = Math.max(1, intent.getIntExtra(EXTRA_START, 1));
+                int to = intent.getIntExtra(EXTRA_END, from);
+                List<AudioSegmentCache.Segment> segments = new ArrayList<>();
+                if (QuranMetadata.isValidSurah(surah)) {
+                    to = Math.min(to, QuranMetadata.getAyahCount(surah));
+                } else {
+                    to = 0;
+                }
+                for (int ayah = from; ayah <= to; ayah++) {
+                    segments.add(AudioSegmentCache.Segment.forAyah(reciter, surah, ayah));
+                }
+                startQueue(segments);
+                break;
+            }
+            case ACTION_PAUSE:
+            case ACTION_RESUME:
+                if (current == null) {
+                    // From a stale notification: nothing is queued, so don't linger
+                    stopSelf(startId);
+                } else if (ACTION_PAUSE.equals(action)) {
+                    pause();
+                } else {
+                    resume();
+                }
+                break;
+
+            case ACTION_STOP:
+                stopPlayback();
+                break;
+            default:
+                break;
+        }
+        return START_NOT_STICKY;
+    }
+
+    @Override
+    public IBinder onBind(Intent intent) {
+        return null;
+    }
+
+    @Override
+    public void onDestroy() {
+        active = false;
+        reciting = false;
+        releasePlayers();
+        abandonFocus();
+        segmentCache.shutdown();
+        super.onDestroy();
+    }
+
+    private void startQueue(List<AudioSegmentCache.Segment> segments) {
+        releasePlayers();
+        queue.clear();
+        queue.addAll(segments);
+        paused = false;
+        announcedIndex = 0;
+
+        // Must be called promptly after startForegroundService, even for an empty queue
+        enterForeground();
+        if (queue.isEmpty()) {
+            stopPlayback();
+            return;
+        }
+
+        if (!requestFocus()) {
+            emit("error", 0);
+            stopPlayback();
+            return;
+        }
+
+        active = true;
+        reciting = true;
+        current = createSlot(0);
+        if (current == null) {
+            emit("error", 0);
+            stopPlayback();
+            return;
+        }
+        current.startWhenPrepared = true;
+        emit("loading", 0);
+    }
+
+    private PlayerSlot createSlot(int index) {
+        AudioSegmentCache.Segment segment = queue.get(index);
+        MediaPlayer player = new MediaPlayer();
+        PlayerSlot slot = new PlayerSlot(player, index);
+
+        player.setAudioAttributes(new AudioAttributes.Builder()
+            .setUsage(AudioAttributes.USAGE_MEDIA)
+            .setContentType(AudioAttributes.CONTENT_TYPE_SPEECH)
+            .build());
+        // Holds a partial wake lock only while this player is actually playing
+        player.setWakeMode(getApplicationContext(), PowerManager.PARTIAL_WAKE_LOCK);
+
+        player.setOnPreparedListener(mp -> onSlotPrepared(slot));
+        player.setOnCompletionListener(mp -> onSlotCompleted(slot));
+        player.setOnErrorListener((mp, what, extra) -> {
+            Log.e(TAG, "Playback error " + what + "/" + extra + " on " + segment.key());
+            onSlotFailed(slot);
+            return true;
+        });
+
+        try {
+            File local = segmentCache.getLocalFile(segment);
+            NativeMetrics.increment(local != null
+                ? NativeMetrics.Counter.AUDIO_CACHE_HITS
+                : NativeMetrics.Counter.AUDIO_CACHE_MISSES);
+            player.setDataSource(local != null ? local.getAbsolutePath() : segment.url);
+            player.prepareAsync();
+        } catch (IOException | IllegalStateException e) {
+            Log.e(TAG, "Unable to load " + segment.key(), e);
+            player.release();
+            return null;
+        }
+
+        // Keep the next few segments on disk ahead of the playhead
+        int prefetchEnd = Math.min(queue.size(), index + 1 + PREFETCH_AHEAD);
+        if (index + 1 < prefetchEnd) {
+            segmentCache.prefetch(queue.subList(index + 1, prefetchEnd));
+        }
+        return slot;
+    }
+
+    private void onSlotPrepared(PlayerSlot slot) {
+        slot.prepared = true;
+
+        if (slot == current) {
+            if (slot.startWhenPrepared && !paused) {
+                slot.player.start();
+                announceStart();
+                emit("playing", slot.index);
+            }
+            prepareNext();
+        } else if (slot == next && current != null) {
+            // The platform starts the next player the moment the current one ends
+            current.player.setNextMediaPlayer(slot.player);
+        }
+    }
+
+    private void prepareNext() {
+        if (current == null || next != null || current.index + 1 >= queue.size()) {
+            return;
+        }
+        next = createSlot(current.index + 1);
+    }
+
+    private void onSlotCompleted(PlayerSlot slot) {
+        if (slot != current) {
+            return;
+        }
+
+        PlayerSlot finished = current;
+        current = next;
+        next = null;
+        finished.player.release();
+
+        if (current == null) {
+            emit("ended", finished.index);
+            stopPlayback();
+            return;
+        }
+
+        if (current.prepared) {
+            // Already started by setNextMediaPlayer
+            announceStart();
+            prepareNext();
+        } else {
+            current.startWhenPrepared = true;
+            emit("loading", current.index);
+        }
+    }
+
+    private void onSlotFailed(PlayerSlot slot) {
+        if (slot == next) {
+            // Drop the broken follower; it is retried when it becomes current
+            next.player.release();
+            next = null;
+            return;
+        }
+        if (slot == current) {
+            int failedIndex = current.index;
+            current.player.release();
+            current = next;
+            next = null;
+            emit("error", failedIndex);
+            if (current == null && failedIndex + 1 < queue.size()) {
+                current = createSlot(failedIndex + 1);
+            }
+            if (current == null) {
+                stopPlayback();
+            } else if (current.prepared) {
+                current.player.start();
+                announceStart();
+                prepareNext();
+            } else {
+                current.startWhenPrepared = true;
+            }
+        }
+    }
+
+    private void pause() {
+        if (current == null || paused) {
+            return;
+        }
+        paused = true;
+        reciting = false;
+        if (current.prepared && current.player.isPlaying()) {
+            current.player.pause();
+        }
+        emit("paused", current.index);
+        stopForeground(STOP_FOREGROUND_DETACH);
+        // The detached notification stays up; swap Pause for Resume on it
+        NotificationManager manager = (NotificationManager) getSystemService(Context.NOTIFICATION_SERVICE);
+        manager.notify(NOTIFICATION_ID, buildNotification());
+    }
+
+    private void resume() {
+        if (current == null || !paused) {
+            return;
+        }
+        if (!requestFocus()) {
+            return;
+        }
+        paused = false;
+        reciting = true;
+        pausedForFocusLoss = false;
+        enterForeground();
+        if (current.prepared) {
+            current.player.start();
+            announceStart();
+            emit("playing", current.index);
+        } else {
+            current.startWhenPrepared = true;
+            emit("loading", current.index);
+        }
+    }
+
+    private void stopPlayback() {
+        active = false;
+        reciting = false;
+        int index = current != null ? current.index : 0;
+        releasePlayers();
+        abandonFocus();
+        emit("stopped", index);
+        stopForeground(STOP_FOREGROUND_REMOVE);
+        stopSelf();
+    }
+
+    private void releasePlayers() {
+        if (current != null) {
+            current.player.release();
+            current = null;
+        }
+        if (next != null) {
+            next.player.release();
+            next = null;
+        }
+    }
+
+    private boolean requestFocus() {
+        if (focusRequest == null) {
+            focusRequest = new AudioFocusRequest.Builder(AudioManager.AUDIOFOCUS_GAIN)
+                .setAudioAttributes(new AudioAttributes.Builder()
+                    .setUsage(AudioAttributes.USAGE_MEDIA)
+                    .setContentType(AudioAttributes.CONTENT_TYPE_SPEECH)
+                    .build())
+                .setWillPauseWhenDucked(true)
+                .setOnAudioFocusChangeListener(this::onAudioFocusChange)
+                .build();
+        }
+        return audioManager.requestAudioFocus(focusRequest) == AudioManager.AUDIOFOCUS_REQUEST_GRANTED;
+    }
+
+    private void abandonFocus() {
+        if (focusRequest != null) {
+            audioManager.abandonAudioFocusRequest(focusRequest);
+        }
+    }
+
+    private void onAudioFocusChange(int focusChange) {
+        switch (focusChange) {
+            case AudioManager.AUDIOFOCUS_LOSS:
+            case AudioManager.AUDIOFOCUS_LOSS_TRANSIENT:
+            case AudioManager.AUDIOFOCUS_LOSS_TRANSIENT_CAN_DUCK:
+                if (!paused) {
+                    pausedForFocusLoss = focusChange != AudioManager.AUDIOFOCUS_LOSS;
+                    pause();
+                }
+                break;
+            case AudioManager.AUDIOFOCUS_GAIN:
+                if (pausedForFocusLoss) {
+                    resume();
+                }
+                break;
+            default:
+                break;
+        }
+    }
+
+    // current has just started playing. A new index gets a segment event whichever
+    // path started it (gapless handover, or loading then prepared on a slow link),
+    // so the reader stays on the page being recited.
+    private void announceStart() {
+        if (current.index != announcedIndex) {
+            announcedIndex = current.index;
+            emit("segment", current.index);
+        }
+    }
+
+    private void emit(String state, int index) {
+        PlaybackListener listener = playbackListener;
+        if (listener != null) {
+            int page = index < queue.size() ? queue.get(index).page : 0;
+            listener.onPlaybackEvent(state, index, page, queue.size());
+        }
+    }
+
+    private void enterForeground() {
+        Notification notification = buildNotification();
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.Q) {
+            startForeground(NOTIFICATION_ID, notification, ServiceInfo.FOREGROUND_SERVICE_TYPE_MEDIA_PLAYBACK);
+        } else {
+            startForeground(NOTIFICATION_ID, notification);
+        }
+    }
+
+    private Notification buildNotification() {
+        Intent openApp = new Intent(this, MainActivity.class)
+            .setFlags(Intent.FLAG_ACTIVITY_SINGLE_TOP);
+        PendingIntent contentIntent = PendingIntent.getActivity(this, 0, openApp, PendingIntent.FLAG_IMMUTABLE);
+        PendingIntent toggleIntent = PendingIntent.getService(this, 1,
+            new Intent(this, QuranAudioPlaybackService.class).setAction(paused ? ACTION_RESUME : ACTION_PAUSE),
+            PendingIntent.FLAG_IMMUTABLE | PendingIntent.FLAG_UPDATE_CURRENT);
+        PendingIntent stopIntent = PendingIntent.getService(this, 2,
+            new Intent(this, QuranAudioPlaybackService.class).setAction(ACTION_STOP), PendingIntent.FLAG_IMMUTABLE);
+
+        return new NotificationCompat.Builder(this, CHANNEL_ID)
+            .setSmallIcon(R.drawable.ic_notification)
+            .setContentTitle(getString(R.string.app_name))
+            .setContentText("Quran recitation")
+            .setContentIntent(contentIntent)
+            .addAction(0, paused ? "Resume" : "Pause", toggleIntent)
+            .addAction(0, "Stop", stopIntent)
+            .setCategory(NotificationCompat.CATEGORY_TRANSPORT)
+            .setVisibility(NotificationCompat.VISIBILITY_PUBLIC)
+            .setOnlyAlertOnce(true)
+            .setOngoing(!paused)
+            .build();
+    }
+
+    private void createNotificationChannel() {
+        NotificationChannel channel = new NotificationChannel(
+            CHANNEL_ID, "Quran audio", NotificationManager.IMPORTANCE_LOW);
+        channel.setDescription("Playback controls for Quran recitation");
+        channel.setShowBadge(false);
+        NotificationManager manager = (NotificationManager) getSystemService(Context.NOTIFICATION_SERVICE);
+        manager.createNotificationChannel(channel);
+    }
+}
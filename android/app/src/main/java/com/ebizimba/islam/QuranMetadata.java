@@ -0,0 +1,96 @@
+package com.ebizimba.islam;
+
+// Static structure of the Madani mushaf used by the native layer. Surah values
+// mirror src/data/surahs.ts (totalAyah, startPage); juz' and hizb start pages are
+// those of the standard 604-page Madani print.
+public final class QuranMetadata {
+    public static final int PAGE_COUNT = 604;
+    public static final int SURAH_COUNT = 114;
+    public static final int JUZ_COUNT = 30;
+    public static final int HIZB_COUNT = 60;
+
+    private static final int[] AYAH_COUNTS = {
+        7, 286, 200, 176, 120, 165, 206, 75, 129, 109, 123, 111, 43, 52, 99, 128, 111, 110, 98, 135,
+        112, 78, 118, 64, 77, 227, 93, 88, 69, 60, 34, 30, 73, 54, 45, 83, 182, 88, 75, 85,
+        54, 53, 89, 59, 37, 35, 38, 29, 18, 45, 60, 49, 62, 55, 78, 96, 29, 22, 24, 13,
+        14, 11, 11, 18, 12, 12, 30, 52, 52, 44, 28, 28, 20, 56, 40, 31, 50, 40, 46, 42,
+        29, 19, 36, 25, 22, 17, 19, 26, 30, 20, 15, 21, 11, 8, 8, 19, 5, 8, 8, 11,
+        11, 8, 3, 9, 5, 4, 7, 3, 6, 3, 5, 4, 5, 6
+    };
+
+    private static final int[] SURAH_START_PAGES = {
+        1, 2, 50, 77, 106, 128, 151, 177, 187, 208, 221, 235, 249, 255, 262, 267, 282, 293, 305, 312,
+        322, 332, 342, 350, 359, 367, 377, 385, 396, 404, 411, 415, 418, 428, 434, 440, 446, 453, 458, 467,
+        477, 483, 489, 496, 499, 502, 507, 511, 515, 518, 520, 523, 526, 528, 531, 534, 537, 542, 545, 549,
+        551, 553, 554, 556, 558, 560, 562, 564, 566, 568, 570, 572, 574, 575, 577, 578, 580, 582, 583, 585,
+        586, 587, 587, 589, 590, 591, 591, 592, 593, 594, 595, 595, 596, 596, 597, 597, 598, 598, 599, 599,
+        600, 600, 601, 601, 601, 602, 602, 602, 603, 603, 603, 604, 604, 604
+    };
+
+    // Every juz' after the first starts at the top of a page
+    private static final int[] JUZ_START_PAGES = {
+        1, 22, 42, 62, 82, 102, 121, 142, 162, 182, 201, 222, 242, 262, 282,
+        302, 322, 342, 362, 382, 402, 422, 442, 462, 482, 502, 522, 542, 562, 582
+    };
+
+    // Odd hizbs open a juz'; even ones usually start mid-page
+    private static final int[] HIZB_START_PAGES = {
+        1, 11, 22, 32, 42, 51, 62, 72, 82, 92, 102, 111, 121, 132, 142,
+        151, 162, 173, 182, 192, 201, 212, 222, 231, 242, 252, 262, 272, 282, 292,
+        302, 312, 322, 332, 342, 352, 362, 371, 382, 392, 402, 413, 422, 431, 442,
+        451, 462, 472, 482, 491, 502, 513, 522, 531, 542, 553, 562, 572, 582, 591
+    };
+
+    private QuranMetadata() {}
+
+    public static boolean isValidSurah(int surah) {
+        return surah >= 1 && surah <= SURAH_COUNT;
+    }
+
+    public static boolean isValidPage(int page) {
+        return page >= 1 && page <= PAGE_COUNT;
+    }
+
+    public static boolean isValidJuz(int juz) {
+        return juz >= 1 && juz <= JUZ_COUNT;
+    }
+
+    public static boolean isValidHizb(int hizb) {
+        return hizb >= 1 && hizb <= HIZB_COUNT;
+    }
+
+    public static int getAyahCount(int surah) {
+        return AYAH_COUNTS[surah - 1];
+    }
+
+    public static int getSurahStartPage(int surah) {
+        return SURAH_START_PAGES[surah - 1];
+    }
+
+    // Last page a surah may appear on. Without ayah-level layout we can't tell whether
+    // the next surah opens a fresh page, so include its start page; for downloads one
+    // extra page is far better than a missing one.
+    public static int getSurahEndPage(int surah) {
+        if (surah == SURAH_COUNT) {
+            return PAGE_COUNT;
+        }
+        return SURAH_START_PAGES[surah];
+    }
+
+    public static int getJuzStartPage(int juz) {
+        return JUZ_START_PAGES[juz - 1];
+    }
+
+    public static int getJuzEndPage(int juz) {
+        return juz == JUZ_COUNT ? PAGE_COUNT : JUZ_START_PAGES[juz] - 1;
+    }
+
+    public static int getHizbStartPage(int hizb) {
+        return HIZB_START_PAGES[hizb - 1];
+    }
+
+    // Includes the next hizb's start page, which it usually shares (see getSurahEndPage)
+    public static int getHizbEndPage(int hizb) {
+        return hizb == HIZB_COUNT ? PAGE_COUNT : HIZB_START_PAGES[hizb];
+    }
+}
@@ -1,19 +1,15 @@
 package com.ebizimba.islam;
 
 import android.content.Context;
-import android.os.AsyncTask;
 import android.util.Log;
 
-import java.io.File;
-import java.io.FileOutputStream;
-import java.io.IOException;
-import java.io.InputStream;
-import java.net.HttpURLConnection;
-import java.net.URL;
+import org.json.JSONArray;
+import org.json.JSONException;
+
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
 import java.util.List;
-import java.util.HashMap;
-import java.util.Map;
 
 public class QuranPageDownloader {
     private static final String TAG = "QuranPageDownloader";
@@ -24,6 +20,7 @@ public class QuranPageDownloader {
     public interface DownloadListener {
         void onProgressUpdate(int current, int total);
         void onDownloadComplete(int success, int failed);
+        // The download was refused and nothing else will be reported
         void onError(String error);
     }
 
@@ -40,10 +37,7 @@ public class QuranPageDownloader {
     }
 
     public void downloadPages(int startPage, int endPage) {
-        if (isDownloading) {
-            if (listener != null) {
-                listener.onError("Download already in progress");
-            }
+        if (rejectIfBusy()) {
             return;
         }
 
@@ -54,94 +48,92 @@ public class QuranPageDownloader {
             return;
         }
 
-        new DownloadPagesTask().execute(startPage, endPage);
+        BitSet pages = new BitSet(QuranMetadata.PAGE_COUNT + 1);
+        pages.set(startPage, endPage + 1);
+        download(pages);
+    }
+
+    // Surah, juz', hizb and page selections as a JSON array (see PageDownloadPlanner.resolve)
+    public void downloadSelection(String selectionsJson) {
+        if (rejectIfBusy()) {
+            return;
+        }
+
+        BitSet pages;
+        try {
+            pages = PageDownloadPlanner.resolve(new JSONArray(selectionsJson));
+        } catch (JSONException | IllegalArgumentException e) {
+            if (listener != null) {
+                listener.onError("Invalid selection");
+            }
+            return;
+        }
+        download(pages);
     }
 
-    private class DownloadPagesTask extends AsyncTask<Integer, Integer, DownloadResult> {
-        @Override
-        protected void onPreExecute() {
-            isDownloading = true;
+    private boolean rejectIfBusy() {
+        if (isDownloading && listener != null) {
+            listener.onError("Download already in progress");
         }
+        return isDownloading;
+    }
 
-        @Override
-        protected DownloadResult doInBackground(Integer... params) {
-            int startPage = params[0];
-            int endPage = params[1];
-            int total = endPage - startPage + 1;
-            int success = 0;
-            int failed = 0;
-            List<Integer> successPages = new ArrayList<>();
+    // Only pages missing from disk are queued. Pages already stored still count as
+    // successes, so progress and totals cover the whole selection. The user asked
+    // for these pages, so all of them are pinned against eviction.
+    private void download(BitSet requested) {
+        BitSet missing = PageDownloadPlanner.getInstance(context).missing(requested);
+        int stored = requested.cardinality() - missing.cardinality();
 
-            // Create directory if it doesn't exist
-            File quranDir = new File(context.getFilesDir(), "quran-pages");
-            if (!quranDir.exists()) {
-                quranDir.mkdirs();
+        NativeIndex index = NativeIndex.getInstance(context);
+        List<AssetDownloader.AssetRequest> requests = new ArrayList<>();
+        for (int page = requested.nextSetBit(1); page >= 0; page = requested.nextSetBit(page + 1)) {
+            // Format page number with leading zeros
+            String formattedPage = String.format("%03d", page);
+            if (!missing.get(page)) {
+                index.setPinned(AssetDownloader.AssetType.PAGE_IMAGE.name(), formattedPage + ".png", true);
+                continue;
             }
+            requests.add(new AssetDownloader.AssetRequest(
+                AssetDownloader.AssetType.PAGE_IMAGE, formattedPage + ".png", getPageUrls(formattedPage), true));
+        }
 
-            for (int page = startPage; page <= endPage; page++) {
-                // Format page number with leading zeros
-                String formattedPage = String.format("%03d", page);
-                
-                // Check if file already exists
-                File pageFile = new File(quranDir, formattedPage + ".png");
-                if (pageFile.exists()) {
-                    success++;
-                    successPages.add(page);
-                    publishProgress(page - startPage + 1, total);
-                    continue;
+        isDownloading = true;
+        AssetDownloader.getInstance(context).submit(requests, new AssetDownloader.BatchListener() {
+            @Override
+            public void onProgressUpdate(int current, int total) {
+                if (listener != null) {
+                    listener.onProgressUpdate(stored + current, stored + total);
                 }
+            }
 
-                // Try to download the page
-                try {
-                    // First try imgbb URL
-                    String imgbbUrl = getImgbbUrl(formattedPage);
-                    boolean downloaded = downloadFile(imgbbUrl, pageFile);
-                    
-                    // If imgbb fails, try fallback URLs
-                    if (!downloaded) {
-                        String fallbackUrl = "https://quran-images.s3.amazonaws.com/pages/" + formattedPage + ".png";
-                        downloaded = downloadFile(fallbackUrl, pageFile);
-                        
-                        if (!downloaded) {
-                            String secondFallbackUrl = "https://islamic-network.github.io/cdn/quran/images/page" + formattedPage + ".png";
-                            downloaded = downloadFile(secondFallbackUrl, pageFile);
-                        }
-                    }
-                    
-                    if (downloaded) {
-                        success++;
-                        successPages.add(page);
-                    } else {
-                        failed++;
-                    }
-                } catch (Exception e) {
-                    Log.e(TAG, "Error downloading page " + page, e);
-                    failed++;
+            @Override
+            public void onBatchComplete(int success, int failed) {
+                isDownloading = false;
+                if (listener != null) {
+                    listener.onDownloadComplete(stored + success, failed);
                 }
-                
-                publishProgress(page - startPage + 1, total);
             }
 
-            return new DownloadResult(success, failed, successPages);
-        }
-
-        @Override
-        protected void onProgressUpdate(Integer... values) {
-            if (listener != null) {
-                listener.onProgressUpdate(values[0], values[1]);
+            @Override
+            public void onError(String error) {
+                // The batch carries on and onBatchComplete counts the failures;
+                // listener.onError is kept for downloads that never start
+                Log.w(TAG, "Page download error: " + error);
             }
-        }
+        });
+    }
 
-        @Override
-        protected void onPostExecute(DownloadResult result) {
-            isDownloading = false;
-            if (listener != null) {
-                listener.onDownloadComplete(result.success, result.failed);
-            }
-        }
+    // Mirrors for a page in the order they are tried: imgbb first, then the fallbacks
+    static List<String> getPageUrls(String formattedPage) {
+        return Arrays.asList(
+            getImgbbUrl(formattedPage),
+            "https://quran-images.s3.amazonaws.com/pages/" + formattedPage + ".png",
+            "https://islamic-network.github.io/cdn/quran/images/page" + formattedPage + ".png"
+        );
     }
 
-    private String getImgbbUrl(String formattedPage) {
+    static String getImgbbUrl(String formattedPage) {
         // Map of all page numbers to their imgbb URLs
         switch (formattedPage) {
             case "001": return "https://i.ibb.co/5XpKN8pM/001.png";
@@ -751,55 +743,4 @@ public class QuranPageDownloader {
             default: return "https://i.ibb.co/quran-pages/" + formattedPage + ".png";
         }
     }
-
-    private boolean downloadFile(String fileUrl, File outputFile) {
-        HttpURLConnection connection = null;
-        InputStream input = null;
-        FileOutputStream output = null;
-        
-        try {
-            URL url = new URL(fileUrl);
-            connection = (HttpURLConnection) url.openConnection();
-            connection.setConnectTimeout(15000);
-            connection.setReadTimeout(15000);
-            connection.connect();
-            
-            if (connection.getResponseCode() != HttpURLConnection.HTTP_OK) {
-                return false;
-            }
-            
-            input = connection.getInputStream();
-            output = new FileOutputStream(outputFile);
-            
-            byte[] buffer = new byte[4096];
-            int bytesRead;
-            while ((bytesRead = input.read(buffer)) != -1) {
-                output.write(buffer, 0, bytesRead);
-            }
-            
-            return true;
-        } catch (IOException e) {
-            Log.e(TAG, "Error downloading file: " + fileUrl, e);
-            return false;
-        } finally {
-            try {
-                if (output != null) output.close();
-                if (input != null) input.close();
-            } catch (IOException ignored) {}
-            
-            if (connection != null) connection.disconnect();
-        }
-    }
-
-    private static class DownloadResult {
-        final int success;
-        final int failed;
-        final List<Integer> successPages;
-
-        DownloadResult(int success, int failed, List<Integer> successPages) {
-            this.success = success;
-            this.failed = failed;
-            this.successPages = successPages;
-        }
-    }
 }
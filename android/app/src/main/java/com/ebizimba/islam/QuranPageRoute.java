@@ -0,0 +1,168 @@
+package com.ebizimba.islam;
+
+import android.content.Context;
+import android.util.Log;
+import android.webkit.WebResourceRequest;
+import android.webkit.WebResourceResponse;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+// Serves mushaf pages to PageTurner through NativeRequestRouter:
+//   /_native/quran-page/<n>
+// A downloaded full page is served straight from disk. Otherwise the preview from
+// LowResPagePack is served at once (marked X-Page-Quality: low and not cached, so
+// the next request can pick up the real page) and the full page is queued on
+// AssetDownloader. When it lands the listener is told, and the web app swaps the
+// preview for the full page. Returns 404 when neither exists, without queueing
+// anything: builds without the pack leave uncached pages to the web app.
+//
+// prefetch() is for pages about to be shown (PageTurnController): full pages are
+// read into memory ahead of the request and missing ones are queued, so the turn
+// doesn't wait on disk or on the first bytes of a download.
+public class QuranPageRoute implements NativeRequestRouter.RouteHandler {
+    private static final String TAG = "QuranPageRoute";
+    static final String ROUTE = "quran-page";
+    private static final String FULL_MIME_TYPE = "image/png";
+    static final String QUALITY_HEADER = "X-Page-Quality";
+
+    public interface UpgradeListener {
+        // Called on a download thread once the full page is on disk
+        void onPageUpgraded(int page);
+    }
+
+    private final Context context;
+    private final AssetDownloader downloader;
+    // Pages with a full-resolution download queued or running
+    private final Set<Integer> upgrading = ConcurrentHashMap.newKeySet();
+    // Full pages read ahead by prefetch(), dropped once served
+    private final Map<Integer, byte[]> warmed = new ConcurrentHashMap<>();
+    private volatile UpgradeListener listener;
+
+    public QuranPageRoute(Context context) {
+        this.context = context.getApplicationContext();
+        this.downloader = AssetDownloader.getInstance(context);
+    }
+
+    public void setListener(UpgradeListener listener) {
+        this.listener = listener;
+    }
+
+    @Override
+    public WebResourceResponse handle(WebResourceRequest request, List<String> segments) {
+        if (segments.size() != 1) {
+            return null;
+        }
+        int page;
+        try {
+            page = Integer.parseInt(segments.get(0));
+        } catch (NumberFormatException e) {
+            return null;
+        }
+        if (!QuranMetadata.isValidPage(page)) {
+            return null;
+        }
+
+        byte[] preloaded = warmed.remove(page);
+        if (preloaded != null) {
+            NativeIndex.getInstance(context).touchEntry(AssetDownloader.AssetType.PAGE_IMAGE.name(), relativePath(page));
+            return stream(FULL_MIME_TYPE, new ByteArrayInputStream(preloaded), preloaded.length,
+                "private, max-age=86400", "full");
+        }
+
+        File full = downloader.getFile(AssetDownloader.AssetType.PAGE_IMAGE, relativePath(page));
+        if (full.exists()) {
+            // Pages being read are the last ones StorageGovernor should evict
+            NativeIndex.getInstance(context).touchEntry(AssetDownloader.AssetType.PAGE_IMAGE.name(), relativePath(page));
+            try {
+                return stream(FULL_MIME_TYPE, new FileInputStream(full), full.length(),
+                    "private, max-age=86400", "full");
+            } catch (FileNotFoundException e) {
+                // Evicted between the check and the open; fall through to the preview
+            }
+        }
+
+        ByteBuffer preview = LowResPagePack.getInstance(context).getPage(page);
+        if (preview == null) {
+            // The web app loads the page from its own sources after a 404; queueing
+            // it here as well would download every such page twice
+            return null;
+        }
+        upgrade(page);
+        return stream(LowResPagePack.MIME_TYPE, NativeIo.asInputStream(preview), preview.remaining(),
+            "no-store", "low");
+    }
+
+    // Read the given pages ahead of their requests; pages warmed earlier but not in
+    // this list are released. Blocks on disk reads, so call off the main thread.
+    void prefetch(List<Integer> pages) {
+        warmed.keySet().retainAll(pages);
+        for (int page : pages) {
+            if (!QuranMetadata.isValidPage(page) || warmed.containsKey(page)) {
+                continue;
+            }
+            File full = downloader.getFile(AssetDownloader.AssetType.PAGE_IMAGE, relativePath(page));
+            if (!full.exists()) {
+                upgrade(page);
+                continue;
+            }
+            try (InputStream input = new FileInputStream(full)) {
+                warmed.put(page, NativeIo.readBytes(input));
+            } catch (IOException e) {
+                Log.w(TAG, "Cannot prefetch page " + page + ": " + e.getMessage());
+            }
+        }
+    }
+
+    // Queue the full page unless it is already on its way
+    private void upgrade(int page) {
+        if (!upgrading.add(page)) {
+            return;
+        }
+        String formattedPage = String.format("%03d", page);
+        AssetDownloader.AssetRequest request = new AssetDownloader.AssetRequest(
+            AssetDownloader.AssetType.PAGE_IMAGE, relativePath(page), QuranPageDownloader.getPageUrls(formattedPage));
+        downloader.submit(Collections.singletonList(request), new AssetDownloader.BatchListener() {
+            @Override
+            public void onProgressUpdate(int current, int total) {}
+
+            @Override
+            public void onBatchComplete(int success, int failed) {
+                upgrading.remove(page);
+                UpgradeListener current = listener;
+                if (success > 0 && current != null) {
+                    current.onPageUpgraded(page);
+                }
+            }
+
+            @Override
+            public void onError(String error) {
+                upgrading.remove(page);
+            }
+        });
+    }
+
+    static String relativePath(int page) {
+        return String.format("%03d", page) + ".png";
+    }
+
+    private static WebResourceResponse stream(String mimeType, InputStream data, long length,
+                                              String cacheControl, String quality) {
+        Map<String, String> headers = new HashMap<>();
+        headers.put("Content-Length", String.valueOf(length));
+        headers.put("Cache-Control", cacheControl);
+        headers.put(QUALITY_HEADER, quality);
+        return new WebResourceResponse(mimeType, null, 200, "OK", headers, data);
+    }
+}
@@ -0,0 +1,463 @@
+package com.ebizimba.islam;
+
+import android.content.ContentValues;
+import android.content.Context;
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteOpenHelper;
+import android.os.Handler;
+import android.os.Looper;
+import android.util.Log;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+// Full-text search over Quran text and translations. Each (ayah, language) pair is
+// one row in an FTS4 table; Android's bundled SQLite ships FTS3/4 on every API
+// level but not FTS5, so ranking is BM25 computed here from matchinfo(). Text is
+// normalized before indexing and querying: Arabic loses tashkeel, tatweel and
+// Quranic annotation marks and has alef/yaa/taa marbuta variants folded; Latin
+// scripts are lower-cased. Surahs are indexed one transaction at a time as their
+// text arrives, so search works on whatever has been downloaded so far.
+public class QuranSearchIndex extends SQLiteOpenHelper {
+    private static final String TAG = "QuranSearchIndex";
+    private static final String DATABASE_NAME = "quran-search.db";
+    private static final int DATABASE_VERSION = 1;
+    private static final int DEFAULT_LIMIT = 50;
+    // Candidate rows ranked in Java before the limit is applied
+    private static final int MAX_CANDIDATES = 2000;
+    private static final double BM25_K1 = 1.2;
+    private static final double BM25_B = 0.75;
+
+    // Uthmani script plus Saheeh International, with page and juz for every ayah
+    private static final String TEXT_SOURCE_URL =
+        "https://api.alquran.cloud/v1/surah/%d/editions/quran-uthmani,en.sahih";
+
+    private static QuranSearchIndex instance;
+
+    private final Map<String, Integer> languageIds = new HashMap<>();
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+    private final ExecutorService indexExecutor = Executors.newSingleThreadExecutor();
+
+    public static synchronized QuranSearchIndex getInstance(Context context) {
+        if (instance == null) {
+            instance = new QuranSearchIndex(context.getApplicationContext());
+        }
+        return instance;
+    }
+
+    private QuranSearchIndex(Context context) {
+        super(context, DATABASE_NAME, null, DATABASE_VERSION);
+    }
+
+    @Override
+    public void onConfigure(SQLiteDatabase db) {
+        db.enableWriteAheadLogging();
+    }
+
+    @Override
+    public void onCreate(SQLiteDatabase db) {
+        db.execSQL("CREATE TABLE languages (id INTEGER PRIMARY KEY, code TEXT NOT NULL UNIQUE)");
+        db.execSQL("CREATE TABLE ayahs ("
+            + "surah INTEGER NOT NULL, "
+            + "ayah INTEGER NOT NULL, "
+            + "page INTEGER NOT NULL, "
+            + "juz INTEGER NOT NULL DEFAULT 0, "
+            + "PRIMARY KEY (surah, ayah))");
+        db.execSQL("CREATE INDEX idx_ayahs_page ON ayahs (page)");
+        // Original text for display; the FTS table only holds the normalized form
+        db.execSQL("CREATE TABLE ayah_text ("
+            + "docid INTEGER PRIMARY KEY, "
+            + "surah INTEGER NOT NULL, "
+            + "ayah INTEGER NOT NULL, "
+            + "language INTEGER NOT NULL, "
+            + "text TEXT NOT NULL)");
+        db.execSQL("CREATE TABLE indexed_surahs ("
+            + "surah INTEGER NOT NULL, "
+            + "language INTEGER NOT NULL, "
+            + "PRIMARY KEY (surah, language))");
+        db.execSQL("CREATE VIRTUAL TABLE ayah_fts USING fts4(body, tokenize=unicode61)");
+    }
+
+    @Override
+    public void onUpgrade(SQLiteDatabase db, int oldVersion, int newVersion) {
+        // No migrations yet
+    }
+
+    // docid packs the ayah and language so one FTS table serves every translation
+    static long docId(int surah, int ayah, int languageId) {
+        return ((long) surah * 1000 + ayah) * 64 + languageId;
+    }
+
+    // --- Indexing ---
+
+    // Record page and juz for a surah's ayahs; entries are {numberInSurah, page, juz}
+    public void indexAyahLayout(int surah, JSONArray ayahs) {
+        SQLiteDatabase db = getWritableDatabase();
+        db.beginTransaction();
+        try {
+            for (int i = 0; i < ayahs.length(); i++) {
+                JSONObject ayah = ayahs.getJSONObject(i);
+                ContentValues values = new ContentValues();
+                values.put("surah", surah);
+                values.put("ayah", ayah.getInt("numberInSurah"));
+                values.put("page", ayah.getInt("page"));
+                values.put("juz", ayah.optInt("juz"));
+                db.insertWithOnConflict("ayahs", null, values, SQLiteDatabase.CONFLICT_REPLACE);
+            }
+            db.setTransactionSuccessful();
+        } catch (JSONException e) {
+            Log.e(TAG, "Invalid layout for surah " + surah, e);
+        } finally {
+            db.endTransaction();
+        }
+    }
+
+    // Index one surah in one language; texts[i] is ayah i + 1. Re-indexing replaces
+    // the previous rows.
+    public boolean indexSurah(int surah, String language, List<String> texts) {
+        if (!QuranMetadata.isValidSurah(surah) || texts.isEmpty()) {
+            return false;
+        }
+        SQLiteDatabase db = getWritableDatabase();
+        db.beginTransaction();
+        try {
+            int languageId = getLanguageId(db, language);
+            long firstDoc = docId(surah, 1, languageId);
+            long lastDoc = docId(surah, texts.size(), languageId);
+            String[] range = {String.valueOf(firstDoc), String.valueOf(lastDoc), String.valueOf(languageId)};
+            db.delete("ayah_fts", "docid BETWEEN ? AND ? AND docid % 64 = ?", range);
+            db.delete("ayah_text", "docid BETWEEN ? AND ? AND language = ?", range);
+
+            for (int i = 0; i < texts.size(); i++) {
+                long docId = docId(surah, i + 1, languageId);
+
+                ContentValues fts = new ContentValues();
+                fts.put("docid", docId);
+                fts.put("body", normalize(texts.get(i)));
+                db.insert("ayah_fts", null, fts);
+
+                ContentValues text = new ContentValues();
+                text.put("docid", docId);
+                text.put("surah", surah);
+                text.put("ayah", i + 1);
+                text.put("language", languageId);
+                text.put("text", texts.get(i));
+                db.insert("ayah_text", null, text);
+            }
+
+            ContentValues done = new ContentValues();
+            done.put("surah", surah);
+            done.put("language", languageId);
+            db.insertWithOnConflict("indexed_surahs", null, done, SQLiteDatabase.CONFLICT_IGNORE);
+            db.setTransactionSuccessful();
+            return true;
+        } finally {
+            db.endTransaction();
+        }
+    }
+
+    public boolean isSurahIndexed(int surah, String language) {
+        try (Cursor cursor = getReadableDatabase().rawQuery(
+                "SELECT 1 FROM indexed_surahs s JOIN languages l ON l.id = s.language WHERE s.surah = ? AND l.code = ?",
+                new String[]{String.valueOf(surah), language})) {
+            return cursor.moveToFirst();
+        }
+    }
+
+    // Indexed surah count per language
+    public JSONObject getStatus() {
+        JSONObject status = new JSONObject();
+        try (Cursor cursor = getReadableDatabase().rawQuery(
+                "SELECT l.code, COUNT(*) FROM indexed_surahs s JOIN languages l ON l.id = s.language GROUP BY l.code", null)) {
+            while (cursor.moveToNext()) {
+                status.put(cursor.getString(0), cursor.getInt(1));
+            }
+        } catch (JSONException e) {
+            Log.e(TAG, "Error building status", e);
+        }
+        return status;
+    }
+
+    // Mushaf page for an ayah, or 0 if its layout hasn't been downloaded
+    public int getPage(int surah, int ayah) {
+        try (Cursor cursor = getReadableDatabase().rawQuery(
+                "SELECT page FROM ayahs WHERE surah = ? AND ayah = ?",
+                new String[]{String.valueOf(surah), String.valueOf(ayah)})) {
+            return cursor.moveToFirst() ? cursor.getInt(0) : 0;
+        }
+    }
+
+    private int getLanguageId(SQLiteDatabase db, String code) {
+        synchronized (languageIds) {
+            Integer cached = languageIds.get(code);
+            if (cached != null) {
+                return cached;
+            }
+            int id;
+            try (Cursor cursor = db.rawQuery("SELECT id FROM languages WHERE code = ?", new String[]{code})) {
+                if (cursor.moveToFirst()) {
+                    id = cursor.getInt(0);
+                } else {
+                    ContentValues values = new ContentValues();
+                    values.put("code", code);
+                    id = (int) db.insert("languages", null, values);
+                }
+            }
+            if (id >= 64) {
+                throw new IllegalStateException("Too many search languages");
+            }
+            languageIds.put(code, id);
+            return id;
+        }
+    }
+
+    // Fetch Arabic text, an English translation and the page layout for each surah
+    // in the range and index it, skipping surahs already indexed. Runs one surah at
+    // a time on a background thread so search gets better as each one lands.
+    public void downloadAndIndex(int fromSurah, int toSurah, AssetDownloader.BatchListener listener) {
+        indexExecutor.execute(() -> {
+            int total = toSurah - fromSurah + 1;
+            int success = 0;
+            for (int surah = fromSurah; surah <= toSurah; surah++) {
+                try {
+                    if (isSurahIndexed(surah, "ar") && isSurahIndexed(surah, "en")) {
+                        success++;
+                    } else if (fetchAndIndex(surah)) {
+                        success++;
+                    }
+                } catch (Exception e) {
+                    Log.e(TAG, "Error indexing surah " + surah, e);
+                    mainHandler.post(() -> listener.onError(e.getMessage()));
+                }
+                int current = surah - fromSurah + 1;
+                mainHandler.post(() -> listener.onProgressUpdate(current, total));
+            }
+            int succeeded = success;
+            mainHandler.post(() -> listener.onBatchComplete(succeeded, total - succeeded));
+        });
+    }
+
+    private boolean fetchAndIndex(int surah) throws IOException, JSONException {
+        String body = fetch(String.format(Locale.ROOT, TEXT_SOURCE_URL, surah));
+        if (body == null) {
+            return false;
+        }
+        JSONArray editions = new JSONObject(body).getJSONArray("data");
+        for (int e = 0; e < editions.length(); e++) {
+            JSONObject edition = editions.getJSONObject(e);
+            JSONArray ayahs = edition.getJSONArray("ayahs");
+            String language = edition.getJSONObject("edition").getString("language");
+            if ("ar".equals(language)) {
+                indexAyahLayout(surah, ayahs);
+            }
+            List<String> texts = new ArrayList<>(ayahs.length());
+            for (int i = 0; i < ayahs.length(); i++) {
+                texts.add(ayahs.getJSONObject(i).getString("text"));
+            }
+            indexSurah(surah, language, texts);
+        }
+        return true;
+    }
+
+    private static String fetch(String url) throws IOException {
+        HttpURLConnection connection = (HttpURLConnection) new URL(url).openConnection();
+        try {
+            connection.setConnectTimeout(15000);
+            connection.setReadTimeout(30000);
+            if (connection.getResponseCode() != HttpURLConnection.HTTP_OK) {
+                Log.w(TAG, url + " returned " + connection.getResponseCode());
+                return null;
+            }
+            try (InputStream input = connection.getInputStream()) {
+                return NativeIo.readString(input);
+            }
+        } finally {
+            connection.disconnect();
+        }
+    }
+
+    // --- Searching ---
+
+    // Ranked hits as [{surah, ayah, page, language, text, score}]. An empty language
+    // searches every language.
+    public JSONArray search(String query, String language, int limit) {
+        long started = NativeMetrics.start();
+        try {
+            return runSearch(query, language, limit);
+        } finally {
+            NativeMetrics.stop(NativeMetrics.Timer.SEARCH_QUERY, started);
+        }
+    }
+
+    private JSONArray runSearch(String query, String language, int limit) {
+        JSONArray results = new JSONArray();
+        String match = buildMatchExpression(query);
+        if (match == null) {
+            return results;
+        }
+
+        String sql = "SELECT f.docid, matchinfo(ayah_fts, 'pcnalx'), t.surah, t.ayah, l.code, t.text, a.page "
+            + "FROM ayah_fts f "
+            + "JOIN ayah_text t ON t.docid = f.docid "
+            + "JOIN languages l ON l.id = t.language "
+            + "LEFT JOIN ayahs a ON a.surah = t.surah AND a.ayah = t.ayah "
+            + "WHERE ayah_fts MATCH ?"
+            + (language != null && !language.isEmpty() ? " AND l.code = ?" : "")
+            + " LIMIT " + MAX_CANDIDATES;
+        String[] args = language != null && !language.isEmpty()
+            ? new String[]{match, language}
+            : new String[]{match};
+
+        List<Hit> hits = new ArrayList<>();
+        try (Cursor cursor = getReadableDatabase().rawQuery(sql, args)) {
+            while (cursor.moveToNext()) {
+                Hit hit = new Hit();
+                hit.score = bm25(cursor.getBlob(1));
+                hit.surah = cursor.getInt(2);
+                hit.ayah = cursor.getInt(3);
+                hit.language = cursor.getString(4);
+                hit.text = cursor.getString(5);
+                hit.page = cursor.isNull(6) ? QuranMetadata.getSurahStartPage(hit.surah) : cursor.getInt(6);
+                hits.add(hit);
+            }
+        } catch (Exception e) {
+            // Malformed MATCH expressions surface as SQLiteException
+            Log.w(TAG, "Search failed for '" + query + "': " + e.getMessage());
+            return results;
+        }
+
+        Collections.sort(hits, (a, b) -> Double.compare(b.score, a.score));
+        int count = Math.min(hits.size(), limit > 0 ? limit : DEFAULT_LIMIT);
+        try {
+            for (int i = 0; i < count; i++) {
+                Hit hit = hits.get(i);
+                JSONObject result = new JSONObject();
+                result.put("surah", hit.surah);
+                result.put("ayah", hit.ayah);
+                result.put("page", hit.page);
+                result.put("language", hit.language);
+                result.put("text", hit.text);
+                result.put("score", hit.score);
+                results.put(result);
+            }
+        } catch (JSONException e) {
+            Log.e(TAG, "Error building results", e);
+        }
+        return results;
+    }
+
+    private static class Hit {
+        int surah;
+        int ayah;
+        int page;
+        String language;
+        String text;
+        double score;
+    }
+
+    // Every term must match; the last one is a prefix so results update while typing
+    static String buildMatchExpression(String query) {
+        // unicode61 splits tokens on punctuation, spaces and controls, so "al-fatiha"
+        // was indexed as two words; split the query the same way. FTS operators are
+        // all punctuation and go with it.
+        String normalized = normalize(query).replaceAll("[\\p{P}\\p{Z}\\p{Cc}]+", " ");
+        StringBuilder match = new StringBuilder();
+        for (String term : normalized.split(" ")) {
+            if (term.isEmpty()) {
+                continue;
+            }
+            if (match.length() > 0) {
+                match.append(' ');
+            }
+            match.append(term);
+        }
+        // The last word may still be being typed; trailing punctuation doesn't count
+        return match.length() > 0 ? match.append('*').toString() : null;
+    }
+
+    // BM25 over matchinfo 'pcnalx' for a single-column table:
+    // p phrases, c columns, n rows, a avg tokens, l row tokens, then 3 ints per phrase
+    static double bm25(byte[] blob) {
+        ByteBuffer info = ByteBuffer.wrap(blob).order(ByteOrder.nativeOrder());
+        int phrases = info.getInt(0);
+        int rows = info.getInt(8);
+        double averageLength = Math.max(1, info.getInt(12));
+        double rowLength = info.getInt(16);
+
+        double score = 0;
+        for (int p = 0; p < phrases; p++) {
+            int base = 20 + p * 12;
+            int hitsInRow = info.getInt(base);
+            int rowsWithHit = info.getInt(base + 8);
+            if (hitsInRow == 0) {
+                continue;
+            }
+            double idf = Math.log((rows - rowsWithHit + 0.5) / (rowsWithHit + 0.5) + 1);
+            double tf = hitsInRow * (BM25_K1 + 1)
+                / (hitsInRow + BM25_K1 * (1 - BM25_B + BM25_B * rowLength / averageLength));
+            score += idf * tf;
+        }
+        return score;
+    }
+
+    // --- Normalization ---
+
+    static String normalize(String text) {
+        if (text == null) {
+            return "";
+        }
+        StringBuilder out = new StringBuilder(text.length());
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (isArabicMark(c)) {
+                continue;
+            }
+            switch (c) {
+                case '\u0622': // alef with madda
+                case '\u0623': // alef with hamza above
+                case '\u0625': // alef with hamza below
+                case '\u0671': // alef wasla
+                    out.append('\u0627');
+                    break;
+                case '\u0649': // alef maksura
+                case '\u0626': // yeh with hamza
+                    out.append('\u064A');
+                    break;
+                case '\u0624': // waw with hamza
+                    out.append('\u0648');
+                    break;
+                case '\u0629': // teh marbuta
+                    out.append('\u0647');
+                    break;
+                default:
+                    out.append(c);
+            }
+        }
+        return out.toString().toLowerCase(Locale.ROOT);
+    }
+
+    private static boolean isArabicMark(char c) {
+        return (c >= '\u064B' && c <= '\u065F') // tashkeel
+            || c == '\u0670'                     // superscript alef
+            || c == '\u0640'                     // tatweel
+            || (c >= '\u06D6' && c <= '\u06ED') // Quranic annotation signs
+            || (c >= '\u0610' && c <= '\u061A'); // honorifics and small marks
+    }
+}
@@ -0,0 +1,50 @@
+package com.ebizimba.islam;
+
+import android.os.Build;
+import android.os.Process;
+import android.os.SystemClock;
+import android.os.Trace;
+import android.util.Log;
+
+// Startup instrumentation. Sections show up in Perfetto/systrace and are what the
+// :benchmark module's TraceSectionMetric measures; milestones are also logged with
+// their offset from process start so a plain logcat shows where startup time goes.
+//
+// Synchronous sections must begin and end on the same thread. Async sections span
+// threads and callbacks (e.g. onCreate until the web app reports ready).
+final class StartupTrace {
+    private static final String TAG = "StartupTrace";
+    private static final String PREFIX = "Startup.";
+    // Each async section runs at most once per activity, so a fixed cookie is enough
+    private static final int COOKIE = 0;
+
+    static final String SPLASH = "splash";
+    static final String WEB_APP_READY = "webAppReady";
+
+    private StartupTrace() {}
+
+    static void begin(String name) {
+        Trace.beginSection(PREFIX + name);
+    }
+
+    static void end() {
+        Trace.endSection();
+    }
+
+    static void beginAsync(String name) {
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.Q) {
+            Trace.beginAsyncSection(PREFIX + name, COOKIE);
+        }
+    }
+
+    static void endAsync(String name) {
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.Q) {
+            Trace.endAsyncSection(PREFIX + name, COOKIE);
+        }
+        mark(name);
+    }
+
+    static void mark(String milestone) {
+        Log.i(TAG, milestone + " at " + (SystemClock.uptimeMillis() - Process.getStartUptimeMillis()) + " ms");
+    }
+}
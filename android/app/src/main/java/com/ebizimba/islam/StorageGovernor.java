@@ -0,0 +1,176 @@
+package com.ebizimba.islam;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.util.Log;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.io.File;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+// Keeps the native caches (mushaf pages, audio packs, streamed audio, books) under a
+// total storage budget. Sizes and access times come from NativeIndex; when the
+// budget is exceeded the least recently used unpinned files are deleted until usage
+// is back under the low-water mark. Pinned entries (juz' or surahs the user chose
+// to keep offline) are never evicted.
+public class StorageGovernor {
+    private static final String TAG = "StorageGovernor";
+    private static final String PREFS_NAME = "StoragePrefs";
+    private static final String BUDGET_KEY = "totalBudgetBytes";
+    private static final long MB = 1024L * 1024L;
+    private static final long DEFAULT_BUDGET = 1536 * MB;
+    private static final long MIN_BUDGET = 100 * MB;
+    // Evict down to 90% of the budget so the next few downloads don't trigger another pass
+    private static final double LOW_WATER = 0.9;
+    private static final int EVICTION_BATCH = 64;
+
+    private static StorageGovernor instance;
+
+    private final Context context;
+    private final NativeIndex index;
+    private final SharedPreferences prefs;
+    private final ExecutorService executor = Executors.newSingleThreadExecutor();
+
+    public static synchronized StorageGovernor getInstance(Context context) {
+        if (instance == null) {
+            instance = new StorageGovernor(context.getApplicationContext());
+        }
+        return instance;
+    }
+
+    private StorageGovernor(Context context) {
+        this.context = context;
+        this.index = NativeIndex.getInstance(context);
+        this.prefs = context.getSharedPreferences(PREFS_NAME, Context.MODE_PRIVATE);
+    }
+
+    public long getBudget() {
+        long stored = prefs.getLong(BUDGET_KEY, -1);
+        if (stored > 0) {
+            return stored;
+        }
+        // Default to half of what the app could use, capped, so a nearly full phone
+        // is not pushed over the edge by the first audio pack
+        long available = context.getFilesDir().getUsableSpace() + index.getTotalBytes(null);
+        return Math.max(MIN_BUDGET, Math.min(DEFAULT_BUDGET, available / 2));
+    }
+
+    public void setBudget(long bytes) {
+        prefs.edit().putLong(BUDGET_KEY, Math.max(MIN_BUDGET, bytes)).apply();
+        enforceAsync();
+    }
+
+    // Check the total budget off the calling thread
+    public void enforceAsync() {
+        executor.execute(() -> {
+            try {
+                enforce();
+            } catch (Exception e) {
+                Log.e(TAG, "Error enforcing storage budget", e);
+            }
+        });
+    }
+
+    // Evict across all categories until total usage is under the budget
+    public synchronized long enforce() {
+        long started = NativeMetrics.start();
+        try {
+            long budget = getBudget();
+            long used = index.getTotalBytes(null);
+            if (used <= budget) {
+                recordDiskGauges(budget, used);
+                return 0;
+            }
+            long freed = evict(null, used - (long) (budget * LOW_WATER));
+            recordDiskGauges(budget, used - freed);
+            return freed;
+        } finally {
+            NativeMetrics.stop(NativeMetrics.Timer.STORAGE_ENFORCE, started);
+        }
+    }
+
+    // Evict within one category until it fits the given limit. Returns false if
+    // everything left is pinned and the category is still over.
+    public synchronized boolean makeRoom(String category, long limit) {
+        long used = index.getTotalBytes(category);
+        if (used < limit) {
+            return true;
+        }
+        long target = used - (long) (limit * LOW_WATER);
+        return evict(category, target) >= target;
+    }
+
+    private long evict(String category, long bytesToFree) {
+        long freed = 0;
+        while (freed < bytesToFree) {
+            List<NativeIndex.Entry> candidates = index.getEvictionCandidates(category, EVICTION_BATCH);
+            if (candidates.isEmpty()) {
+                Log.w(TAG, "Only pinned entries left, " + (bytesToFree - freed) + " bytes over budget");
+                break;
+            }
+            for (NativeIndex.Entry entry : candidates) {
+                File file = new File(entry.path);
+                // Drop the row even if the delete fails so the loop can't spin on it
+                index.removeEntry(entry.category, entry.key);
+                if (file.exists() && !file.delete()) {
+                    Log.w(TAG, "Could not delete " + entry.path);
+                    continue;
+                }
+                releaseAssetBytes(entry);
+                if (AssetDownloader.AssetType.PAGE_IMAGE.name().equals(entry.category)) {
+                    PageDownloadPlanner.getInstance(context).onPageRemoved(entry.key);
+                    ThumbnailAtlas.getInstance(context).onPageRemoved(PageDownloadPlanner.pageFromKey(entry.key));
+                } else if (VideoCache.CATEGORY.equals(entry.category)) {
+                    VideoCache.onSegmentRemoved(file);
+                }
+                NativeMetrics.increment(NativeMetrics.Counter.EVICTED_FILES);
+                NativeMetrics.add(NativeMetrics.Counter.EVICTED_BYTES, entry.size);
+                freed += entry.size;
+                if (freed >= bytesToFree) {
+                    break;
+                }
+            }
+        }
+        Log.d(TAG, "Evicted " + freed + " bytes" + (category != null ? " from " + category : ""));
+        return freed;
+    }
+
+    // Keep AssetDownloader's per-type usage counters in step with deletions
+    private void releaseAssetBytes(NativeIndex.Entry entry) {
+        for (AssetDownloader.AssetType type : AssetDownloader.AssetType.values()) {
+            if (type.name().equals(entry.category)) {
+                AssetDownloader.getInstance(context).addUsedBytes(type, -entry.size);
+                return;
+            }
+        }
+    }
+
+    // Everything the storage screen needs in one call
+    public JSONObject getUsage() {
+        JSONObject usage = new JSONObject();
+        long budget = getBudget();
+        long used = index.getTotalBytes(null);
+        long deviceFree = recordDiskGauges(budget, used);
+        try {
+            usage.put("budget", budget);
+            usage.put("used", used);
+            usage.put("deviceFree", deviceFree);
+            usage.put("categories", index.getStats());
+        } catch (JSONException e) {
+            Log.e(TAG, "Error building usage report", e);
+        }
+        return usage;
+    }
+
+    private long recordDiskGauges(long budget, long used) {
+        long deviceFree = context.getFilesDir().getUsableSpace();
+        NativeMetrics.set(NativeMetrics.Gauge.DISK_BUDGET_BYTES, budget);
+        NativeMetrics.set(NativeMetrics.Gauge.DISK_USED_BYTES, used);
+        NativeMetrics.set(NativeMetrics.Gauge.DEVICE_FREE_BYTES, deviceFree);
+        return deviceFree;
+    }
+}
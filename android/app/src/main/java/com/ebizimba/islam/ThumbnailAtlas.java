@@ -0,0 +1,412 @@
+package com.ebizimba.islam;
+
+import android.content.Context;
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import android.graphics.Canvas;
+import android.graphics.Color;
+import android.graphics.Paint;
+import android.graphics.Rect;
+import android.util.Log;
+import android.webkit.WebResourceRequest;
+import android.webkit.WebResourceResponse;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+// One sprite image with a thumbnail of every mushaf page, so page grids in the web
+// app are drawn from a single decoded image instead of hundreds of page requests.
+// Served through NativeRequestRouter:
+//   /_native/quran-thumbs/index.json     geometry, version and tile offsets
+//   /_native/quran-thumbs/atlas.jpg?v=n  the sprite
+// Page n sits at column (n-1) % COLUMNS, row (n-1) / COLUMNS. Tiles are drawn as
+// full pages arrive from AssetDownloader; pages that are not downloaded yet use
+// the LowResPagePack preview when one is installed. Updates are batched and the
+// atlas re-encoded once things go quiet, then the listener is told the new version.
+// Tiles are drawn onto a lossless PNG master and only the served JPEG is encoded
+// from it, so repeated batches don't compound JPEG loss. The working bitmap is only
+// held while tiles are being drawn.
+public class ThumbnailAtlas implements NativeRequestRouter.RouteHandler {
+    private static final String TAG = "ThumbnailAtlas";
+    static final String ROUTE = "quran-thumbs";
+    static final int TILE_WIDTH = 48;
+    static final int TILE_HEIGHT = 78;
+    static final int COLUMNS = 25;
+    static final int ROWS = (QuranMetadata.PAGE_COUNT + COLUMNS - 1) / COLUMNS;
+    private static final int JPEG_QUALITY = 80;
+    private static final long SAVE_DELAY_MS = 2000;
+    private static final String DIRECTORY = "quran-thumbs";
+    private static final String ATLAS_FILE = "atlas.jpg";
+    private static final String MASTER_FILE = "atlas.png";
+    private static final String INDEX_FILE = "index.json";
+
+    public interface UpdateListener {
+        // Called on the atlas thread after a new version has been written
+        void onAtlasUpdated(int version);
+    }
+
+    private static ThumbnailAtlas instance;
+
+    private final Context context;
+    private final File directory;
+    // All drawing, loading and saving runs here, so the fields below need no locks
+    private final ScheduledExecutorService executor = Executors.newSingleThreadScheduledExecutor(runnable ->
+        new Thread(runnable, "thumbnail-atlas"));
+    private final Paint paint = new Paint(Paint.FILTER_BITMAP_FLAG);
+    // Bit n set: the tile for page n comes from the full page / from the preview
+    private final BitSet fullPages = new BitSet(QuranMetadata.PAGE_COUNT + 1);
+    private final BitSet previewPages = new BitSet(QuranMetadata.PAGE_COUNT + 1);
+    private Bitmap atlas;
+    private boolean saveScheduled = false;
+    // Guarded by this: the version and page sets of the last saved atlas, which is
+    // what index.json describes
+    private int version = 0;
+    private BitSet savedFull = new BitSet();
+    private BitSet savedPreview = new BitSet();
+    private volatile UpdateListener listener;
+
+    public static synchronized ThumbnailAtlas getInstance(Context context) {
+        if (instance == null) {
+            instance = new ThumbnailAtlas(context.getApplicationContext());
+        }
+        return instance;
+    }
+
+    private ThumbnailAtlas(Context context) {
+        this.context = context;
+        this.directory = new File(context.getFilesDir(), DIRECTORY);
+        executor.execute(this::restore);
+    }
+
+    public void setListener(UpdateListener listener) {
+        this.listener = listener;
+    }
+
+    // A full page is on disk; replace whatever tile it had
+    void onPageStored(int page, File file) {
+        if (!QuranMetadata.isValidPage(page)) {
+            return;
+        }
+        executor.execute(() -> {
+            if (!fullPages.get(page) && drawPage(page, file)) {
+                fullPages.set(page);
+                previewPages.clear(page);
+                scheduleSave();
+            }
+        });
+    }
+
+    // The full page was evicted. Its tile stays as a preview until it is downloaded
+    // again, so grids stop showing it as on the device.
+    void onPageRemoved(int page) {
+        if (!QuranMetadata.isValidPage(page)) {
+            return;
+        }
+        executor.execute(() -> {
+            if (!fullPages.get(page)) {
+                return;
+            }
+            fullPages.clear(page);
+            previewPages.set(page);
+            // A pending save publishes the change with its tiles; otherwise the
+            // pixels are unchanged and only the index needs rewriting
+            if (!saveScheduled) {
+                publish();
+            }
+        });
+    }
+
+    @Override
+    public WebResourceResponse handle(WebResourceRequest request, List<String> segments) {
+        if (segments.size() != 1) {
+            return null;
+        }
+        switch (segments.get(0)) {
+            case INDEX_FILE:
+                return NativeRequestRouter.json(describe().toString());
+            case ATLAS_FILE:
+                File file = new File(directory, ATLAS_FILE);
+                try {
+                    Map<String, String> headers = new HashMap<>();
+                    headers.put("Content-Length", String.valueOf(file.length()));
+                    // Each version has its own ?v= URL
+                    headers.put("Cache-Control", "private, max-age=31536000");
+                    return new WebResourceResponse("image/jpeg", null, 200, "OK", headers, new FileInputStream(file));
+                } catch (FileNotFoundException e) {
+                    return null;
+                }
+            default:
+                return null;
+        }
+    }
+
+    // What index.json serves. Offsets are [x, y] pairs in page order, so page n is
+    // at offsets[2(n-1)], offsets[2(n-1)+1].
+    JSONObject describe() {
+        JSONObject index = new JSONObject();
+        try {
+            synchronized (this) {
+                index.put("version", version);
+                index.put("url", "/_native/" + ROUTE + "/" + ATLAS_FILE + "?v=" + version);
+                index.put("pages", PageDownloadPlanner.toRanges(savedFull));
+                index.put("previewPages", PageDownloadPlanner.toRanges(savedPreview));
+            }
+            index.put("tileWidth", TILE_WIDTH);
+            index.put("tileHeight", TILE_HEIGHT);
+            index.put("width", TILE_WIDTH * COLUMNS);
+            index.put("height", TILE_HEIGHT * ROWS);
+            JSONArray offsets = new JSONArray();
+            for (int page = 1; page <= QuranMetadata.PAGE_COUNT; page++) {
+                offsets.put(tileLeft(page)).put(tileTop(page));
+            }
+            index.put("offsets", offsets);
+        } catch (JSONException e) {
+            // Keys are fixed and values are numbers or arrays; nothing here can fail
+        }
+        return index;
+    }
+
+    static int tileLeft(int page) {
+        return ((page - 1) % COLUMNS) * TILE_WIDTH;
+    }
+
+    static int tileTop(int page) {
+        return ((page - 1) / COLUMNS) * TILE_HEIGHT;
+    }
+
+    // Pick up the saved atlas, then draw any downloaded pages it is missing and
+    // fill the remaining gaps from the preview pack
+    private void restore() {
+        readIndex();
+        JSONArray keys = NativeIndex.getInstance(context).getKeys(AssetDownloader.AssetType.PAGE_IMAGE.name());
+        AssetDownloader downloader = AssetDownloader.getInstance(context);
+        BitSet stored = new BitSet(QuranMetadata.PAGE_COUNT + 1);
+        for (int i = 0; i < keys.length(); i++) {
+            int page = PageDownloadPlanner.pageFromKey(keys.optString(i));
+            if (page > 0) {
+                stored.set(page);
+            }
+            if (page > 0 && !fullPages.get(page)
+                    && drawPage(page, downloader.getFile(AssetDownloader.AssetType.PAGE_IMAGE, keys.optString(i)))) {
+                fullPages.set(page);
+                previewPages.clear(page);
+            }
+        }
+        // Pages evicted since the index was written keep their tile as a preview
+        BitSet evicted = (BitSet) fullPages.clone();
+        evicted.andNot(stored);
+        boolean indexChanged = !evicted.isEmpty();
+        fullPages.andNot(evicted);
+        previewPages.or(evicted);
+        LowResPagePack pack = LowResPagePack.getInstance(context);
+        if (pack.isAvailable()) {
+            for (int page = 1; page <= QuranMetadata.PAGE_COUNT; page++) {
+                if (!fullPages.get(page) && !previewPages.get(page) && drawPreview(page, pack.getPage(page))) {
+                    previewPages.set(page);
+                }
+            }
+        }
+        if (atlas != null) {
+            save();
+        } else if (indexChanged) {
+            publish();
+        }
+    }
+
+    private boolean drawPage(int page, File file) {
+        BitmapFactory.Options bounds = new BitmapFactory.Options();
+        bounds.inJustDecodeBounds = true;
+        BitmapFactory.decodeFile(file.getPath(), bounds);
+        if (bounds.outWidth <= 0) {
+            return false;
+        }
+        BitmapFactory.Options options = new BitmapFactory.Options();
+        options.inSampleSize = sampleSize(bounds.outWidth);
+        options.inPreferredConfig = Bitmap.Config.RGB_565;
+        return drawTile(page, BitmapFactory.decodeFile(file.getPath(), options));
+    }
+
+    private boolean drawPreview(int page, ByteBuffer jpeg) {
+        if (jpeg == null) {
+            return false;
+        }
+        byte[] data = new byte[jpeg.remaining()];
+        jpeg.get(data);
+        BitmapFactory.Options options = new BitmapFactory.Options();
+        options.inPreferredConfig = Bitmap.Config.RGB_565;
+        return drawTile(page, BitmapFactory.decodeByteArray(data, 0, data.length, options));
+    }
+
+    private boolean drawTile(int page, Bitmap source) {
+        if (source == null) {
+            return false;
+        }
+        Canvas canvas = new Canvas(workingBitmap());
+        int left = tileLeft(page);
+        int top = tileTop(page);
+        canvas.drawBitmap(source, null, new Rect(left, top, left + TILE_WIDTH, top + TILE_HEIGHT), paint);
+        source.recycle();
+        return true;
+    }
+
+    // Largest power of two that still leaves the decoded page at least two tiles wide
+    static int sampleSize(int width) {
+        int sample = 1;
+        while (width / (sample * 2) >= TILE_WIDTH * 2) {
+            sample *= 2;
+        }
+        return sample;
+    }
+
+    private Bitmap workingBitmap() {
+        if (atlas == null) {
+            File file = new File(directory, MASTER_FILE);
+            if (file.exists()) {
+                BitmapFactory.Options options = new BitmapFactory.Options();
+                options.inMutable = true;
+                options.inPreferredConfig = Bitmap.Config.RGB_565;
+                atlas = BitmapFactory.decodeFile(file.getPath(), options);
+            }
+            if (atlas == null || atlas.getWidth() != TILE_WIDTH * COLUMNS || atlas.getHeight() != TILE_HEIGHT * ROWS) {
+                atlas = Bitmap.createBitmap(TILE_WIDTH * COLUMNS, TILE_HEIGHT * ROWS, Bitmap.Config.RGB_565);
+                atlas.eraseColor(Color.WHITE);
+                fullPages.clear();
+                previewPages.clear();
+            }
+        }
+        return atlas;
+    }
+
+    // Batch the pages of a download into one re-encode
+    private void scheduleSave() {
+        if (!saveScheduled) {
+            saveScheduled = true;
+            executor.schedule(this::save, SAVE_DELAY_MS, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    private void save() {
+        saveScheduled = false;
+        if (atlas == null) {
+            return;
+        }
+        if (!directory.exists()) {
+            directory.mkdirs();
+        }
+        if (!writeImage(MASTER_FILE, Bitmap.CompressFormat.PNG, 100)
+                || !writeImage(ATLAS_FILE, Bitmap.CompressFormat.JPEG, JPEG_QUALITY)) {
+            return;
+        }
+        atlas.recycle();
+        atlas = null;
+        publish();
+    }
+
+    private boolean writeImage(String name, Bitmap.CompressFormat format, int quality) {
+        File file = new File(directory, name);
+        File temp = new File(directory, name + ".tmp");
+        try (OutputStream output = new FileOutputStream(temp)) {
+            atlas.compress(format, quality, output);
+        } catch (IOException e) {
+            Log.e(TAG, "Error writing " + name, e);
+            temp.delete();
+            return false;
+        }
+        if (!temp.renameTo(file)) {
+            temp.delete();
+            return false;
+        }
+        return true;
+    }
+
+    // Make the current page sets the ones index.json describes and tell the listener
+    private void publish() {
+        int saved;
+        synchronized (this) {
+            saved = ++version;
+            savedFull = (BitSet) fullPages.clone();
+            savedPreview = (BitSet) previewPages.clone();
+        }
+        writeIndex(saved);
+        UpdateListener current = listener;
+        if (current != null) {
+            current.onAtlasUpdated(saved);
+        }
+    }
+
+    private void writeIndex(int saved) {
+        JSONObject index = new JSONObject();
+        try {
+            index.put("version", saved);
+            index.put("pages", PageDownloadPlanner.toRanges(fullPages));
+            index.put("previewPages", PageDownloadPlanner.toRanges(previewPages));
+        } catch (JSONException e) {
+            return;
+        }
+        File file = new File(directory, INDEX_FILE);
+        File temp = new File(directory, INDEX_FILE + ".tmp");
+        try (OutputStream output = new FileOutputStream(temp)) {
+            output.write(index.toString().getBytes(StandardCharsets.UTF_8));
+        } catch (IOException e) {
+            Log.e(TAG, "Error writing thumbnail index", e);
+            temp.delete();
+            return;
+        }
+        if (!temp.renameTo(file)) {
+            temp.delete();
+        }
+    }
+
+    private void readIndex() {
+        File file = new File(directory, INDEX_FILE);
+        // Without the master (atlases saved before it existed) every tile is redrawn
+        if (!file.exists() || !new File(directory, ATLAS_FILE).exists() || !new File(directory, MASTER_FILE).exists()) {
+            return;
+        }
+        try (FileInputStream input = new FileInputStream(file)) {
+            JSONObject index = new JSONObject(NativeIo.readString(input));
+            readRanges(index.optJSONArray("pages"), fullPages);
+            readRanges(index.optJSONArray("previewPages"), previewPages);
+            synchronized (this) {
+                version = index.optInt("version");
+                savedFull = (BitSet) fullPages.clone();
+                savedPreview = (BitSet) previewPages.clone();
+            }
+        } catch (IOException | JSONException e) {
+            Log.w(TAG, "Ignoring unreadable thumbnail index: " + e.getMessage());
+            fullPages.clear();
+            previewPages.clear();
+        }
+    }
+
+    private static void readRanges(JSONArray ranges, BitSet into) throws JSONException {
+        if (ranges == null) {
+            return;
+        }
+        for (int i = 0; i < ranges.length(); i++) {
+            JSONArray range = ranges.getJSONArray(i);
+            int first = range.getInt(0);
+            int last = range.getInt(1);
+            if (QuranMetadata.isValidPage(first) && QuranMetadata.isValidPage(last) && first <= last) {
+                into.set(first, last + 1);
+            }
+        }
+    }
+}
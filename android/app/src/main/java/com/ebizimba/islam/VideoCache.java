@@ -0,0 +1,403 @@
+package com.ebizimba.islam;
+
+import android.content.Context;
+import android.os.Process;
+import android.os.SystemClock;
+import android.util.Log;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+// Segment store behind LocalVideoProxy. A video is cut on SEGMENT_SIZE boundaries
+// and each segment is fetched with an HTTP Range request the first time playback
+// reaches it, streamed to the player while it is written to disk. A reel watched
+// halfway keeps the half that was watched; a replay or a scroll back plays from
+// disk. Segments are NativeIndex entries in their own category, so StorageGovernor
+// evicts them least recently used first once the category passes BUDGET; the
+// video's directory goes with its last segment.
+final class VideoCache {
+    private static final String TAG = "VideoCache";
+    static final String CATEGORY = "VIDEO_SEGMENT";
+    static final int SEGMENT_SIZE = 1024 * 1024;
+    private static final long BUDGET = 256L * 1024 * 1024;
+    private static final String CACHE_DIR = "video-cache";
+    private static final String META_FILE = "meta.json";
+    // How long a video whose server ignored Range is redirected without asking again;
+    // a CDN that answered 200 once may well honour Range on a later request
+    private static final long RANGELESS_TTL_MS = 60 * 60 * 1000;
+    private static final Pattern CONTENT_RANGE = Pattern.compile("bytes \\d+-\\d+/(\\d+)");
+
+    private static VideoCache instance;
+
+    private final File root;
+    private final NativeIndex index;
+    private final StorageGovernor governor;
+    private final Set<String> prefetching = ConcurrentHashMap.newKeySet();
+    // Video URL to the elapsedRealtime until which it is treated as rangeless. Kept
+    // in memory only, so a restart always probes again.
+    private final Map<String, Long> rangeless = new ConcurrentHashMap<>();
+    private final ExecutorService prefetchExecutor = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(() -> {
+            Process.setThreadPriority(Process.THREAD_PRIORITY_BACKGROUND);
+            runnable.run();
+        }, "video-prefetch");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    // Total length and type of a video, known once its first segment has been fetched
+    static final class Meta {
+        final long length;
+        final String contentType;
+
+        Meta(long length, String contentType) {
+            this.length = length;
+            this.contentType = contentType;
+        }
+
+        int segmentLength(int segment) {
+            return (int) Math.min(SEGMENT_SIZE, length - (long) segment * SEGMENT_SIZE);
+        }
+    }
+
+    // The answer to one player request, started once the video's meta is known
+    interface Responder {
+        // Write the response head for meta and return the first and last byte of the
+        // video to send after it, or null to send nothing more. Called before any
+        // body bytes are written.
+        long[] begin(Meta meta) throws IOException;
+    }
+
+    static synchronized VideoCache getInstance(Context context) {
+        if (instance == null) {
+            instance = new VideoCache(context.getApplicationContext());
+        }
+        return instance;
+    }
+
+    private VideoCache(Context context) {
+        this.root = new File(context.getCacheDir(), CACHE_DIR);
+        this.index = NativeIndex.getInstance(context);
+        this.governor = StorageGovernor.getInstance(context);
+    }
+
+    // Length and type of the video, fetching its first segment if it is new. null
+    // when the server doesn't answer Range requests, so it can't be cached this way.
+    Meta meta(String url) throws IOException {
+        Meta meta = readMeta(url);
+        if (meta != null || isRangeless(url)) {
+            return meta;
+        }
+        return fetchFirst(url, null, null);
+    }
+
+    // Answer a player request for url. A new video's first segment is streamed to
+    // output as it arrives, with responder's head going out as soon as the response
+    // headers give the length, so playback doesn't wait for the whole segment.
+    // Returns false, having written nothing, when the server ignores Range requests.
+    boolean serve(String url, Responder responder, OutputStream output) throws IOException {
+        Meta meta = readMeta(url);
+        if (meta != null) {
+            long[] range = responder.begin(meta);
+            if (range != null) {
+                copyRange(url, meta, range[0], range[1], output);
+            }
+            return true;
+        }
+        if (isRangeless(url)) {
+            return false;
+        }
+        long[][] requested = new long[1][];
+        meta = fetchFirst(url, output, fetched -> requested[0] = responder.begin(fetched));
+        if (meta == null) {
+            return false;
+        }
+        // The first segment's share went out while it was fetched
+        long[] range = requested[0];
+        if (range != null && range[1] >= SEGMENT_SIZE) {
+            copyRange(url, meta, Math.max(range[0], SEGMENT_SIZE), range[1], output);
+        }
+        return true;
+    }
+
+    // Write bytes start..end (inclusive) of the video to output: cached segments
+    // from disk, the rest from the network, keeping them for next time
+    void copyRange(String url, Meta meta, long start, long end, OutputStream output) throws IOException {
+        for (int segment = (int) (start / SEGMENT_SIZE); segment <= end / SEGMENT_SIZE; segment++) {
+            long segmentStart = (long) segment * SEGMENT_SIZE;
+            long from = Math.max(start, segmentStart) - segmentStart;
+            long to = Math.min(end, segmentStart + meta.segmentLength(segment) - 1) - segmentStart;
+            if (!copyCached(url, segment, output, from, to)) {
+                NativeMetrics.increment(NativeMetrics.Counter.VIDEO_CACHE_MISSES);
+                if (fetchSegment(url, meta, segment, output, from, to, null) == null) {
+                    throw new IOException("Range request refused for " + url);
+                }
+            }
+        }
+    }
+
+    // Fetch the opening segment of each video ahead of playback, so the next reels
+    // start from disk
+    void prefetch(List<String> urls) {
+        for (String url : urls) {
+            if (!prefetching.add(url)) {
+                continue;
+            }
+            prefetchExecutor.execute(() -> {
+                try {
+                    Meta meta = meta(url);
+                    if (meta != null && !segmentFile(url, 0).exists()) {
+                        fetchSegment(url, meta, 0, null, 0, -1, null);
+                    }
+                } catch (IOException e) {
+                    Log.w(TAG, "Prefetch failed for " + url + ": " + e.getMessage());
+                } finally {
+                    prefetching.remove(url);
+                }
+            });
+        }
+    }
+
+    private boolean copyCached(String url, int segment, OutputStream output, long from, long to) throws IOException {
+        File file = segmentFile(url, segment);
+        InputStream input;
+        try {
+            input = new FileInputStream(file);
+        } catch (FileNotFoundException e) {
+            return false;
+        }
+        NativeMetrics.increment(NativeMetrics.Counter.VIDEO_CACHE_HITS);
+        index.touchEntry(CATEGORY, segmentKey(url, segment));
+        ByteBuffer buffer = NativeIo.acquire();
+        try (InputStream in = input) {
+            byte[] array = buffer.array();
+            long skipped = 0;
+            while (skipped < from) {
+                long n = in.skip(from - skipped);
+                if (n <= 0) {
+                    throw new IOException("Short segment " + file);
+                }
+                skipped += n;
+            }
+            long remaining = to - from + 1;
+            while (remaining > 0) {
+                int read = in.read(array, 0, (int) Math.min(array.length, remaining));
+                if (read == -1) {
+                    throw new IOException("Short segment " + file);
+                }
+                output.write(array, 0, read);
+                remaining -= read;
+            }
+        } finally {
+            NativeIo.release(buffer);
+        }
+        return true;
+    }
+
+    // Fetch segment 0 of a video not seen before; its response supplies the meta. A
+    // server that ignores Range is remembered for RANGELESS_TTL_MS, so requests in
+    // that time redirect at once.
+    private Meta fetchFirst(String url, OutputStream output, Responder responder) throws IOException {
+        Meta meta = fetchSegment(url, null, 0, output, 0, -1, responder);
+        if (meta == null) {
+            rangeless.put(url, SystemClock.elapsedRealtime() + RANGELESS_TTL_MS);
+        }
+        return meta;
+    }
+
+    private boolean isRangeless(String url) {
+        Long until = rangeless.get(url);
+        if (until == null) {
+            return false;
+        }
+        if (SystemClock.elapsedRealtime() < until) {
+            return true;
+        }
+        rangeless.remove(url, until);
+        return false;
+    }
+
+    // Called by StorageGovernor once it has deleted a segment. When that was the
+    // video's last one, its meta and directory are deleted too. A directory with a
+    // download in progress (a .part file) is left alone.
+    static void onSegmentRemoved(File segment) {
+        File dir = segment.getParentFile();
+        File[] left = dir != null ? dir.listFiles() : null;
+        if (left == null) {
+            return;
+        }
+        for (File file : left) {
+            if (!file.getName().equals(META_FILE)) {
+                return;
+            }
+        }
+        new File(dir, META_FILE).delete();
+        dir.delete();
+    }
+
+    private Meta readMeta(String url) {
+        File metaFile = new File(new File(root, videoKey(url)), META_FILE);
+        if (!metaFile.exists()) {
+            return null;
+        }
+        try (InputStream input = new FileInputStream(metaFile)) {
+            JSONObject json = new JSONObject(NativeIo.readString(input));
+            return new Meta(json.getLong("length"), json.getString("contentType"));
+        } catch (IOException | JSONException e) {
+            // Unreadable; the caller fetches it again
+            return null;
+        }
+    }
+
+    // Download one segment to disk, copying bytes from..to of it to output on the
+    // way (output may be null). meta is null for the first fetch of a video, whose
+    // response supplies it; responder, if given, is then asked which bytes of the
+    // video to copy instead of from..to. Returns the video's meta, or null if the
+    // server ignored the Range header.
+    private Meta fetchSegment(String url, Meta meta, int segment, OutputStream output, long from, long to,
+                              Responder responder) throws IOException {
+        long segmentStart = (long) segment * SEGMENT_SIZE;
+        long segmentEnd = segmentStart + (meta != null ? meta.segmentLength(segment) : SEGMENT_SIZE) - 1;
+        HttpURLConnection connection = (HttpURLConnection) new URL(url).openConnection();
+        File target = segmentFile(url, segment);
+        File temp = new File(target.getPath() + "." + Thread.currentThread().getId() + ".part");
+        try {
+            connection.setConnectTimeout(15000);
+            connection.setReadTimeout(15000);
+            connection.setRequestProperty("Range", "bytes=" + segmentStart + "-" + segmentEnd);
+            int status = connection.getResponseCode();
+            if (status != HttpURLConnection.HTTP_PARTIAL) {
+                if (status == HttpURLConnection.HTTP_OK) {
+                    return null;
+                }
+                throw new IOException("HTTP " + status + " for " + url);
+            }
+            if (meta == null) {
+                Matcher matcher = CONTENT_RANGE.matcher(String.valueOf(connection.getHeaderField("Content-Range")));
+                if (!matcher.matches()) {
+                    return null;
+                }
+                String contentType = connection.getContentType();
+                meta = new Meta(Long.parseLong(matcher.group(1)), contentType != null ? contentType : "video/mp4");
+                segmentEnd = segmentStart + meta.segmentLength(segment) - 1;
+                // Saved now so requests that arrive while this segment downloads
+                // don't fetch it a second time just to learn the length
+                writeMeta(new File(new File(root, videoKey(url)), META_FILE), meta);
+                if (responder != null) {
+                    long[] range = responder.begin(meta);
+                    if (range == null || range[0] > segmentEnd) {
+                        output = null;
+                    } else {
+                        from = range[0] - segmentStart;
+                        to = Math.min(range[1], segmentEnd) - segmentStart;
+                    }
+                }
+            }
+
+            governor.makeRoom(CATEGORY, BUDGET);
+            File parent = temp.getParentFile();
+            if (parent != null && !parent.exists()) {
+                parent.mkdirs();
+            }
+            long expected = segmentEnd - segmentStart + 1;
+            long position = 0;
+            ByteBuffer buffer = NativeIo.acquire();
+            try (InputStream input = connection.getInputStream();
+                 OutputStream file = new FileOutputStream(temp)) {
+                byte[] array = buffer.array();
+                int read;
+                while ((read = input.read(array)) != -1) {
+                    file.write(array, 0, read);
+                    if (output != null) {
+                        // The part of this chunk that falls inside from..to
+                        int first = (int) Math.max(0, from - position);
+                        int last = (int) Math.min(read - 1, to - position);
+                        if (first <= last) {
+                            output.write(array, first, last - first + 1);
+                        }
+                    }
+                    position += read;
+                }
+            } finally {
+                NativeIo.release(buffer);
+            }
+            NativeMetrics.add(NativeMetrics.Counter.DOWNLOAD_BYTES, position);
+            if (position != expected) {
+                throw new IOException("Segment " + segment + " of " + url + " was " + position + " of " + expected + " bytes");
+            }
+            // Only a complete segment is ever visible under the final name
+            if (temp.renameTo(target)) {
+                index.recordEntry(CATEGORY, segmentKey(url, segment), target, null);
+            }
+            return meta;
+        } finally {
+            temp.delete();
+            connection.disconnect();
+        }
+    }
+
+    private void writeMeta(File metaFile, Meta meta) {
+        File parent = metaFile.getParentFile();
+        if (parent != null && !parent.exists()) {
+            parent.mkdirs();
+        }
+        File temp = new File(metaFile.getPath() + ".tmp");
+        try (OutputStream output = new FileOutputStream(temp)) {
+            JSONObject json = new JSONObject();
+            json.put("length", meta.length);
+            json.put("contentType", meta.contentType);
+            output.write(json.toString().getBytes(StandardCharsets.UTF_8));
+        } catch (IOException | JSONException e) {
+            Log.w(TAG, "Cannot save video meta: " + e.getMessage());
+            temp.delete();
+            return;
+        }
+        if (!temp.renameTo(metaFile)) {
+            temp.delete();
+        }
+    }
+
+    private File segmentFile(String url, int segment) {
+        return new File(root, segmentKey(url, segment));
+    }
+
+    private static String segmentKey(String url, int segment) {
+        return videoKey(url) + "/" + segment + ".seg";
+    }
+
+    // Directory name for a video: a hash of its URL
+    private static String videoKey(String url) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-1").digest(url.getBytes(StandardCharsets.UTF_8));
+            StringBuilder hex = new StringBuilder();
+            for (int i = 0; i < 10; i++) {
+                hex.append(String.format("%02x", digest[i]));
+            }
+            return hex.toString();
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
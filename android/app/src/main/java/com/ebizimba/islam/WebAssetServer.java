@@ -0,0 +1,179 @@
+package com.ebizimba.islam;
+
+import android.content.Context;
+import android.util.Log;
+import android.webkit.WebResourceResponse;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TimeZone;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+// Serves the web bundle's /assets/ files in place of Capacitor's local server,
+// from the active downloaded bundle (WebBundleUpdater) or the APK's public/.
+//
+// Vite names every chunk after its content hash, so those responses are marked
+// immutable with a Last-Modified fixed to the bundle rather than "now". Chromium
+// keys V8's code cache to the script's URL and response time, so a stable response
+// lets compiled code from the previous launch be reused instead of being thrown
+// away each start.
+//
+// warmUp() reads the chunks index.html loads first (the entry module, its
+// modulepreloads and the stylesheet) into memory while the splash is up, so the
+// WebView's first requests don't wait on inflating them from the APK. Each warmed
+// copy is dropped once served.
+//
+// index.html itself is left to Capacitor, which injects its bridge script into it.
+// Files are not precompressed here: aapt already deflates assets in the APK, and a
+// WebResourceResponse body must be sent decoded, so a .gz copy would only be
+// inflated again on the same thread.
+final class WebAssetServer {
+    private static final String TAG = "WebAssetServer";
+    static final String ASSETS_SEGMENT = "assets";
+    private static final String BUILT_IN_ROOT = "public";
+    private static final String IMMUTABLE = "public, max-age=31536000, immutable";
+    // Vite's "[name]-[hash].[ext]": an 8-character base64url hash
+    private static final Pattern HASHED_NAME = Pattern.compile(".+-[A-Za-z0-9_-]{8}\\.[a-z0-9]+$");
+    private static final Pattern ENTRY_REFERENCE =
+        Pattern.compile("(?:src|href)=\"/(assets/[^\"]+\\.(?:js|css))\"");
+    private static final Map<String, String> MIME_TYPES = new HashMap<>();
+
+    static {
+        MIME_TYPES.put("js", "application/javascript");
+        MIME_TYPES.put("mjs", "application/javascript");
+        MIME_TYPES.put("css", "text/css");
+        MIME_TYPES.put("json", "application/json");
+        MIME_TYPES.put("svg", "image/svg+xml");
+        MIME_TYPES.put("png", "image/png");
+        MIME_TYPES.put("jpg", "image/jpeg");
+        MIME_TYPES.put("jpeg", "image/jpeg");
+        MIME_TYPES.put("webp", "image/webp");
+        MIME_TYPES.put("woff", "font/woff");
+        MIME_TYPES.put("woff2", "font/woff2");
+        MIME_TYPES.put("ttf", "font/ttf");
+        MIME_TYPES.put("wasm", "application/wasm");
+    }
+
+    private final Context context;
+    // Downloaded bundle directory, or null to read the APK's assets
+    private final File bundleDir;
+    private final String lastModified;
+    private final Map<String, byte[]> warmed = new ConcurrentHashMap<>();
+
+    WebAssetServer(Context context, String bundleDir) {
+        this.context = context.getApplicationContext();
+        this.bundleDir = bundleDir != null ? new File(bundleDir) : null;
+        this.lastModified = httpDate(bundleTime());
+    }
+
+    // Read the entry chunks into memory; call off the main thread during the splash
+    void warmUp() {
+        long started = NativeMetrics.start();
+        String html;
+        try (InputStream input = open("index.html")) {
+            html = NativeIo.readString(input);
+        } catch (IOException e) {
+            Log.w(TAG, "No index.html to warm from: " + e.getMessage());
+            return;
+        }
+        List<String> entries = new ArrayList<>();
+        Matcher matcher = ENTRY_REFERENCE.matcher(html);
+        while (matcher.find()) {
+            entries.add(matcher.group(1));
+        }
+        for (String path : entries) {
+            try (InputStream input = open(path)) {
+                warmed.put(path, NativeIo.readBytes(input));
+            } catch (IOException e) {
+                Log.w(TAG, "Cannot warm " + path + ": " + e.getMessage());
+            }
+        }
+        NativeMetrics.stop(NativeMetrics.Timer.WEB_ASSET_WARM_UP, started);
+    }
+
+    // segments are the request's path segments, starting with "assets"; null lets
+    // the request fall through to Capacitor
+    WebResourceResponse serve(List<String> segments) {
+        String path = String.join("/", segments);
+        if (path.contains("..")) {
+            return null;
+        }
+        String name = segments.get(segments.size() - 1);
+        int dot = name.lastIndexOf('.');
+        String mimeType = dot >= 0 ? MIME_TYPES.get(name.substring(dot + 1).toLowerCase(Locale.ROOT)) : null;
+        if (mimeType == null) {
+            return null;
+        }
+
+        InputStream body;
+        long length;
+        byte[] preloaded = warmed.remove(path);
+        if (preloaded != null) {
+            NativeMetrics.increment(NativeMetrics.Counter.WEB_ASSET_WARM_HITS);
+            body = new ByteArrayInputStream(preloaded);
+            length = preloaded.length;
+        } else {
+            try {
+                if (bundleDir != null) {
+                    File file = new File(bundleDir, path);
+                    body = new FileInputStream(file);
+                    length = file.length();
+                } else {
+                    body = context.getAssets().open(BUILT_IN_ROOT + "/" + path);
+                    length = -1;
+                }
+            } catch (IOException e) {
+                return null;
+            }
+        }
+
+        Map<String, String> headers = new HashMap<>();
+        if (length >= 0) {
+            headers.put("Content-Length", String.valueOf(length));
+        }
+        headers.put("Cache-Control", HASHED_NAME.matcher(name).matches() ? IMMUTABLE : "no-cache");
+        headers.put("Last-Modified", lastModified);
+        String charset = mimeType.startsWith("image/") || mimeType.startsWith("font/") || mimeType.endsWith("wasm")
+            ? null : StandardCharsets.UTF_8.name();
+        return new WebResourceResponse(mimeType, charset, 200, "OK", headers, body);
+    }
+
+    private InputStream open(String path) throws IOException {
+        if (bundleDir != null) {
+            return new FileInputStream(new File(bundleDir, path));
+        }
+        return context.getAssets().open(BUILT_IN_ROOT + "/" + path);
+    }
+
+    // When the bundle being served was installed: the download for an OTA bundle,
+    // the APK install or update otherwise
+    private long bundleTime() {
+        if (bundleDir != null) {
+            return bundleDir.lastModified();
+        }
+        try {
+            return context.getPackageManager().getPackageInfo(context.getPackageName(), 0).lastUpdateTime;
+        } catch (Exception e) {
+            return 0;
+        }
+    }
+
+    private static String httpDate(long millis) {
+        SimpleDateFormat format = new SimpleDateFormat("EEE, dd MMM yyyy HH:mm:ss 'GMT'", Locale.US);
+        format.setTimeZone(TimeZone.getTimeZone("GMT"));
+        return format.format(new Date(millis));
+    }
+}
@@ -0,0 +1,506 @@
+package com.ebizimba.islam;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.util.Log;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.KeyFactory;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.security.PublicKey;
+import java.security.Signature;
+import java.security.spec.X509EncodedKeySpec;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.Consumer;
+import java.util.zip.GZIPInputStream;
+
+// Over-the-air updates for the bundled web app (assets/public). A release publishes
+// a signed manifest listing every file of the new bundle with its SHA-256; this
+// class fetches only what changed and stages a complete bundle under
+// files/web-bundles/<version>, which Capacitor serves from the next launch on.
+//
+// For each file, cheapest source first:
+//   1. same hash in the running bundle      copied locally, no network
+//   2. a delta from a file we have          gzipped QDL1 patch (see applyDelta)
+//   3. otherwise                            the gzipped file
+// Every result is checked against the manifest hash before the bundle is staged.
+//
+// Switching is atomic at launch: a staged bundle becomes active and is on trial
+// until the web app calls notifyWebAppReady. If a launch ends without that, the
+// next launch marks the version failed and goes back to the previous bundle (or
+// the one in the APK). An APK update drops all downloaded bundles, since they were
+// built against the old native side.
+//
+// Signed envelope: {"manifest": base64(json), "signature": base64(SHA256withECDSA)}
+// Manifest: {"version", "bundleBytes", "files": [{"path", "sha256", "size", "url",
+//   "deltas": [{"from": sha256, "url", "size"}]}]}; URLs are relative to the envelope.
+// Updates are off unless the build sets webUpdateManifestUrl and webUpdatePublicKey.
+final class WebBundleUpdater {
+    private static final String TAG = "WebBundleUpdater";
+    private static final String PREFS_NAME = "WebBundlePrefs";
+    private static final String ACTIVE_KEY = "active";
+    private static final String PREVIOUS_KEY = "previous";
+    private static final String PENDING_KEY = "pending";
+    private static final String ON_TRIAL_KEY = "onTrial";
+    private static final String FAILED_KEY = "failed";
+    private static final String NATIVE_VERSION_KEY = "nativeVersion";
+    private static final String DIRECTORY = "web-bundles";
+    private static final String BUILT_IN_ASSETS = "public";
+    private static final String MANIFEST_FILE = "bundle-manifest.json";
+    private static final int DELTA_MAGIC = 0x51444C31;
+    private static final int OP_END = 0;
+    private static final int OP_COPY = 1;
+    private static final int OP_INSERT = 2;
+
+    private static WebBundleUpdater instance;
+
+    private final Context context;
+    private final SharedPreferences prefs;
+    private final File root;
+    private final ExecutorService executor = Executors.newSingleThreadExecutor();
+
+    static synchronized WebBundleUpdater getInstance(Context context) {
+        if (instance == null) {
+            instance = new WebBundleUpdater(context.getApplicationContext());
+        }
+        return instance;
+    }
+
+    private WebBundleUpdater(Context context) {
+        this.context = context;
+        this.prefs = context.getSharedPreferences(PREFS_NAME, 0);
+        this.root = new File(context.getFilesDir(), DIRECTORY);
+    }
+
+    static boolean isConfigured() {
+        return !BuildConfig.WEB_UPDATE_MANIFEST_URL.isEmpty() && !BuildConfig.WEB_UPDATE_PUBLIC_KEY.isEmpty();
+    }
+
+    // Called once per launch before the WebView loads. Applies rollback and pending
+    // switches and returns the directory to serve, or null for the APK's bundle.
+    synchronized String selectAtLaunch() {
+        SharedPreferences.Editor editor = prefs.edit();
+        if (prefs.getInt(NATIVE_VERSION_KEY, BuildConfig.VERSION_CODE) != BuildConfig.VERSION_CODE) {
+            editor.remove(ACTIVE_KEY).remove(PREVIOUS_KEY).remove(PENDING_KEY).remove(ON_TRIAL_KEY).remove(FAILED_KEY);
+            editor.putInt(NATIVE_VERSION_KEY, BuildConfig.VERSION_CODE).commit();
+            deleteAllExcept(new HashSet<>());
+            return null;
+        }
+        editor.putInt(NATIVE_VERSION_KEY, BuildConfig.VERSION_CODE);
+
+        String active = prefs.getString(ACTIVE_KEY, null);
+        String previous = prefs.getString(PREVIOUS_KEY, null);
+        if (active != null && prefs.getBoolean(ON_TRIAL_KEY, false)) {
+            Log.w(TAG, "Web bundle " + active + " never reported ready; rolling back");
+            editor.putString(FAILED_KEY, addFailed(active));
+            active = previous;
+            previous = null;
+            editor.putBoolean(ON_TRIAL_KEY, false);
+        }
+
+        String pending = prefs.getString(PENDING_KEY, null);
+        editor.remove(PENDING_KEY);
+        if (pending != null && bundleDir(pending).isDirectory() && !isFailed(pending)) {
+            previous = active;
+            active = pending;
+            editor.putBoolean(ON_TRIAL_KEY, true);
+        }
+
+        if (active != null && !bundleDir(active).isDirectory()) {
+            active = null;
+        }
+        putOrRemove(editor, ACTIVE_KEY, active);
+        putOrRemove(editor, PREVIOUS_KEY, previous);
+        editor.commit();
+        return active != null ? bundleDir(active).getAbsolutePath() : null;
+    }
+
+    // The web app came up on the active bundle, so it is kept
+    synchronized void confirmBoot() {
+        if (prefs.getBoolean(ON_TRIAL_KEY, false)) {
+            prefs.edit().putBoolean(ON_TRIAL_KEY, false).apply();
+        }
+    }
+
+    // Version of the bundle being served, or null for the APK's
+    String getActiveVersion() {
+        return prefs.getString(ACTIVE_KEY, null);
+    }
+
+    // Fetch and stage the latest bundle off the calling thread. done receives the
+    // outcome (see check).
+    void checkAsync(Consumer<JSONObject> done) {
+        executor.execute(() -> {
+            JSONObject result;
+            try {
+                result = check();
+            } catch (Exception e) {
+                Log.e(TAG, "Web update failed", e);
+                result = status("error");
+                try {
+                    result.put("error", String.valueOf(e.getMessage()));
+                } catch (JSONException ignored) {}
+            }
+            if (done != null) {
+                done.accept(result);
+            }
+        });
+    }
+
+    // {"status": "disabled" | "current" | "staged", ...}. A staged result also has
+    // the byte counts: downloadedBytes against bundleBytes for a full download.
+    JSONObject check() throws IOException, GeneralSecurityException, JSONException {
+        if (!isConfigured()) {
+            return status("disabled");
+        }
+        URL envelopeUrl = new URL(BuildConfig.WEB_UPDATE_MANIFEST_URL);
+        JSONObject manifest = verify(new JSONObject(fetchString(envelopeUrl)));
+        String version = manifest.getString("version");
+        if (!version.matches("[A-Za-z0-9._-]+")) {
+            throw new IOException("Invalid bundle version " + version);
+        }
+        synchronized (this) {
+            if (version.equals(getActiveVersion()) || version.equals(prefs.getString(PENDING_KEY, null))
+                    || isFailed(version)) {
+                JSONObject result = status("current");
+                result.put("version", version);
+                return result;
+            }
+        }
+
+        Map<String, Source> current = currentFiles();
+        File staging = new File(root, version + ".staging");
+        deleteRecursively(staging);
+        JSONArray files = manifest.getJSONArray("files");
+        long downloaded = 0;
+        int reused = 0;
+        int patched = 0;
+        int fetched = 0;
+
+        for (int i = 0; i < files.length(); i++) {
+            JSONObject entry = files.getJSONObject(i);
+            String path = entry.getString("path");
+            String sha256 = entry.getString("sha256");
+            File target = new File(staging, path);
+            if (!target.getCanonicalPath().startsWith(staging.getCanonicalPath() + File.separator)) {
+                throw new IOException("Invalid bundle path " + path);
+            }
+            File parent = target.getParentFile();
+            if (parent != null && !parent.exists()) {
+                parent.mkdirs();
+            }
+
+            Source same = current.get(hashKey(sha256));
+            if (same != null) {
+                try (InputStream input = same.open()) {
+                    NativeIo.copyToFile(input, target, null);
+                }
+                reused++;
+            } else {
+                JSONObject delta = usableDelta(entry.optJSONArray("deltas"), current);
+                if (delta != null) {
+                    byte[] patch = fetchBytes(new URL(envelopeUrl, delta.getString("url")));
+                    downloaded += patch.length;
+                    byte[] base;
+                    try (InputStream input = current.get(hashKey(delta.getString("from"))).open()) {
+                        base = NativeIo.readBytes(input);
+                    }
+                    byte[] result = applyDelta(base, new GZIPInputStream(new ByteArrayInputStream(patch)));
+                    try (OutputStream output = new FileOutputStream(target)) {
+                        output.write(result);
+                    }
+                    patched++;
+                } else {
+                    byte[] gzipped = fetchBytes(new URL(envelopeUrl, entry.getString("url")));
+                    downloaded += gzipped.length;
+                    try (InputStream input = new GZIPInputStream(new ByteArrayInputStream(gzipped))) {
+                        NativeIo.copyToFile(input, target, null);
+                    }
+                    fetched++;
+                }
+            }
+            if (!sha256.equalsIgnoreCase(hash(target))) {
+                deleteRecursively(staging);
+                throw new IOException("Hash mismatch for " + path);
+            }
+        }
+
+        // Kept so the next update can find files by hash without rehashing them
+        try (OutputStream output = new FileOutputStream(new File(staging, MANIFEST_FILE))) {
+            output.write(manifest.toString().getBytes(StandardCharsets.UTF_8));
+        }
+        File bundle = bundleDir(version);
+        deleteRecursively(bundle);
+        if (!staging.renameTo(bundle)) {
+            deleteRecursively(staging);
+            throw new IOException("Cannot stage bundle " + version);
+        }
+
+        Set<String> keep = new HashSet<>();
+        synchronized (this) {
+            prefs.edit().putString(PENDING_KEY, version).commit();
+            keep.add(version);
+            keep.add(prefs.getString(ACTIVE_KEY, ""));
+            keep.add(prefs.getString(PREVIOUS_KEY, ""));
+        }
+        deleteAllExcept(keep);
+
+        long bundleBytes = manifest.optLong("bundleBytes");
+        JSONObject result = status("staged");
+        result.put("version", version);
+        result.put("downloadedBytes", downloaded);
+        result.put("bundleBytes", bundleBytes);
+        result.put("savedBytes", Math.max(0, bundleBytes - downloaded));
+        result.put("reused", reused);
+        result.put("patched", patched);
+        result.put("downloaded", fetched);
+        Log.i(TAG, "Staged web bundle " + version + ": " + downloaded + " of " + bundleBytes + " bytes downloaded");
+        return result;
+    }
+
+    // The manifest, if the envelope's signature checks out against the build's key
+    static JSONObject verify(JSONObject envelope) throws GeneralSecurityException, JSONException {
+        PublicKey key = KeyFactory.getInstance("EC").generatePublic(
+            new X509EncodedKeySpec(Base64.getDecoder().decode(BuildConfig.WEB_UPDATE_PUBLIC_KEY)));
+        return verify(envelope, key);
+    }
+
+    static JSONObject verify(JSONObject envelope, PublicKey key) throws GeneralSecurityException, JSONException {
+        byte[] manifest = Base64.getDecoder().decode(envelope.getString("manifest"));
+        byte[] signature = Base64.getDecoder().decode(envelope.getString("signature"));
+        Signature verifier = Signature.getInstance("SHA256withECDSA");
+        verifier.initVerify(key);
+        verifier.update(manifest);
+        if (!verifier.verify(signature)) {
+            throw new GeneralSecurityException("Bad web bundle signature");
+        }
+        return new JSONObject(new String(manifest, StandardCharsets.UTF_8));
+    }
+
+    // Rebuild a file from a base it was diffed against. After gunzip a QDL1 patch is:
+    //   int magic, int targetLength, then ops until OP_END:
+    //   OP_COPY int offset, int length    bytes from base
+    //   OP_INSERT int length, bytes       literal bytes
+    static byte[] applyDelta(byte[] base, InputStream patch) throws IOException {
+        DataInputStream input = new DataInputStream(patch);
+        if (input.readInt() != DELTA_MAGIC) {
+            throw new IOException("Not a QDL1 patch");
+        }
+        byte[] output = new byte[input.readInt()];
+        int position = 0;
+        while (true) {
+            int op = input.readUnsignedByte();
+            if (op == OP_END) {
+                break;
+            }
+            if (op == OP_COPY) {
+                int offset = input.readInt();
+                int length = input.readInt();
+                if (offset < 0 || length < 0 || offset > base.length - length || length > output.length - position) {
+                    throw new IOException("Patch copy out of range");
+                }
+                System.arraycopy(base, offset, output, position, length);
+                position += length;
+            } else if (op == OP_INSERT) {
+                int length = input.readInt();
+                if (length < 0 || length > output.length - position) {
+                    throw new IOException("Patch insert out of range");
+                }
+                input.readFully(output, position, length);
+                position += length;
+            } else {
+                throw new IOException("Unknown patch op " + op);
+            }
+        }
+        if (position != output.length) {
+            throw new IOException("Patch produced " + position + " of " + output.length + " bytes");
+        }
+        return output;
+    }
+
+    private interface Source {
+        InputStream open() throws IOException;
+    }
+
+    // Files of the running bundle by SHA-256. A downloaded bundle has its manifest;
+    // the APK's bundle is hashed on the spot.
+    private Map<String, Source> currentFiles() throws IOException, JSONException {
+        Map<String, Source> files = new HashMap<>();
+        String active = getActiveVersion();
+        if (active != null) {
+            File dir = bundleDir(active);
+            File manifestFile = new File(dir, MANIFEST_FILE);
+            if (manifestFile.exists()) {
+                JSONObject manifest;
+                try (InputStream input = new FileInputStream(manifestFile)) {
+                    manifest = new JSONObject(NativeIo.readString(input));
+                }
+                JSONArray entries = manifest.getJSONArray("files");
+                for (int i = 0; i < entries.length(); i++) {
+                    JSONObject entry = entries.getJSONObject(i);
+                    File file = new File(dir, entry.getString("path"));
+                    files.put(hashKey(entry.getString("sha256")), () -> new FileInputStream(file));
+                }
+                return files;
+            }
+        }
+        hashAssets(BUILT_IN_ASSETS, files);
+        return files;
+    }
+
+    private void hashAssets(String path, Map<String, Source> files) throws IOException {
+        String[] children = context.getAssets().list(path);
+        if (children == null || children.length == 0) {
+            // A file, or an empty directory, which open() rejects
+            try (InputStream input = context.getAssets().open(path)) {
+                files.put(hash(input), () -> context.getAssets().open(path));
+            } catch (IOException e) {
+                // Empty directory
+            }
+            return;
+        }
+        for (String child : children) {
+            hashAssets(path + "/" + child, files);
+        }
+    }
+
+    // Manifests may spell hashes in either case; files are looked up by lower case
+    private static String hashKey(String sha256) {
+        return sha256.toLowerCase(Locale.ROOT);
+    }
+
+    private static JSONObject usableDelta(JSONArray deltas, Map<String, Source> current) throws JSONException {
+        if (deltas == null) {
+            return null;
+        }
+        for (int i = 0; i < deltas.length(); i++) {
+            JSONObject delta = deltas.getJSONObject(i);
+            if (current.containsKey(hashKey(delta.getString("from")))) {
+                return delta;
+            }
+        }
+        return null;
+    }
+
+    private File bundleDir(String version) {
+        return new File(root, version);
+    }
+
+    private boolean isFailed(String version) {
+        return Arrays.asList(prefs.getString(FAILED_KEY, "").split(",")).contains(version);
+    }
+
+    private String addFailed(String version) {
+        String failed = prefs.getString(FAILED_KEY, "");
+        return failed.isEmpty() ? version : failed + "," + version;
+    }
+
+    private static void putOrRemove(SharedPreferences.Editor editor, String key, String value) {
+        if (value != null) {
+            editor.putString(key, value);
+        } else {
+            editor.remove(key);
+        }
+    }
+
+    private void deleteAllExcept(Set<String> keep) {
+        File[] bundles = root.listFiles();
+        if (bundles == null) {
+            return;
+        }
+        for (File bundle : bundles) {
+            if (!keep.contains(bundle.getName())) {
+                deleteRecursively(bundle);
+            }
+        }
+    }
+
+    private static void deleteRecursively(File file) {
+        File[] children = file.listFiles();
+        if (children != null) {
+            for (File child : children) {
+                deleteRecursively(child);
+            }
+        }
+        file.delete();
+    }
+
+    private static JSONObject status(String status) {
+        JSONObject result = new JSONObject();
+        try {
+            result.put("status", status);
+        } catch (JSONException ignored) {}
+        return result;
+    }
+
+    private static String fetchString(URL url) throws IOException {
+        return new String(fetchBytes(url), StandardCharsets.UTF_8);
+    }
+
+    private static byte[] fetchBytes(URL url) throws IOException {
+        HttpURLConnection connection = (HttpURLConnection) url.openConnection();
+        try {
+            connection.setConnectTimeout(15000);
+            connection.setReadTimeout(15000);
+            int status = connection.getResponseCode();
+            if (status != HttpURLConnection.HTTP_OK) {
+                throw new IOException("HTTP " + status + " for " + url);
+            }
+            try (InputStream input = connection.getInputStream()) {
+                byte[] data = NativeIo.readBytes(input);
+                NativeMetrics.add(NativeMetrics.Counter.DOWNLOAD_BYTES, data.length);
+                return data;
+            }
+        } finally {
+            connection.disconnect();
+        }
+    }
+
+    private static String hash(File file) throws IOException {
+        try (InputStream input = new FileInputStream(file)) {
+            return hash(input);
+        }
+    }
+
+    private static String hash(InputStream input) throws IOException {
+        ByteBuffer buffer = NativeIo.acquire();
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            byte[] array = buffer.array();
+            int read;
+            while ((read = input.read(array)) != -1) {
+                digest.update(array, 0, read);
+            }
+            return ChunkedUploader.toHex(digest.digest());
+        } catch (NoSuchAlgorithmException e) {
+            throw new IOException(e);
+        } finally {
+            NativeIo.release(buffer);
+        }
+    }
+}
@@ -0,0 +1,67 @@
+package com.ebizimba.islam;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+public class AdaptiveConcurrencyTest {
+    private static final int MAX = 6;
+
+    @Test
+    public void initialLimitFollowsBandwidthBrackets() {
+        assertEquals(2, AdaptiveConcurrency.initialLimit(0, false, MAX));
+        assertEquals(3, AdaptiveConcurrency.initialLimit(0, true, MAX));
+        assertEquals(1, AdaptiveConcurrency.initialLimit(300, true, MAX));
+        assertEquals(2, AdaptiveConcurrency.initialLimit(1_000, false, MAX));
+        assertEquals(3, AdaptiveConcurrency.initialLimit(5_000, false, MAX));
+        assertEquals(3, AdaptiveConcurrency.initialLimit(50_000, false, MAX));
+        assertEquals(4, AdaptiveConcurrency.initialLimit(50_000, true, MAX));
+    }
+
+    @Test
+    public void initialLimitRespectsMax() {
+        assertEquals(2, AdaptiveConcurrency.initialLimit(50_000, true, 2));
+        assertEquals(AdaptiveConcurrency.MIN_LIMIT, AdaptiveConcurrency.initialLimit(50_000, true, 0));
+    }
+
+    @Test
+    public void resetClamps() {
+        AdaptiveConcurrency concurrency = new AdaptiveConcurrency(20, MAX);
+        assertEquals(MAX, concurrency.getLimit());
+        concurrency.reset(0);
+        assertEquals(AdaptiveConcurrency.MIN_LIMIT, concurrency.getLimit());
+    }
+
+    @Test
+    public void congestionHalvesTheLimit() {
+        AdaptiveConcurrency concurrency = new AdaptiveConcurrency(MAX, MAX);
+        concurrency.onCongestion(System.nanoTime());
+        assertEquals(3, concurrency.getLimit());
+        concurrency.onCongestion(System.nanoTime());
+        assertEquals(1, concurrency.getLimit());
+        concurrency.onCongestion(System.nanoTime());
+        assertEquals(AdaptiveConcurrency.MIN_LIMIT, concurrency.getLimit());
+    }
+
+    @Test
+    public void requestsFromBeforeACutDontCutAgain() {
+        AdaptiveConcurrency concurrency = new AdaptiveConcurrency(MAX, MAX);
+        long inFlight = System.nanoTime() - 1_000_000_000L;
+        concurrency.onCongestion(System.nanoTime());
+        assertEquals(3, concurrency.getLimit());
+        // Started before the cut: the same episode
+        concurrency.onCongestion(inFlight);
+        assertEquals(3, concurrency.getLimit());
+    }
+
+    @Test
+    public void successesStayWithinBounds() {
+        AdaptiveConcurrency concurrency = new AdaptiveConcurrency(1, MAX);
+        for (int i = 0; i < 10_000; i++) {
+            concurrency.onSuccess();
+            int limit = concurrency.getLimit();
+            assertTrue("limit " + limit, limit >= AdaptiveConcurrency.MIN_LIMIT && limit <= MAX);
+        }
+    }
+}
@@ -0,0 +1,92 @@
+package com.ebizimba.islam;
+
+import static org.junit.Assert.assertEquals;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+import org.junit.Test;
+
+// Cost of building bridge messages: the evaluateJavascript callback scripts
+// MainActivity formats for every event, and the JSON strings returned to the web
+// app from @JavascriptInterface methods.
+public class BridgeSerializationBenchmark {
+    private static final String[] STATES = {"playing", "paused", "buffering", "completed"};
+
+    @Test
+    public void callbackScripts() throws Exception {
+        MicroBenchmark bench = MicroBenchmark.suite("bridge-callback-scripts");
+        assertEquals(formatCallback("playing", 1, 2, 3), buildCallback("playing", 1, 2, 3));
+
+        // Current pattern, e.g. the handleQuranAudioEvent forwarder
+        bench.measure("stringFormat", i -> formatCallback(STATES[i & 3], i & 0xFF, 1 + i % 604, 604));
+        bench.measure("stringBuilder", i -> buildCallback(STATES[i & 3], i & 0xFF, 1 + i % 604, 604));
+        bench.measure("progressObject", i -> {
+            JSONObject detail = new JSONObject();
+            detail.put("current", i & 0xFF);
+            detail.put("total", 604);
+            return "if (window.handleDownloadProgress) window.handleDownloadProgress(" + detail + ");";
+        });
+        bench.report();
+    }
+
+    @Test
+    public void resultPayloads() throws Exception {
+        MicroBenchmark bench = MicroBenchmark.suite("bridge-result-payloads");
+
+        // Search results as QuranSearchIndex returns them
+        bench.measure("searchHits50", i -> {
+            JSONArray hits = new JSONArray();
+            for (int h = 0; h < 50; h++) {
+                JSONObject hit = new JSONObject();
+                hit.put("surah", 1 + (i + h) % 114);
+                hit.put("ayah", 1 + h);
+                hit.put("page", 1 + (i + h) % 604);
+                hit.put("language", "en");
+                hit.put("text", "In the name of Allah, the Entirely Merciful, the Especially Merciful.");
+                hit.put("score", 3.25 + h);
+                hits.put(hit);
+            }
+            return hits.toString();
+        });
+        // A month of prayer days as getPrayerDays returns them
+        bench.measure("prayerDays30", i -> {
+            JSONArray days = new JSONArray();
+            for (int d = 0; d < 30; d++) {
+                int[] minutes = {329 + d, 402, 740, 950, 1085, 1160};
+                JSONObject named = new JSONObject();
+                JSONArray values = new JSONArray();
+                for (int t = 0; t < minutes.length; t++) {
+                    named.put(PrayerTimeCalculator.TIME_NAMES[t],
+                        String.format("%02d:%02d", minutes[t] / 60, minutes[t] % 60));
+                    values.put(minutes[t]);
+                }
+                JSONObject day = new JSONObject();
+                day.put("date", "2025-03-" + (10 + d % 20));
+                day.put("hijri", PrayerTimeTable.hijriJson(1446 << 9 | 9 << 5 | (1 + d)));
+                day.put("times", named);
+                day.put("minutes", values);
+                days.put(day);
+            }
+            return days.toString();
+        });
+        bench.measure("quotePath", i -> JSONObject.quote("/data/user/0/com.ebizimba.islam/files/quran-pages/" + i + ".png"));
+        bench.report();
+    }
+
+    private static String formatCallback(String state, int index, int page, int total) {
+        return String.format(
+            "if (window.handleQuranAudioEvent) window.handleQuranAudioEvent(%s, %d, %d, %d);",
+            JSONObject.quote(state), index, page, total
+        );
+    }
+
+    private static String buildCallback(String state, int index, int page, int total) {
+        return new StringBuilder(96)
+            .append("if (window.handleQuranAudioEvent) window.handleQuranAudioEvent(")
+            .append(JSONObject.quote(state)).append(", ")
+            .append(index).append(", ")
+            .append(page).append(", ")
+            .append(total).append(");")
+            .toString();
+    }
+}
@@ -0,0 +1,33 @@
+package com.ebizimba.islam;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+
+import org.junit.Test;
+
+import java.util.UUID;
+
+// Expected values are uuid v5 of the same names under the app's namespace, as
+// device-fingerprint.ts computes them on the web side
+public class DeviceIdentityTest {
+    private static final String NAME = "android:0123456789abcdef:com.ebizimba.islam";
+
+    @Test
+    public void matchesWebSideV5() {
+        assertEquals(UUID.fromString("f37907ce-e3c1-5f68-825d-968608a86e50"), DeviceIdentity.nameUuid(NAME));
+        assertEquals(UUID.fromString("80284680-3304-5869-9788-7428e6c6ee86"), DeviceIdentity.nameUuid(""));
+    }
+
+    @Test
+    public void isVersion5Rfc4122() {
+        UUID uuid = DeviceIdentity.nameUuid(NAME);
+        assertEquals(5, uuid.version());
+        assertEquals(2, uuid.variant());
+    }
+
+    @Test
+    public void isDeterministicPerName() {
+        assertEquals(DeviceIdentity.nameUuid(NAME), DeviceIdentity.nameUuid(NAME));
+        assertNotEquals(DeviceIdentity.nameUuid(NAME), DeviceIdentity.nameUuid(NAME + "x"));
+    }
+}
@@ -0,0 +1,249 @@
+package com.ebizimba.islam;
+
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+// Full 604-page mushaf download against MirrorFarm, using the same mirror order
+// (QuranPageDownloader.getPageUrls), fallback loop (AssetDownloader.fetchFromMirrors)
+// and adaptive page concurrency (AdaptiveConcurrency) as the app. Reports wall time,
+// pages per second, bytes on the wire, retries and per-page latency percentiles to
+// build/benchmarks/<scenario>.json. throttledLink and fastLink run shorter downloads
+// twice, with the old fixed limit and the adaptive one, for comparison.
+//
+//   ./gradlew :app:testDebugUnitTest -Pbenchmark --tests '*DownloadThroughputBenchmark'
+public class DownloadThroughputBenchmark {
+    private static final int PAGE_COUNT = 604;
+    private static final int PAGE_BYTES = 160 * 1024;
+    // Page concurrency before it became adaptive, as the baseline
+    private static final int FIXED_CONCURRENCY = 4;
+
+    private static final String IMGBB = "https://i.ibb.co";
+    private static final String S3 = "https://quran-images.s3.amazonaws.com";
+    private static final String GITHUB = "https://islamic-network.github.io";
+
+    @Test
+    public void healthyMirrors() throws Exception {
+        MicroBenchmark.assumeEnabled();
+        MirrorFarm.Profile imgbb = new MirrorFarm.Profile("imgbb", IMGBB);
+        imgbb.latencyMillis = 80;
+        imgbb.jitterMillis = 40;
+        imgbb.bytesPerSecond = 4L * 1024 * 1024;
+        MirrorFarm.Profile s3 = new MirrorFarm.Profile("s3", S3);
+        s3.latencyMillis = 40;
+        MirrorFarm.Profile github = new MirrorFarm.Profile("github", GITHUB);
+        github.latencyMillis = 60;
+        run("download-healthy", imgbb, s3, github);
+    }
+
+    // What users actually see: slow imgbb with occasional errors, truncated bodies
+    // and timeouts, S3 missing a third of the pages, GitHub as the reliable backstop
+    @Test
+    public void degradedMirrors() throws Exception {
+        MicroBenchmark.assumeEnabled();
+        MirrorFarm.Profile imgbb = new MirrorFarm.Profile("imgbb", IMGBB);
+        imgbb.latencyMillis = 400;
+        imgbb.jitterMillis = 600;
+        imgbb.bytesPerSecond = 512 * 1024;
+        imgbb.errorRate = 0.05;
+        imgbb.truncateRate = 0.03;
+        imgbb.stallRate = 0.005;
+        MirrorFarm.Profile s3 = new MirrorFarm.Profile("s3", S3);
+        s3.latencyMillis = 120;
+        s3.jitterMillis = 80;
+        s3.bytesPerSecond = 2L * 1024 * 1024;
+        s3.notFoundRate = 0.33;
+        MirrorFarm.Profile github = new MirrorFarm.Profile("github", GITHUB);
+        github.latencyMillis = 150;
+        github.jitterMillis = 100;
+        github.bytesPerSecond = 1024 * 1024;
+        github.errorRate = 0.01;
+        run("download-degraded", imgbb, s3, github);
+    }
+
+    // 3G-class link that drops transfers beyond two at a time. Four in parallel get
+    // no more pages through it, just longer waits and timeouts per page; the
+    // adaptive limit should settle at what it carries
+    @Test
+    public void throttledLink() throws Exception {
+        MicroBenchmark.assumeEnabled();
+        compare("download-throttled", 40, 64 * 1024, new MirrorFarm.Link(32 * 1024, 2), slowMirrors(300));
+    }
+
+    // High-latency Wi-Fi: each request spends most of its time waiting, so more of
+    // them in parallel means more pages per second
+    @Test
+    public void fastLink() throws Exception {
+        MicroBenchmark.assumeEnabled();
+        compare("download-fast", 240, PAGE_BYTES, null, slowMirrors(250));
+    }
+
+    private static MirrorFarm.Profile[] slowMirrors(int latencyMillis) {
+        MirrorFarm.Profile imgbb = new MirrorFarm.Profile("imgbb", IMGBB);
+        imgbb.latencyMillis = latencyMillis;
+        imgbb.jitterMillis = latencyMillis / 4;
+        imgbb.bytesPerSecond = 2L * 1024 * 1024;
+        MirrorFarm.Profile s3 = new MirrorFarm.Profile("s3", S3);
+        s3.latencyMillis = latencyMillis;
+        MirrorFarm.Profile github = new MirrorFarm.Profile("github", GITHUB);
+        github.latencyMillis = latencyMillis;
+        return new MirrorFarm.Profile[]{imgbb, s3, github};
+    }
+
+    // Same scenario with the old fixed page concurrency and with the adaptive limit
+    private void compare(String scenario, int pageCount, int pageBytes, MirrorFarm.Link link,
+                         MirrorFarm.Profile... mirrors) throws Exception {
+        double fixed = run(scenario + "-fixed", pageCount, pageBytes, link, null, mirrors);
+        // Unknown network: no bandwidth estimate to start from
+        AdaptiveConcurrency adaptive = new AdaptiveConcurrency(
+            AdaptiveConcurrency.initialLimit(0, false, AssetDownloader.AssetType.PAGE_IMAGE.maxConcurrent),
+            AssetDownloader.AssetType.PAGE_IMAGE.maxConcurrent);
+        double adaptiveRate = run(scenario + "-adaptive", pageCount, pageBytes,
+            link != null ? new MirrorFarm.Link(link.bytesPerSecond, link.maxFlows) : null, adaptive, mirrors);
+        System.out.printf("%s: %.2f pages/s fixed, %.2f pages/s adaptive (limit %d)%n",
+            scenario, fixed, adaptiveRate, adaptive.getLimit());
+    }
+
+    private void run(String scenario, MirrorFarm.Profile... mirrors) throws Exception {
+        run(scenario, PAGE_COUNT, PAGE_BYTES, null, new AdaptiveConcurrency(
+            AdaptiveConcurrency.initialLimit(0, true, AssetDownloader.AssetType.PAGE_IMAGE.maxConcurrent),
+            AssetDownloader.AssetType.PAGE_IMAGE.maxConcurrent), mirrors);
+    }
+
+    // Download every page, keeping at most adaptive.getLimit() requests open, or
+    // FIXED_CONCURRENCY when adaptive is null. Returns pages per second.
+    private double run(String scenario, int pageCount, int pageBytes, MirrorFarm.Link link,
+                       AdaptiveConcurrency adaptive, MirrorFarm.Profile... mirrors) throws Exception {
+        File pagesDir = Files.createTempDirectory("mirror-farm").toFile();
+        ExecutorService workers = Executors.newCachedThreadPool();
+        AtomicBoolean cancelled = new AtomicBoolean(false);
+        Object slots = new Object();
+        int[] open = {0};
+
+        try (MirrorFarm farm = new MirrorFarm(pageBytes)) {
+            for (MirrorFarm.Profile mirror : mirrors) {
+                farm.add(mirror);
+            }
+            farm.throttle(link);
+
+            long start = System.nanoTime();
+            List<Future<Long>> pages = new ArrayList<>();
+            for (int page = 1; page <= pageCount; page++) {
+                String formattedPage = String.format("%03d", page);
+                List<String> urls = farm.localize(QuranPageDownloader.getPageUrls(formattedPage));
+                File target = new File(pagesDir, formattedPage + ".png");
+                synchronized (slots) {
+                    while (open[0] >= (adaptive != null ? adaptive.getLimit() : FIXED_CONCURRENCY)) {
+                        slots.wait();
+                    }
+                    open[0]++;
+                }
+                pages.add(workers.submit(() -> {
+                    long pageStart = System.nanoTime();
+                    try {
+                        String sha256 = AssetDownloader.fetchFromMirrors(urls, target, cancelled, adaptive);
+                        if (sha256 != null && adaptive != null) {
+                            adaptive.onSuccess();
+                        }
+                        long elapsed = System.nanoTime() - pageStart;
+                        // Negative marks a page no mirror could deliver
+                        return sha256 != null ? elapsed : -elapsed;
+                    } finally {
+                        synchronized (slots) {
+                            open[0]--;
+                            slots.notifyAll();
+                        }
+                    }
+                }));
+            }
+
+            long[] latencies = new long[pageCount];
+            int failed = 0;
+            for (int i = 0; i < pageCount; i++) {
+                long result = pages.get(i).get();
+                if (result < 0) {
+                    failed++;
+                }
+                latencies[i] = Math.abs(result);
+            }
+            long wallNanos = System.nanoTime() - start;
+
+            long bytesStored = 0;
+            for (File file : pagesDir.listFiles()) {
+                bytesStored += file.length();
+            }
+
+            int concurrency = adaptive != null ? adaptive.getLimit() : FIXED_CONCURRENCY;
+            String json = report(scenario, farm, latencies, failed, wallNanos, bytesStored, concurrency);
+            MicroBenchmark.writeReport(scenario, json);
+            System.out.print(json);
+            assertTrue("pages missing after fallback: " + failed, failed < pageCount);
+            return (pageCount - failed) * 1e9 / wallNanos;
+        } finally {
+            workers.shutdownNow();
+            for (File file : pagesDir.listFiles()) {
+                file.delete();
+            }
+            pagesDir.delete();
+        }
+    }
+
+    private static String report(String scenario, MirrorFarm farm, long[] latencies, int failed,
+                                 long wallNanos, long bytesStored, int concurrency) {
+        long[] sorted = latencies.clone();
+        Arrays.sort(sorted);
+        int requests = farm.totalRequests();
+
+        StringBuilder json = new StringBuilder();
+        json.append("{\n");
+        json.append("  \"bytesStored\": ").append(bytesStored).append(",\n");
+        json.append("  \"bytesTransferred\": ").append(farm.totalBytesSent()).append(",\n");
+        json.append("  \"concurrency\": ").append(concurrency).append(",\n");
+        json.append("  \"latencyMillis\": {");
+        json.append("\"max\": ").append(MicroBenchmark.format(sorted[sorted.length - 1] / 1e6)).append(", ");
+        json.append("\"p50\": ").append(MicroBenchmark.format(percentile(sorted, 50) / 1e6)).append(", ");
+        json.append("\"p95\": ").append(MicroBenchmark.format(percentile(sorted, 95) / 1e6)).append(", ");
+        json.append("\"p99\": ").append(MicroBenchmark.format(percentile(sorted, 99) / 1e6)).append("},\n");
+        json.append("  \"mirrors\": {\n");
+        int m = 0;
+        for (Map.Entry<String, MirrorFarm.Stats> entry : farm.getStats().entrySet()) {
+            MirrorFarm.Stats stats = entry.getValue();
+            json.append("    ").append(MicroBenchmark.quote(entry.getKey())).append(": {");
+            json.append("\"bytesSent\": ").append(stats.bytesSent.get()).append(", ");
+            json.append("\"errors\": ").append(stats.errors.get()).append(", ");
+            json.append("\"notFound\": ").append(stats.notFound.get()).append(", ");
+            json.append("\"requests\": ").append(stats.requests.get()).append(", ");
+            json.append("\"served\": ").append(stats.served.get()).append(", ");
+            json.append("\"stalled\": ").append(stats.stalled.get()).append(", ");
+            json.append("\"truncated\": ").append(stats.truncated.get()).append("}");
+            json.append(++m < farm.getStats().size() ? ",\n" : "\n");
+        }
+        json.append("  },\n");
+        json.append("  \"pages\": ").append(latencies.length).append(",\n");
+        json.append("  \"pagesFailed\": ").append(failed).append(",\n");
+        json.append("  \"pagesPerSecond\": ").append(MicroBenchmark.format((latencies.length - failed) * 1e9 / wallNanos)).append(",\n");
+        json.append("  \"requests\": ").append(requests).append(",\n");
+        json.append("  \"retries\": ").append(requests - latencies.length).append(",\n");
+        json.append("  \"scenario\": ").append(MicroBenchmark.quote(scenario)).append(",\n");
+        json.append("  \"wallMillis\": ").append(MicroBenchmark.format(wallNanos / 1e6)).append("\n");
+        json.append("}\n");
+        return json.toString();
+    }
+
+    // Nearest-rank percentile of a sorted array
+    private static long percentile(long[] sorted, int percent) {
+        int rank = (int) Math.ceil(percent / 100.0 * sorted.length);
+        return sorted[Math.max(0, Math.min(sorted.length - 1, rank - 1))];
+    }
+}
@@ -0,0 +1,68 @@
+package com.ebizimba.islam;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+public class LocalVideoProxyTest {
+    private static final long LENGTH = 1000;
+
+    @Test
+    public void noRangeIsTheWholeVideo() {
+        LocalVideoProxy.ByteRange range = LocalVideoProxy.parseRange(null, LENGTH);
+        assertRange(0, 999, range);
+        assertFalse(range.partial);
+    }
+
+    @Test
+    public void partialRange() {
+        LocalVideoProxy.ByteRange range = LocalVideoProxy.parseRange("bytes=100-199", LENGTH);
+        assertRange(100, 199, range);
+        assertTrue(range.partial);
+    }
+
+    @Test
+    public void openEndedRangeRunsToTheEnd() {
+        assertRange(500, 999, LocalVideoProxy.parseRange("bytes=500-", LENGTH));
+        assertRange(0, 999, LocalVideoProxy.parseRange("bytes=0-", LENGTH));
+    }
+
+    @Test
+    public void suffixRangeIsTheLastBytes() {
+        assertRange(900, 999, LocalVideoProxy.parseRange("bytes=-100", LENGTH));
+        assertRange(0, 999, LocalVideoProxy.parseRange("bytes=-5000", LENGTH));
+    }
+
+    @Test
+    public void endPastTheVideoIsClamped() {
+        assertRange(100, 999, LocalVideoProxy.parseRange("bytes=100-5000", LENGTH));
+        assertRange(100, 999, LocalVideoProxy.parseRange("bytes=100-99999999999999999999", LENGTH));
+        assertRange(0, 999, LocalVideoProxy.parseRange("bytes=-99999999999999999999", LENGTH));
+    }
+
+    @Test
+    public void unsatisfiableRanges() {
+        assertNull(LocalVideoProxy.parseRange("bytes=1000-", LENGTH));
+        assertNull(LocalVideoProxy.parseRange("bytes=2000-3000", LENGTH));
+        assertNull(LocalVideoProxy.parseRange("bytes=300-200", LENGTH));
+        assertNull(LocalVideoProxy.parseRange("bytes=99999999999999999999-", LENGTH));
+        assertNull(LocalVideoProxy.parseRange("bytes=-0", LENGTH));
+    }
+
+    @Test
+    public void unknownRangesAreIgnored() {
+        for (String header : new String[]{"bytes=-", "bytes=0-1,5-9", "items=0-9", ""}) {
+            LocalVideoProxy.ByteRange range = LocalVideoProxy.parseRange(header, LENGTH);
+            assertRange(0, 999, range);
+            assertFalse(header, range.partial);
+        }
+    }
+
+    private static void assertRange(long start, long end, LocalVideoProxy.ByteRange range) {
+        assertEquals(start, range.start);
+        assertEquals(end, range.end);
+    }
+}
@@ -0,0 +1,85 @@
+package com.ebizimba.islam;
+
+import static org.junit.Assert.assertEquals;
+
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+public class LowResPagePackTest {
+    private static final int MAGIC = 0x514C5031;
+
+    @Test
+    public void acceptsConsistentPack() {
+        assertEquals(3, LowResPagePack.validPageCount(pack(3, new int[]{10, 0, 5})));
+    }
+
+    @Test
+    public void acceptsFullMushaf() {
+        int[] sizes = new int[QuranMetadata.PAGE_COUNT];
+        Arrays.fill(sizes, 2);
+        assertEquals(QuranMetadata.PAGE_COUNT, LowResPagePack.validPageCount(pack(sizes.length, sizes)));
+    }
+
+    @Test
+    public void rejectsBadMagic() {
+        ByteBuffer pack = pack(2, new int[]{4, 4});
+        pack.putInt(0, 0x12345678);
+        assertEquals(0, LowResPagePack.validPageCount(pack));
+    }
+
+    @Test
+    public void rejectsBadCounts() {
+        assertEquals(0, LowResPagePack.validPageCount(pack(0, new int[0])));
+        assertEquals(0, LowResPagePack.validPageCount(ByteBuffer.allocate(4)));
+        // Claims more pages than its offset table has room for
+        ByteBuffer pack = pack(2, new int[]{4, 4});
+        pack.putInt(4, 50);
+        assertEquals(0, LowResPagePack.validPageCount(pack));
+        pack.putInt(4, QuranMetadata.PAGE_COUNT + 1);
+        assertEquals(0, LowResPagePack.validPageCount(pack));
+    }
+
+    @Test
+    public void rejectsBadOffsets() {
+        // Decreasing
+        ByteBuffer pack = pack(3, new int[]{4, 4, 4});
+        pack.putInt(16, pack.getInt(12) - 1);
+        assertEquals(0, LowResPagePack.validPageCount(pack));
+        // Past the end of the file
+        pack = pack(3, new int[]{4, 4, 4});
+        pack.putInt(20, pack.capacity() + 1);
+        assertEquals(0, LowResPagePack.validPageCount(pack));
+        // Pointing into the offset table
+        pack = pack(3, new int[]{4, 4, 4});
+        pack.putInt(8, 4);
+        assertEquals(0, LowResPagePack.validPageCount(pack));
+    }
+
+    @Test
+    public void rejectsTruncatedPack() {
+        ByteBuffer full = pack(3, new int[]{4, 4, 4});
+        ByteBuffer truncated = ByteBuffer.allocate(full.capacity() - 1);
+        truncated.put(full.array(), 0, truncated.capacity());
+        assertEquals(0, LowResPagePack.validPageCount(truncated));
+    }
+
+    // Header, offset table, then sizes[i] filler bytes for each page
+    private static ByteBuffer pack(int count, int[] sizes) {
+        int tableEnd = (2 + count + 1) * 4;
+        int total = tableEnd;
+        for (int size : sizes) {
+            total += size;
+        }
+        ByteBuffer pack = ByteBuffer.allocate(total);
+        pack.putInt(MAGIC).putInt(count);
+        int offset = tableEnd;
+        pack.putInt(offset);
+        for (int size : sizes) {
+            offset += size;
+            pack.putInt(offset);
+        }
+        return pack;
+    }
+}
@@ -0,0 +1,172 @@
+package com.ebizimba.islam;
+
+import static org.junit.Assume.assumeTrue;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+
+// Minimal JMH-style harness for JVM microbenchmarks of the app's native code.
+// Each case is warmed up, calibrated to a batch size that takes roughly
+// TARGET_BATCH_NANOS, then timed over MEASURE_ITERATIONS batches. Results go to
+// build/benchmarks/<suite>.json with sorted keys and fixed precision, so runs can
+// be diffed and tracked for regressions.
+//
+// Benchmarks are skipped in normal test runs. Run them with:
+//   ./gradlew :app:testDebugUnitTest -Pbenchmark --tests '*Benchmark'
+final class MicroBenchmark {
+    private static final int WARMUP_ITERATIONS = 5;
+    private static final int MEASURE_ITERATIONS = 10;
+    private static final long TARGET_BATCH_NANOS = 100_000_000L;
+
+    // Results are folded in here so the JIT can't drop the work
+    private static volatile int sink;
+
+    interface Body {
+        // i is the operation index within the batch; return anything derived from the work
+        Object run(int i) throws Exception;
+    }
+
+    static final class Result {
+        final String name;
+        final long opsPerBatch;
+        final double meanNanos;
+        final double stdDevNanos;
+        final double minNanos;
+        final double medianNanos;
+
+        Result(String name, long opsPerBatch, double[] nanosPerOp) {
+            this.name = name;
+            this.opsPerBatch = opsPerBatch;
+            double[] sorted = nanosPerOp.clone();
+            Arrays.sort(sorted);
+            double sum = 0;
+            for (double value : sorted) {
+                sum += value;
+            }
+            double mean = sum / sorted.length;
+            double squares = 0;
+            for (double value : sorted) {
+                squares += (value - mean) * (value - mean);
+            }
+            this.meanNanos = mean;
+            this.stdDevNanos = Math.sqrt(squares / sorted.length);
+            this.minNanos = sorted[0];
+            this.medianNanos = sorted.length % 2 == 1
+                ? sorted[sorted.length / 2]
+                : (sorted[sorted.length / 2 - 1] + sorted[sorted.length / 2]) / 2;
+        }
+    }
+
+    private final String suite;
+    private final List<Result> results = new ArrayList<>();
+
+    private MicroBenchmark(String suite) {
+        this.suite = suite;
+    }
+
+    // Skips the calling test unless the build was run with -Pbenchmark
+    static void assumeEnabled() {
+        assumeTrue("benchmarks run only with -Pbenchmark", Boolean.getBoolean("benchmark"));
+    }
+
+    static MicroBenchmark suite(String name) {
+        assumeEnabled();
+        return new MicroBenchmark(name);
+    }
+
+    Result measure(String name, Body body) throws Exception {
+        long ops = calibrate(body);
+        for (int i = 0; i < WARMUP_ITERATIONS; i++) {
+            runBatch(body, ops);
+        }
+        double[] nanosPerOp = new double[MEASURE_ITERATIONS];
+        for (int i = 0; i < MEASURE_ITERATIONS; i++) {
+            nanosPerOp[i] = (double) runBatch(body, ops) / ops;
+        }
+        Result result = new Result(name, ops, nanosPerOp);
+        results.add(result);
+        System.out.printf(Locale.ROOT, "%s.%s: %.1f ns/op (+- %.1f)%n",
+            suite, name, result.meanNanos, result.stdDevNanos);
+        return result;
+    }
+
+    // Writes <outputDir>/<suite>.json; call once after all cases
+    void report() throws IOException {
+        List<Result> sorted = new ArrayList<>(results);
+        sorted.sort(Comparator.comparing(result -> result.name));
+
+        StringBuilder json = new StringBuilder();
+        json.append("{\n");
+        json.append("  \"java\": ").append(quote(System.getProperty("java.version"))).append(",\n");
+        json.append("  \"results\": [\n");
+        for (int i = 0; i < sorted.size(); i++) {
+            Result result = sorted.get(i);
+            json.append("    {");
+            json.append("\"meanNanos\": ").append(format(result.meanNanos)).append(", ");
+            json.append("\"medianNanos\": ").append(format(result.medianNanos)).append(", ");
+            json.append("\"minNanos\": ").append(format(result.minNanos)).append(", ");
+            json.append("\"name\": ").append(quote(result.name)).append(", ");
+            json.append("\"opsPerBatch\": ").append(result.opsPerBatch).append(", ");
+            json.append("\"stdDevNanos\": ").append(format(result.stdDevNanos));
+            json.append(i < sorted.size() - 1 ? "},\n" : "}\n");
+        }
+        json.append("  ],\n");
+        json.append("  \"suite\": ").append(quote(suite)).append("\n");
+        json.append("}\n");
+
+        writeReport(suite, json.toString());
+    }
+
+    static void writeReport(String suite, String json) throws IOException {
+        File dir = new File(System.getProperty("benchmark.outputDir", "build/benchmarks"));
+        if (!dir.exists() && !dir.mkdirs()) {
+            throw new IOException("Cannot create " + dir);
+        }
+        try (Writer writer = new OutputStreamWriter(
+                new FileOutputStream(new File(dir, suite + ".json")), StandardCharsets.UTF_8)) {
+            writer.write(json);
+        }
+    }
+
+    // Double the batch size until one batch takes long enough to time reliably
+    private static long calibrate(Body body) throws Exception {
+        long ops = 1;
+        while (true) {
+            long elapsed = runBatch(body, ops);
+            if (elapsed >= TARGET_BATCH_NANOS / 4 || ops >= Integer.MAX_VALUE / 2) {
+                long scaled = (long) (ops * ((double) TARGET_BATCH_NANOS / Math.max(elapsed, 1)));
+                return Math.max(1, Math.min(Integer.MAX_VALUE, scaled));
+            }
+            ops *= 2;
+        }
+    }
+
+    private static long runBatch(Body body, long ops) throws Exception {
+        int accumulator = 0;
+        long start = System.nanoTime();
+        for (int i = 0; i < ops; i++) {
+            Object value = body.run(i);
+            accumulator += value != null ? value.hashCode() : 0;
+        }
+        long elapsed = System.nanoTime() - start;
+        sink += accumulator;
+        return elapsed;
+    }
+
+    static String format(double value) {
+        return String.format(Locale.ROOT, "%.2f", value);
+    }
+
+    static String quote(String value) {
+        return "\"" + value.replace("\\", "\\\\").replace("\"", "\\\"") + "\"";
+    }
+}
@@ -0,0 +1,245 @@
+package com.ebizimba.islam;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Local HTTP servers standing in for the page mirrors (imgbb, S3, GitHub). Each
+// mirror has its own latency, bandwidth and failure mix. Faults are decided by a
+// hash of (mirror, path, attempt), so a scenario fails the same requests on every
+// run regardless of thread timing. An optional Link models the device's own
+// connection, shared by all mirrors; its overload faults depend on how many
+// transfers are running at the time, so they vary with scheduling.
+final class MirrorFarm implements AutoCloseable {
+    static final class Profile {
+        final String name;
+        final String remoteBase;
+        int latencyMillis;
+        int jitterMillis;
+        // Per-connection throughput; 0 means unthrottled
+        long bytesPerSecond;
+        double errorRate;
+        double notFoundRate;
+        double truncateRate;
+        double stallRate;
+        // Longer than downloadFile's read timeout, so a stall becomes a timeout
+        int stallMillis = 16_000;
+
+        Profile(String name, String remoteBase) {
+            this.name = name;
+            this.remoteBase = remoteBase;
+        }
+    }
+
+    // Last-mile link shared by every mirror: total bandwidth, and how many bodies it
+    // carries at once before its buffers overflow. Past that, each new response is
+    // dropped after its headers (a stall) with overloadStallRate probability.
+    static final class Link {
+        final long bytesPerSecond;
+        final int maxFlows;
+        double overloadStallRate = 0.5;
+        final AtomicInteger flows = new AtomicInteger();
+        private long nextFree;
+
+        Link(long bytesPerSecond, int maxFlows) {
+            this.bytesPerSecond = bytesPerSecond;
+            this.maxFlows = maxFlows;
+        }
+
+        // Time (System.nanoTime) by which the given bytes have crossed the link
+        synchronized long reserve(int bytes) {
+            nextFree = Math.max(System.nanoTime(), nextFree) + bytes * 1_000_000_000L / bytesPerSecond;
+            return nextFree;
+        }
+    }
+
+    static final class Stats {
+        final AtomicInteger requests = new AtomicInteger();
+        final AtomicInteger served = new AtomicInteger();
+        final AtomicInteger errors = new AtomicInteger();
+        final AtomicInteger notFound = new AtomicInteger();
+        final AtomicInteger truncated = new AtomicInteger();
+        final AtomicInteger stalled = new AtomicInteger();
+        final AtomicLong bytesSent = new AtomicLong();
+    }
+
+    private static final int CHUNK = 8 * 1024;
+
+    private final int pageBytes;
+    private final List<Profile> profiles = new ArrayList<>();
+    private final List<HttpServer> servers = new ArrayList<>();
+    private final Map<String, Stats> stats = new LinkedHashMap<>();
+    private final Map<String, AtomicInteger> attempts = new ConcurrentHashMap<>();
+    private Link link;
+
+    MirrorFarm(int pageBytes) {
+        this.pageBytes = pageBytes;
+    }
+
+    MirrorFarm add(Profile profile) throws IOException {
+        HttpServer server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 64);
+        Stats mirrorStats = new Stats();
+        server.createContext("/", exchange -> handle(profile, mirrorStats, exchange));
+        server.setExecutor(Executors.newCachedThreadPool());
+        server.start();
+        profiles.add(profile);
+        servers.add(server);
+        stats.put(profile.name, mirrorStats);
+        return this;
+    }
+
+    MirrorFarm throttle(Link link) {
+        this.link = link;
+        return this;
+    }
+
+    Map<String, Stats> getStats() {
+        return stats;
+    }
+
+    long totalBytesSent() {
+        long total = 0;
+        for (Stats mirrorStats : stats.values()) {
+            total += mirrorStats.bytesSent.get();
+        }
+        return total;
+    }
+
+    int totalRequests() {
+        int total = 0;
+        for (Stats mirrorStats : stats.values()) {
+            total += mirrorStats.requests.get();
+        }
+        return total;
+    }
+
+    // Point the app's mirror URLs at the local servers, keeping paths and order
+    List<String> localize(List<String> urls) {
+        List<String> local = new ArrayList<>(urls.size());
+        for (String url : urls) {
+            String mapped = url;
+            for (int i = 0; i < profiles.size(); i++) {
+                if (url.startsWith(profiles.get(i).remoteBase)) {
+                    mapped = "http://127.0.0.1:" + servers.get(i).getAddress().getPort()
+                        + url.substring(profiles.get(i).remoteBase.length());
+                    break;
+                }
+            }
+            local.add(mapped);
+        }
+        return local;
+    }
+
+    @Override
+    public void close() {
+        for (HttpServer server : servers) {
+            server.stop(0);
+        }
+    }
+
+    private void handle(Profile profile, Stats mirrorStats, HttpExchange exchange) throws IOException {
+        mirrorStats.requests.incrementAndGet();
+        String path = exchange.getRequestURI().getPath();
+        int attempt = attempts.computeIfAbsent(profile.name + path, key -> new AtomicInteger()).getAndIncrement();
+        Random fault = new Random((profile.name + path).hashCode() * 31L + attempt);
+
+        try {
+            sleep(profile.latencyMillis + (profile.jitterMillis > 0 ? fault.nextInt(profile.jitterMillis) : 0));
+
+            double roll = fault.nextDouble();
+            if ((roll -= profile.notFoundRate) < 0) {
+                mirrorStats.notFound.incrementAndGet();
+                exchange.sendResponseHeaders(404, -1);
+                return;
+            }
+            if ((roll -= profile.errorRate) < 0) {
+                mirrorStats.errors.incrementAndGet();
+                exchange.sendResponseHeaders(503, -1);
+                return;
+            }
+            // A request over the link's capacity is dropped and no longer competes for it
+            boolean overloaded = link != null && link.flows.get() >= link.maxFlows
+                && fault.nextDouble() < link.overloadStallRate;
+            if ((roll -= profile.stallRate) < 0 || overloaded) {
+                mirrorStats.stalled.incrementAndGet();
+                exchange.sendResponseHeaders(200, pageBytes);
+                sleep(profile.stallMillis);
+                return;
+            }
+            boolean truncate = (roll -= profile.truncateRate) < 0;
+            int length = truncate ? pageBytes / 3 : pageBytes;
+            if (truncate) {
+                mirrorStats.truncated.incrementAndGet();
+            }
+
+            exchange.getResponseHeaders().set("Content-Type", "image/png");
+            exchange.sendResponseHeaders(200, pageBytes);
+            if (link != null) {
+                link.flows.incrementAndGet();
+            }
+            try {
+                writeBody(profile, mirrorStats, exchange.getResponseBody(), path, length);
+            } finally {
+                if (link != null) {
+                    link.flows.decrementAndGet();
+                }
+            }
+            if (!truncate) {
+                mirrorStats.served.incrementAndGet();
+            }
+        } catch (IOException e) {
+            // Client gave up (timeout or cancel)
+        } finally {
+            exchange.close();
+        }
+    }
+
+    private void writeBody(Profile profile, Stats mirrorStats, OutputStream body, String path, int length) throws IOException {
+        byte[] chunk = new byte[CHUNK];
+        new Random(path.hashCode()).nextBytes(chunk);
+        long start = System.nanoTime();
+        int sent = 0;
+        while (sent < length) {
+            int n = Math.min(CHUNK, length - sent);
+            body.write(chunk, 0, n);
+            sent += n;
+            mirrorStats.bytesSent.addAndGet(n);
+            long due = System.nanoTime();
+            if (profile.bytesPerSecond > 0) {
+                due = Math.max(due, start + sent * 1_000_000_000L / profile.bytesPerSecond);
+            }
+            if (link != null) {
+                due = Math.max(due, link.reserve(n));
+            }
+            long wait = due - System.nanoTime();
+            if (wait > 0) {
+                sleep((int) (wait / 1_000_000));
+            }
+        }
+        body.flush();
+    }
+
+    private static void sleep(int millis) {
+        if (millis <= 0) {
+            return;
+        }
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,62 @@
+package com.ebizimba.islam;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+public class NativeMetricsTest {
+    // 2^37 us; every value below it has a bucket of its own magnitude
+    private static final long LARGEST_TRACKED = (1L << 37) - 1;
+
+    @Test
+    public void smallValuesHaveExactBuckets() {
+        for (long value = 0; value < 16; value++) {
+            assertEquals(value, NativeMetrics.bucketIndex(value));
+            assertEquals(value, NativeMetrics.bucketUpperBound((int) value));
+        }
+    }
+
+    @Test
+    public void bucketsAreMonotonic() {
+        int previous = -1;
+        for (long value = 0; value < 100_000; value++) {
+            int index = NativeMetrics.bucketIndex(value);
+            assertTrue(value + " went back a bucket", index >= previous);
+            assertTrue(value + " skipped a bucket", index <= previous + 1);
+            previous = index;
+        }
+    }
+
+    @Test
+    public void valuesFallWithinTheirBucket() {
+        for (long value = 1; value <= LARGEST_TRACKED; value = value * 3 / 2 + 1) {
+            assertWithinBucket(value);
+            assertWithinBucket(value - 1);
+        }
+        assertWithinBucket(LARGEST_TRACKED);
+    }
+
+    @Test
+    public void relativeErrorIsBounded() {
+        for (long value = 16; value <= LARGEST_TRACKED; value = value * 5 / 4 + 7) {
+            long upper = NativeMetrics.bucketUpperBound(NativeMetrics.bucketIndex(value));
+            assertTrue(value + " reported as " + upper, upper - value <= value / 16);
+        }
+    }
+
+    @Test
+    public void hugeValuesShareTheLastBucket() {
+        int last = NativeMetrics.bucketIndex(LARGEST_TRACKED);
+        assertEquals(last, NativeMetrics.bucketIndex(LARGEST_TRACKED + 1));
+        assertEquals(last, NativeMetrics.bucketIndex(Long.MAX_VALUE));
+    }
+
+    private static void assertWithinBucket(long value) {
+        int index = NativeMetrics.bucketIndex(value);
+        assertTrue(value + " above its bucket", value <= NativeMetrics.bucketUpperBound(index));
+        if (index > 0) {
+            assertTrue(value + " belongs to an earlier bucket", value > NativeMetrics.bucketUpperBound(index - 1));
+        }
+    }
+}
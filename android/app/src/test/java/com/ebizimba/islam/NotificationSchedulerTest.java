@@ -0,0 +1,60 @@
+package com.ebizimba.islam;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+// The queue edits behind onAppBackgrounded and onAppForegrounded
+public class NotificationSchedulerTest {
+    private static final long NOW = 1_700_000_000_000L;
+
+    @Test
+    public void foregroundCancelsThePromptQueuedOnPause() throws JSONException {
+        List<NotificationScheduler.Entry> queue = new ArrayList<>();
+        // Pause
+        NotificationScheduler.dropReturnPrompt(queue);
+        queue.add(NotificationScheduler.returnPrompt(new JSONObject().put("id", "12").put("body", "Story"), NOW));
+        assertEquals(1, queue.size());
+        assertTrue(queue.get(0).fireAt > NOW);
+        // Foreground
+        assertTrue(NotificationScheduler.dropReturnPrompt(queue));
+        assertTrue(queue.isEmpty());
+    }
+
+    @Test
+    public void repeatedPausesKeepOnePrompt() {
+        List<NotificationScheduler.Entry> queue = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            NotificationScheduler.dropReturnPrompt(queue);
+            queue.add(NotificationScheduler.returnPrompt(null, NOW + i));
+        }
+        assertEquals(1, queue.size());
+        assertEquals("1", queue.get(0).target);
+    }
+
+    @Test
+    public void foregroundLeavesWebStoryNotifications() {
+        List<NotificationScheduler.Entry> queue = new ArrayList<>();
+        // Web story ids are hashed into 2..999_999, including the low ids the
+        // prompt used to have
+        for (int id : new int[]{1, 2, 999_999}) {
+            NotificationScheduler.Entry story = new NotificationScheduler.Entry();
+            story.id = id;
+            story.kind = NotificationScheduler.KIND_STORY;
+            story.fireAt = NOW + 60_000;
+            queue.add(story);
+        }
+        queue.add(NotificationScheduler.returnPrompt(null, NOW));
+        assertTrue(NotificationScheduler.dropReturnPrompt(queue));
+        assertEquals(3, queue.size());
+        assertFalse(NotificationScheduler.dropReturnPrompt(queue));
+        assertEquals(3, queue.size());
+    }
+}
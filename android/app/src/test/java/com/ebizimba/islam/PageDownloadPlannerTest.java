@@ -0,0 +1,89 @@
+package com.ebizimba.islam;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+import org.junit.Test;
+
+import java.util.BitSet;
+
+public class PageDownloadPlannerTest {
+    @Test
+    public void resolvesEachSelectionType() throws JSONException {
+        // A surah or hizb includes the page the next one starts on, which it may share
+        assertEquals("[[1,2]]", resolve("surah", 1, 1));
+        assertEquals("[[2,50]]", resolve("surah", 2, 2));
+        assertEquals("[[42,62]]", resolve("hizb", 5, 6));
+        assertEquals("[[582,604]]", resolve("juz", 30, 30));
+        assertEquals("[[1,41]]", resolve("juz", 1, 2));
+        assertEquals("[[10,20]]", resolve("page", 10, 20));
+        assertEquals("[[604,604]]", resolve("surah", 114, 114));
+    }
+
+    @Test
+    public void toDefaultsToFrom() throws JSONException {
+        JSONArray selections = new JSONArray().put(new JSONObject().put("type", "page").put("from", 7));
+        assertEquals("[[7,7]]", PageDownloadPlanner.toRanges(PageDownloadPlanner.resolve(selections)).toString());
+    }
+
+    @Test
+    public void mergesOverlappingSelections() throws JSONException {
+        JSONArray selections = new JSONArray()
+            .put(selection("page", 5, 10))
+            .put(selection("page", 8, 12))
+            .put(selection("page", 20, 21));
+        BitSet pages = PageDownloadPlanner.resolve(selections);
+        assertEquals(10, pages.cardinality());
+        assertEquals("[[5,12],[20,21]]", PageDownloadPlanner.toRanges(pages).toString());
+    }
+
+    @Test
+    public void rejectsInvalidSelections() throws JSONException {
+        assertRejected(selection("page", 0, 3));
+        assertRejected(selection("page", 600, 605));
+        assertRejected(selection("surah", 115, 115));
+        assertRejected(selection("juz", 0, 1));
+        assertRejected(selection("hizb", 1, 61));
+        assertRejected(selection("page", 10, 9));
+        assertRejected(selection("ayah", 1, 1));
+    }
+
+    @Test
+    public void toRangesOfNothingIsEmpty() {
+        assertEquals(0, PageDownloadPlanner.toRanges(new BitSet()).length());
+    }
+
+    @Test
+    public void pageFromKey() {
+        assertEquals(7, PageDownloadPlanner.pageFromKey("007.png"));
+        assertEquals(604, PageDownloadPlanner.pageFromKey("604.png"));
+        assertEquals(-1, PageDownloadPlanner.pageFromKey("000.png"));
+        assertEquals(-1, PageDownloadPlanner.pageFromKey("605.png"));
+        assertEquals(-1, PageDownloadPlanner.pageFromKey("7.png"));
+        assertEquals(-1, PageDownloadPlanner.pageFromKey("007.jpg"));
+        assertEquals(-1, PageDownloadPlanner.pageFromKey("abc.png"));
+        assertEquals(-1, PageDownloadPlanner.pageFromKey(null));
+    }
+
+    private static String resolve(String type, int from, int to) throws JSONException {
+        BitSet pages = PageDownloadPlanner.resolve(new JSONArray().put(selection(type, from, to)));
+        return PageDownloadPlanner.toRanges(pages).toString();
+    }
+
+    private static JSONObject selection(String type, int from, int to) throws JSONException {
+        return new JSONObject().put("type", type).put("from", from).put("to", to);
+    }
+
+    private static void assertRejected(JSONObject selection) throws JSONException {
+        try {
+            PageDownloadPlanner.resolve(new JSONArray().put(selection));
+            fail("Accepted " + selection);
+        } catch (IllegalArgumentException expected) {
+            assertTrue(expected.getMessage().length() > 0);
+        }
+    }
+}
@@ -0,0 +1,93 @@
+package com.ebizimba.islam;
+
+import static org.junit.Assert.assertEquals;
+
+import org.junit.Test;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.util.HashMap;
+import java.util.Map;
+
+// Page-URL lookup and page-path resolution. The getImgbbUrl string switch and the
+// String.format page names are compared with table lookups built from them.
+public class PageLookupBenchmark {
+    private static final int PAGE_COUNT = 604;
+
+    @Test
+    public void pageUrlLookup() throws Exception {
+        MicroBenchmark bench = MicroBenchmark.suite("page-url-lookup");
+
+        String[] formatted = new String[PAGE_COUNT + 1];
+        String[] byPage = new String[PAGE_COUNT + 1];
+        Map<String, String> byName = new HashMap<>();
+        for (int page = 1; page <= PAGE_COUNT; page++) {
+            formatted[page] = String.format("%03d", page);
+            byPage[page] = QuranPageDownloader.getImgbbUrl(formatted[page]);
+            byName.put(formatted[page], byPage[page]);
+        }
+        for (int page = 1; page <= PAGE_COUNT; page++) {
+            assertEquals(byPage[page], byName.get(formatted[page]));
+        }
+
+        bench.measure("switchOnName", i -> QuranPageDownloader.getImgbbUrl(formatted[1 + i % PAGE_COUNT]));
+        bench.measure("hashMapOnName", i -> byName.get(formatted[1 + i % PAGE_COUNT]));
+        bench.measure("arrayOnPage", i -> byPage[1 + i % PAGE_COUNT]);
+        // What callers actually pay today: format the number, then switch on it
+        bench.measure("formatThenSwitch", i ->
+            QuranPageDownloader.getImgbbUrl(String.format("%03d", 1 + i % PAGE_COUNT)));
+        bench.measure("mirrorList", i -> QuranPageDownloader.getPageUrls(formatted[1 + i % PAGE_COUNT]));
+        bench.report();
+    }
+
+    @Test
+    public void pagePathResolution() throws Exception {
+        MicroBenchmark bench = MicroBenchmark.suite("page-path-resolution");
+
+        File filesDir = Files.createTempDirectory("page-paths").toFile();
+        File pagesDir = new File(filesDir, AssetDownloader.AssetType.PAGE_IMAGE.directory);
+        pagesDir.mkdirs();
+        // Half the mushaf cached, as on a typical device
+        for (int page = 1; page <= PAGE_COUNT; page += 2) {
+            new File(pagesDir, String.format("%03d.png", page)).createNewFile();
+        }
+        String[] names = new String[PAGE_COUNT + 1];
+        for (int page = 1; page <= PAGE_COUNT; page++) {
+            names[page] = String.format("%03d.png", page);
+        }
+
+        try {
+            bench.measure("formatName", i -> String.format("%03d.png", 1 + i % PAGE_COUNT));
+            bench.measure("padName", i -> padPage(1 + i % PAGE_COUNT));
+            // MainActivity.getQuranPagePath: path built from the files dir on each call
+            bench.measure("formatAndExists", i -> {
+                File page = new File(filesDir, "quran-pages/" + String.format("%03d", 1 + i % PAGE_COUNT) + ".png");
+                return page.exists();
+            });
+            // AssetDownloader.getFile: directory exists()/mkdirs() check, then the file
+            bench.measure("getFileAndExists", i -> {
+                File dir = new File(filesDir, AssetDownloader.AssetType.PAGE_IMAGE.directory);
+                if (!dir.exists()) {
+                    dir.mkdirs();
+                }
+                return new File(dir, names[1 + i % PAGE_COUNT]).exists();
+            });
+            bench.measure("cachedDirAndExists", i -> new File(pagesDir, names[1 + i % PAGE_COUNT]).exists());
+            bench.report();
+        } finally {
+            for (File file : pagesDir.listFiles()) {
+                file.delete();
+            }
+            pagesDir.delete();
+            filesDir.delete();
+        }
+    }
+
+    private static String padPage(int page) {
+        char[] name = {'0', '0', '0', '.', 'p', 'n', 'g'};
+        name[0] = (char) ('0' + page / 100);
+        name[1] = (char) ('0' + page / 10 % 10);
+        name[2] = (char) ('0' + page % 10);
+        return new String(name);
+    }
+}
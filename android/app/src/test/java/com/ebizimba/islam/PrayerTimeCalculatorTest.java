@@ -0,0 +1,68 @@
+package com.ebizimba.islam;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+// Expected times agree with published MWL timetables (Shafi'i asr) for each place
+// and date; timetables round differently, hence the tolerance.
+public class PrayerTimeCalculatorTest {
+    private static final int TOLERANCE_MINUTES = 2;
+
+    @Test
+    public void kampalaNewYear() {
+        int[] times = PrayerTimeCalculator.compute(2024, 1, 1, 0.3476, 32.5825, 3,
+            PrayerTimeCalculator.Method.MWL, false);
+        assertTimes(times, "05:35", "06:50", "12:53", "16:18", "18:56", "20:07");
+    }
+
+    @Test
+    public void londonSummerSolstice() {
+        // Fajr and isha come from the night-portion fallback: the sun stays above
+        // -18 degrees all night
+        int[] times = PrayerTimeCalculator.compute(2024, 6, 21, 51.5074, -0.1278, 1,
+            PrayerTimeCalculator.Method.MWL, false);
+        assertTimes(times, "02:31", "04:43", "13:02", "17:25", "21:22", "23:27");
+    }
+
+    @Test
+    public void londonWinterSolstice() {
+        int[] times = PrayerTimeCalculator.compute(2024, 12, 21, 51.5074, -0.1278, 0,
+            PrayerTimeCalculator.Method.MWL, false);
+        assertTimes(times, "06:00", "08:04", "11:59", "13:38", "15:54", "17:51");
+    }
+
+    @Test
+    public void hanafiAsrIsLater() {
+        int[] shafii = PrayerTimeCalculator.compute(2024, 1, 1, 0.3476, 32.5825, 3,
+            PrayerTimeCalculator.Method.MWL, false);
+        int[] hanafi = PrayerTimeCalculator.compute(2024, 1, 1, 0.3476, 32.5825, 3,
+            PrayerTimeCalculator.Method.MWL, true);
+        assertTrue(hanafi[PrayerTimeCalculator.ASR] > shafii[PrayerTimeCalculator.ASR]);
+    }
+
+    @Test
+    public void polarDayHasNoSunriseOrSunset() {
+        // Tromso at midsummer: the sun never sets, so there is no sunrise, maghrib
+        // or night to take fajr and isha from. They must not read as midnight.
+        int[] times = PrayerTimeCalculator.compute(2024, 6, 21, 69.6492, 18.9553, 2,
+            PrayerTimeCalculator.Method.MWL, false);
+        assertEquals(PrayerTimeCalculator.UNAVAILABLE, times[PrayerTimeCalculator.FAJR]);
+        assertEquals(PrayerTimeCalculator.UNAVAILABLE, times[PrayerTimeCalculator.SUNRISE]);
+        assertEquals(PrayerTimeCalculator.UNAVAILABLE, times[PrayerTimeCalculator.MAGHRIB]);
+        assertEquals(PrayerTimeCalculator.UNAVAILABLE, times[PrayerTimeCalculator.ISHA]);
+        assertNotEquals(PrayerTimeCalculator.UNAVAILABLE, times[PrayerTimeCalculator.DHUHR]);
+    }
+
+    private static void assertTimes(int[] times, String... expected) {
+        assertEquals(PrayerTimeCalculator.TIME_COUNT, times.length);
+        for (int i = 0; i < expected.length; i++) {
+            String[] parts = expected[i].split(":");
+            int minutes = Integer.parseInt(parts[0]) * 60 + Integer.parseInt(parts[1]);
+            assertTrue(PrayerTimeCalculator.TIME_NAMES[i] + " was " + times[i] + ", expected " + expected[i],
+                Math.abs(times[i] - minutes) <= TOLERANCE_MINUTES);
+        }
+    }
+}
@@ -0,0 +1,95 @@
+package com.ebizimba.islam;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+public class QuranSearchIndexTest {
+    // bismillah with full Uthmani marks, and the same words bare
+    private static final String MARKED =
+        "\u0628\u0650\u0633\u0652\u0645\u0650 \u0671\u0644\u0644\u0651\u064E\u0647\u0650";
+    private static final String BARE = "\u0628\u0633\u0645 \u0627\u0644\u0644\u0647";
+
+    @Test
+    public void normalizeStripsMarksAndFoldsAlef() {
+        assertEquals(BARE, QuranSearchIndex.normalize(MARKED));
+    }
+
+    @Test
+    public void normalizeFoldsLetterVariants() {
+        // alef with hamza above, madda and below
+        assertEquals("\u0627\u0627\u0627", QuranSearchIndex.normalize("\u0623\u0622\u0625"));
+        // alef maksura and yeh with hamza to yeh, waw with hamza to waw
+        assertEquals("\u064A\u064A\u0648", QuranSearchIndex.normalize("\u0649\u0626\u0624"));
+        // teh marbuta to heh
+        assertEquals("\u0631\u062D\u0645\u0647", QuranSearchIndex.normalize("\u0631\u062D\u0645\u0629"));
+    }
+
+    @Test
+    public void normalizeDropsTatweelAndAnnotations() {
+        assertEquals("\u0627\u0644\u0644\u0647",
+            QuranSearchIndex.normalize("\u0627\u0644\u0644\u0640\u0640\u0647\u06D6\u0670"));
+    }
+
+    @Test
+    public void normalizeLowerCasesLatin() {
+        assertEquals("the merciful", QuranSearchIndex.normalize("The MERCIFUL"));
+        assertEquals("", QuranSearchIndex.normalize(null));
+    }
+
+    @Test
+    public void matchExpressionDropsOperatorsAndPrefixesLastWord() {
+        assertEquals("most merciful*", QuranSearchIndex.buildMatchExpression("Most \"Merciful\"*"));
+        assertEquals(BARE + "*", QuranSearchIndex.buildMatchExpression(MARKED));
+        assertNull(QuranSearchIndex.buildMatchExpression("  -*\" "));
+    }
+
+    @Test
+    public void matchExpressionSplitsWordsLikeTheTokenizer() {
+        // unicode61 indexed "Al-Fatiha" and "Ibrahim's" as separate tokens
+        assertEquals("al fatiha*", QuranSearchIndex.buildMatchExpression("al-fatiha"));
+        assertEquals("ibrahim s people*", QuranSearchIndex.buildMatchExpression("Ibrahim's people"));
+        assertEquals("the merciful*", QuranSearchIndex.buildMatchExpression("the\tmerciful."));
+        // Arabic comma
+        assertEquals(BARE + "*", QuranSearchIndex.buildMatchExpression("\u0628\u0633\u0645\u060C\u0627\u0644\u0644\u0647"));
+    }
+
+    @Test
+    public void bm25IsZeroWithoutHits() {
+        assertEquals(0, QuranSearchIndex.bm25(matchInfo(1000, 10, 10, new int[][]{{0, 50}})), 0);
+    }
+
+    @Test
+    public void bm25MatchesFormula() {
+        double score = QuranSearchIndex.bm25(matchInfo(1000, 10, 10, new int[][]{{2, 50}}));
+        double idf = Math.log((1000 - 50 + 0.5) / (50 + 0.5) + 1);
+        double tf = 2 * 2.2 / (2 + 1.2);
+        assertEquals(idf * tf, score, 1e-9);
+    }
+
+    @Test
+    public void bm25RanksAsExpected() {
+        double base = QuranSearchIndex.bm25(matchInfo(1000, 10, 10, new int[][]{{1, 50}}));
+        assertTrue("more hits", QuranSearchIndex.bm25(matchInfo(1000, 10, 10, new int[][]{{3, 50}})) > base);
+        assertTrue("rarer term", QuranSearchIndex.bm25(matchInfo(1000, 10, 10, new int[][]{{1, 5}})) > base);
+        assertTrue("longer row", QuranSearchIndex.bm25(matchInfo(1000, 10, 40, new int[][]{{1, 50}})) < base);
+        assertTrue("second phrase",
+            QuranSearchIndex.bm25(matchInfo(1000, 10, 10, new int[][]{{1, 50}, {1, 50}})) > base);
+    }
+
+    // matchinfo 'pcnalx' for one column: p, c, n, a, l, then per phrase hits in
+    // this row, hits in all rows and rows with a hit
+    private static byte[] matchInfo(int rows, int averageLength, int rowLength, int[][] phrases) {
+        ByteBuffer buffer = ByteBuffer.allocate(20 + phrases.length * 12).order(ByteOrder.nativeOrder());
+        buffer.putInt(phrases.length).putInt(1).putInt(rows).putInt(averageLength).putInt(rowLength);
+        for (int[] phrase : phrases) {
+            buffer.putInt(phrase[0]).putInt(phrase[0] * phrase[1]).putInt(phrase[1]);
+        }
+        return buffer.array();
+    }
+}
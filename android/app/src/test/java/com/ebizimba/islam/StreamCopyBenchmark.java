@@ -0,0 +1,178 @@
+package com.ebizimba.islam;
+
+import static org.junit.Assert.assertEquals;
+
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.lang.management.ManagementFactory;
+import java.security.MessageDigest;
+import java.util.Locale;
+import java.util.Random;
+
+// The download copy path (read, write to a file, SHA-256 update) for a
+// page-image-sized and an audio-sized payload. "stream" is the loop downloadFile
+// used before NativeIo: a fresh 4 KB array per file, FileOutputStream writes and
+// no sync; "stream_sync" adds the one fsync NativeIo does, for a fair comparison.
+// The input hands out at most NETWORK_READ bytes per read, like a socket. The
+// network itself is left out so only the copy is measured.
+//
+// copyCosts also reports heap bytes allocated, reads, writes and fsyncs per MB to
+// build/benchmarks/download-copy-costs.json.
+public class StreamCopyBenchmark {
+    private static final int PAGE_BYTES = 256 * 1024;
+    private static final int AUDIO_BYTES = 4 * 1024 * 1024;
+    private static final int NETWORK_READ = 8 * 1024;
+    private static final int LEGACY_BUFFER_SIZE = 4096;
+    private static final double MB = 1024 * 1024;
+
+    private interface Copier {
+        long copy(InputStream input, File target, MessageDigest digest, Counts counts) throws IOException;
+    }
+
+    private static final class Counts {
+        long reads;
+        long writes;
+        long syncs;
+    }
+
+    private static final String[] NAMES = {"stream", "stream_sync", "pooled_channel"};
+    private static final Copier[] COPIERS = {
+        (input, target, digest, counts) -> legacyCopy(input, target, digest, counts, false),
+        (input, target, digest, counts) -> legacyCopy(input, target, digest, counts, true),
+        (input, target, digest, counts) -> {
+            long writes = NativeMetrics.get(NativeMetrics.Counter.IO_WRITES);
+            long syncs = NativeMetrics.get(NativeMetrics.Counter.IO_SYNCS);
+            long written = NativeIo.copyToFile(input, target, digest);
+            counts.writes += NativeMetrics.get(NativeMetrics.Counter.IO_WRITES) - writes;
+            counts.syncs += NativeMetrics.get(NativeMetrics.Counter.IO_SYNCS) - syncs;
+            return written;
+        }
+    };
+
+    @Test
+    public void downloadCopy() throws Exception {
+        MicroBenchmark bench = MicroBenchmark.suite("download-stream-copy");
+        byte[] page = payload(PAGE_BYTES);
+        byte[] audio = payload(AUDIO_BYTES);
+        MessageDigest digest = MessageDigest.getInstance("SHA-256");
+        Counts counts = new Counts();
+
+        File target = File.createTempFile("stream-copy", ".part");
+        try {
+            for (int c = 0; c < COPIERS.length; c++) {
+                Copier copier = COPIERS[c];
+                bench.measure("page_" + NAMES[c], i -> copy(copier, page, target, digest, counts));
+                bench.measure("audio_" + NAMES[c], i -> copy(copier, audio, target, digest, counts));
+            }
+            bench.report();
+        } finally {
+            target.delete();
+        }
+    }
+
+    @Test
+    public void copyCosts() throws Exception {
+        MicroBenchmark.assumeEnabled();
+        byte[] audio = payload(AUDIO_BYTES);
+        MessageDigest digest = MessageDigest.getInstance("SHA-256");
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long thread = Thread.currentThread().getId();
+        int rounds = 16;
+
+        StringBuilder json = new StringBuilder();
+        json.append("{\n");
+        File target = File.createTempFile("stream-copy", ".part");
+        try {
+            for (int c = 0; c < COPIERS.length; c++) {
+                Counts counts = new Counts();
+                // Warm up, so pools are filled and lazily loaded classes don't count
+                copy(COPIERS[c], audio, target, digest, counts);
+                counts = new Counts();
+                long allocated = threads.getThreadAllocatedBytes(thread);
+                for (int i = 0; i < rounds; i++) {
+                    copy(COPIERS[c], audio, target, digest, counts);
+                }
+                allocated = threads.getThreadAllocatedBytes(thread) - allocated;
+                double megabytes = rounds * AUDIO_BYTES / MB;
+
+                json.append("  ").append(MicroBenchmark.quote(NAMES[c])).append(": {");
+                json.append("\"allocatedBytesPerMB\": ").append(MicroBenchmark.format(allocated / megabytes)).append(", ");
+                json.append("\"fsyncsPerMB\": ").append(MicroBenchmark.format(counts.syncs / megabytes)).append(", ");
+                json.append("\"readsPerMB\": ").append(MicroBenchmark.format(counts.reads / megabytes)).append(", ");
+                json.append("\"writesPerMB\": ").append(MicroBenchmark.format(counts.writes / megabytes)).append("}");
+                json.append(c < COPIERS.length - 1 ? ",\n" : "\n");
+                System.out.printf(Locale.ROOT, "%s: %.0f B allocated, %.1f reads, %.1f writes, %.2f fsyncs per MB%n",
+                    NAMES[c], allocated / megabytes, counts.reads / megabytes, counts.writes / megabytes,
+                    counts.syncs / megabytes);
+            }
+        } finally {
+            target.delete();
+        }
+        json.append("}\n");
+        MicroBenchmark.writeReport("download-copy-costs", json.toString());
+    }
+
+    private static byte[] payload(int size) {
+        byte[] data = new byte[size];
+        new Random(42).nextBytes(data);
+        return data;
+    }
+
+    private static Long copy(Copier copier, byte[] payload, File target, MessageDigest digest, Counts counts)
+            throws IOException {
+        digest.reset();
+        long written = copier.copy(new SocketLikeInputStream(payload, counts), target, digest, counts);
+        assertEquals(payload.length, written);
+        return written;
+    }
+
+    // What downloadFile did before NativeIo
+    private static long legacyCopy(InputStream input, File target, MessageDigest digest, Counts counts,
+                                   boolean sync) throws IOException {
+        try (FileOutputStream file = new FileOutputStream(target)) {
+            OutputStream output = new FilterOutputStream(file) {
+                @Override
+                public void write(byte[] b, int off, int len) throws IOException {
+                    counts.writes++;
+                    out.write(b, off, len);
+                }
+            };
+            byte[] buffer = new byte[LEGACY_BUFFER_SIZE];
+            long written = 0;
+            int bytesRead;
+            while ((bytesRead = input.read(buffer)) != -1) {
+                output.write(buffer, 0, bytesRead);
+                digest.update(buffer, 0, bytesRead);
+                written += bytesRead;
+            }
+            if (sync) {
+                file.getFD().sync();
+                counts.syncs++;
+            }
+            return written;
+        }
+    }
+
+    // Returns at most NETWORK_READ bytes per read and counts the calls
+    private static final class SocketLikeInputStream extends ByteArrayInputStream {
+        private final Counts counts;
+
+        SocketLikeInputStream(byte[] data, Counts counts) {
+            super(data);
+            this.counts = counts;
+        }
+
+        @Override
+        public synchronized int read(byte[] b, int off, int len) {
+            counts.reads++;
+            return super.read(b, off, Math.min(len, NETWORK_READ));
+        }
+    }
+}
@@ -0,0 +1,157 @@
+package com.ebizimba.islam;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+import org.json.JSONObject;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.KeyPair;
+import java.security.KeyPairGenerator;
+import java.security.Signature;
+import java.util.Base64;
+
+public class WebBundleUpdaterTest {
+    private static final int MAGIC = 0x51444C31;
+    private static final byte[] BASE = "The quick brown fox".getBytes(StandardCharsets.US_ASCII);
+
+    @Test
+    public void applyDeltaCopiesAndInserts() throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream patch = header(bytes, 17);
+        copy(patch, 0, 10);
+        insert(patch, "red");
+        copy(patch, 15, 4);
+        patch.writeByte(0);
+        byte[] result = WebBundleUpdater.applyDelta(BASE, new ByteArrayInputStream(bytes.toByteArray()));
+        assertArrayEquals("The quick red fox".getBytes(StandardCharsets.US_ASCII), result);
+    }
+
+    @Test
+    public void applyDeltaRejectsBadMagic() {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try {
+            DataOutputStream patch = new DataOutputStream(bytes);
+            patch.writeInt(0x12345678);
+            patch.writeInt(0);
+            patch.writeByte(0);
+        } catch (IOException e) {
+            throw new AssertionError(e);
+        }
+        assertRejected(bytes.toByteArray());
+    }
+
+    @Test
+    public void applyDeltaRejectsCopyPastBase() throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream patch = header(bytes, 10);
+        copy(patch, 15, 10);
+        patch.writeByte(0);
+        assertRejected(bytes.toByteArray());
+    }
+
+    @Test
+    public void applyDeltaRejectsOutputOverrun() throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream patch = header(bytes, 4);
+        insert(patch, "longer");
+        patch.writeByte(0);
+        assertRejected(bytes.toByteArray());
+    }
+
+    @Test
+    public void applyDeltaRejectsShortOutput() throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream patch = header(bytes, 8);
+        copy(patch, 0, 3);
+        patch.writeByte(0);
+        assertRejected(bytes.toByteArray());
+    }
+
+    @Test
+    public void verifyAcceptsSignedManifest() throws Exception {
+        KeyPair keys = generateKeys();
+        byte[] manifest = "{\"version\":\"42\"}".getBytes(StandardCharsets.UTF_8);
+        JSONObject envelope = envelope(manifest, sign(keys, manifest));
+        assertEquals("42", WebBundleUpdater.verify(envelope, keys.getPublic()).getString("version"));
+    }
+
+    @Test
+    public void verifyRejectsTamperedManifest() throws Exception {
+        KeyPair keys = generateKeys();
+        byte[] manifest = "{\"version\":\"42\"}".getBytes(StandardCharsets.UTF_8);
+        byte[] signature = sign(keys, manifest);
+        byte[] tampered = "{\"version\":\"43\"}".getBytes(StandardCharsets.UTF_8);
+        try {
+            WebBundleUpdater.verify(envelope(tampered, signature), keys.getPublic());
+            fail("Tampered manifest accepted");
+        } catch (GeneralSecurityException expected) {
+        }
+    }
+
+    @Test
+    public void verifyRejectsOtherKey() throws Exception {
+        byte[] manifest = "{\"version\":\"42\"}".getBytes(StandardCharsets.UTF_8);
+        JSONObject envelope = envelope(manifest, sign(generateKeys(), manifest));
+        try {
+            WebBundleUpdater.verify(envelope, generateKeys().getPublic());
+            fail("Manifest signed by another key accepted");
+        } catch (GeneralSecurityException expected) {
+        }
+    }
+
+    private static DataOutputStream header(ByteArrayOutputStream bytes, int targetLength) throws IOException {
+        DataOutputStream patch = new DataOutputStream(bytes);
+        patch.writeInt(MAGIC);
+        patch.writeInt(targetLength);
+        return patch;
+    }
+
+    private static void copy(DataOutputStream patch, int offset, int length) throws IOException {
+        patch.writeByte(1);
+        patch.writeInt(offset);
+        patch.writeInt(length);
+    }
+
+    private static void insert(DataOutputStream patch, String text) throws IOException {
+        byte[] bytes = text.getBytes(StandardCharsets.US_ASCII);
+        patch.writeByte(2);
+        patch.writeInt(bytes.length);
+        patch.write(bytes);
+    }
+
+    private static void assertRejected(byte[] patch) {
+        try {
+            WebBundleUpdater.applyDelta(BASE, new ByteArrayInputStream(patch));
+            fail("Patch accepted");
+        } catch (IOException expected) {
+        }
+    }
+
+    private static KeyPair generateKeys() throws GeneralSecurityException {
+        KeyPairGenerator generator = KeyPairGenerator.getInstance("EC");
+        generator.initialize(256);
+        return generator.generateKeyPair();
+    }
+
+    private static byte[] sign(KeyPair keys, byte[] data) throws GeneralSecurityException {
+        Signature signer = Signature.getInstance("SHA256withECDSA");
+        signer.initSign(keys.getPrivate());
+        signer.update(data);
+        return signer.sign();
+    }
+
+    private static JSONObject envelope(byte[] manifest, byte[] signature) throws Exception {
+        JSONObject envelope = new JSONObject();
+        envelope.put("manifest", Base64.getEncoder().encodeToString(manifest));
+        envelope.put("signature", Base64.getEncoder().encodeToString(signature));
+        return envelope;
+    }
+}
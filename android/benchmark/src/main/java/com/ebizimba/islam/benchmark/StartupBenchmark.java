@@ -0,0 +1,88 @@
+package com.ebizimba.islam.benchmark;
+
+import androidx.benchmark.macro.CompilationMode;
+import androidx.benchmark.macro.Metric;
+import androidx.benchmark.macro.StartupMode;
+import androidx.benchmark.macro.StartupTimingMetric;
+import androidx.benchmark.macro.TraceSectionMetric;
+import androidx.benchmark.macro.junit4.MacrobenchmarkRule;
+import androidx.test.uiautomator.By;
+import androidx.test.uiautomator.Until;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.Parameterized;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import kotlin.Unit;
+
+// Cold, warm and hot starts of MainActivity. StartupTimingMetric reports
+// timeToInitialDisplayMs (first frame) and timeToFullDisplayMs (reportFullyDrawn,
+// sent once the web app's first screen is painted); the trace sections are the
+// ones MainActivity marks with StartupTrace. Hot starts skip onCreate, so they
+// only have initial display.
+@RunWith(Parameterized.class)
+public class StartupBenchmark {
+    private static final String PACKAGE = "com.ebizimba.islam";
+    private static final int ITERATIONS = 10;
+    private static final long FULLY_DRAWN_TIMEOUT_MS = 30_000;
+    // Content description MainActivity sets on the WebView in benchmark builds
+    private static final String STARTUP_MARKER = "startup-fully-drawn";
+    private static final String[] SECTIONS = {
+        "Startup.bridgeOnCreate",
+        "Startup.configureWebView",
+        "Startup.configureGoogleSignIn",
+        "Startup.checkFirstLaunch",
+        "Startup.splash",
+        "Startup.webAppReady"
+    };
+
+    @Parameterized.Parameters(name = "{0}")
+    public static List<Object[]> modes() {
+        return Arrays.asList(new Object[][]{{StartupMode.COLD}, {StartupMode.WARM}, {StartupMode.HOT}});
+    }
+
+    @Rule
+    public MacrobenchmarkRule rule = new MacrobenchmarkRule();
+
+    private final StartupMode mode;
+
+    public StartupBenchmark(StartupMode mode) {
+        this.mode = mode;
+    }
+
+    @Test
+    public void startup() {
+        rule.measureRepeated(
+            PACKAGE,
+            metrics(),
+            new CompilationMode.Partial(),
+            mode,
+            ITERATIONS,
+            scope -> {
+                scope.pressHome();
+                return Unit.INSTANCE;
+            },
+            scope -> {
+                scope.startActivityAndWait();
+                if (mode != StartupMode.HOT) {
+                    scope.getDevice().wait(Until.hasObject(By.desc(STARTUP_MARKER)), FULLY_DRAWN_TIMEOUT_MS);
+                }
+                return Unit.INSTANCE;
+            }
+        );
+    }
+
+    private static List<Metric> metrics() {
+        List<Metric> metrics = new ArrayList<>();
+        metrics.add(new StartupTimingMetric());
+        for (String section : SECTIONS) {
+            metrics.add(new TraceSectionMetric(section, TraceSectionMetric.Mode.First, true));
+        }
+        return metrics;
+    }
+}
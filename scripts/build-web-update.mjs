@@ -0,0 +1,207 @@
+#!/usr/bin/env node
+// Builds a signed over-the-air update of the web bundle for the Android app
+// (android/.../WebBundleUpdater.java).
+//
+//   node scripts/build-web-update.mjs --generate-key <dir>
+//     writes web-update.pem (keep it private) and prints the public key to pass
+//     to Gradle as -PwebUpdatePublicKey=...
+//
+//   node scripts/build-web-update.mjs --dist dist --out web-update --version 2024.11.0 \
+//       --key web-update.pem [--previous old-dist ...]
+//     writes web-update/manifest.json (the signed envelope), files/<sha256>.gz and
+//     deltas/<from>-<to>.qdl.gz. Upload the directory as is and point
+//     -PwebUpdateManifestUrl at manifest.json. Each --previous is an earlier
+//     released dist; changed files get a delta against their counterpart in it,
+//     so devices on that release only download the patches.
+import { createHash, createPrivateKey, generateKeyPairSync, sign } from 'node:crypto';
+import { mkdirSync, readFileSync, readdirSync, statSync, writeFileSync } from 'node:fs';
+import { join, relative, sep } from 'node:path';
+import { gzipSync } from 'node:zlib';
+
+const DELTA_MAGIC = 0x51444c31; // "QDL1"
+const OP_END = 0;
+const OP_COPY = 1;
+const OP_INSERT = 2;
+const BLOCK = 32;
+const BASE_STRIDE = 8;
+// A delta is only published when it beats the gzipped file by this much
+const DELTA_WORTHWHILE = 0.8;
+
+function parseArgs(argv) {
+  const args = { previous: [] };
+  for (let i = 0; i < argv.length; i++) {
+    const name = argv[i].replace(/^--/, '');
+    const value = argv[i + 1];
+    if (name === 'previous') args.previous.push(value);
+    else args[name] = value;
+    i++;
+  }
+  return args;
+}
+
+function listFiles(root) {
+  const files = [];
+  const walk = (dir) => {
+    for (const name of readdirSync(dir)) {
+      const path = join(dir, name);
+      if (statSync(path).isDirectory()) walk(path);
+      else files.push(relative(root, path).split(sep).join('/'));
+    }
+  };
+  walk(root);
+  return files.sort();
+}
+
+const sha256 = (data) => createHash('sha256').update(data).digest('hex');
+
+// "assets/QuranPageManager-CxY8IHO3.js" -> "assets/QuranPageManager-*.js", so a
+// rebuilt chunk is diffed against the same chunk of the previous release
+function chunkKey(path) {
+  return path.replace(/-[A-Za-z0-9_-]{8}(\.[a-z0-9]+)$/, '-*$1');
+}
+
+function blockHash(data, offset) {
+  let hash = 0;
+  for (let i = 0; i < BLOCK; i++) hash = (Math.imul(hash, 31) + data[offset + i]) | 0;
+  return hash;
+}
+
+// Copy/insert delta in the QDL1 format WebBundleUpdater.applyDelta reads
+function diff(base, target) {
+  const index = new Map();
+  for (let i = 0; i + BLOCK <= base.length; i += BASE_STRIDE) {
+    const hash = blockHash(base, i);
+    if (!index.has(hash)) index.set(hash, i);
+  }
+
+  const chunks = [];
+  const header = Buffer.alloc(8);
+  header.writeInt32BE(DELTA_MAGIC, 0);
+  header.writeInt32BE(target.length, 4);
+  chunks.push(header);
+
+  let literalStart = 0;
+  const flushLiteral = (end) => {
+    if (end <= literalStart) return;
+    const op = Buffer.alloc(5);
+    op.writeUInt8(OP_INSERT, 0);
+    op.writeInt32BE(end - literalStart, 1);
+    chunks.push(op, target.subarray(literalStart, end));
+  };
+
+  let i = 0;
+  while (i + BLOCK <= target.length) {
+    const from = index.get(blockHash(target, i));
+    if (from === undefined || base.compare(target, i, i + BLOCK, from, from + BLOCK) !== 0) {
+      i++;
+      continue;
+    }
+    let start = i;
+    let baseStart = from;
+    while (start > literalStart && baseStart > 0 && target[start - 1] === base[baseStart - 1]) {
+      start--;
+      baseStart--;
+    }
+    let end = i + BLOCK;
+    let baseEnd = from + BLOCK;
+    while (end < target.length && baseEnd < base.length && target[end] === base[baseEnd]) {
+      end++;
+      baseEnd++;
+    }
+    flushLiteral(start);
+    const op = Buffer.alloc(9);
+    op.writeUInt8(OP_COPY, 0);
+    op.writeInt32BE(baseStart, 1);
+    op.writeInt32BE(end - start, 5);
+    chunks.push(op);
+    literalStart = end;
+    i = end;
+  }
+  flushLiteral(target.length);
+  chunks.push(Buffer.from([OP_END]));
+  return Buffer.concat(chunks);
+}
+
+function generateKey(dir) {
+  mkdirSync(dir, { recursive: true });
+  const { privateKey, publicKey } = generateKeyPairSync('ec', { namedCurve: 'P-256' });
+  writeFileSync(join(dir, 'web-update.pem'), privateKey.export({ type: 'pkcs8', format: 'pem' }), { mode: 0o600 });
+  const spki = publicKey.export({ type: 'spki', format: 'der' }).toString('base64');
+  console.log(`Private key: ${join(dir, 'web-update.pem')}`);
+  console.log(`Gradle: -PwebUpdatePublicKey=${spki}`);
+}
+
+function build(args) {
+  for (const required of ['dist', 'out', 'version', 'key']) {
+    if (!args[required]) throw new Error(`Missing --${required}`);
+  }
+  mkdirSync(join(args.out, 'files'), { recursive: true });
+  mkdirSync(join(args.out, 'deltas'), { recursive: true });
+
+  // Per previous release: every file's hash, and files grouped by chunkKey. Names
+  // like index-*.js are shared by several chunks, so all of them are tried.
+  const previous = args.previous.map((dir) => {
+    const hashes = new Set();
+    const byKey = new Map();
+    for (const path of listFiles(dir)) {
+      const data = readFileSync(join(dir, path));
+      hashes.add(sha256(data));
+      const key = chunkKey(path);
+      if (!byKey.has(key)) byKey.set(key, []);
+      byKey.get(key).push(data);
+    }
+    return { hashes, byKey };
+  });
+
+  const files = [];
+  let bundleBytes = 0;
+  // Bytes a device on each previous release downloads for this update
+  const updateBytes = previous.map(() => 0);
+
+  for (const path of listFiles(args.dist)) {
+    const data = readFileSync(join(args.dist, path));
+    const hash = sha256(data);
+    const gzipped = gzipSync(data, { level: 9 });
+    writeFileSync(join(args.out, 'files', `${hash}.gz`), gzipped);
+    bundleBytes += gzipped.length;
+
+    const entry = { path, sha256: hash, size: data.length, url: `files/${hash}.gz`, deltas: [] };
+    previous.forEach(({ hashes, byKey }, release) => {
+      // Devices copy files they already have, whatever their name
+      if (hashes.has(hash)) return;
+      let best = null;
+      for (const base of byKey.get(chunkKey(path)) || []) {
+        const patch = gzipSync(diff(base, data), { level: 9 });
+        if (!best || patch.length < best.patch.length) best = { from: sha256(base), patch };
+      }
+      if (best && best.patch.length < gzipped.length * DELTA_WORTHWHILE) {
+        const name = `deltas/${best.from}-${hash}.qdl.gz`;
+        writeFileSync(join(args.out, name), best.patch);
+        if (!entry.deltas.some((delta) => delta.from === best.from)) {
+          entry.deltas.push({ from: best.from, url: name, size: best.patch.length });
+        }
+        updateBytes[release] += best.patch.length;
+      } else {
+        updateBytes[release] += gzipped.length;
+      }
+    });
+    files.push(entry);
+  }
+
+  const manifest = Buffer.from(JSON.stringify({ version: args.version, bundleBytes, files }));
+  const signature = sign('sha256', manifest, createPrivateKey(readFileSync(args.key)));
+  writeFileSync(join(args.out, 'manifest.json'), JSON.stringify({
+    manifest: manifest.toString('base64'),
+    signature: signature.toString('base64')
+  }));
+
+  console.log(`${files.length} files, full bundle ${bundleBytes} bytes gzipped`);
+  args.previous.forEach((dir, release) => {
+    const saved = bundleBytes - updateBytes[release];
+    console.log(`from ${dir}: ${updateBytes[release]} bytes (${(100 * saved / bundleBytes).toFixed(1)}% saved)`);
+  });
+}
+
+const args = parseArgs(process.argv.slice(2));
+if (args['generate-key']) generateKey(args['generate-key']);
+else build(args);
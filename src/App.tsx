@@ -13,14 +13,14 @@ import { AuthProvider, useAuth } from './context/AuthContext';
 import { NavigationProvider, useNavigation } from './context/NavigationContext';
 import { DeviceProvider, useDevice } from './context/DeviceContext';
 import { initializePurchases } from './lib/purchases';
-import { initializePushNotifications, scheduleStoryNotification } from './lib/notifications';
+import { initializePushNotifications, scheduleStoryNotification, dispatchNativeNotificationLaunch } from './lib/notifications';
 //import { QuranMiniPlayer } from './components/quran/QuranMiniPlayer';
 import { GoogleOAuthProvider } from '@react-oauth/google';
 import { ProfileNameForm } from './components/ProfileNameForm';
 import { motion, AnimatePresence } from 'framer-motion';
 import { App as CapacitorApp } from '@capacitor/app';
 import { Capacitor } from '@capacitor/core';
-import { initializeBookNotifications, scheduleBookNotification, handleAppReopen } from './lib/book-notifications';
+import { initializeBookNotifications, scheduleBookNotification } from './lib/book-notifications';
 import { getDeviceInfo, DeviceType } from './lib/device-detection';
 
 // Google Client ID - Updated with the new client ID
@@ -45,6 +45,14 @@ const MainContent: React.FC = () => {
     }
   }, []);
 
+  // First screen is mounted; the shell reports full display once it is painted
+  useEffect(() => {
+    const android = (window as any).Android;
+    if (android && typeof android.notifyWebAppReady === 'function') {
+      android.notifyWebAppReady();
+    }
+  }, []);
+
   // Initialize services
   useEffect(() => {
     initializePurchases().catch(console.error);
@@ -90,17 +98,12 @@ const MainContent: React.FC = () => {
       // Add event listeners
       window.addEventListener('notificationNavigation', handleNotificationNavigation as EventListener);
       window.addEventListener('bookNotificationNavigation', handleBookNotificationNavigation as EventListener);
-      
-      // Add handler for app reopening
-      window.handleAppReopen = (pauseDuration: number) => {
-        handleAppReopen(pauseDuration);
-      };
+      dispatchNativeNotificationLaunch();
       
       return () => {
         appStateListener.remove();
         window.removeEventListener('notificationNavigation', handleNotificationNavigation as EventListener);
         window.removeEventListener('bookNotificationNavigation', handleBookNotificationNavigation as EventListener);
-        delete window.handleAppReopen;
       };
     }
   }, [navigate, updateDeviceInfo]);
@@ -319,7 +322,6 @@ declare global {
     };
     gc?: () => void;
     handleVolumeButtonPress?: () => void;
-    handleAppReopen?: (pauseDuration: number) => void;
   }
 }
 
@@ -7,6 +7,25 @@ import IPFSService from '../lib/ipfs-service';
 
 type Book = Database['public']['Tables']['books']['Row'];
 
+interface NativeBookInfo {
+  pageCount: number;
+  width: number;
+  height: number;
+}
+
+// Page images rendered by the Android app, or null when the book isn't on the device
+function getNativeBookInfo(bookId: string): NativeBookInfo | null {
+  const android = (window as any).Android;
+  if (!android || typeof android.getNativeBookInfo !== 'function') return null;
+  const info = android.getNativeBookInfo(bookId);
+  return info ? JSON.parse(info) : null;
+}
+
+// Viewport width in device pixels; the native side buckets it so small changes reuse renders
+function getRenderWidth(): number {
+  return Math.round(window.innerWidth * (window.devicePixelRatio || 1));
+}
+
 interface BookViewerProps {
   book: Book;
   onClose: () => void;
@@ -17,6 +36,8 @@ const BookViewer: React.FC<BookViewerProps> = ({ book, onClose }) => {
   const [isLoading, setIsLoading] = useState(true);
   const [error, setError] = useState<string | null>(null);
   const [contentUrl, setContentUrl] = useState<string | null>(null);
+  const [nativeInfo, setNativeInfo] = useState<NativeBookInfo | null>(null);
+  const [renderWidth, setRenderWidth] = useState(getRenderWidth);
   const containerRef = useRef<HTMLDivElement>(null);
   const iframeRef = useRef<HTMLIFrameElement>(null);
   const { goBack } = useNavigation();
@@ -110,6 +131,36 @@ const BookViewer: React.FC<BookViewerProps> = ({ book, onClose }) => {
     };
   }, [onClose, isFullscreen, book.content_url, book.id]);
 
+  // The bridge call blocks until the PDF is opened, so keep it out of render
+  useEffect(() => {
+    setNativeInfo(getNativeBookInfo(book.id));
+  }, [book.id]);
+
+  // Re-request pages at the new width after rotation
+  useEffect(() => {
+    if (!nativeInfo) return;
+    const handleResize = () => setRenderWidth(getRenderWidth());
+    window.addEventListener('resize', handleResize);
+    return () => window.removeEventListener('resize', handleResize);
+  }, [nativeInfo]);
+
+  // Keep a local copy so the next open renders natively
+  useEffect(() => {
+    const android = (window as any).Android;
+    if (nativeInfo || !contentUrl || !android || typeof android.downloadBookFile !== 'function') return;
+
+    (window as any).handleBookDownloadComplete = (bookId: string, path: string) => {
+      if (bookId === book.id && path) {
+        setNativeInfo(getNativeBookInfo(book.id));
+      }
+    };
+    android.downloadBookFile(book.id, contentUrl, 'pdf');
+
+    return () => {
+      delete (window as any).handleBookDownloadComplete;
+    };
+  }, [nativeInfo, contentUrl, book.id]);
+
   const toggleFullscreen = async () => {
     try {
       if (!isFullscreen) {
@@ -136,7 +187,21 @@ const BookViewer: React.FC<BookViewerProps> = ({ book, onClose }) => {
       ref={containerRef}
     >
       <div className="w-full h-full relative">
-        {isLoading ? (
+        {nativeInfo ? (
+          <div className="w-full h-full overflow-y-auto bg-neutral-200">
+            {Array.from({ length: nativeInfo.pageCount }, (_, i) => (
+              <img
+                key={i}
+                src={`/_native/book/${encodeURIComponent(book.id)}/page/${i + 1}?w=${renderWidth}`}
+                alt={`${book.title} - ${i + 1}`}
+                className="w-full block mb-1 bg-white"
+                style={{ aspectRatio: `${nativeInfo.width} / ${nativeInfo.height}` }}
+                loading="lazy"
+                decoding="async"
+              />
+            ))}
+          </div>
+        ) : isLoading ? (
           <div className="absolute inset-0 flex flex-col items-center justify-center">
             <Loader className="w-12 h-12 text-white animate-spin mb-4" />
             <p className="text-white">Loading book content...</p>
@@ -3,6 +3,7 @@ import { motion, AnimatePresence } from 'framer-motion';
 import { Preferences } from '@capacitor/preferences';
 import { Lock, BookOpen, Loader, RefreshCw, ArrowLeft, LogIn } from 'lucide-react';
 import { supabase } from '../lib/supabase';
+import { queryCatalog, onCatalogUpdated } from '../lib/catalog-cache';
 import { useAuth } from '../context/AuthContext';
 import { purchaseBook, restorePurchases } from '../lib/purchases';
 import type { Database } from '../types/supabase';
@@ -87,6 +88,7 @@ export const Library: React.FC<LibraryProps> = ({ notificationBookId }) => {
     };
 
     loadBooks();
+    return onCatalogUpdated('books', () => fetchBooks(true));
   }, []);
 
   useEffect(() => {
@@ -146,17 +148,22 @@ export const Library: React.FC<LibraryProps> = ({ notificationBookId }) => {
     }
   }, [notificationBookId, books]);
 
-  async function fetchBooks() {
+  // background: a catalog sync changed the books; refresh without the spinner
+  async function fetchBooks(background = false) {
     try {
-      setLoading(true);
+      if (!background) setLoading(true);
       setError(null);
 
-      const { data, error } = await supabase
-        .from('books')
-        .select('*')
-        .order('created_at', { ascending: false });
+      let data = await queryCatalog<Book>('books', { select: '*', order: 'created_at.desc' });
+      if (!data) {
+        const result = await supabase
+          .from('books')
+          .select('*')
+          .order('created_at', { ascending: false });
 
-      if (error) throw error;
+        if (result.error) throw result.error;
+        data = result.data;
+      }
       setBooks(data || []);
 
       await Preferences.set({ key: 'books', value: JSON.stringify(data) });
@@ -365,7 +372,7 @@ export const Library: React.FC<LibraryProps> = ({ notificationBookId }) => {
           Tewali bitabo bisangiddwa
         </p>
         <button
-          onClick={fetchBooks}
+          onClick={() => fetchBooks()}
           className="px-4 py-2 bg-primary-500 text-white rounded-lg"
         >
           Gezaako Nate
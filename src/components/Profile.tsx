@@ -3,6 +3,7 @@ import { Settings, Moon, Sun, Bell, Shield, HelpCircle, LogOut, Camera, Loader,
 import { useTheme } from '../context/ThemeContext';
 import { useAuth } from '../context/AuthContext';
 import { useAdmin } from '../hooks/useAdmin';
+import { getPrayerAlertsEnabled, setPrayerAlertsEnabled } from '../lib/prayer-times';
 import * as Avatar from '@radix-ui/react-avatar';
 import { Login } from './Login';
 import { lazyLoadAdminComponents } from '../lib/code-splitting';
@@ -19,6 +20,8 @@ export const Profile: React.FC = () => {
   const [showAdminConsole, setShowAdminConsole] = useState(false);
   const [isEditingName, setIsEditingName] = useState(false);
   const [newName, setNewName] = useState('');
+  // Prayer-time notifications; null when not running in the Android app
+  const [prayerAlerts, setPrayerAlerts] = useState<boolean | null>(getPrayerAlertsEnabled);
   const fileInputRef = useRef<HTMLInputElement>(null);
 
   useEffect(() => {
@@ -64,8 +67,25 @@ export const Profile: React.FC = () => {
     }
   };
 
-  const menuItems = [
-    { icon: Bell, label: 'Obubaka', onClick: () => {} },
+  const togglePrayerAlerts = () => {
+    if (prayerAlerts === null) return;
+    setPrayerAlertsEnabled(!prayerAlerts);
+    setPrayerAlerts(!prayerAlerts);
+  };
+
+  const menuItems: Array<{
+    icon: typeof Bell;
+    label: string;
+    onClick: () => void;
+    danger?: boolean;
+    status?: string;
+  }> = [
+    {
+      icon: Bell,
+      label: 'Obubaka',
+      onClick: togglePrayerAlerts,
+      status: prayerAlerts === null ? undefined : prayerAlerts ? 'Prayer alerts on' : 'Prayer alerts off'
+    },
     { icon: Shield, label: 'Obukuumi', onClick: () => {} },
     { icon: HelpCircle, label: 'Obuyambi', onClick: () => {} },
     { icon: LogOut, label: 'Fuluma', onClick: logout, danger: true },
@@ -202,6 +222,9 @@ export const Profile: React.FC = () => {
               >
                 <item.icon size={20} />
                 <span className="font-medium">{item.label}</span>
+                {item.status && (
+                  <span className="ml-auto text-sm text-gray-500 dark:text-gray-400">{item.status}</span>
+                )}
               </button>
             ))}
           </div>
@@ -1,17 +1,81 @@
-import React from 'react';
-import { Compass } from 'lucide-react';
+import React, { useEffect, useState } from 'react';
+import { Compass, Navigation2 } from 'lucide-react';
+import { updatePrayerLocation } from '../lib/prayer-times';
+
+interface QiblaState {
+  heading: number;
+  bearing: number;
+  accuracy: number;
+}
 
 export const Qibla: React.FC = () => {
+  const [qibla, setQibla] = useState<QiblaState | null>(null);
+  const [error, setError] = useState<string | null>(null);
+
+  // Heading comes from the native compass, already smoothed and throttled
+  useEffect(() => {
+    const android = (window as any).Android;
+    if (!android || typeof android.startQibla !== 'function') return;
+
+    (window as any).handleQiblaUpdate = (heading: number, bearing: number, accuracy: number) => {
+      setQibla({ heading, bearing, accuracy });
+    };
+    (window as any).handleQiblaError = (message: string) => setError(message);
+
+    // A fresh position also moves the prayer table; without one the native side
+    // falls back to the location saved with the prayer settings
+    let stopped = false;
+    updatePrayerLocation().then(settings => {
+      if (stopped) return;
+      if (settings?.located) {
+        android.startQibla(settings.latitude, settings.longitude);
+      } else {
+        android.startQibla(NaN, NaN);
+      }
+    });
+
+    return () => {
+      stopped = true;
+      android.stopQibla();
+      delete (window as any).handleQiblaUpdate;
+      delete (window as any).handleQiblaError;
+    };
+  }, []);
+
   return (
     <div className="p-4 flex flex-col items-center">
       <h1 className="text-2xl font-bold mb-6">Qibla Direction</h1>
       <div className="relative w-64 h-64 mb-8">
-        <div className="absolute inset-0 border-4 border-green-600 rounded-full"></div>
-        <Compass size={64} className="absolute top-1/2 left-1/2 transform -translate-x-1/2 -translate-y-1/2 text-green-600" />
+        <div
+          className="absolute inset-0 border-4 border-green-600 rounded-full transition-transform duration-100"
+          style={qibla ? { transform: `rotate(${-qibla.heading}deg)` } : undefined}
+        >
+          <span className="absolute top-1 left-1/2 -translate-x-1/2 text-sm font-bold text-green-700">N</span>
+        </div>
+        {qibla ? (
+          <Navigation2
+            size={64}
+            className="absolute top-1/2 left-1/2 text-green-600 transition-transform duration-100"
+            style={{ transform: `translate(-50%, -50%) rotate(${qibla.bearing - qibla.heading}deg)` }}
+          />
+        ) : (
+          <Compass size={64} className="absolute top-1/2 left-1/2 transform -translate-x-1/2 -translate-y-1/2 text-green-600" />
+        )}
       </div>
       <p className="text-center text-gray-600">
         Point your device towards the arrow to find the Qibla direction
       </p>
+      {qibla && (
+        <p className="text-center text-gray-500 text-sm mt-2">
+          Qibla: {Math.round(qibla.bearing)}° from north
+        </p>
+      )}
+      {qibla && qibla.accuracy < 2 && (
+        <p className="text-center text-amber-600 text-sm mt-2">
+          Compass needs calibration: move your phone in a figure-eight
+        </p>
+      )}
+      {error && <p className="text-center text-red-500 text-sm mt-2">{error}</p>}
     </div>
   );
 };
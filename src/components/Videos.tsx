@@ -3,6 +3,8 @@ import { Play, Lock, Heart, MessageCircle, Share2, Volume2, VolumeX, Loader, Ale
 import { motion, AnimatePresence } from 'framer-motion';
 import { useAuth } from '../context/AuthContext';
 import { supabase } from '../lib/supabase';
+import { queryCatalog, onCatalogUpdated } from '../lib/catalog-cache';
+import { getCachedVideoUrl, prefetchVideos } from '../lib/video-cache';
 import type { Database } from '../types/supabase';
 import { useNavigation } from '../context/NavigationContext';
 import { Capacitor } from '@capacitor/core';
@@ -28,6 +30,14 @@ export const Videos: React.FC = () => {
   const [activeVideos, setActiveVideos] = useState<Set<number>>(new Set());
   const [volumeChangeDetected, setVolumeChangeDetected] = useState(false);
 
+  // Pick up reels a background catalog sync brought in
+  useEffect(() => onCatalogUpdated('reels', () => fetchReels(true)), []);
+
+  // Have the next reels' opening seconds on disk before they scroll into view
+  useEffect(() => {
+    prefetchVideos(reels.slice(currentIndex + 1, currentIndex + 3).map(reel => reel.video_url));
+  }, [currentIndex, reels]);
+
   useEffect(() => {
     fetchReels();
     
@@ -263,15 +273,20 @@ export const Videos: React.FC = () => {
     return () => clearInterval(interval);
   }, [currentIndex, activeVideos]);
 
-  const fetchReels = async () => {
+  // background: a catalog sync changed the reels; refresh without the spinner
+  const fetchReels = async (background = false) => {
     try {
-      setLoading(true);
-      const { data, error } = await supabase
-        .from('reels')
-        .select('*')
-        .order('created_at', { ascending: false });
-
-      if (error) throw error;
+      if (!background) setLoading(true);
+      let data = await queryCatalog<Reel>('reels', { select: '*', order: 'created_at.desc' });
+      if (!data) {
+        const result = await supabase
+          .from('reels')
+          .select('*')
+          .order('created_at', { ascending: false });
+
+        if (result.error) throw result.error;
+        data = result.data;
+      }
       setReels(data || []);
     } catch (err) {
       console.error('Error fetching reels:', err);
@@ -517,7 +532,7 @@ export const Videos: React.FC = () => {
             >
               {/* Only set source for videos near the current view */}
               {Math.abs(index - currentIndex) <= 2 && (
-                <source src={reel.video_url} type="video/mp4" />
+                <source src={getCachedVideoUrl(reel.video_url)} type="video/mp4" />
               )}
               Browser yo tekkiriza kuzanya videos.
             </video>
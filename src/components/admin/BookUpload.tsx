@@ -3,7 +3,7 @@ import { Upload, X, Loader } from 'lucide-react';
 import { motion } from 'framer-motion';
 import { useAuth } from '../../context/AuthContext';
 import { supabase } from '../../lib/supabase';
-import IPFSService from '../../lib/ipfs-service';
+import IPFSService, { canUploadNatively, pickNativeUploadFile, NativeUploadFile } from '../../lib/ipfs-service';
 
 interface BookUploadProps {
   onSuccess?: () => void;
@@ -19,6 +19,8 @@ export const BookUpload: React.FC<BookUploadProps> = ({ onSuccess, onCancel }) =
   const [language, setLanguage] = useState('Luganda');
   const [coverFile, setCoverFile] = useState<File | null>(null);
   const [contentFile, setContentFile] = useState<File | null>(null);
+  // Picked with the Android picker, uploaded to IPFS without reading it here
+  const [nativeContentFile, setNativeContentFile] = useState<NativeUploadFile | null>(null);
   const [uploading, setUploading] = useState(false);
   const [error, setError] = useState<string | null>(null);
   const [uploadProgress, setUploadProgress] = useState(0);
@@ -60,9 +62,42 @@ export const BookUpload: React.FC<BookUploadProps> = ({ onSuccess, onCancel }) =
     }
 
     setContentFile(file);
+    setNativeContentFile(null);
     setError(null);
   };
 
+  const handleContentClick = async () => {
+    if (!useIpfs || !canUploadNatively()) {
+      contentInputRef.current?.click();
+      return;
+    }
+
+    const file = await pickNativeUploadFile('application/pdf');
+    if (!file) return;
+
+    if (file.mimeType && file.mimeType !== 'application/pdf') {
+      setError('Please select a PDF file for content');
+      return;
+    }
+
+    if (file.size > 50 * 1024 * 1024) {
+      setError('Content file size must be less than 50MB');
+      return;
+    }
+
+    setNativeContentFile(file);
+    setContentFile(null);
+    setError(null);
+  };
+
+  const handleIpfsToggle = () => {
+    // A natively picked file can only go to IPFS
+    if (useIpfs) {
+      setNativeContentFile(null);
+    }
+    setUseIpfs(!useIpfs);
+  };
+
   const uploadFile = async (file: File, bucket: string) => {
     const fileExt = file.name.split('.').pop();
     const fileName = `${Math.random().toString(36).slice(2)}.${fileExt}`;
@@ -158,7 +193,7 @@ export const BookUpload: React.FC<BookUploadProps> = ({ onSuccess, onCancel }) =
       return;
     }
 
-    if (!coverFile || !contentFile || !title.trim() || !description.trim() || !price.trim()) {
+    if (!coverFile || !(contentFile || nativeContentFile) || !title.trim() || !description.trim() || !price.trim()) {
       setError('Please fill in all required fields');
       return;
     }
@@ -191,7 +226,18 @@ export const BookUpload: React.FC<BookUploadProps> = ({ onSuccess, onCancel }) =
       let contentUrl;
       
       // Upload content based on selected method
-      if (useIpfs) {
+      if (useIpfs && nativeContentFile) {
+        setUploadProgress(0);
+        const cid = await IPFSService.getInstance().uploadLargeFileNatively(
+          nativeContentFile,
+          `${title} (${bookData.id})`,
+          'book',
+          setUploadProgress
+        );
+        contentUrl = `ipfs://${cid}`;
+      } else if (!contentFile) {
+        throw new Error('No content file selected');
+      } else if (useIpfs) {
         try {
           contentUrl = await uploadToIpfs(contentFile, bookData.id);
         } catch (ipfsError) {
@@ -217,6 +263,7 @@ export const BookUpload: React.FC<BookUploadProps> = ({ onSuccess, onCancel }) =
       setPrice('');
       setCoverFile(null);
       setContentFile(null);
+      setNativeContentFile(null);
       setUploadProgress(0);
 
       onSuccess?.();
@@ -342,7 +389,7 @@ export const BookUpload: React.FC<BookUploadProps> = ({ onSuccess, onCancel }) =
               </div>
               <button 
                 type="button"
-                onClick={() => setUseIpfs(!useIpfs)}
+                onClick={handleIpfsToggle}
                 className={`relative w-12 h-6 rounded-full transition-colors ${
                   useIpfs ? 'bg-primary-500' : 'bg-gray-300 dark:bg-gray-600'
                 }`}
@@ -406,9 +453,9 @@ export const BookUpload: React.FC<BookUploadProps> = ({ onSuccess, onCancel }) =
                 />
                 <button
                   type="button"
-                  onClick={() => contentInputRef.current?.click()}
+                  onClick={handleContentClick}
                   className={`w-full p-4 border-2 border-dashed rounded-lg flex flex-col items-center justify-center space-y-2 ${
-                    contentFile
+                    contentFile || nativeContentFile
                       ? 'border-green-500 bg-green-50 dark:bg-green-900/20'
                       : 'border-gray-300 dark:border-gray-700 hover:bg-gray-50 dark:hover:bg-gray-700'
                   }`}
@@ -416,11 +463,11 @@ export const BookUpload: React.FC<BookUploadProps> = ({ onSuccess, onCancel }) =
                 >
                   <Upload 
                     size={24} 
-                    className={contentFile ? 'text-green-500' : 'text-gray-400'} 
+                    className={contentFile || nativeContentFile ? 'text-green-500' : 'text-gray-400'} 
                   />
                   <div className="text-sm text-center">
-                    {contentFile ? (
-                      <span className="text-green-500">{contentFile.name}</span>
+                    {contentFile || nativeContentFile ? (
+                      <span className="text-green-500">{(contentFile || nativeContentFile)?.name}</span>
                     ) : (
                       <span className="text-gray-500 dark:text-gray-400">
                         Click to upload book content
@@ -458,7 +505,7 @@ export const BookUpload: React.FC<BookUploadProps> = ({ onSuccess, onCancel }) =
               </button>
               <button
                 type="submit"
-                disabled={uploading || !coverFile || !contentFile}
+                disabled={uploading || !coverFile || !(contentFile || nativeContentFile)}
                 className="flex-1 px-4 py-2 bg-primary-500 hover:bg-primary-600 text-white rounded-lg transition-colors disabled:opacity-50 disabled:cursor-not-allowed flex items-center justify-center"
               >
                 {uploading ? (
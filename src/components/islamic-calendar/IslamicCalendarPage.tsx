@@ -3,6 +3,13 @@ import { motion } from 'framer-motion';
 import { ChevronLeft, ChevronRight, Clock, MapPin, Bell, ArrowLeft } from 'lucide-react';
 import { format } from 'date-fns';
 import { useIslamicDate } from '../../hooks/useIslamicDate';
+import {
+  getPrayerSettings,
+  savePrayerSettings,
+  updatePrayerLocation,
+  PRAYER_METHODS,
+  PrayerMethod
+} from '../../lib/prayer-times';
 
 interface IslamicCalendarPageProps {
   onBack: () => void;
@@ -11,6 +18,15 @@ interface IslamicCalendarPageProps {
 export const IslamicCalendarPage: React.FC<IslamicCalendarPageProps> = ({ onBack }) => {
   const { islamicDate, gregorianDate, prayerTimes } = useIslamicDate();
   const [selectedTab, setSelectedTab] = useState<'calendar' | 'prayers'>('calendar');
+  const [prayerSettings, setPrayerSettings] = useState(getPrayerSettings);
+  const [locating, setLocating] = useState(false);
+
+  const handleLocate = async () => {
+    setLocating(true);
+    const settings = await updatePrayerLocation();
+    setLocating(false);
+    if (settings) setPrayerSettings(settings);
+  };
 
   return (
     <div className="min-h-screen bg-gray-100 dark:bg-gray-900">
@@ -142,6 +158,43 @@ export const IslamicCalendarPage: React.FC<IslamicCalendarPageProps> = ({ onBack
               </h3>
             </div>
 
+            <div className="space-y-3 mb-6">
+              <div className="flex items-center justify-between">
+                <div className="flex items-center space-x-2 text-sm text-gray-600 dark:text-gray-400">
+                  <MapPin size={16} />
+                  <span>
+                    {prayerSettings.located
+                      ? `${prayerSettings.latitude.toFixed(2)}, ${prayerSettings.longitude.toFixed(2)}`
+                      : 'Kampala (default)'}
+                  </span>
+                </div>
+                <button
+                  onClick={handleLocate}
+                  disabled={locating}
+                  className="text-sm text-primary-500 dark:text-primary-400 disabled:opacity-50"
+                >
+                  {locating ? 'Locating...' : 'Use my location'}
+                </button>
+              </div>
+              <select
+                value={prayerSettings.method}
+                onChange={(e) => setPrayerSettings(savePrayerSettings({ method: e.target.value as PrayerMethod }))}
+                className="w-full text-sm px-3 py-2 rounded-lg border border-gray-300 dark:border-gray-600 bg-white dark:bg-gray-800 text-gray-900 dark:text-white"
+              >
+                {PRAYER_METHODS.map(method => (
+                  <option key={method.value} value={method.value}>{method.label}</option>
+                ))}
+              </select>
+              <label className="flex items-center space-x-2 text-sm text-gray-700 dark:text-gray-300">
+                <input
+                  type="checkbox"
+                  checked={prayerSettings.hanafi}
+                  onChange={(e) => setPrayerSettings(savePrayerSettings({ hanafi: e.target.checked }))}
+                />
+                <span>Hanafi asr (later)</span>
+              </label>
+            </div>
+
             <div className="space-y-4">
               {prayerTimes.map((prayer) => (
                 <div
@@ -154,6 +207,7 @@ export const IslamicCalendarPage: React.FC<IslamicCalendarPageProps> = ({ onBack
                     </h4>
                     <p className="text-sm text-gray-500 dark:text-gray-400">
                       {prayer.time}
+                      {prayer.remaining && ` · in ${prayer.remaining}`}
                     </p>
                   </div>
                   <button className="p-2 hover:bg-gray-200 dark:hover:bg-gray-600 rounded-full transition-colors">
@@ -1,8 +1,24 @@
-import React, { useState } from 'react';
+import React, { useMemo, useState } from 'react';
 import { motion } from 'framer-motion';
 import { X, Download, Loader, Check, AlertCircle } from 'lucide-react';
-import { downloadQuranPagesForOffline } from '../../utils/quran-image-loader';
+import {
+  downloadQuranPagesForOffline,
+  downloadQuranSelection,
+  planQuranDownload,
+  QuranSelection
+} from '../../utils/quran-image-loader';
 import { Capacitor } from '@capacitor/core';
+import { useThumbnailAtlas, getThumbnailQuality, getThumbnailStyle } from '../../utils/quran-thumbnail-atlas';
+import { StorageUsagePanel } from './StorageUsagePanel';
+
+// Highest number for each kind of selection
+const SELECTION_MAX: Record<QuranSelection['type'], number> = { page: 604, surah: 114, juz: 30, hizb: 60 };
+const SELECTION_LABELS: Record<QuranSelection['type'], string> = {
+  page: 'Olupapula',
+  surah: 'Surah',
+  juz: 'Juz',
+  hizb: 'Hizb'
+};
 
 interface OfflineDownloadManagerProps {
   onClose: () => void;
@@ -15,6 +31,25 @@ export const OfflineDownloadManager: React.FC<OfflineDownloadManagerProps> = ({
   const [progress, setProgress] = useState<{ current: number; total: number }>({ current: 0, total: 0 });
   const [result, setResult] = useState<{ success: number; failed: number } | null>(null);
   const [error, setError] = useState<string | null>(null);
+  const [selectionType, setSelectionType] = useState<QuranSelection['type']>('page');
+  // Bumped after each download so the plan and storage figures are read again
+  const [downloadCount, setDownloadCount] = useState(0);
+  // The Android app downloads whole selections itself, so the 50-page limit that
+  // keeps the WebView responsive doesn't apply there
+  const nativeDownload = typeof (window as any).Android?.downloadQuranSelection === 'function';
+  const isPageSelection = selectionType === 'page';
+  const validRange = startPage >= 1 && endPage <= SELECTION_MAX[selectionType] && startPage <= endPage;
+  const plan = useMemo(
+    () => nativeDownload && validRange
+      ? planQuranDownload([{ type: selectionType, from: startPage, to: endPage }])
+      : null,
+    [nativeDownload, validRange, selectionType, startPage, endPage, downloadCount]
+  );
+  // Preview of the selected range, drawn from the native thumbnail sprite
+  const atlas = useThumbnailAtlas();
+  const previewPages = isPageSelection && validRange && endPage - startPage <= 50
+    ? Array.from({ length: endPage - startPage + 1 }, (_, i) => startPage + i)
+    : [];
 
   const handleDownload = async () => {
     if (!Capacitor.isNativePlatform()) {
@@ -22,12 +57,12 @@ export const OfflineDownloadManager: React.FC<OfflineDownloadManagerProps> = ({
       return;
     }
 
-    if (startPage < 1 || startPage > 604 || endPage < 1 || endPage > 604 || startPage > endPage) {
-      setError('Yingiza ennamba z\'olupapula ezituufu (1-604)');
+    if (!validRange) {
+      setError(`Yingiza ennamba ezituufu (1-${SELECTION_MAX[selectionType]})`);
       return;
     }
 
-    if (endPage - startPage > 50) {
+    if (!nativeDownload && endPage - startPage > 50) {
       setError('Kuŋŋaanya olupapula 50 oba lutono okwewala okuziyiza');
       return;
     }
@@ -36,17 +71,15 @@ export const OfflineDownloadManager: React.FC<OfflineDownloadManagerProps> = ({
       setIsDownloading(true);
       setError(null);
       setResult(null);
-      setProgress({ current: 0, total: endPage - startPage + 1 });
+      setProgress({ current: 0, total: plan ? plan.requested : endPage - startPage + 1 });
 
-      const result = await downloadQuranPagesForOffline(
-        startPage,
-        endPage,
-        (current, total) => {
-          setProgress({ current, total });
-        }
-      );
+      const onProgress = (current: number, total: number) => setProgress({ current, total });
+      const result = nativeDownload
+        ? await downloadQuranSelection([{ type: selectionType, from: startPage, to: endPage }], onProgress)
+        : await downloadQuranPagesForOffline(startPage, endPage, onProgress);
 
       setResult(result);
+      setDownloadCount(count => count + 1);
     } catch (err) {
       console.error('Error downloading Quran pages:', err);
       setError('Waliwo ekisobu mu kukuŋŋaanya olupapula. Gezaako nate.');
@@ -99,15 +132,39 @@ export const OfflineDownloadManager: React.FC<OfflineDownloadManagerProps> = ({
           )}
 
           <div className="space-y-4">
+            {nativeDownload && (
+              <div className="flex space-x-2">
+                {(Object.keys(SELECTION_LABELS) as Array<QuranSelection['type']>).map(type => (
+                  <button
+                    key={type}
+                    type="button"
+                    onClick={() => {
+                      setSelectionType(type);
+                      setStartPage(1);
+                      setEndPage(Math.min(type === 'page' ? 10 : 1, SELECTION_MAX[type]));
+                    }}
+                    disabled={isDownloading}
+                    className={`flex-1 px-2 py-1.5 text-sm rounded-lg border transition-colors ${
+                      selectionType === type
+                        ? 'bg-primary-500 border-primary-500 text-white'
+                        : 'border-gray-300 dark:border-gray-700 text-gray-700 dark:text-gray-300'
+                    }`}
+                  >
+                    {SELECTION_LABELS[type]}
+                  </button>
+                ))}
+              </div>
+            )}
+
             <div className="grid grid-cols-2 gap-4">
               <div>
                 <label className="block text-sm font-medium text-gray-700 dark:text-gray-300 mb-1">
-                  Olupapula Olutandika
+                  {SELECTION_LABELS[selectionType]} Olutandika
                 </label>
                 <input
                   type="number"
                   min={1}
-                  max={604}
+                  max={SELECTION_MAX[selectionType]}
                   value={startPage}
                   onChange={(e) => setStartPage(parseInt(e.target.value) || 1)}
                   className="w-full px-4 py-2 rounded-lg border border-gray-300 dark:border-gray-700 focus:outline-none focus:border-primary-500 dark:focus:border-primary-500 bg-white dark:bg-gray-800"
@@ -116,12 +173,12 @@ export const OfflineDownloadManager: React.FC<OfflineDownloadManagerProps> = ({
               </div>
               <div>
                 <label className="block text-sm font-medium text-gray-700 dark:text-gray-300 mb-1">
-                  Olupapula Olukomekkereza
+                  {SELECTION_LABELS[selectionType]} Olukomekkereza
                 </label>
                 <input
                   type="number"
                   min={1}
-                  max={604}
+                  max={SELECTION_MAX[selectionType]}
                   value={endPage}
                   onChange={(e) => setEndPage(parseInt(e.target.value) || 1)}
                   className="w-full px-4 py-2 rounded-lg border border-gray-300 dark:border-gray-700 focus:outline-none focus:border-primary-500 dark:focus:border-primary-500 bg-white dark:bg-gray-800"
@@ -130,6 +187,38 @@ export const OfflineDownloadManager: React.FC<OfflineDownloadManagerProps> = ({
               </div>
             </div>
 
+            {atlas && previewPages.length > 0 && (
+              <div className="grid grid-cols-10 gap-1 max-h-40 overflow-y-auto">
+                {previewPages.map(page => {
+                  const quality = getThumbnailQuality(atlas, page);
+                  return (
+                    <div
+                      key={page}
+                      title={`${page}`}
+                      className={`rounded-sm bg-gray-100 dark:bg-gray-700 ${quality === 'full' ? 'ring-1 ring-green-500' : 'opacity-60'}`}
+                      style={quality === 'none'
+                        ? { width: 28, height: Math.round(28 * atlas.tileHeight / atlas.tileWidth) }
+                        : getThumbnailStyle(atlas, page, 28)}
+                    />
+                  );
+                })}
+              </div>
+            )}
+
+            {plan && (
+              <p className="text-sm text-gray-600 dark:text-gray-400">
+                {plan.missing === 0
+                  ? `All ${plan.requested} pages are already on this device`
+                  : `${plan.missing} of ${plan.requested} pages to download`}
+              </p>
+            )}
+
+            <StorageUsagePanel
+              startPage={isPageSelection ? startPage : 0}
+              endPage={isPageSelection ? endPage : 0}
+              refreshKey={downloadCount}
+            />
+
             <div className="bg-yellow-50 dark:bg-yellow-900/20 p-4 rounded-lg">
               <div className="flex items-start space-x-2">
                 <AlertCircle size={20} className="text-yellow-500 mt-0.5 flex-shrink-0" />
@@ -137,9 +226,11 @@ export const OfflineDownloadManager: React.FC<OfflineDownloadManagerProps> = ({
                   <p className="text-sm text-yellow-600 dark:text-yellow-400">
                     Kino kijja kukuŋŋaanya olupapula lwa Quran ku kifuufu kyo osobole okulaba nga tolina data.
                   </p>
-                  <p className="text-xs text-yellow-500 dark:text-yellow-300 mt-1">
-                    Kuŋŋaanya olupapula 50 oba lutono okwewala okuziyiza.
-                  </p>
+                  {!nativeDownload && (
+                    <p className="text-xs text-yellow-500 dark:text-yellow-300 mt-1">
+                      Kuŋŋaanya olupapula 50 oba lutono okwewala okuziyiza.
+                    </p>
+                  )}
                 </div>
               </div>
             </div>
@@ -4,7 +4,8 @@ import { useSwipeable } from 'react-swipeable';
 import { Bookmark, PlayCircle, PauseCircle, Loader, AlertCircle } from 'lucide-react';
 import { Page } from '../../lib/quran-api';
 import QuranAudioService from '../../lib/quran-audio-service';
-import { getQuranImageUrl } from '../../utils/quran-image-loader';
+import { Capacitor } from '@capacitor/core';
+import { getQuranImageUrl, getNativeQuranPageUrl, onQuranPageUpgraded } from '../../utils/quran-image-loader';
 
 interface PageTurnerProps {
   currentPage: Page;
@@ -36,6 +37,28 @@ export const PageTurner: React.FC<PageTurnerProps> = ({
   const imageRef = useRef<HTMLImageElement>(null);
   const audioService = useRef(QuranAudioService.getInstance());
   const [retryCount, setRetryCount] = useState(0);
+  // On Android the first source is the app itself (full page or low-res preview)
+  const isNative = Capacitor.isNativePlatform();
+  const [pageVersion, setPageVersion] = useState(0);
+
+  // Swap the preview for the full page once it has downloaded. The preview stays
+  // on screen until the new image has loaded, so there is no flash.
+  useEffect(() => {
+    if (!isNative) return;
+    return onQuranPageUpgraded((page) => {
+      if (page === currentPage.pageNumber) {
+        setRetryCount(0);
+        setPageVersion(prev => prev + 1);
+      }
+    });
+  }, [isNative, currentPage.pageNumber]);
+
+  const imageSource = isNative
+    ? (retryCount === 0
+        ? getNativeQuranPageUrl(currentPage.pageNumber, pageVersion)
+        : getQuranImageUrl(currentPage.pageNumber, retryCount - 1))
+    : getQuranImageUrl(currentPage.pageNumber, retryCount);
+  const maxRetries = isNative ? 4 : 3;
 
   useEffect(() => {
     setIsLoading(true);
@@ -72,7 +95,7 @@ export const PageTurner: React.FC<PageTurnerProps> = ({
 
   const handleImageError = () => {
     // Try next source with retry mechanism
-    if (retryCount < 3) {
+    if (retryCount < maxRetries) {
       setRetryCount(prev => prev + 1);
       setIsLoading(true);
       setImageError(false);
@@ -175,7 +198,7 @@ export const PageTurner: React.FC<PageTurnerProps> = ({
             {/* Page Image */}
             <img
               ref={imageRef}
-              src={getQuranImageUrl(currentPage.pageNumber, retryCount)}
+              src={imageSource}
               alt={`Quran Page ${currentPage.pageNumber}`}
               className="w-full"
               onLoad={handleImageLoad}
@@ -93,6 +93,12 @@ export const QuranReader: React.FC<QuranReaderProps> = ({ onChangeLanguage }) =>
     }
   };
 
+  const handleAyahSelect = async (page: number) => {
+    stopPlayback();
+    await loadPage(page);
+    setShowSurahList(false);
+  };
+
   const playPage = async () => {
     if (!currentPage) return;
     
@@ -209,6 +215,7 @@ export const QuranReader: React.FC<QuranReaderProps> = ({ onChangeLanguage }) =>
               <SurahList 
                 surahs={surahs} 
                 onSurahSelect={handleSurahSelect} 
+                onAyahSelect={handleAyahSelect}
               />
             </div>
           </motion.div>
@@ -0,0 +1,101 @@
+import React, { useEffect, useState } from 'react';
+import { HardDrive, Lock, Unlock } from 'lucide-react';
+import {
+  getStorageUsage,
+  setStorageBudget,
+  setQuranPagesPinned,
+  formatBytes,
+  StorageUsage
+} from '../../lib/native-storage';
+
+const MB = 1024 * 1024;
+const BUDGET_OPTIONS = [512 * MB, 1024 * MB, 1536 * MB, 2048 * MB, 4096 * MB];
+
+interface StorageUsagePanelProps {
+  startPage: number;
+  endPage: number;
+  // Changes whenever a download finishes, so the figures are read again
+  refreshKey?: number;
+}
+
+export const StorageUsagePanel: React.FC<StorageUsagePanelProps> = ({ startPage, endPage, refreshKey }) => {
+  const [usage, setUsage] = useState<StorageUsage | null>(() => getStorageUsage());
+
+  useEffect(() => {
+    setUsage(getStorageUsage());
+  }, [refreshKey]);
+
+  if (!usage) return null;
+
+  const pages = usage.categories.PAGE_IMAGE;
+  const percent = usage.budget > 0 ? Math.min(100, (usage.used / usage.budget) * 100) : 0;
+  const validRange = startPage >= 1 && endPage <= 604 && startPage <= endPage;
+
+  const handleBudgetChange = (bytes: number) => {
+    setStorageBudget(bytes);
+    setUsage(getStorageUsage());
+  };
+
+  const handlePin = (pinned: boolean) => {
+    setQuranPagesPinned(startPage, endPage, pinned);
+    setUsage(getStorageUsage());
+  };
+
+  return (
+    <div className="p-4 bg-gray-50 dark:bg-gray-700 rounded-lg space-y-3">
+      <div className="flex items-center justify-between">
+        <div className="flex items-center space-x-2 text-sm font-medium text-gray-700 dark:text-gray-300">
+          <HardDrive size={16} />
+          <span>{formatBytes(usage.used)} / {formatBytes(usage.budget)}</span>
+        </div>
+        <select
+          value={BUDGET_OPTIONS.includes(usage.budget) ? usage.budget : ''}
+          onChange={(e) => handleBudgetChange(Number(e.target.value))}
+          className="text-sm px-2 py-1 rounded border border-gray-300 dark:border-gray-600 bg-white dark:bg-gray-800"
+        >
+          {!BUDGET_OPTIONS.includes(usage.budget) && (
+            <option value="">{formatBytes(usage.budget)}</option>
+          )}
+          {BUDGET_OPTIONS.map(bytes => (
+            <option key={bytes} value={bytes}>{formatBytes(bytes)}</option>
+          ))}
+        </select>
+      </div>
+
+      <div className="h-2 bg-gray-200 dark:bg-gray-600 rounded-full overflow-hidden">
+        <div className="h-full bg-primary-500" style={{ width: `${percent}%` }} />
+      </div>
+
+      <p className="text-xs text-gray-500 dark:text-gray-400">
+        {pages
+          ? `Quran pages: ${pages.count} (${formatBytes(pages.bytes)}, ${formatBytes(pages.pinnedBytes)} kept)`
+          : 'Quran pages: 0'}
+        {' · '}
+        {formatBytes(usage.deviceFree)} free
+      </p>
+
+      {validRange && (
+        <div className="flex space-x-2">
+          <button
+            type="button"
+            onClick={() => handlePin(true)}
+            className="flex-1 flex items-center justify-center px-3 py-1.5 text-xs rounded-lg border border-gray-300 dark:border-gray-600 text-gray-700 dark:text-gray-300"
+          >
+            <Lock size={14} className="mr-1" />
+            Keep {startPage}-{endPage}
+          </button>
+          <button
+            type="button"
+            onClick={() => handlePin(false)}
+            className="flex-1 flex items-center justify-center px-3 py-1.5 text-xs rounded-lg border border-gray-300 dark:border-gray-600 text-gray-700 dark:text-gray-300"
+          >
+            <Unlock size={14} className="mr-1" />
+            Allow removing {startPage}-{endPage}
+          </button>
+        </div>
+      )}
+    </div>
+  );
+};
+
+export default StorageUsagePanel;
@@ -1,15 +1,54 @@
-import React, { useState } from 'react';
-import { Search, ChevronRight } from 'lucide-react';
+import React, { useEffect, useState } from 'react';
+import { Search, ChevronRight, Download, Loader } from 'lucide-react';
 import { motion } from 'framer-motion';
-import type { Surah } from '../../lib/quran-api';
+import type { Surah, QuranSearchHit } from '../../lib/quran-api';
+import { searchQuranText, buildQuranSearchIndex, isQuranSearchIndexed } from '../../lib/quran-api';
+import { useThumbnailAtlas, getThumbnailQuality, getThumbnailStyle } from '../../utils/quran-thumbnail-atlas';
 
 interface SurahListProps {
   surahs: Surah[];
   onSurahSelect: (surah: Surah) => void;
+  // Open the page of a verse found by full-text search
+  onAyahSelect?: (page: number) => void;
 }
 
-export const SurahList: React.FC<SurahListProps> = ({ surahs, onSurahSelect }) => {
+const MIN_TEXT_QUERY = 3;
+
+export const SurahList: React.FC<SurahListProps> = ({ surahs, onSurahSelect, onAyahSelect }) => {
   const [searchQuery, setSearchQuery] = useState('');
+  // Opening-page thumbnails, all cut from one native sprite
+  const atlas = useThumbnailAtlas();
+  // Verse text search over the native index (Android only)
+  const textSearchAvailable = !!onAyahSelect && typeof (window as any).Android?.searchQuran === 'function';
+  const [indexed, setIndexed] = useState(() => textSearchAvailable && isQuranSearchIndexed());
+  const [indexProgress, setIndexProgress] = useState<{ current: number; total: number } | null>(null);
+  const [ayahHits, setAyahHits] = useState<QuranSearchHit[]>([]);
+
+  useEffect(() => {
+    if (!indexed || searchQuery.trim().length < MIN_TEXT_QUERY) {
+      setAyahHits([]);
+      return;
+    }
+    const timer = setTimeout(() => setAyahHits(searchQuranText(searchQuery, '', 30)), 200);
+    return () => clearTimeout(timer);
+  }, [searchQuery, indexed]);
+
+  const handleBuildIndex = () => {
+    setIndexProgress({ current: 0, total: 114 });
+    const started = buildQuranSearchIndex(1, 114, {
+      onProgress: (current, total) => {
+        setIndexProgress({ current, total });
+        // Surahs become searchable as they are indexed
+        if (current === 1) setIndexed(true);
+      },
+      onComplete: () => {
+        setIndexProgress(null);
+        setIndexed(isQuranSearchIndexed());
+      },
+      onError: (error) => console.error('Error building Quran search index:', error)
+    });
+    if (!started) setIndexProgress(null);
+  };
 
   const filteredSurahs = surahs.filter(surah => 
     searchQuery
@@ -34,6 +73,46 @@ export const SurahList: React.FC<SurahListProps> = ({ surahs, onSurahSelect }) =
         <Search className="absolute left-3 top-2.5 text-gray-400" size={20} />
       </div>
 
+      {textSearchAvailable && !indexed && !indexProgress && (
+        <button
+          onClick={handleBuildIndex}
+          className="w-full flex items-center justify-center px-4 py-2 rounded-xl border border-[#8B4513] text-[#8B4513] text-sm"
+        >
+          <Download size={16} className="mr-2" />
+          Download verse text to search inside surahs
+        </button>
+      )}
+
+      {indexProgress && (
+        <div className="flex items-center justify-center text-sm text-gray-500 dark:text-gray-400">
+          <Loader size={16} className="mr-2 animate-spin" />
+          Indexing surah {indexProgress.current} of {indexProgress.total}...
+        </div>
+      )}
+
+      {/* Verses matching the text search */}
+      {ayahHits.length > 0 && onAyahSelect && (
+        <div className="space-y-2">
+          {ayahHits.map(hit => (
+            <div
+              key={`${hit.language}-${hit.surah}-${hit.ayah}`}
+              onClick={() => onAyahSelect(hit.page)}
+              className="bg-white dark:bg-gray-800 p-4 rounded-xl shadow-sm cursor-pointer hover:bg-[#F8F0E3] dark:hover:bg-gray-700 transition-colors"
+            >
+              <p className="text-xs font-medium text-[#8B4513] mb-1">
+                {surahs.find(surah => surah.id === hit.surah)?.surahName ?? hit.surah} {hit.surah}:{hit.ayah} • page {hit.page}
+              </p>
+              <p
+                className="text-sm text-gray-700 dark:text-gray-300 line-clamp-2"
+                dir={hit.language === 'ar' ? 'rtl' : 'ltr'}
+              >
+                {hit.text}
+              </p>
+            </div>
+          ))}
+        </div>
+      )}
+
       {/* Surahs List */}
       <div className="space-y-2">
         {filteredSurahs.map((surah, index) => (
@@ -46,6 +125,12 @@ export const SurahList: React.FC<SurahListProps> = ({ surahs, onSurahSelect }) =
             className="bg-white dark:bg-gray-800 p-4 rounded-xl shadow-sm flex items-center justify-between cursor-pointer hover:bg-[#F8F0E3] dark:hover:bg-gray-700 transition-colors"
           >
             <div className="flex items-center space-x-4">
+              {atlas && surah.startPage && getThumbnailQuality(atlas, surah.startPage) !== 'none' && (
+                <div
+                  className="rounded shadow-sm flex-shrink-0 bg-white"
+                  style={getThumbnailStyle(atlas, surah.startPage, 30)}
+                />
+              )}
               <div className="w-12 h-12 rounded-xl bg-[#F8F0E3] dark:bg-[#8B4513]/20 flex items-center justify-center font-medium text-[#8B4513]">
                 {surah.id}
               </div>
@@ -67,7 +152,7 @@ export const SurahList: React.FC<SurahListProps> = ({ surahs, onSurahSelect }) =
           </motion.div>
         ))}
 
-        {filteredSurahs.length === 0 && (
+        {filteredSurahs.length === 0 && ayahHits.length === 0 && (
           <div className="bg-white dark:bg-gray-800 p-6 rounded-xl text-center">
             <p className="text-gray-500 dark:text-gray-400">
               No surahs found matching "{searchQuery}"
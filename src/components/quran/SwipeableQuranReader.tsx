@@ -187,6 +187,12 @@ export const SwipeableQuranReader: React.FC<SwipeableQuranReaderProps> = ({
     }
   };
 
+  const handleAyahSelect = async (page: number) => {
+    audioService.current.stop();
+    await loadPage(page);
+    setShowSurahList(false);
+  };
+
   const toggleAudio = async () => {
     try {
       if (!currentPage) return;
@@ -220,6 +226,34 @@ export const SwipeableQuranReader: React.FC<SwipeableQuranReaderProps> = ({
     }
   };
 
+  // On Android the volume keys turn pages natively (PageTurnController): report the
+  // page on screen and follow the turns it sends back
+  const loadPageRef = useRef(loadPage);
+  loadPageRef.current = loadPage;
+
+  useEffect(() => {
+    const android = (window as any).Android;
+    if (!currentPage || !android || typeof android.setReaderPage !== 'function') return;
+    android.setReaderPage(currentPage.pageNumber);
+  }, [currentPage?.pageNumber]);
+
+  useEffect(() => {
+    const android = (window as any).Android;
+    if (!android || typeof android.setReaderPage !== 'function') return;
+
+    const handleNativePageTurn = (event: Event) => {
+      const { page } = (event as CustomEvent<{ page: number }>).detail;
+      audioService.current.stop();
+      loadPageRef.current(page);
+    };
+
+    window.addEventListener('nativePageTurn', handleNativePageTurn);
+    return () => {
+      window.removeEventListener('nativePageTurn', handleNativePageTurn);
+      android.setReaderPage(0);
+    };
+  }, []);
+
   const toggleBookmark = () => {
     if (!currentPage) return;
     
@@ -333,6 +367,7 @@ export const SwipeableQuranReader: React.FC<SwipeableQuranReaderProps> = ({
               <SurahList 
                 surahs={surahs} 
                 onSurahSelect={handleSurahSelect} 
+                onAyahSelect={handleAyahSelect}
               />
             </div>
           </motion.div>
@@ -1,5 +1,6 @@
 import { useState, useEffect } from 'react';
 import { supabase } from '../lib/supabase';
+import { queryCatalog, onCatalogUpdated } from '../lib/catalog-cache';
 import type { Database } from '../types/supabase';
 
 type Book = Database['public']['Tables']['books']['Row'];
@@ -55,13 +56,18 @@ export function useFeaturedBooks() {
         }
       }
 
-      const { data, error } = await supabase
-        .from('books')
-        .select('*')
-        .order('created_at', { ascending: false })
-        .limit(4);
-
-      if (error) throw error;
+      // The native catalog copy answers offline; supabase-js otherwise
+      let data = await queryCatalog<Book>('books', { select: '*', order: 'created_at.desc', limit: '4' });
+      if (!data) {
+        const result = await supabase
+          .from('books')
+          .select('*')
+          .order('created_at', { ascending: false })
+          .limit(4);
+
+        if (result.error) throw result.error;
+        data = result.data;
+      }
 
       setBooks(data || []);
       setCachedBooks(data || []);
@@ -81,6 +87,7 @@ export function useFeaturedBooks() {
 
   useEffect(() => {
     fetchBooks();
+    return onCatalogUpdated('books', () => fetchBooks(true));
   }, []);
 
   return { books, loading, error, refreshBooks: () => fetchBooks(true) };
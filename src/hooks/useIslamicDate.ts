@@ -1,6 +1,7 @@
 import { useState, useEffect } from 'react';
 import { toHijri } from 'hijri-converter';
 import { format } from 'date-fns';
+import { getPrayerDays, onPrayerTableReady, updatePrayerLocation, NativePrayerDay } from '../lib/prayer-times';
 
 interface IslamicDate {
   day: number;
@@ -21,6 +22,35 @@ const ISLAMIC_MONTHS = [
   'Ramadan', 'Shawwal', 'Dhu al-Qadah', 'Dhu al-Hijjah'
 ];
 
+const PRAYER_NAMES: Array<[string, string]> = [
+  ['Fajr', 'fajr'], ['Dhuhr', 'dhuhr'], ['Asr', 'asr'], ['Maghrib', 'maghrib'], ['Isha', 'isha']
+];
+
+// Position of each time in NativePrayerDay.minutes
+const PRAYER_INDEX: Record<string, number> = { fajr: 0, sunrise: 1, dhuhr: 2, asr: 3, maghrib: 4, isha: 5 };
+
+// Today's times with how long until the next prayer. Once isha has passed, fajr
+// shows tomorrow's time.
+function upcomingPrayerTimes(today: NativePrayerDay, tomorrow?: NativePrayerDay): PrayerTime[] {
+  const now = new Date();
+  const nowMinutes = now.getHours() * 60 + now.getMinutes();
+  const times: PrayerTime[] = PRAYER_NAMES.map(([name, key]) => ({ name, time: today.times[key] ?? '--:--' }));
+  let next = PRAYER_NAMES.findIndex(([, key]) => {
+    const minutes = today.minutes[PRAYER_INDEX[key]];
+    return minutes >= 0 && minutes > nowMinutes;
+  });
+  let until = next >= 0 ? today.minutes[PRAYER_INDEX[PRAYER_NAMES[next][1]]] - nowMinutes : -1;
+  if (next < 0 && tomorrow && tomorrow.minutes[PRAYER_INDEX.fajr] >= 0) {
+    next = 0;
+    until = 24 * 60 - nowMinutes + tomorrow.minutes[PRAYER_INDEX.fajr];
+    times[0].time = tomorrow.times.fajr ?? '--:--';
+  }
+  if (next >= 0) {
+    times[next].remaining = `${Math.floor(until / 60)}h ${until % 60}m`;
+  }
+  return times;
+}
+
 export function useIslamicDate() {
   const [islamicDate, setIslamicDate] = useState<IslamicDate>({
     day: 1,
@@ -30,7 +60,7 @@ export function useIslamicDate() {
 
   const [gregorianDate] = useState<Date>(new Date());
 
-  const [prayerTimes] = useState<PrayerTime[]>([
+  const [prayerTimes, setPrayerTimes] = useState<PrayerTime[]>([
     { name: 'Fajr', time: '05:41' },
     { name: 'Dhuhr', time: '12:30' },
     { name: 'Asr', time: '15:45' },
@@ -38,10 +68,27 @@ export function useIslamicDate() {
     { name: 'Isha', time: '19:45' }
   ]);
 
+  const [tableVersion, setTableVersion] = useState(0);
+
+  // The native table follows the device location; re-read it once rebuilt
+  useEffect(() => {
+    const removeListener = onPrayerTableReady(() => setTableVersion(version => version + 1));
+    updatePrayerLocation();
+    return removeListener;
+  }, []);
+
   useEffect(() => {
     // Get current date
     const today = new Date();
-    const hijri = toHijri(today.getFullYear(), today.getMonth() + 1, today.getDate());
+    const nativeDays = getPrayerDays('', 2);
+    const nativeDay = nativeDays?.[0];
+    const hijri = nativeDay
+      ? { hy: nativeDay.hijri.year, hm: nativeDay.hijri.month, hd: nativeDay.hijri.day }
+      : toHijri(today.getFullYear(), today.getMonth() + 1, today.getDate());
+
+    if (nativeDay) {
+      setPrayerTimes(upcomingPrayerTimes(nativeDay, nativeDays?.[1]));
+    }
     
     // Check for Islamic events
     let event: string | undefined;
@@ -81,7 +128,7 @@ export function useIslamicDate() {
       year: hijri.hy,
       event
     });
-  }, []);
+  }, [tableVersion]);
 
   return { 
     islamicDate, 
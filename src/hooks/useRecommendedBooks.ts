@@ -1,5 +1,6 @@
 import { useState, useEffect } from 'react';
 import { supabase } from '../lib/supabase';
+import { queryCatalog, onCatalogUpdated } from '../lib/catalog-cache';
 import type { Database } from '../types/supabase';
 
 type Book = Database['public']['Tables']['books']['Row'];
@@ -69,30 +70,43 @@ export function useRecommendedBooks() {
       }
 
       let query = supabase.from('books').select('*');
+      // Same query for the native catalog copy, which answers offline
+      const catalogQuery: Record<string, string> = { select: '*' };
 
       // Filter based on season
       if (isRamadan()) {
         query = query.ilike('title', '%ramadhan%');
+        catalogQuery.title = 'ilike.%ramadhan%';
       } else if (isZakatSeason()) {
         query = query.ilike('title', '%zakat%');
+        catalogQuery.title = 'ilike.%zakat%';
       } else {
         // For non-seasonal periods, get random books
         query = query.limit(3).order('created_at', { ascending: false });
+        catalogQuery.order = 'created_at.desc';
+        catalogQuery.limit = '3';
       }
 
-      const { data, error } = await query;
-
-      if (error) throw error;
+      let data = await queryCatalog<Book>('books', catalogQuery);
+      if (!data) {
+        const result = await query;
+        if (result.error) throw result.error;
+        data = result.data ?? [];
+      }
 
       // If no seasonal books found, get general books
       if (data.length === 0) {
-        const { data: generalBooks, error: generalError } = await supabase
-          .from('books')
-          .select('*')
-          .limit(3)
-          .order('created_at', { ascending: false });
-
-        if (generalError) throw generalError;
+        let generalBooks = await queryCatalog<Book>('books', { select: '*', order: 'created_at.desc', limit: '3' });
+        if (!generalBooks) {
+          const result = await supabase
+            .from('books')
+            .select('*')
+            .limit(3)
+            .order('created_at', { ascending: false });
+
+          if (result.error) throw result.error;
+          generalBooks = result.data;
+        }
         setBooks(generalBooks || []);
         setCachedBooks(generalBooks || []);
       } else {
@@ -115,6 +129,7 @@ export function useRecommendedBooks() {
 
   useEffect(() => {
     fetchBooks();
+    return onCatalogUpdated('books', () => fetchBooks(true));
   }, []);
 
   return { books, loading, error, refreshBooks: () => fetchBooks(true) };
@@ -44,6 +44,14 @@ export async function initializeBookNotifications() {
 export async function scheduleBookNotification(delayMs = BOOK_NOTIFICATION_INTERVAL) {
   if (!Capacitor.isNativePlatform()) return;
 
+  // The native scheduler queues the reminder itself when the app is backgrounded
+  // (at most once a day); it only needs books to pick from
+  const android = (window as any).Android;
+  if (android && typeof android.setNotificationContent === 'function') {
+    await syncBookNotificationContent(android);
+    return;
+  }
+
   try {
     // Check if we've sent a notification recently
     const lastNotificationTime = localStorage.getItem(LAST_BOOK_NOTIFICATION_KEY);
@@ -86,6 +94,25 @@ export async function scheduleBookNotification(delayMs = BOOK_NOTIFICATION_INTER
   }
 }
 
+async function syncBookNotificationContent(android: any) {
+  try {
+    const { data, error } = await supabase
+      .from('books')
+      .select('id, title, author')
+      .limit(10);
+
+    if (error) throw error;
+    if (!data || data.length === 0) return;
+
+    android.setNotificationContent('book', JSON.stringify(data.map((book) => ({
+      id: book.id,
+      body: `${book.title} - ${book.author}. Komawo osome ekitabo kino!`
+    }))));
+  } catch (error) {
+    console.error('Error syncing book notification content:', error);
+  }
+}
+
 // Get a random book from the database
 async function getRandomBook(): Promise<Book | null> {
   try {
@@ -123,12 +150,3 @@ function handleBookNotificationAction(notification: any) {
     }
   }
 }
-
-// Handle app reopening after being closed
-export function handleAppReopen(pauseDuration: number) {
-  // If app was closed for more than 24 hours, schedule a notification
-  if (pauseDuration >= BOOK_NOTIFICATION_INTERVAL) {
-    // Schedule notification for 24 hours from now
-    scheduleBookNotification();
-  }
-}
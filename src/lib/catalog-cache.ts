@@ -0,0 +1,41 @@
+import { Capacitor } from '@capacitor/core';
+import { supabaseUrl, supabaseAnonKey } from './supabase';
+
+// Public catalog tables the Android app keeps a copy of (CatalogCache). Queries
+// are answered from that copy at once and it is revalidated in the background, so
+// lists render on launch and offline.
+export type CatalogTable = 'books' | 'reels';
+
+/**
+ * Query the native catalog copy
+ * @param table Catalog table
+ * @param query PostgREST-style parameters: select=*, order=created_at.desc,
+ *   limit=N and <column>=eq.<value> or <column>=ilike.<pattern>
+ * @returns The rows, or null outside the Android app or when the native side
+ *   can't answer, so the caller can fall back to supabase-js
+ */
+export async function queryCatalog<T>(table: CatalogTable, query: Record<string, string>): Promise<T[] | null> {
+  if (!Capacitor.isNativePlatform() || Capacitor.getPlatform() !== 'android') return null;
+  try {
+    const response = await fetch(`/_native/catalog/${table}?${new URLSearchParams(query)}`, {
+      headers: { apikey: supabaseAnonKey, 'X-Catalog-Source': supabaseUrl }
+    });
+    if (!response.ok) return null;
+    return (await response.json()) as T[];
+  } catch (error) {
+    console.error(`Error querying catalog ${table}:`, error);
+    return null;
+  }
+}
+
+/**
+ * Subscribe to background syncs that changed a catalog table
+ * @returns Unsubscribe function
+ */
+export function onCatalogUpdated(table: CatalogTable, callback: () => void): () => void {
+  const handler = (event: Event) => {
+    if ((event as CustomEvent<{ table: string }>).detail?.table === table) callback();
+  };
+  window.addEventListener('catalogUpdated', handler);
+  return () => window.removeEventListener('catalogUpdated', handler);
+}
@@ -72,6 +72,11 @@ export async function generateDeviceFingerprint(): Promise<string> {
  */
 export async function getDeviceFingerprint(): Promise<string> {
   const storedFingerprint = localStorage.getItem('device_fingerprint');
+
+  const nativeIdentity = getNativeDeviceIdentity(storedFingerprint);
+  if (nativeIdentity) {
+    return nativeIdentity;
+  }
   
   if (storedFingerprint) {
     return storedFingerprint;
@@ -80,6 +85,30 @@ export async function getDeviceFingerprint(): Promise<string> {
   return generateDeviceFingerprint();
 }
 
+/**
+ * Use the identity the Android shell keeps (see DeviceIdentity.java), skipping the
+ * canvas and WebGL probes. A fingerprint this install already registered with is
+ * handed over first so the device keeps its identity.
+ */
+function getNativeDeviceIdentity(storedFingerprint: string | null): string | null {
+  try {
+    const android = (window as any).Android;
+    if (!android || typeof android.getDeviceIdentity !== 'function') {
+      return null;
+    }
+
+    android.adoptDeviceIdentity(storedFingerprint || '');
+    const identity: string | null = android.getDeviceIdentity();
+    if (identity) {
+      localStorage.setItem('device_fingerprint', identity);
+    }
+    return identity;
+  } catch (error) {
+    console.error('Error getting native device identity:', error);
+    return null;
+  }
+}
+
 /**
  * Collect various device information to create a unique fingerprint
  */
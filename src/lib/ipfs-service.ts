@@ -12,6 +12,11 @@ const IPFS_CACHE_KEY = 'ipfs-content-cache';
 const IPFS_CACHE_TIMESTAMP_KEY = 'ipfs-cache-timestamp';
 const IPFS_CACHE_DURATION = 7 * 24 * 60 * 60 * 1000; // 7 days in milliseconds
 
+// IPFS add API used for native uploads (same Infura project as quran-ipfs-service)
+const IPFS_ADD_ENDPOINT = 'https://ipfs.infura.io:5001/api/v0/add?pin=true';
+// Stores the root node that joins the chunks of a native upload into one file
+const IPFS_DAG_PUT_ENDPOINT = 'https://ipfs.infura.io:5001/api/v0/dag/put?store-codec=dag-pb&input-codec=dag-json&pin=true';
+
 // Interface for IPFS content
 interface IPFSContent {
   cid: string;
@@ -23,6 +28,30 @@ interface IPFSContent {
   createdAt: string;
 }
 
+// A document picked with the Android picker, uploaded by ChunkedUploader
+export interface NativeUploadFile {
+  uri: string;
+  name: string;
+  size: number;
+  mimeType: string;
+}
+
+// What ChunkedUploader reports once every chunk is on IPFS
+interface NativeUploadResult {
+  uploadId: string;
+  size: number;
+  chunkSize: number;
+  sha256: string;
+  chunks: string[];
+}
+
+interface PendingUpload {
+  resolve: (result: NativeUploadResult) => void;
+  reject: (error: Error) => void;
+  onProgress?: (percent: number) => void;
+  size: number;
+}
+
 // Interface for cached content
 interface CachedContent {
   [cid: string]: {
@@ -31,6 +60,92 @@ interface CachedContent {
   };
 }
 
+// Large uploads go through the Android app: it streams the picked document to
+// IPFS in 1 MB chunks, so the file is never read into the WebView
+const pendingUploads = new Map<string, PendingUpload>();
+let pendingPick: ((file: NativeUploadFile | null) => void) | null = null;
+
+// Id of a native upload of this file: the same document picked again gets the
+// same id, so ChunkedUploader resumes from its ledger instead of starting over
+async function nativeUploadId(file: NativeUploadFile, type: string): Promise<string> {
+  const digest = await crypto.subtle.digest('SHA-256', new TextEncoder().encode(`${file.uri}\n${file.size}`));
+  const hex = Array.from(new Uint8Array(digest).slice(0, 16), b => b.toString(16).padStart(2, '0')).join('');
+  return `${type}-${hex}`;
+}
+
+function pushVarint(bytes: number[], value: number): void {
+  // Plain arithmetic, since sizes may not fit the 32 bits bitwise operators use
+  while (value >= 0x80) {
+    bytes.push((value % 0x80) + 0x80);
+    value = Math.floor(value / 0x80);
+  }
+  bytes.push(value);
+}
+
+// UnixFS Data message of a file node whose children hold blockSizes bytes each:
+// Type = File (field 1), filesize (field 3) and one blocksizes entry (field 4) per child
+function encodeUnixFsFile(fileSize: number, blockSizes: number[]): Uint8Array {
+  const bytes: number[] = [0x08, 0x02, 0x18];
+  pushVarint(bytes, fileSize);
+  for (const size of blockSizes) {
+    bytes.push(0x20);
+    pushVarint(bytes, size);
+  }
+  return new Uint8Array(bytes);
+}
+
+function getNativeUploader(): any {
+  const android = (window as any).Android;
+  return android && typeof android.startChunkedUpload === 'function' ? android : null;
+}
+
+/**
+ * Whether large files can be uploaded by the Android app
+ */
+export function canUploadNatively(): boolean {
+  return getNativeUploader() !== null;
+}
+
+/**
+ * Let the user pick a document with the Android picker
+ * @returns The picked file, or null if the picker was dismissed
+ */
+export function pickNativeUploadFile(mimeType: string): Promise<NativeUploadFile | null> {
+  const android = getNativeUploader();
+  if (!android) return Promise.resolve(null);
+  pendingPick?.(null);
+  return new Promise(resolve => {
+    pendingPick = resolve;
+    android.pickUploadFile(mimeType);
+  });
+}
+
+(window as any).handleUploadFilePicked = (uri: string | null, name?: string, size?: number, mimeType?: string) => {
+  const resolve = pendingPick;
+  pendingPick = null;
+  resolve?.(uri ? { uri, name: name || '', size: size ?? -1, mimeType: mimeType || '' } : null);
+};
+
+(window as any).handleUploadProgress = (uploadId: string, bytesUploaded: number, totalBytes: number) => {
+  const upload = pendingUploads.get(uploadId);
+  const total = totalBytes > 0 ? totalBytes : upload?.size ?? -1;
+  if (upload?.onProgress && total > 0) {
+    upload.onProgress(Math.min(100, (bytesUploaded / total) * 100));
+  }
+};
+
+(window as any).handleUploadComplete = (uploadId: string, result: NativeUploadResult) => {
+  const upload = pendingUploads.get(uploadId);
+  pendingUploads.delete(uploadId);
+  upload?.resolve(result);
+};
+
+(window as any).handleUploadError = (uploadId: string, error: string) => {
+  const upload = pendingUploads.get(uploadId);
+  pendingUploads.delete(uploadId);
+  upload?.reject(new Error(error));
+};
+
 class IPFSService {
   private static instance: IPFSService;
   private cache: CachedContent = {};
@@ -366,6 +481,89 @@ class IPFSService {
       throw error;
     }
   }
+
+  // Upload a file picked with pickNativeUploadFile through the Android app
+  public async uploadLargeFileNatively(file: NativeUploadFile, title: string, type: 'book' | 'image' | 'audio' | 'video', onProgress?: (percent: number) => void): Promise<string> {
+    const android = getNativeUploader();
+    if (!android) {
+      throw new Error('Native uploads are not available');
+    }
+
+    try {
+      const uploadId = await nativeUploadId(file, type);
+      if (pendingUploads.has(uploadId)) {
+        throw new Error('This file is already being uploaded');
+      }
+      const projectId = import.meta.env.VITE_INFURA_PROJECT_ID;
+      const secret = import.meta.env.VITE_INFURA_API_SECRET;
+      const headers: Record<string, string> = projectId && secret ? { Authorization: 'Basic ' + btoa(`${projectId}:${secret}`) } : {};
+
+      const result = await new Promise<NativeUploadResult>((resolve, reject) => {
+        pendingUploads.set(uploadId, { resolve, reject, onProgress, size: file.size });
+        android.startChunkedUpload(uploadId, file.uri, IPFS_ADD_ENDPOINT, JSON.stringify(headers));
+      });
+
+      // A single chunk is the file itself; otherwise a root node joins the chunks,
+      // so the CID opens as the whole file on any gateway
+      const cid = result.chunks.length === 1 ? result.chunks[0] : await this.pinChunkedRoot(result, headers);
+
+      // Register in Supabase
+      const { error } = await supabase
+        .from('ipfs_content')
+        .insert({
+          cid,
+          title,
+          type,
+          chunks: result.chunks.length > 1 ? result.chunks : null,
+          mime_type: file.mimeType || undefined,
+          size: result.size,
+          created_at: new Date().toISOString()
+        });
+
+      if (error) throw error;
+
+      // Add to local registry
+      this.contentRegistry[cid] = {
+        cid,
+        title,
+        type,
+        chunks: result.chunks.length > 1 ? result.chunks : undefined,
+        mimeType: file.mimeType || undefined,
+        size: result.size,
+        createdAt: new Date().toISOString()
+      };
+
+      return cid;
+    } catch (error) {
+      console.error('Failed to upload file to IPFS natively:', error);
+      throw error;
+    }
+  }
+
+  // Store and pin a UnixFS file node linking the uploaded chunks in order. Each
+  // chunk was added as a file of its own, so it is a valid child of the root.
+  private async pinChunkedRoot(result: NativeUploadResult, headers: Record<string, string>): Promise<string> {
+    const blockSizes = result.chunks.map((_, index) =>
+      Math.min(result.chunkSize, result.size - index * result.chunkSize));
+    const data = encodeUnixFsFile(result.size, blockSizes);
+    // dag-json writes bytes as unpadded base64
+    const node = {
+      Data: { '/': { bytes: btoa(String.fromCharCode(...data)).replace(/=+$/, '') } },
+      Links: result.chunks.map(chunk => ({ Hash: { '/': chunk }, Name: '' }))
+    };
+
+    const form = new FormData();
+    form.append('file', new Blob([JSON.stringify(node)], { type: 'application/json' }), 'root.json');
+    const response = await fetch(IPFS_DAG_PUT_ENDPOINT, { method: 'POST', headers, body: form });
+    if (!response.ok) {
+      throw new Error(`Failed to pin the root of a chunked upload: HTTP ${response.status}`);
+    }
+    const cid = (await response.json())?.Cid?.['/'];
+    if (typeof cid !== 'string' || !cid) {
+      throw new Error('No CID in dag/put response');
+    }
+    return cid;
+  }
 }
 
 export default IPFSService;
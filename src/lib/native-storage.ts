@@ -0,0 +1,55 @@
+// Storage the Android app uses for downloaded pages, audio and books
+// (StorageGovernor). Files past the budget are evicted least recently used first;
+// pinned ones, such as pages the user downloaded, are kept.
+
+export interface StorageCategoryUsage {
+  count: number;
+  bytes: number;
+  pinnedBytes: number;
+}
+
+export interface StorageUsage {
+  budget: number;
+  used: number;
+  deviceFree: number;
+  // Keyed by PAGE_IMAGE, SURAH_AUDIO, BOOK_FILE, AUDIO_STREAM, VIDEO_SEGMENT
+  categories: Record<string, StorageCategoryUsage>;
+}
+
+function getNativeStorage(): any {
+  const android = (window as any).Android;
+  return android && typeof android.getStorageUsage === 'function' ? android : null;
+}
+
+/**
+ * Current usage and budget, or null outside the Android app
+ */
+export function getStorageUsage(): StorageUsage | null {
+  const android = getNativeStorage();
+  if (!android) return null;
+  try {
+    return JSON.parse(android.getStorageUsage()) as StorageUsage;
+  } catch (error) {
+    console.error('Error reading storage usage:', error);
+    return null;
+  }
+}
+
+/**
+ * Change the total budget; the app evicts down to it in the background
+ */
+export function setStorageBudget(bytes: number): void {
+  getNativeStorage()?.setStorageBudget(Math.round(bytes));
+}
+
+/**
+ * Keep a page range from being evicted, or let it go again
+ */
+export function setQuranPagesPinned(startPage: number, endPage: number, pinned: boolean): void {
+  getNativeStorage()?.setQuranPagesPinned(startPage, endPage, pinned);
+}
+
+export function formatBytes(bytes: number): string {
+  if (bytes >= 1024 * 1024 * 1024) return `${(bytes / (1024 * 1024 * 1024)).toFixed(1)} GB`;
+  return `${Math.round(bytes / (1024 * 1024))} MB`;
+}
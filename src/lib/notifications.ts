@@ -11,6 +11,26 @@ let hasNotificationPermission = false;
 let notificationScheduled = false;
 let appPauseTime: number | null = null;
 
+// Ids from this value up are taken by the Android app's own reminders and prayer
+// alerts (NotificationScheduler.NATIVE_ID_BASE)
+const NATIVE_NOTIFICATION_ID_BASE = 1_000_000;
+
+// Story ids are UUIDs; hash them into a notification id that can't collide with
+// the return prompt (1) or the native range
+function storyNotificationId(storyId: string): number {
+  let hash = 0;
+  for (let i = 0; i < storyId.length; i++) {
+    hash = (hash * 31 + storyId.charCodeAt(i)) | 0;
+  }
+  return 2 + Math.abs(hash % (NATIVE_NOTIFICATION_ID_BASE - 2));
+}
+
+// Native notification queue in MainActivity, when the app runs in the Android shell
+function getNativeScheduler(): any {
+  const android = (window as any).Android;
+  return android && typeof android.scheduleNotification === 'function' ? android : null;
+}
+
 export async function initializePushNotifications() {
   if (!Capacitor.isNativePlatform()) {
     console.log('Push notifications are only available on native platforms');
@@ -81,6 +101,20 @@ async function initializeLocalNotifications() {
 }
 
 function setupAppStateListeners() {
+  const nativeScheduler = getNativeScheduler();
+  if (nativeScheduler) {
+    // Return prompts and book reminders are queued natively on pause; give it
+    // something to promote and skip the JS scheduling below
+    getRandomStory().then((story) => {
+      if (story) {
+        nativeScheduler.setNotificationContent('story', JSON.stringify([
+          { id: story.id, body: `${story.title} - ${story.excerpt}` }
+        ]));
+      }
+    });
+    return;
+  }
+
   // Listen for app state changes
   App.addListener('appStateChange', ({ isActive }) => {
     console.log('App state changed. Is active:', isActive);
@@ -223,11 +257,25 @@ async function saveNotificationToken(token: string) {
 export async function scheduleStoryNotification(story: { title: string; excerpt: string; id: string }) {
   if (!Capacitor.isNativePlatform() || !hasNotificationPermission) return;
 
+  const nativeScheduler = getNativeScheduler();
+  if (nativeScheduler) {
+    nativeScheduler.scheduleNotification(JSON.stringify({
+      id: storyNotificationId(story.id),
+      kind: 'story',
+      title: 'Emboozi Empya: ' + story.title,
+      body: story.excerpt,
+      target: story.id,
+      delayMs: 60 * 1000,
+      flexMs: 30 * 1000
+    }));
+    return;
+  }
+
   try {
     await LocalNotifications.schedule({
       notifications: [
         {
-          id: parseInt(story.id) || 1,
+          id: storyNotificationId(story.id),
           title: 'Emboozi Empya: ' + story.title,
           body: story.excerpt,
           schedule: { at: new Date(Date.now() + 60 * 1000) }, // 1 minute from now
@@ -247,6 +295,8 @@ export async function scheduleStoryNotification(story: { title: string; excerpt:
 
 export async function cancelAllNotifications() {
   if (!Capacitor.isNativePlatform()) return;
+
+  getNativeScheduler()?.cancelNotifications('');
   
   try {
     await LocalNotifications.cancelAll();
@@ -255,3 +305,17 @@ export async function cancelAllNotifications() {
     console.error('Error canceling notifications:', error);
   }
 }
+
+// Replay a tap on a native notification that launched the app, once the
+// navigation listeners are registered
+export function dispatchNativeNotificationLaunch() {
+  const nativeScheduler = getNativeScheduler();
+  if (!nativeScheduler) return;
+
+  const launch = nativeScheduler.consumeNotificationLaunch();
+  if (!launch) return;
+
+  const { type, id } = JSON.parse(launch);
+  const eventName = type === 'book' ? 'bookNotificationNavigation' : 'notificationNavigation';
+  window.dispatchEvent(new CustomEvent(eventName, { detail: { type, id } }));
+}
@@ -0,0 +1,133 @@
+// Prayer settings and the native prayer-time table (PrayerTimeTable on Android).
+// The table is computed for the location and method sent here; until the first
+// call it uses Kampala with MWL.
+
+export type PrayerMethod = 'MWL' | 'ISNA' | 'EGYPT' | 'MAKKAH' | 'KARACHI';
+
+export const PRAYER_METHODS: Array<{ value: PrayerMethod; label: string }> = [
+  { value: 'MWL', label: 'Muslim World League' },
+  { value: 'ISNA', label: 'ISNA (North America)' },
+  { value: 'EGYPT', label: 'Egyptian General Authority' },
+  { value: 'MAKKAH', label: 'Umm al-Qura, Makkah' },
+  { value: 'KARACHI', label: 'University of Karachi' }
+];
+
+export interface PrayerSettings {
+  latitude: number;
+  longitude: number;
+  method: PrayerMethod;
+  hanafi: boolean;
+  // False while the location is still the Kampala default
+  located: boolean;
+}
+
+export interface NativePrayerDay {
+  date: string;
+  hijri: { day: number; month: number; year: number };
+  // "HH:mm", or null for a time that doesn't occur that day (polar day or night)
+  times: Record<string, string | null>;
+  minutes: number[];
+}
+
+const SETTINGS_KEY = 'prayer_settings';
+const DEFAULT_SETTINGS: PrayerSettings = {
+  latitude: 0.3476,
+  longitude: 32.5825,
+  method: 'MWL',
+  hanafi: false,
+  located: false
+};
+// Smaller moves than this (about 1 km) don't change the times by a minute
+const LOCATION_EPSILON = 0.01;
+
+const readyListeners = new Set<() => void>();
+
+function getNativePrayer(): any {
+  const android = (window as any).Android;
+  return android && typeof android.setPrayerSettings === 'function' ? android : null;
+}
+
+export function getPrayerSettings(): PrayerSettings {
+  try {
+    const stored = localStorage.getItem(SETTINGS_KEY);
+    return stored ? { ...DEFAULT_SETTINGS, ...JSON.parse(stored) } : DEFAULT_SETTINGS;
+  } catch (error) {
+    return DEFAULT_SETTINGS;
+  }
+}
+
+/**
+ * Save settings and have the app rebuild its prayer table and alarms for them
+ */
+export function savePrayerSettings(changes: Partial<PrayerSettings>): PrayerSettings {
+  const settings = { ...getPrayerSettings(), ...changes };
+  localStorage.setItem(SETTINGS_KEY, JSON.stringify(settings));
+  getNativePrayer()?.setPrayerSettings(settings.latitude, settings.longitude, settings.method, settings.hanafi);
+  return settings;
+}
+
+/**
+ * Ask for the device position and save it when it has moved. Resolves with the
+ * settings in effect afterwards, or null if the position isn't available.
+ */
+export function updatePrayerLocation(): Promise<PrayerSettings | null> {
+  return new Promise(resolve => {
+    if (!navigator.geolocation) {
+      resolve(null);
+      return;
+    }
+    navigator.geolocation.getCurrentPosition(
+      (position) => {
+        const { latitude, longitude } = position.coords;
+        const current = getPrayerSettings();
+        const moved = !current.located
+          || Math.abs(current.latitude - latitude) > LOCATION_EPSILON
+          || Math.abs(current.longitude - longitude) > LOCATION_EPSILON;
+        resolve(moved ? savePrayerSettings({ latitude, longitude, located: true }) : current);
+      },
+      () => resolve(null),
+      { maximumAge: 60 * 60 * 1000, timeout: 10000 }
+    );
+  });
+}
+
+/**
+ * count days of times and Hijri dates starting at start (yyyy-MM-dd, empty for
+ * today), or null outside the Android app
+ */
+export function getPrayerDays(start: string, count: number): NativePrayerDay[] | null {
+  const android = (window as any).Android;
+  if (!android || typeof android.getPrayerDays !== 'function') return null;
+  try {
+    const days = JSON.parse(android.getPrayerDays(start, count));
+    return Array.isArray(days) ? days : null;
+  } catch (error) {
+    console.error('Error reading native prayer times:', error);
+    return null;
+  }
+}
+
+/**
+ * Call listener whenever the app finishes rebuilding the table for new settings.
+ * Returns a function that removes it.
+ */
+export function onPrayerTableReady(listener: () => void): () => void {
+  readyListeners.add(listener);
+  (window as any).handlePrayerTableReady = () => readyListeners.forEach(ready => ready());
+  return () => {
+    readyListeners.delete(listener);
+  };
+}
+
+/**
+ * Whether the app posts a notification at each prayer time, or null outside the
+ * Android app
+ */
+export function getPrayerAlertsEnabled(): boolean | null {
+  const android = getNativePrayer();
+  return android && typeof android.isPrayerAlertsEnabled === 'function' ? android.isPrayerAlertsEnabled() : null;
+}
+
+export function setPrayerAlertsEnabled(enabled: boolean): void {
+  getNativePrayer()?.setPrayerAlertsEnabled(enabled);
+}
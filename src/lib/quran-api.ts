@@ -58,12 +58,8 @@ export function getPageImageUrl(pageNumber: number): string {
   return `/assets/quran-pages/${formattedPage}.png`;
 }
 
-// Function to get page audio URL
-export function getPageAudioUrl(reciterId: string, pageNumber: number): string {
-  // Format page number with leading zeros
-  const formattedPage = pageNumber.toString().padStart(3, '0');
-  
-  // Map reciter IDs to their paths
+// Map reciter IDs to their everyayah.com paths
+export function getReciterPath(reciterId: string): string {
   const reciterPaths: { [key: string]: string } = {
     "1": "Alafasy_128kbps",
     "2": "Abu_Bakr_Ash-Shaatree_128kbps",
@@ -73,7 +69,15 @@ export function getPageAudioUrl(reciterId: string, pageNumber: number): string {
     "6": "Abdul_Basit_Murattal_192kbps"
   };
   
-  const reciterPath = reciterPaths[reciterId] || reciterPaths["1"];
+  return reciterPaths[reciterId] || reciterPaths["1"];
+}
+
+// Function to get page audio URL
+export function getPageAudioUrl(reciterId: string, pageNumber: number): string {
+  // Format page number with leading zeros
+  const formattedPage = pageNumber.toString().padStart(3, '0');
+  
+  const reciterPath = getReciterPath(reciterId);
   
   return `https://everyayah.com/data/${reciterPath}/PageMp3s/Page${formattedPage}.mp3`;
 }
@@ -117,6 +121,60 @@ export async function fetchPage(pageNumber: number): Promise<Page | null> {
   };
 }
 
+export interface QuranSearchHit {
+  surah: number;
+  ayah: number;
+  page: number;
+  language: string;
+  text: string;
+  score: number;
+}
+
+// Full-text search over the native index (Android only). Returns ranked ayah hits,
+// or an empty list when the native index isn't available.
+export function searchQuranText(query: string, language = '', limit = 50): QuranSearchHit[] {
+  const android = (window as any).Android;
+  if (!query.trim() || !android || typeof android.searchQuran !== 'function') return [];
+  try {
+    return JSON.parse(android.searchQuran(query, language, limit));
+  } catch (error) {
+    console.error('Error searching Quran text:', error);
+    return [];
+  }
+}
+
+export interface QuranIndexCallbacks {
+  onProgress?: (current: number, total: number) => void;
+  onComplete?: (success: number, failed: number) => void;
+  onError?: (error: string) => void;
+}
+
+// Whether full-text search is available: the Android app is there and some surah
+// text has been indexed
+export function isQuranSearchIndexed(): boolean {
+  const android = (window as any).Android;
+  if (!android || typeof android.getQuranSearchStatus !== 'function') return false;
+  try {
+    const status: Record<string, number> = JSON.parse(android.getQuranSearchStatus());
+    return Object.values(status).some(count => count > 0);
+  } catch (error) {
+    console.error('Error reading Quran search status:', error);
+    return false;
+  }
+}
+
+// Download and index surah text in the background. Returns false outside the
+// Android app.
+export function buildQuranSearchIndex(fromSurah = 1, toSurah = 114, callbacks: QuranIndexCallbacks = {}): boolean {
+  const android = (window as any).Android;
+  if (!android || typeof android.downloadQuranTextIndex !== 'function') return false;
+  (window as any).handleQuranIndexProgress = (current: number, total: number) => callbacks.onProgress?.(current, total);
+  (window as any).handleQuranIndexComplete = (success: number, failed: number) => callbacks.onComplete?.(success, failed);
+  (window as any).handleQuranIndexError = (error: string) => callbacks.onError?.(error);
+  android.downloadQuranTextIndex(fromSurah, toSurah);
+  return true;
+}
+
 // Function to fetch all Surahs
 export async function fetchSurahs(): Promise<Surah[]> {
   return surahs;
@@ -1,4 +1,10 @@
-import { getPageAudioUrl } from './quran-api';
+import { getPageAudioUrl, getReciterPath } from './quran-api';
+
+// Native gapless playback service exposed by MainActivity on Android
+function getNativeAudio(): any {
+  const android = (window as any).Android;
+  return android && android.playQuranAudio ? android : null;
+}
 
 // Audio player service for Quran recitation
 class QuranAudioService {
@@ -15,8 +21,16 @@ class QuranAudioService {
   private retryCount: number = 0;
   private maxRetries: number = 3;
   private loadTimeout: number | null = null;
+  private useNative: boolean = false;
+  private nativeQueueActive: boolean = false;
 
   private constructor() {
+    // Prefer the native engine: it keeps playing while the WebView is paused
+    if (getNativeAudio()) {
+      this.useNative = true;
+      (window as any).handleQuranAudioEvent = this.handleNativeEvent.bind(this);
+    }
+    
     // Create audio element
     this.audio = new Audio();
     
@@ -60,6 +74,18 @@ class QuranAudioService {
 
   // Play a specific page
   public async playPage(pageNumber: number): Promise<void> {
+    if (this.useNative) {
+      this.currentPage = pageNumber;
+      this.notifyLoadingStateChange(true);
+      // Queue the rest of the mushaf so page transitions are gapless
+      getNativeAudio().playQuranAudio(
+        getReciterPath(this.reciterId),
+        pageNumber,
+        this.autoAdvance ? 604 : pageNumber
+      );
+      return;
+    }
+    
     if (!this.audio) return;
     
     try {
@@ -126,6 +152,11 @@ class QuranAudioService {
 
   // Pause playback
   public pause(): void {
+    if (this.useNative) {
+      getNativeAudio().pauseQuranAudio();
+      return;
+    }
+    
     if (!this.audio) return;
     
     this.audio.pause();
@@ -135,6 +166,11 @@ class QuranAudioService {
 
   // Resume playback
   public async resume(): Promise<void> {
+    if (this.useNative) {
+      getNativeAudio().resumeQuranAudio();
+      return;
+    }
+    
     if (!this.audio) return;
     
     try {
@@ -158,7 +194,7 @@ class QuranAudioService {
     if (this.isPlaying) {
       this.pause();
     } else {
-      if (this.audio?.src) {
+      if (this.useNative ? this.nativeQueueActive : this.audio?.src) {
         await this.resume();
       } else {
         await this.playPage(this.currentPage);
@@ -168,6 +204,11 @@ class QuranAudioService {
 
   // Stop playback completely
   public stop(): void {
+    if (this.useNative) {
+      getNativeAudio().stopQuranAudio();
+      return;
+    }
+    
     if (!this.audio) return;
     
     // Clear any existing timeout
@@ -214,6 +255,50 @@ class QuranAudioService {
     this.onLoadingStateChangeCallback = callback;
   }
 
+  // Ayah queues report page 0; only page queues move the reader
+  private followNativePage(page: number): void {
+    if (page <= 0 || page === this.currentPage) return;
+    this.currentPage = page;
+    if (this.onPageCompleteCallback) {
+      this.onPageCompleteCallback(page);
+    }
+  }
+
+  // Handle playback events pushed by the native service
+  private handleNativeEvent(state: string, _index: number, page: number, _total: number): void {
+    switch (state) {
+      case 'loading':
+        this.nativeQueueActive = true;
+        this.notifyLoadingStateChange(true);
+        break;
+      case 'playing':
+        // Normally preceded by 'segment' for a new page; don't rely on it
+        this.followNativePage(page);
+        this.isPlaying = true;
+        this.notifyLoadingStateChange(false);
+        this.notifyPlayStateChange(true);
+        break;
+      case 'segment':
+        // A new page started playing; move the reader along
+        this.followNativePage(page);
+        break;
+      case 'paused':
+        this.isPlaying = false;
+        this.notifyPlayStateChange(false);
+        break;
+      case 'ended':
+      case 'stopped':
+        this.nativeQueueActive = false;
+        this.isPlaying = false;
+        this.notifyLoadingStateChange(false);
+        this.notifyPlayStateChange(false);
+        break;
+      case 'error':
+        console.error('Native Quran audio error on page', page);
+        break;
+    }
+  }
+
   // Handle audio ended event
   private handleAudioEnded(): void {
     this.isPlaying = false;
@@ -0,0 +1,32 @@
+// Reels play through the Android app's local video cache (LocalVideoProxy), which
+// answers Range requests from segments kept on disk and fetches the rest as it is
+// watched. Elsewhere, or if the proxy can't start, videos stream directly.
+
+let proxyBase: string | null | undefined;
+
+function getProxyBase(): string | null {
+  if (proxyBase === undefined) {
+    const android = (window as any).Android;
+    proxyBase = android && typeof android.getVideoProxyBase === 'function'
+      ? android.getVideoProxyBase() || null
+      : null;
+  }
+  return proxyBase ?? null;
+}
+
+/**
+ * URL to play a video from, through the local cache when available
+ */
+export function getCachedVideoUrl(url: string): string {
+  const base = getProxyBase();
+  return base ? base + encodeURIComponent(url) : url;
+}
+
+/**
+ * Fetch the opening seconds of videos likely to be played next
+ */
+export function prefetchVideos(urls: string[]): void {
+  const android = (window as any).Android;
+  if (!urls.length || !getProxyBase() || typeof android?.prefetchVideos !== 'function') return;
+  android.prefetchVideos(JSON.stringify(urls));
+}
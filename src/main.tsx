@@ -4,6 +4,21 @@ import App from './App';
 import './index.css';
 import { scheduleMemoryCleanup, monitorMemoryUsage } from './lib/memory-manager';
 
+// Imports are evaluated before this line runs, so this marks the end of parsing,
+// compiling and evaluating the entry module graph
+const entryEvaluatedAt = performance.now();
+
+// Report how long the entry chunk took to arrive and to compile and run, so the
+// effect of the V8 code cache across launches shows up in the native metrics
+const reportEntryTimings = () => {
+  const android = (window as any).Android;
+  const script = document.querySelector<HTMLScriptElement>('script[type="module"][src]');
+  if (!android || typeof android.reportWebStartup !== 'function' || !script) return;
+  const entry = performance.getEntriesByName(script.src)[0] as PerformanceResourceTiming | undefined;
+  if (!entry || entry.responseEnd <= 0) return;
+  android.reportWebStartup(entry.responseEnd - entry.startTime, entryEvaluatedAt - entry.responseEnd);
+};
+
 const rootElement = document.getElementById('root');
 
 if (!rootElement) {
@@ -76,12 +91,6 @@ window.handleVolumeButtonPress = () => {
   window.dispatchEvent(event);
 };
 
-// Add global handler for app reopen after being closed
-window.handleAppReopen = (pauseDuration) => {
-  console.log('App reopened after being closed for', pauseDuration, 'ms');
-  // This will be implemented in App.tsx
-};
-
 // Handle errors that might cause the app to go blank
 window.addEventListener('error', (event) => {
   console.error('Caught unhandled error:', event.error);
@@ -106,7 +115,6 @@ declare global {
     handleGoogleSignInResult: (account: any) => void;
     handleGoogleSignInError: (error: string) => void;
     handleVolumeButtonPress: () => void;
-    handleAppReopen: (pauseDuration: number) => void;
     Android?: {
       googleSignIn: () => void;
       enableRotation: () => void;
@@ -127,3 +135,5 @@ root.render(
     <App />
   </StrictMode>
 );
+
+reportEntryTimings();
@@ -76,6 +76,5 @@ declare global {
     handleGoogleSignInResult: (account: any) => void;
     handleGoogleSignInError: (error: string) => void;
     handleVolumeButtonPress: () => void;
-    handleAppReopen: (pauseDuration: number) => void;
   }
 }
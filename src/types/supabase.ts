@@ -47,6 +47,7 @@ export interface Database {
           physical_price: number
           content_url: string
           created_at: string
+          updated_at: string
         }
         Insert: {
           id?: string
@@ -59,6 +60,7 @@ export interface Database {
           physical_price: number
           content_url: string
           created_at?: string
+          updated_at?: string
         }
         Update: {
           id?: string
@@ -71,6 +73,7 @@ export interface Database {
           physical_price?: number
           content_url?: string
           created_at?: string
+          updated_at?: string
         }
       }
       user_books: {
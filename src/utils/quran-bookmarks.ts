@@ -6,11 +6,36 @@ interface QuranBookmark {
   timestamp: number;
 }
 
+// Native bookmark store (SQLite) when running inside the Android app
+function getNativeIndex(): any {
+  const android = (window as any).Android;
+  if (!android || typeof android.getQuranBookmarks !== 'function') return null;
+
+  // Move any bookmarks saved before the native store existed
+  const legacy = localStorage.getItem('quran-bookmarks');
+  if (legacy) {
+    android.importQuranBookmarks(legacy);
+    localStorage.removeItem('quran-bookmarks');
+  }
+  return android;
+}
+
 // Add a bookmark
 export function addBookmark(pageNumber: number): void {
   if (!pageNumber || pageNumber < 1 || pageNumber > 604) return;
   
   try {
+    const native = getNativeIndex();
+    if (native) {
+      if (native.isQuranBookmarked(pageNumber)) return;
+      const surah = findSurahByPage(pageNumber);
+      native.addQuranBookmark(
+        pageNumber,
+        surah ? `${surah.surahName} (${surah.surahNameArabic})` : null
+      );
+      return;
+    }
+
     // Get existing bookmarks
     const bookmarks = getBookmarks();
     
@@ -40,6 +65,12 @@ export function addBookmark(pageNumber: number): void {
 // Remove a bookmark
 export function removeBookmark(pageNumber: number): void {
   try {
+    const native = getNativeIndex();
+    if (native) {
+      native.removeQuranBookmark(pageNumber);
+      return;
+    }
+
     const bookmarks = getBookmarks();
     const updatedBookmarks = bookmarks.filter(b => b.pageNumber !== pageNumber);
     saveBookmarks(updatedBookmarks);
@@ -51,6 +82,9 @@ export function removeBookmark(pageNumber: number): void {
 // Check if a page is bookmarked
 export function isBookmarked(pageNumber: number): boolean {
   try {
+    const native = getNativeIndex();
+    if (native) return native.isQuranBookmarked(pageNumber);
+
     const bookmarks = getBookmarks();
     return bookmarks.some(b => b.pageNumber === pageNumber);
   } catch (error) {
@@ -62,6 +96,9 @@ export function isBookmarked(pageNumber: number): boolean {
 // Get all bookmarks
 export function getBookmarks(): QuranBookmark[] {
   try {
+    const native = getNativeIndex();
+    if (native) return JSON.parse(native.getQuranBookmarks());
+
     const storedBookmarks = localStorage.getItem('quran-bookmarks');
     return storedBookmarks ? JSON.parse(storedBookmarks) : [];
   } catch (error) {
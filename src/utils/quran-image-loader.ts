@@ -670,6 +670,35 @@ export function getQuranImageUrl(pageNumber: number, retryCount: number = 0): st
   return FALLBACK_SOURCES[fallbackIndex](formattedPage);
 }
 
+/**
+ * URL of a page served by the Android app: the downloaded page when it is on the
+ * device, otherwise a bundled low-resolution preview while the full page downloads
+ * @param pageNumber The page number
+ * @param version Bumped after an upgrade so the image element reloads
+ * @returns Same-origin URL handled natively
+ */
+export function getNativeQuranPageUrl(pageNumber: number, version: number = 0): string {
+  return version > 0
+    ? `/_native/quran-page/${pageNumber}?v=${version}`
+    : `/_native/quran-page/${pageNumber}`;
+}
+
+/**
+ * Listen for full pages replacing previews served by getNativeQuranPageUrl
+ * @param listener Called with the page number that can now be shown in full
+ * @returns Function that removes the listener
+ */
+export function onQuranPageUpgraded(listener: (pageNumber: number) => void): () => void {
+  const handler = (event: Event) => {
+    const page = (event as CustomEvent<{ page: number }>).detail?.page;
+    if (typeof page === 'number') {
+      listener(page);
+    }
+  };
+  window.addEventListener('quranPageUpgraded', handler);
+  return () => window.removeEventListener('quranPageUpgraded', handler);
+}
+
 /**
  * Preload a Quran page image
  * @param pageNumber The page number to preload
@@ -773,6 +802,73 @@ export function preloadQuranPageRange(currentPage: number, range: number = 5): v
   }
 }
 
+export interface QuranSelection {
+  type: 'surah' | 'juz' | 'hizb' | 'page';
+  from: number;
+  // Defaults to from
+  to?: number;
+}
+
+export interface QuranDownloadPlan {
+  requested: number;
+  missing: number;
+  // Inclusive [first, last] page ranges still to fetch
+  missingRanges: Array<[number, number]>;
+}
+
+function getNativePageDownloader(): any {
+  const android = (window as any).Android;
+  return android && typeof android.downloadQuranSelection === 'function' ? android : null;
+}
+
+/**
+ * What downloading a selection would fetch, or null outside the Android app or
+ * for an invalid selection
+ * @param selections Surahs, juz', hizbs or page ranges; overlaps count once
+ */
+export function planQuranDownload(selections: QuranSelection[]): QuranDownloadPlan | null {
+  const android = getNativePageDownloader();
+  if (!android || typeof android.planQuranDownload !== 'function') return null;
+  const plan = android.planQuranDownload(JSON.stringify(selections));
+  return plan ? JSON.parse(plan) : null;
+}
+
+/**
+ * Download a selection through the Android app into its page store, where the
+ * reader and eviction see it. Pages already stored are kept and count as successes.
+ * @param selections Surahs, juz', hizbs or page ranges
+ * @param progressCallback Callback for progress updates
+ * @returns Promise that resolves when the download finishes; rejects outside the
+ * Android app or if the app refuses the download
+ */
+export function downloadQuranSelection(
+  selections: QuranSelection[],
+  progressCallback?: (current: number, total: number) => void
+): Promise<{ success: number; failed: number }> {
+  const android = getNativePageDownloader();
+  if (!android) {
+    return Promise.reject(new Error('Native page download unavailable'));
+  }
+  return new Promise((resolve, reject) => {
+    const w = window as any;
+    const cleanup = () => {
+      delete w.handleQuranDownloadProgress;
+      delete w.handleQuranDownloadComplete;
+      delete w.handleQuranDownloadError;
+    };
+    w.handleQuranDownloadProgress = (current: number, total: number) => progressCallback?.(current, total);
+    w.handleQuranDownloadComplete = (success: number, failed: number) => {
+      cleanup();
+      resolve({ success, failed });
+    };
+    w.handleQuranDownloadError = (message: string) => {
+      cleanup();
+      reject(new Error(message));
+    };
+    android.downloadQuranSelection(JSON.stringify(selections));
+  });
+}
+
 /**
  * Download and cache Quran pages for offline use
  * @param startPage First page to download
@@ -789,6 +885,11 @@ export async function downloadQuranPagesForOffline(
   if (!Capacitor.isNativePlatform()) {
     return { success: 0, failed: 0 };
   }
+
+  // The Android app stores pages where its reader serves them from
+  if (getNativePageDownloader()) {
+    return downloadQuranSelection([{ type: 'page', from: startPage, to: endPage }], progressCallback);
+  }
   
   const total = endPage - startPage + 1;
   let success = 0;
@@ -0,0 +1,95 @@
+import { useEffect, useState } from 'react';
+import type { CSSProperties } from 'react';
+import { Capacitor } from '@capacitor/core';
+
+// One sprite with a thumbnail of every mushaf page, produced by the Android app
+// (ThumbnailAtlas) as pages download. A grid of any size is drawn from this single
+// image with background-position, so it costs one request and one decode.
+export interface ThumbnailAtlas {
+  version: number;
+  url: string;
+  tileWidth: number;
+  tileHeight: number;
+  width: number;
+  height: number;
+  // [x, y] pairs in page order: page n is at offsets[2(n-1)], offsets[2(n-1)+1]
+  offsets: number[];
+  // [[first, last], ...] of pages drawn from the downloaded page / from a preview
+  pages: number[][];
+  previewPages: number[][];
+}
+
+export type ThumbnailQuality = 'full' | 'preview' | 'none';
+
+const INDEX_URL = '/_native/quran-thumbs/index.json';
+
+/**
+ * Fetch the current atlas description
+ * @returns The atlas, or null outside the Android app or before any page is drawn
+ */
+export async function loadThumbnailAtlas(): Promise<ThumbnailAtlas | null> {
+  if (!Capacitor.isNativePlatform() || Capacitor.getPlatform() !== 'android') return null;
+  try {
+    const response = await fetch(INDEX_URL);
+    if (!response.ok) return null;
+    const atlas = (await response.json()) as ThumbnailAtlas;
+    return atlas.version > 0 ? atlas : null;
+  } catch (error) {
+    console.error('Error loading thumbnail atlas:', error);
+    return null;
+  }
+}
+
+function inRanges(ranges: number[][], page: number): boolean {
+  return ranges.some(([first, last]) => page >= first && page <= last);
+}
+
+/**
+ * How the atlas tile for a page was drawn
+ */
+export function getThumbnailQuality(atlas: ThumbnailAtlas, pageNumber: number): ThumbnailQuality {
+  if (inRanges(atlas.pages, pageNumber)) return 'full';
+  if (inRanges(atlas.previewPages, pageNumber)) return 'preview';
+  return 'none';
+}
+
+/**
+ * CSS that shows one page's tile from the atlas at the given width
+ */
+export function getThumbnailStyle(atlas: ThumbnailAtlas, pageNumber: number, width: number): CSSProperties {
+  const scale = width / atlas.tileWidth;
+  const x = atlas.offsets[2 * (pageNumber - 1)];
+  const y = atlas.offsets[2 * (pageNumber - 1) + 1];
+  return {
+    width,
+    height: Math.round(atlas.tileHeight * scale),
+    backgroundImage: `url(${atlas.url})`,
+    backgroundSize: `${atlas.width * scale}px ${atlas.height * scale}px`,
+    backgroundPosition: `${-x * scale}px ${-y * scale}px`,
+    backgroundRepeat: 'no-repeat'
+  };
+}
+
+/**
+ * The current atlas, refreshed whenever the app writes a new version
+ */
+export function useThumbnailAtlas(): ThumbnailAtlas | null {
+  const [atlas, setAtlas] = useState<ThumbnailAtlas | null>(null);
+
+  useEffect(() => {
+    let active = true;
+    const refresh = () => {
+      loadThumbnailAtlas().then(loaded => {
+        if (active && loaded) setAtlas(loaded);
+      });
+    };
+    refresh();
+    window.addEventListener('quranThumbnailsUpdated', refresh);
+    return () => {
+      active = false;
+      window.removeEventListener('quranThumbnailsUpdated', refresh);
+    };
+  }, []);
+
+  return atlas;
+}
@@ -4,6 +4,8 @@ interface ImportMetaEnv {
   readonly VITE_SUPABASE_URL: string;
   readonly VITE_SUPABASE_ANON_KEY: string;
   readonly VITE_GOOGLE_CLIENT_ID: string;
+  readonly VITE_INFURA_PROJECT_ID?: string;
+  readonly VITE_INFURA_API_SECRET?: string;
 }
 
 interface ImportMeta {
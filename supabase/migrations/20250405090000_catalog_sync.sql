@@ -0,0 +1,52 @@
+/*
+  # Track row changes on catalog tables
+
+  1. Changes
+    - Add `updated_at` (timestamptz) to `books` and `reels`, set to `created_at`
+      for existing rows
+    - Trigger keeps `updated_at` current on every update
+    - Index on `updated_at` for incremental sync
+
+  2. Notes
+    - The Android app keeps an offline copy of both tables and asks only for
+      rows with `updated_at` newer than the last one it has
+*/
+
+CREATE OR REPLACE FUNCTION set_updated_at()
+RETURNS TRIGGER AS $$
+BEGIN
+  NEW.updated_at = now();
+  RETURN NEW;
+END;
+$$ LANGUAGE plpgsql;
+
+DO $$ BEGIN
+  ALTER TABLE books ADD COLUMN updated_at TIMESTAMPTZ NOT NULL DEFAULT now();
+  UPDATE books SET updated_at = COALESCE(created_at, now());
+EXCEPTION
+  WHEN duplicate_column THEN
+    NULL;
+END $$;
+
+DO $$ BEGIN
+  ALTER TABLE reels ADD COLUMN updated_at TIMESTAMPTZ NOT NULL DEFAULT now();
+  UPDATE reels SET updated_at = COALESCE(created_at, now());
+EXCEPTION
+  WHEN duplicate_column THEN
+    NULL;
+END $$;
+
+DROP TRIGGER IF EXISTS books_set_updated_at ON books;
+CREATE TRIGGER books_set_updated_at
+  BEFORE UPDATE ON books
+  FOR EACH ROW
+  EXECUTE FUNCTION set_updated_at();
+
+DROP TRIGGER IF EXISTS reels_set_updated_at ON reels;
+CREATE TRIGGER reels_set_updated_at
+  BEFORE UPDATE ON reels
+  FOR EACH ROW
+  EXECUTE FUNCTION set_updated_at();
+
+CREATE INDEX IF NOT EXISTS idx_books_updated_at ON books (updated_at);
+CREATE INDEX IF NOT EXISTS idx_reels_updated_at ON reels (updated_at);